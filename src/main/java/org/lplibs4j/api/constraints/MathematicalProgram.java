@@ -1,5 +1,7 @@
 package org.lplibs4j.api.constraints;
 
+import org.lplibs4j.api.implementation.FrozenSparseVector;
+import org.lplibs4j.api.implementation.HybridVector;
 import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.api.util.Matrix;
 
@@ -18,6 +20,11 @@ public abstract class MathematicalProgram {
      */
     protected SparseVector c;
 
+    /**
+     * Immutable copy of c handed out by getCSparse, see setCSparse
+     */
+    private volatile FrozenSparseVector frozenc;
+
     /**
      * The list of constraints for the given problem.
      */
@@ -84,13 +91,42 @@ public abstract class MathematicalProgram {
         return c.get();
     }
 
+    /**
+     * Gets the coefficient vector for a linear target function in its sparse representation.
+     * The vector is frozen when the coefficients are set and shared afterwards, so the
+     * returned vector must not and cannot be altered, and can be read from any thread.
+     *
+     * @return the immutable coefficients of the target function
+     */
+    public SparseVector getCSparse() {
+        FrozenSparseVector frozen = frozenc;
+        if (frozen == null) {
+            // c was assigned directly instead of through setCSparse
+            frozen = c.freeze();
+            frozenc = frozen;
+        }
+        return frozen;
+    }
+
+    /**
+     * Sets the coefficients of the linear target function without changing the integer
+     * markers. The vector is kept as it is and frozen once for getCSparse, so later changes
+     * to it are not seen by getCSparse.
+     *
+     * @param pc the coefficients of the target function
+     */
+    protected void setCSparse(SparseVector pc) {
+        c = pc;
+        frozenc = pc.freeze();
+    }
+
     /**
      * Sets the coefficients of the linear target function.
      *
      * @param c  the c to set
      */
     public void setC(Matrix pc) {
-        c = new SparseVector(pc);
+        setCSparse(new HybridVector(new SparseVector(pc)));
 
         isinteger  = new boolean[c.getRowNum()];
         isboolean  = new boolean[c.getRowNum()];
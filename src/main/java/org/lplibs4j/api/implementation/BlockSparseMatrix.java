@@ -0,0 +1,467 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Immutable sparse matrix in dual block-angular form, the constraint matrix of the
+ * extensive form of a two-stage stochastic program:
+ * <pre>
+ * [ A            ]
+ * [ T_1 W_1      ]
+ * [ T_2     W_2  ]
+ * [ ...      ... ]
+ * </pre>
+ * The first columns are the linking columns shared by all blocks, block s owns the rows of
+ * T_s and W_s and the columns of W_s. Only the sub-matrices are stored, each in compressed
+ * row format, so the memory is O(total nnz) for any number of blocks, and blocks may share
+ * the same sub-matrix, for example a recourse matrix that is equal in all scenarios.
+ * <p>
+ * The products treat the blocks as units of work: y = M * x computes every block of rows
+ * independently, y = M^T * x computes the columns of every W_s independently and sums the
+ * contributions of the T_s to the linking columns in one private array per thread, like
+ * ParallelSpMV does.
+ *
+ * @author planatsc
+ */
+public class BlockSparseMatrix implements Matrix {
+
+    final CsrMatrix linking;
+    final CsrMatrix[] technology;
+    final CsrMatrix[] recourse;
+    // the first row and column of every block, block s covers rowoffset[s] to rowoffset[s + 1] - 1
+    final int[] rowoffset;
+    final int[] coloffset;
+    // the running count of non-zero entries of the parts: 0 is A, s + 1 is block s
+    final int[] nnzoffset;
+
+    /**
+     * Creates the matrix from its blocks. Other matrix types than CsrMatrix are converted.
+     *
+     * @param linking    The rows A on the linking columns only, null if there are none
+     * @param technology The matrices T_s of the blocks on the linking columns
+     * @param recourse   The matrices W_s of the blocks on their own columns
+     */
+    public BlockSparseMatrix(Matrix linking, Matrix[] technology, Matrix[] recourse) {
+        if (technology.length != recourse.length)
+            throw new IllegalArgumentException("Number of blocks must agree " + technology.length + " " + recourse.length);
+        int n0 = linking != null ? linking.getColNum()
+                : technology.length > 0 ? technology[0].getColNum() : 0;
+        this.linking = linking != null ? CsrMatrix.toCsr(linking)
+                : new CsrMatrix(0, n0, new int[1], new int[0], new double[0]);
+        int blocks = technology.length;
+        this.technology = new CsrMatrix[blocks];
+        this.recourse = new CsrMatrix[blocks];
+        this.rowoffset = new int[blocks + 1];
+        this.coloffset = new int[blocks + 1];
+        this.nnzoffset = new int[blocks + 2];
+        rowoffset[0] = this.linking.rownum;
+        coloffset[0] = n0;
+        nnzoffset[1] = this.linking.getNumberOfNonZeroElements();
+        for (int s = 0; s < blocks; s++) {
+            if (technology[s].getColNum() != n0 || technology[s].getRowNum() != recourse[s].getRowNum())
+                throw new IllegalArgumentException("Matrix dimensions of block " + s + " must agree "
+                        + technology[s].getRowNum() + "x" + technology[s].getColNum() + " "
+                        + recourse[s].getRowNum() + "x" + recourse[s].getColNum() + " with " + n0 + " linking columns");
+            // shared blocks are converted once
+            this.technology[s] = s > 0 && technology[s] == technology[s - 1] ? this.technology[s - 1] : CsrMatrix.toCsr(technology[s]);
+            this.recourse[s] = s > 0 && recourse[s] == recourse[s - 1] ? this.recourse[s - 1] : CsrMatrix.toCsr(recourse[s]);
+            rowoffset[s + 1] = rowoffset[s] + recourse[s].getRowNum();
+            coloffset[s + 1] = coloffset[s] + recourse[s].getColNum();
+            nnzoffset[s + 2] = nnzoffset[s + 1] + this.technology[s].getNumberOfNonZeroElements()
+                    + this.recourse[s].getNumberOfNonZeroElements();
+        }
+    }
+
+    public int getBlockCount() {
+        return technology.length;
+    }
+
+    public CsrMatrix getLinkingBlock() {
+        return linking;
+    }
+
+    public CsrMatrix getTechnologyBlock(int block) {
+        return technology[block];
+    }
+
+    public CsrMatrix getRecourseBlock(int block) {
+        return recourse[block];
+    }
+
+    /**
+     * @return the number of linking columns
+     */
+    public int getLinkingColNum() {
+        return coloffset[0];
+    }
+
+    /**
+     * @param block The block, or the number of blocks for the end of the last block
+     * @return the first row of the block
+     */
+    public int getRowOffset(int block) {
+        return rowoffset[block];
+    }
+
+    /**
+     * @param block The block, or the number of blocks for the end of the last block
+     * @return the first column of the block
+     */
+    public int getColumnOffset(int block) {
+        return coloffset[block];
+    }
+
+    public int getRowNum() {
+        return rowoffset[technology.length];
+    }
+
+    public int getColNum() {
+        return coloffset[technology.length];
+    }
+
+    public int getNumberOfNonZeroElements() {
+        return nnzoffset[technology.length + 1];
+    }
+
+    /**
+     * Returns the block containing a row or column.
+     *
+     * @param offset The offsets of the blocks
+     * @param index  The row or column
+     * @return the block, -1 for the linking rows or columns
+     */
+    private static int block(int[] offset, int index) {
+        int pos = Arrays.binarySearch(offset, index);
+        // equal offsets belong to empty blocks, the row is in the last of them
+        if (pos >= 0) {
+            while (pos + 1 < offset.length && offset[pos + 1] == index) pos++;
+            return pos;
+        }
+        return -pos - 2;
+    }
+
+    public double get(int row, int column) {
+        int s = block(rowoffset, row);
+        if (s < 0) return column < coloffset[0] ? linking.get(row, column) : 0;
+        if (column < coloffset[0]) return technology[s].get(row - rowoffset[s], column);
+        if (column >= coloffset[s] && column < coloffset[s + 1])
+            return recourse[s].get(row - rowoffset[s], column - coloffset[s]);
+        return 0;
+    }
+
+    /**
+     * Not supported, the matrix is immutable.
+     */
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("BlockSparseMatrix is immutable");
+    }
+
+    /**
+     * Calculates y = this * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        times(x, y, 0, technology.length + 1);
+    }
+
+    /**
+     * Calculates y = this * x with one task per group of blocks on the shared pool.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void timesParallel(double[] x, double[] y) {
+        timesParallel(x, y, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Calculates y = this * x with one task per group of blocks on the given pool.
+     *
+     * @param x    The dense vector, its length must be at least the number of columns
+     * @param y    The result, its length must be at least the number of rows
+     * @param pool The pool executing the blocks
+     */
+    public void timesParallel(final double[] x, final double[] y, ForkJoinPool pool) {
+        int parts = technology.length + 1;
+        int[] bounds = ParallelSpMV.partition(nnzoffset, parts,
+                ParallelSpMV.blocks(pool, nnzoffset[parts], ParallelSpMV.BLOCKS_PER_THREAD));
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                times(x, y, from, to);
+            }
+        });
+    }
+
+    /**
+     * Calculates the rows of the parts from to to - 1, part 0 is A and part s + 1 is block s.
+     */
+    private void times(double[] x, double[] y, int from, int to) {
+        for (int p = from; p < to; p++) {
+            if (p == 0) {
+                rowTimes(linking, x, 0, y, 0, false);
+            } else {
+                int s = p - 1;
+                rowTimes(technology[s], x, 0, y, rowoffset[s], false);
+                rowTimes(recourse[s], x, coloffset[s], y, rowoffset[s], true);
+            }
+        }
+    }
+
+    /**
+     * Calculates y[yoff..] = a * x[xoff..], or adds it to y.
+     */
+    private static void rowTimes(CsrMatrix a, double[] x, int xoff, double[] y, int yoff, boolean add) {
+        int[] rowptr = a.rowptr;
+        int[] colind = a.colind;
+        double[] values = a.values;
+        for (int i = 0; i < a.rownum; i++) {
+            double sum = add ? y[yoff + i] : 0;
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                sum += values[k] * x[xoff + colind[k]];
+            y[yoff + i] = sum;
+        }
+    }
+
+    /**
+     * Calculates y = this^T * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimes(double[] x, double[] y) {
+        Arrays.fill(y, 0, getColNum(), 0.0);
+        transposeTimes(x, y, y, 0, technology.length + 1);
+    }
+
+    /**
+     * Calculates y = this^T * x with one task per group of blocks on the shared pool.
+     *
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimesParallel(double[] x, double[] y) {
+        transposeTimesParallel(x, y, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Calculates y = this^T * x with one task per group of blocks on the given pool. Every
+     * task but the first sums its part of the linking columns in a private array.
+     *
+     * @param x    The dense vector, its length must be at least the number of rows
+     * @param y    The result, its length must be at least the number of columns
+     * @param pool The pool executing the blocks
+     */
+    public void transposeTimesParallel(final double[] x, final double[] y, ForkJoinPool pool) {
+        int parts = technology.length + 1;
+        int[] bounds = ParallelSpMV.partition(nnzoffset, parts, ParallelSpMV.blocks(pool, nnzoffset[parts], 1));
+        Arrays.fill(y, coloffset[0], getColNum(), 0.0);
+        final double[][] acc = ParallelSpMV.accumulators(y, coloffset[0], bounds.length - 1);
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                transposeTimes(x, y, acc[part], from, to);
+            }
+        });
+        ParallelSpMV.reduce(pool, acc, coloffset[0]);
+    }
+
+    /**
+     * Adds the products of the parts from to to - 1 with x: the linking columns to linked,
+     * the columns of the blocks to y.
+     */
+    private void transposeTimes(double[] x, double[] y, double[] linked, int from, int to) {
+        for (int p = from; p < to; p++) {
+            if (p == 0) {
+                rowTransposeTimes(linking, x, 0, linked, 0);
+            } else {
+                int s = p - 1;
+                rowTransposeTimes(technology[s], x, rowoffset[s], linked, 0);
+                rowTransposeTimes(recourse[s], x, rowoffset[s], y, coloffset[s]);
+            }
+        }
+    }
+
+    /**
+     * Adds a^T * x[xoff..] to y[yoff..].
+     */
+    private static void rowTransposeTimes(CsrMatrix a, double[] x, int xoff, double[] y, int yoff) {
+        int[] rowptr = a.rowptr;
+        int[] colind = a.colind;
+        double[] values = a.values;
+        for (int i = 0; i < a.rownum; i++) {
+            double xi = x[xoff + i];
+            if (xi == 0) continue;
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                y[yoff + colind[k]] += xi * values[k];
+        }
+    }
+
+    /**
+     * Assembles the whole matrix in compressed row format, in O(nnz + rows).
+     *
+     * @return the matrix as CsrMatrix
+     */
+    public CsrMatrix toCsr() {
+        int rows = getRowNum();
+        int[] rowptr = new int[rows + 1];
+        int[] colind = new int[getNumberOfNonZeroElements()];
+        double[] values = new double[colind.length];
+        int nnz = copyRows(linking, null, 0, rowptr, 0, colind, values, 0);
+        for (int s = 0; s < technology.length; s++)
+            nnz = copyRows(technology[s], recourse[s], coloffset[s], rowptr, rowoffset[s], colind, values, nnz);
+        return new CsrMatrix(rows, getColNum(), rowptr, colind, values);
+    }
+
+    /**
+     * Appends the rows of t followed by the rows of w shifted by wcol, which keeps the
+     * column indices sorted.
+     */
+    private static int copyRows(CsrMatrix t, CsrMatrix w, int wcol, int[] rowptr, int row,
+                                int[] colind, double[] values, int nnz) {
+        for (int i = 0; i < t.rownum; i++) {
+            int n = t.rowptr[i + 1] - t.rowptr[i];
+            System.arraycopy(t.colind, t.rowptr[i], colind, nnz, n);
+            System.arraycopy(t.values, t.rowptr[i], values, nnz, n);
+            nnz += n;
+            if (w != null) {
+                for (int k = w.rowptr[i]; k < w.rowptr[i + 1]; k++) {
+                    colind[nnz] = wcol + w.colind[k];
+                    values[nnz++] = w.values[k];
+                }
+            }
+            rowptr[row + i + 1] = nnz;
+        }
+        return nnz;
+    }
+
+    /**
+     * Returns the transpose of the assembled matrix, a CscMatrix. Use transposeTimes to
+     * multiply with the transpose block by block.
+     */
+    public Matrix transpose() {
+        return toCsr().transpose();
+    }
+
+    /**
+     * Multiplies the assembled matrix with another matrix, see CsrMatrix.times.
+     */
+    public Matrix times(Matrix multiplier) {
+        return toCsr().times(multiplier);
+    }
+
+    /**
+     * Adds a matrix to the assembled matrix, see CsrMatrix.plus.
+     */
+    public Matrix plus(Matrix toadd) {
+        return toCsr().plus(toadd);
+    }
+
+    /**
+     * Iterates over the non-zero entries row by row, each row of a block over T_s before W_s.
+     */
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            // the part of the current row, -1 for A, and the row within the part
+            int s = -1;
+            int row;
+            // the sub-matrix being iterated, its position and end in the current row
+            CsrMatrix current = linking;
+            boolean inrecourse;
+            int pos;
+            int end = linking.rownum > 0 ? linking.rowptr[1] : 0;
+            int actualrow;
+            int actualcol;
+
+            {
+                advance();
+            }
+
+            /**
+             * Moves to the next non-empty row segment.
+             */
+            private void advance() {
+                while (pos >= end) {
+                    if (s >= 0 && !inrecourse) {
+                        inrecourse = true;
+                        current = recourse[s];
+                    } else {
+                        inrecourse = false;
+                        row++;
+                        int rows = s < 0 ? linking.rownum : technology[s].rownum;
+                        while (row >= rows) {
+                            if (++s >= technology.length) return;
+                            row = 0;
+                            rows = technology[s].rownum;
+                        }
+                        current = s < 0 ? linking : technology[s];
+                    }
+                    pos = current.rowptr[row];
+                    end = current.rowptr[row + 1];
+                }
+            }
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return pos < end;
+            }
+
+            public Double next() {
+                if (pos >= end) throw new NoSuchElementException();
+                actualrow = (s < 0 ? 0 : rowoffset[s]) + row;
+                actualcol = (inrecourse ? coloffset[s] : 0) + current.colind[pos];
+                double value = current.values[pos++];
+                advance();
+                return value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the non-zero entries row by row in the order of the iterator: every row of a
+     * scenario first visits its technology block, then its recourse block.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        visitRows(linking, 0, 0, visitor);
+        for (int s = 0; s < technology.length; s++) {
+            CsrMatrix t = technology[s];
+            CsrMatrix w = recourse[s];
+            int col = coloffset[s];
+            for (int i = 0; i < t.rownum; i++) {
+                int row = rowoffset[s] + i;
+                for (int k = t.rowptr[i]; k < t.rowptr[i + 1]; k++)
+                    if (t.values[k] != 0) visitor.visit(row, t.colind[k], t.values[k]);
+                for (int k = w.rowptr[i]; k < w.rowptr[i + 1]; k++)
+                    if (w.values[k] != 0) visitor.visit(row, col + w.colind[k], w.values[k]);
+            }
+        }
+    }
+
+    private static void visitRows(CsrMatrix a, int rowoff, int coloff, NonZeroElementVisitor visitor) {
+        for (int i = 0; i < a.rownum; i++)
+            for (int k = a.rowptr[i]; k < a.rowptr[i + 1]; k++)
+                if (a.values[k] != 0) visitor.visit(rowoff + i, coloff + a.colind[k], a.values[k]);
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        return NonZeroCopy.copy(this, rows, cols, vals);
+    }
+
+}
@@ -0,0 +1,442 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only sparse vector in a compressed encoding.
+ * <p>
+ * The indices are stored as differences to their predecessor in a variable length
+ * encoding of 7 bits per byte, so clustered indices need a single byte each. The values
+ * are stored in one of three encodings:
+ * <ul>
+ * <li>FLOAT64: the exact double values, 8 bytes per entry</li>
+ * <li>FLOAT32: the values rounded to float, 4 bytes per entry</li>
+ * <li>DICTIONARY: at most 256 distinct values and one byte per entry referencing them</li>
+ * </ul>
+ * With a dictionary a typical row of a generated model costs 2 bytes per non-zero entry
+ * instead of 12. The entries are decoded on the fly by the iterator and by the fused dot
+ * products, so code holding compressed rows can evaluate them without expanding them. The
+ * linear constraints accept a compressed row: their feasibility check uses the fused dot
+ * product and their CPLEX and GMPL writers walk the entries with a Decoder. Code asking
+ * for a SparseVector, such as getCSparse, gets the row expanded by toSparseVector().
+ * All methods altering the vector throw an UnsupportedOperationException.
+ *
+ * @author planatsc
+ */
+public class CompressedSparseVector implements Matrix {
+
+    /**
+     * Encodings of the values.
+     */
+    public enum ValueEncoding {
+        FLOAT64, FLOAT32, DICTIONARY
+    }
+
+    final byte[] indices;
+    final byte[] values;
+    final double[] dictionary;
+    final ValueEncoding encoding;
+    final int used;
+    final int size;
+    final boolean linevector;
+
+    private CompressedSparseVector(byte[] indices, byte[] values, double[] dictionary, ValueEncoding encoding,
+                                   int used, int size, boolean linevector) {
+        this.indices = indices;
+        this.values = values;
+        this.dictionary = dictionary;
+        this.encoding = encoding;
+        this.used = used;
+        this.size = size;
+        this.linevector = linevector;
+    }
+
+    /**
+     * Compresses a vector, using a dictionary if the vector has at most 256 distinct values
+     * and exact doubles otherwise. No precision is lost.
+     *
+     * @param v The vector to be compressed
+     * @return The compressed vector
+     */
+    public static CompressedSparseVector compress(SparseVector v) {
+        double[] dictionary = distinctValues(v.getData(), v.getUsed());
+        return compress(v, dictionary != null ? ValueEncoding.DICTIONARY : ValueEncoding.FLOAT64, dictionary);
+    }
+
+    /**
+     * Compresses a vector with the given value encoding. FLOAT32 rounds the values.
+     *
+     * @param v        The vector to be compressed
+     * @param encoding The encoding of the values
+     * @return The compressed vector
+     */
+    public static CompressedSparseVector compress(SparseVector v, ValueEncoding encoding) {
+        double[] dictionary = null;
+        if (encoding == ValueEncoding.DICTIONARY) {
+            dictionary = distinctValues(v.getData(), v.getUsed());
+            if (dictionary == null)
+                throw new IllegalArgumentException("A dictionary holds at most 256 distinct values");
+        }
+        return compress(v, encoding, dictionary);
+    }
+
+    /**
+     * Compresses a vector, the dictionary is given for the DICTIONARY encoding.
+     */
+    private static CompressedSparseVector compress(SparseVector v, ValueEncoding encoding, double[] dictionary) {
+        int[] index = v.getIndex();
+        double[] data = v.getData();
+        int used = v.getUsed();
+
+        byte[] indexbuffer = new byte[5 * used];
+        int pos = 0;
+        int last = 0;
+        for (int i = 0; i < used; i++) {
+            int delta = index[i] - last;
+            last = index[i];
+            while ((delta & ~0x7F) != 0) {
+                indexbuffer[pos++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            indexbuffer[pos++] = (byte) delta;
+        }
+        byte[] indices = Arrays.copyOf(indexbuffer, pos);
+
+        byte[] values;
+        switch (encoding) {
+            case FLOAT32:
+                values = new byte[4 * used];
+                for (int i = 0; i < used; i++)
+                    putInt(values, 4 * i, Float.floatToRawIntBits((float) data[i]));
+                break;
+            case DICTIONARY:
+                HashMap<Double, Integer> codes = new HashMap<Double, Integer>();
+                for (int i = 0; i < dictionary.length; i++) codes.put(dictionary[i], i);
+                values = new byte[used];
+                for (int i = 0; i < used; i++)
+                    values[i] = (byte) (int) codes.get(data[i]);
+                break;
+            default:
+                values = new byte[8 * used];
+                for (int i = 0; i < used; i++)
+                    putLong(values, 8 * i, Double.doubleToRawLongBits(data[i]));
+                break;
+        }
+        return new CompressedSparseVector(indices, values, dictionary, encoding, used, v.getSize(), v.linevector);
+    }
+
+    /**
+     * Collects the distinct values of an array.
+     *
+     * @return the sorted distinct values, or null if there are more than 256
+     */
+    private static double[] distinctValues(double[] data, int used) {
+        HashMap<Double, Integer> seen = new HashMap<Double, Integer>();
+        for (int i = 0; i < used; i++) {
+            if (!seen.containsKey(data[i])) {
+                if (seen.size() == 256) return null;
+                seen.put(data[i], seen.size());
+            }
+        }
+        double[] dictionary = new double[seen.size()];
+        int k = 0;
+        for (Double d : seen.keySet()) dictionary[k++] = d;
+        Arrays.sort(dictionary);
+        return dictionary;
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >>> 8);
+        b[off + 2] = (byte) (v >>> 16);
+        b[off + 3] = (byte) (v >>> 24);
+    }
+
+    private static void putLong(byte[] b, int off, long v) {
+        putInt(b, off, (int) v);
+        putInt(b, off + 4, (int) (v >>> 32));
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    private static long getLong(byte[] b, int off) {
+        return (getInt(b, off) & 0xFFFFFFFFL) | ((long) getInt(b, off + 4)) << 32;
+    }
+
+    /**
+     * Decodes the value of the k-th entry.
+     */
+    double value(int k) {
+        switch (encoding) {
+            case FLOAT32:
+                return Float.intBitsToFloat(getInt(values, 4 * k));
+            case DICTIONARY:
+                return dictionary[values[k] & 0xFF];
+            default:
+                return Double.longBitsToDouble(getLong(values, 8 * k));
+        }
+    }
+
+    public ValueEncoding getEncoding() {
+        return encoding;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded indices and values.
+     *
+     * @return the size of the encoded data
+     */
+    public int getEncodedBytes() {
+        return indices.length + values.length + (dictionary != null ? 8 * dictionary.length : 0);
+    }
+
+    /**
+     * Calculates the dot product with a dense array while decoding the entries.
+     *
+     * @param x The dense array
+     * @return The dot product
+     */
+    public double dot(double[] x) {
+        // one loop per encoding keeps the value decoding free of branches
+        double sum = 0;
+        int pos = 0;
+        int ind = 0;
+        switch (encoding) {
+            case DICTIONARY:
+                for (int k = 0; k < used; k++) {
+                    byte b = indices[pos++];
+                    int delta = b & 0x7F;
+                    for (int shift = 7; b < 0; shift += 7) {
+                        b = indices[pos++];
+                        delta |= (b & 0x7F) << shift;
+                    }
+                    ind += delta;
+                    sum += dictionary[values[k] & 0xFF] * x[ind];
+                }
+                break;
+            case FLOAT32:
+                for (int k = 0; k < used; k++) {
+                    byte b = indices[pos++];
+                    int delta = b & 0x7F;
+                    for (int shift = 7; b < 0; shift += 7) {
+                        b = indices[pos++];
+                        delta |= (b & 0x7F) << shift;
+                    }
+                    ind += delta;
+                    sum += Float.intBitsToFloat(getInt(values, 4 * k)) * x[ind];
+                }
+                break;
+            default:
+                for (int k = 0; k < used; k++) {
+                    byte b = indices[pos++];
+                    int delta = b & 0x7F;
+                    for (int shift = 7; b < 0; shift += 7) {
+                        b = indices[pos++];
+                        delta |= (b & 0x7F) << shift;
+                    }
+                    ind += delta;
+                    sum += Double.longBitsToDouble(getLong(values, 8 * k)) * x[ind];
+                }
+                break;
+        }
+        return sum;
+    }
+
+    /**
+     * Calculates the dot product with a sparse vector while decoding the entries.
+     *
+     * @param y The sparse vector
+     * @return The dot product
+     */
+    public double dot(SparseVector y) {
+        int[] yindex = y.getIndex();
+        double[] ydata = y.getData();
+        int yused = y.getUsed();
+        double sum = 0;
+        Decoder d = new Decoder();
+        int c2 = 0;
+        while (d.hasNext() && c2 < yused) {
+            int ind = d.next();
+            while (c2 < yused && yindex[c2] < ind) c2++;
+            if (c2 < yused && yindex[c2] == ind) sum += d.value * ydata[c2];
+        }
+        return sum;
+    }
+
+    /**
+     * Decodes the vector into a SparseVector.
+     *
+     * @return The decoded vector
+     */
+    public SparseVector toSparseVector() {
+        int[] index = new int[used];
+        double[] data = new double[used];
+        Decoder d = new Decoder();
+        for (int k = 0; k < used; k++) {
+            index[k] = d.next();
+            data[k] = d.value;
+        }
+        SparseVector result = new SparseVector(index, data, used, size);
+        result.linevector = linevector;
+        return result;
+    }
+
+    /**
+     * Creates a decoder positioned before the first entry.
+     *
+     * @return a new decoder over the entries of this vector
+     */
+    public Decoder decoder() {
+        return new Decoder();
+    }
+
+    /**
+     * Streaming decoder over the entries in ascending index order.
+     */
+    public class Decoder {
+        int k;
+        int pos;
+        int ind;
+        double value;
+
+        Decoder() {
+        }
+
+        public boolean hasNext() {
+            return k < used;
+        }
+
+        /**
+         * Decodes the next entry.
+         *
+         * @return its index, the value is returned by getValue
+         */
+        public int next() {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = indices[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            ind += delta;
+            value = value(k++);
+            return ind;
+        }
+
+        /**
+         * @return the value of the entry returned by the last call of next
+         */
+        public double getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Gets the value at index by decoding the entries up to it.
+     *
+     * @param ind The index
+     * @return The value at the index
+     */
+    public double get(int ind) {
+        Decoder d = new Decoder();
+        while (d.hasNext()) {
+            int i = d.next();
+            if (i == ind) return d.value;
+            if (i > ind) break;
+        }
+        return 0;
+    }
+
+    public double get(int row, int column) {
+        return get(linevector ? column : row);
+    }
+
+    public int getRowNum() {
+        return linevector ? 1 : size;
+    }
+
+    public int getColNum() {
+        return linevector ? size : 1;
+    }
+
+    public Matrix transpose() {
+        return new CompressedSparseVector(indices, values, dictionary, encoding, used, size, !linevector);
+    }
+
+    public Matrix times(Matrix multiplier) {
+        return toSparseVector().times(multiplier);
+    }
+
+    public Matrix plus(Matrix toadd) {
+        return toSparseVector().plus(toadd);
+    }
+
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("CompressedSparseVector is read-only");
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            Decoder d = new Decoder();
+
+            // the orientation of SparseVectorNonZeroElementIterator
+            public int getActuali() {
+                return linevector ? d.ind : 0;
+            }
+
+            public int getActualj() {
+                return linevector ? 0 : d.ind;
+            }
+
+            public boolean hasNext() {
+                return d.hasNext();
+            }
+
+            public Double next() {
+                if (!d.hasNext()) throw new NoSuchElementException();
+                d.next();
+                return d.value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the entries in index order, decoding them once with a single Decoder.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        Decoder d = new Decoder();
+        while (d.hasNext()) {
+            int ind = d.next();
+            if (d.value == 0) continue;
+            if (linevector) visitor.visit(0, ind, d.value);
+            else visitor.visit(ind, 0, d.value);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        return NonZeroCopy.copy(this, rows, cols, vals);
+    }
+
+}
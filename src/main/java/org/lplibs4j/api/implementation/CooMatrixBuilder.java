@@ -0,0 +1,166 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.Arrays;
+
+/**
+ * Collects the entries of a sparse matrix as (row, column, value) triplets in arbitrary
+ * order and creates a CsrMatrix or CscMatrix at once.
+ * <p>
+ * The triplets are sorted by two stable counting sort passes, first by column and then
+ * by row, in O(nnz + rows + cols). Duplicates are resolved like in SparseVectorBuilder:
+ * by default the last appended value wins, optionally all values are summed up. Zeros
+ * are dropped. The buffers are kept, so one builder can be reused via {@link #clear()}.
+ *
+ * @author planatsc
+ */
+public class CooMatrixBuilder {
+
+    int rownum;
+    int colnum;
+    int[] rows;
+    int[] cols;
+    double[] data;
+    int used;
+    boolean sumduplicates;
+
+    /**
+     * Creates a new builder for a matrix of the given dimensions. Duplicate entries are
+     * resolved by the last appended value.
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     */
+    public CooMatrixBuilder(int rows, int cols) {
+        this(rows, cols, 16, false);
+    }
+
+    /**
+     * Creates a new builder for a matrix of the given dimensions.
+     *
+     * @param rows          The number of rows
+     * @param cols          The number of columns
+     * @param capacity      The starting capacity of the buffers
+     * @param sumduplicates If true, values appended for the same entry are summed up,
+     *                      otherwise the last appended value wins
+     */
+    public CooMatrixBuilder(int rows, int cols, int capacity, boolean sumduplicates) {
+        this.rownum = rows;
+        this.colnum = cols;
+        this.sumduplicates = sumduplicates;
+        this.rows = new int[Math.max(capacity, 1)];
+        this.cols = new int[Math.max(capacity, 1)];
+        this.data = new double[Math.max(capacity, 1)];
+        this.used = 0;
+    }
+
+    /**
+     * Appends an entry to the matrix.
+     *
+     * @param row    The row of the entry
+     * @param column The column of the entry
+     * @param value  The value of the entry
+     * @return this builder
+     */
+    public CooMatrixBuilder append(int row, int column, double value) {
+        if (row < 0 || row >= rownum || column < 0 || column >= colnum)
+            throw new IllegalArgumentException("Entry " + row + " " + column + " out of range " + rownum + "x" + colnum);
+        if (used == rows.length) {
+            int newLength = rows.length << 1;
+            rows = Arrays.copyOf(rows, newLength);
+            cols = Arrays.copyOf(cols, newLength);
+            data = Arrays.copyOf(data, newLength);
+        }
+        rows[used] = row;
+        cols[used] = column;
+        data[used] = value;
+        used++;
+        return this;
+    }
+
+    /**
+     * Returns the number of entries appended so far, duplicates included.
+     *
+     * @return the number of appended entries
+     */
+    public int getUsed() {
+        return used;
+    }
+
+    /**
+     * Creates the matrix in compressed row format. The builder keeps its entries.
+     *
+     * @return The new matrix
+     */
+    public CsrMatrix buildCsr() {
+        // stable counting sort by column, then by row: sorted by (row, column) while
+        // duplicates stay in the order they were appended
+        int[] bycol = countingSort(cols, colnum, identity(used));
+        int[] order = countingSort(rows, rownum, bycol);
+
+        int[] rowptr = new int[rownum + 1];
+        int[] colind = new int[used];
+        double[] values = new double[used];
+        int nnz = 0;
+        int k = 0;
+        for (int i = 0; i < rownum; i++) {
+            while (k < used && rows[order[k]] == i) {
+                int j = cols[order[k]];
+                double value = data[order[k]];
+                k++;
+                while (k < used && rows[order[k]] == i && cols[order[k]] == j) {
+                    value = sumduplicates ? value + data[order[k]] : data[order[k]];
+                    k++;
+                }
+                if (value != 0) {
+                    colind[nnz] = j;
+                    values[nnz] = value;
+                    nnz++;
+                }
+            }
+            rowptr[i + 1] = nnz;
+        }
+        if (nnz != used) {
+            colind = Arrays.copyOf(colind, nnz);
+            values = Arrays.copyOf(values, nnz);
+        }
+        return new CsrMatrix(rownum, colnum, rowptr, colind, values);
+    }
+
+    /**
+     * Creates the matrix in compressed column format. The builder keeps its entries.
+     *
+     * @return The new matrix
+     */
+    public CscMatrix buildCsc() {
+        return buildCsr().toCsc();
+    }
+
+    /**
+     * Removes all entries but keeps the buffers for the next matrix.
+     */
+    public void clear() {
+        used = 0;
+    }
+
+    private static int[] identity(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) result[i] = i;
+        return result;
+    }
+
+    /**
+     * Stably reorders the positions in order by their keys in [0, range).
+     */
+    private static int[] countingSort(int[] keys, int range, int[] order) {
+        int[] start = new int[range + 1];
+        for (int k = 0; k < order.length; k++)
+            start[keys[order[k]] + 1]++;
+        for (int i = 0; i < range; i++)
+            start[i + 1] += start[i];
+        int[] result = new int[order.length];
+        for (int k = 0; k < order.length; k++)
+            result[start[keys[order[k]]]++] = order[k];
+        return result;
+    }
+
+}
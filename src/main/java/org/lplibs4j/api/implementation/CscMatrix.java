@@ -0,0 +1,271 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sparse matrix in compressed sparse column format.
+ * <p>
+ * The entries of column j are stored at the positions colptr[j] to colptr[j + 1] - 1 of
+ * rowind (sorted row indices) and values. The arrays of a CscMatrix are exactly the arrays
+ * of the CsrMatrix of its transpose, so transposing between both formats costs O(1).
+ * Column access and products with the transpose are the strengths of this format; other
+ * products are computed on the compressed row form.
+ * <p>
+ * The arrays returned by the getters must not be altered.
+ *
+ * @author planatsc
+ */
+public class CscMatrix implements Matrix {
+
+    final int rownum;
+    final int colnum;
+    final int[] colptr;
+    final int[] rowind;
+    final double[] values;
+
+    /**
+     * Wraps compressed column arrays without copying them.
+     *
+     * @param rows   The number of rows
+     * @param cols   The number of columns
+     * @param colptr The column pointers, cols + 1 entries
+     * @param rowind The row indices, sorted within each column
+     * @param values The values belonging to the row indices
+     */
+    CscMatrix(int rows, int cols, int[] colptr, int[] rowind, double[] values) {
+        this.rownum = rows;
+        this.colnum = cols;
+        this.colptr = colptr;
+        this.rowind = rowind;
+        this.values = values;
+    }
+
+    /**
+     * Converts a SparseMatrix in O(nnz + rows + cols).
+     *
+     * @param m The matrix to be converted
+     * @return The matrix in compressed column format
+     */
+    public static CscMatrix fromSparseMatrix(SparseMatrix m) {
+        return new CsrMatrix(m).toCsc();
+    }
+
+    /**
+     * Converts the matrix into compressed row format in O(nnz + rows + cols).
+     *
+     * @return The matrix as CsrMatrix
+     */
+    public CsrMatrix toCsr() {
+        return CsrMatrix.transposeOf(colnum, rownum, colptr, rowind, values);
+    }
+
+    /**
+     * Converts the matrix into a SparseMatrix in O(nnz + rows + cols).
+     *
+     * @return The matrix as SparseMatrix
+     */
+    public SparseMatrix toSparseMatrix() {
+        return toCsr().toSparseMatrix();
+    }
+
+    public int getRowNum() {
+        return rownum;
+    }
+
+    public int getColNum() {
+        return colnum;
+    }
+
+    public int getNumberOfNonZeroElements() {
+        return colptr[colnum];
+    }
+
+    public int[] getColumnPointers() {
+        return colptr;
+    }
+
+    public int[] getRowIndices() {
+        return rowind;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public double get(int row, int column) {
+        int pos = Arrays.binarySearch(rowind, colptr[column], colptr[column + 1], row);
+        return pos >= 0 ? values[pos] : 0;
+    }
+
+    /**
+     * Not supported, the matrix is immutable.
+     */
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("CscMatrix is immutable");
+    }
+
+    /**
+     * Returns a column as SparseVector.
+     *
+     * @param column The column
+     * @return A copy of the column
+     */
+    public SparseVector getColumn(int column) {
+        int start = colptr[column];
+        int n = colptr[column + 1] - start;
+        return new SparseVector(Arrays.copyOfRange(rowind, start, start + n),
+                Arrays.copyOfRange(values, start, start + n), n, rownum);
+    }
+
+    /**
+     * Returns the transpose, a CsrMatrix sharing the arrays of this matrix.
+     */
+    public Matrix transpose() {
+        return new CsrMatrix(colnum, rownum, colptr, rowind, values);
+    }
+
+    /**
+     * Calculates y = this * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        Arrays.fill(y, 0, rownum, 0.0);
+        for (int j = 0; j < colnum; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int k = colptr[j]; k < colptr[j + 1]; k++)
+                y[rowind[k]] += xj * values[k];
+        }
+    }
+
+    /**
+     * Calculates y = this^T * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimes(double[] x, double[] y) {
+        for (int j = 0; j < colnum; j++) {
+            double sum = 0;
+            for (int k = colptr[j]; k < colptr[j + 1]; k++)
+                sum += values[k] * x[rowind[k]];
+            y[j] = sum;
+        }
+    }
+
+    /**
+     * Multiplies the matrix with another matrix. A column SparseVector only visits the
+     * columns of its non-zero entries and yields a SparseVector, all other products are
+     * computed on the compressed row form, see CsrMatrix.times.
+     */
+    public Matrix times(Matrix multiplier) {
+        if (multiplier instanceof SparseVector && !((SparseVector) multiplier).linevector) {
+            if (colnum != multiplier.getRowNum())
+                throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+            SparseVector x = (SparseVector) multiplier;
+            int[] xindex = x.getIndex();
+            double[] xdata = x.getData();
+            ScratchArena arena = ScratchArena.get();
+            int mark = arena.mark();
+            try {
+                double[] y = arena.dense(rownum);
+                for (int t = 0; t < x.getUsed(); t++) {
+                    int j = xindex[t];
+                    double xj = xdata[t];
+                    for (int k = colptr[j]; k < colptr[j + 1]; k++)
+                        y[rowind[k]] += xj * values[k];
+                }
+                return new SparseVector(y, rownum);
+            } finally {
+                arena.release(mark);
+            }
+        }
+        return toCsr().times(multiplier);
+    }
+
+    /**
+     * Adds a matrix, see CsrMatrix.plus. Sparse results are returned in compressed column
+     * format.
+     */
+    public Matrix plus(Matrix toadd) {
+        Matrix result = toCsr().plus(toadd);
+        if (result instanceof CsrMatrix) return ((CsrMatrix) result).toCsc();
+        return result;
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            int pos;
+            int col;
+            int actualrow;
+            int actualcol;
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return pos < colptr[colnum];
+            }
+
+            public Double next() {
+                if (pos >= colptr[colnum]) throw new NoSuchElementException();
+                while (colptr[col + 1] <= pos) col++;
+                actualcol = col;
+                actualrow = rowind[pos];
+                return values[pos++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the non-zero entries column by column, in the order of the iterator.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (int j = 0; j < colnum; j++)
+            for (int k = colptr[j]; k < colptr[j + 1]; k++)
+                if (values[k] != 0) visitor.visit(rowind[k], j, values[k]);
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int j = 0; j < colnum; j++) {
+            for (int k = colptr[j]; k < colptr[j + 1]; k++) {
+                if (values[k] == 0) continue;
+                if (count == capacity) throw NonZeroCopy.full(capacity);
+                rows[count] = rowind[k];
+                cols[count] = j;
+                vals[count++] = values[k];
+            }
+        }
+        return count;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof CscMatrix)) return false;
+        CscMatrix m = (CscMatrix) o;
+        return rownum == m.rownum && colnum == m.colnum && Arrays.equals(colptr, m.colptr)
+                && Arrays.equals(rowind, m.rowind) && Arrays.equals(values, m.values);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * rownum + colnum) + Arrays.hashCode(values);
+    }
+
+}
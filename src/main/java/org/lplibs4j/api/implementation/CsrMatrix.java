@@ -0,0 +1,459 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sparse matrix in compressed sparse row format.
+ * <p>
+ * Three arrays hold the whole matrix: the entries of row i are stored at the positions
+ * rowptr[i] to rowptr[i + 1] - 1 of colind (sorted column indices) and values. Compared to
+ * the HashMap of rows of SparseMatrix there are no boxed keys, hash entries or per-row
+ * objects, and all operations run over contiguous memory. The transpose is a CscMatrix
+ * sharing the same arrays and costs O(1). Use a CooMatrixBuilder or the conversion from a
+ * SparseMatrix to create one.
+ * <p>
+ * The arrays returned by the getters must not be altered.
+ *
+ * @author planatsc
+ */
+public class CsrMatrix implements Matrix {
+
+    final int rownum;
+    final int colnum;
+    final int[] rowptr;
+    final int[] colind;
+    final double[] values;
+
+    /**
+     * Wraps compressed row arrays without copying them.
+     *
+     * @param rows   The number of rows
+     * @param cols   The number of columns
+     * @param rowptr The row pointers, rows + 1 entries
+     * @param colind The column indices, sorted within each row
+     * @param values The values belonging to the column indices
+     */
+    CsrMatrix(int rows, int cols, int[] rowptr, int[] colind, double[] values) {
+        this.rownum = rows;
+        this.colnum = cols;
+        this.rowptr = rowptr;
+        this.colind = colind;
+        this.values = values;
+    }
+
+    /**
+     * Converts a SparseMatrix in O(nnz + rows).
+     *
+     * @param m The matrix to be converted
+     */
+    public CsrMatrix(SparseMatrix m) {
+        this.rownum = m.getRowNum();
+        this.colnum = m.getColNum();
+        this.rowptr = new int[rownum + 1];
+        for (Entry<Integer, SparseVector> e : m.vvectorlist.entrySet())
+            rowptr[e.getKey() + 1] = e.getValue().getUsed();
+        for (int i = 0; i < rownum; i++)
+            rowptr[i + 1] += rowptr[i];
+
+        this.colind = new int[rowptr[rownum]];
+        this.values = new double[rowptr[rownum]];
+        for (Entry<Integer, SparseVector> e : m.vvectorlist.entrySet()) {
+            SparseVector row = e.getValue();
+            int start = rowptr[e.getKey()];
+            System.arraycopy(row.getIndex(), 0, colind, start, row.getUsed());
+            System.arraycopy(row.getData(), 0, values, start, row.getUsed());
+        }
+    }
+
+    /**
+     * Converts the matrix into a SparseMatrix in O(nnz + rows).
+     *
+     * @return The matrix as SparseMatrix
+     */
+    public SparseMatrix toSparseMatrix() {
+        SparseMatrix result = new SparseMatrix(rownum, colnum);
+        for (int i = 0; i < rownum; i++) {
+            int start = rowptr[i];
+            int n = rowptr[i + 1] - start;
+            if (n > 0) {
+                result.setRow(i, new SparseVector(Arrays.copyOfRange(colind, start, start + n),
+                        Arrays.copyOfRange(values, start, start + n), n, colnum));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the matrix into compressed column format in O(nnz + rows + cols).
+     *
+     * @return The matrix as CscMatrix
+     */
+    public CscMatrix toCsc() {
+        CsrMatrix t = transposeOf(rownum, colnum, rowptr, colind, values);
+        return new CscMatrix(rownum, colnum, t.rowptr, t.colind, t.values);
+    }
+
+    /**
+     * Builds the compressed row arrays of the transpose by a counting sort over the
+     * column indices, O(nnz + rows + cols). The column indices of the result are sorted
+     * because the rows are visited in ascending order.
+     *
+     * @return The transposed matrix, cols x rows
+     */
+    static CsrMatrix transposeOf(int rows, int cols, int[] rowptr, int[] colind, double[] values) {
+        return SparseTranspose.transpose(rows, cols, rowptr, colind, values, ParallelSpMV.getPool());
+    }
+
+    public int getRowNum() {
+        return rownum;
+    }
+
+    public int getColNum() {
+        return colnum;
+    }
+
+    public int getNumberOfNonZeroElements() {
+        return rowptr[rownum];
+    }
+
+    public int[] getRowPointers() {
+        return rowptr;
+    }
+
+    public int[] getColumnIndices() {
+        return colind;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public double get(int row, int column) {
+        int pos = Arrays.binarySearch(colind, rowptr[row], rowptr[row + 1], column);
+        return pos >= 0 ? values[pos] : 0;
+    }
+
+    /**
+     * Not supported, the matrix is immutable.
+     */
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("CsrMatrix is immutable");
+    }
+
+    /**
+     * Returns a row as SparseVector.
+     *
+     * @param row The row
+     * @return A copy of the row
+     */
+    public SparseVector getRow(int row) {
+        int start = rowptr[row];
+        int n = rowptr[row + 1] - start;
+        return new SparseVector(Arrays.copyOfRange(colind, start, start + n),
+                Arrays.copyOfRange(values, start, start + n), n, colnum);
+    }
+
+    /**
+     * Reorders rows and columns in O(nnz + rows + cols): row k of the result is row
+     * rowperm[k] of this matrix and column l is column colperm[l]. A symmetric permutation
+     * P A P^T passes the same array twice.
+     *
+     * @param rowperm The new order of the rows, or null to keep it
+     * @param colperm The new order of the columns, or null to keep it
+     * @return The permuted matrix
+     */
+    public CsrMatrix permute(int[] rowperm, int[] colperm) {
+        if (rowperm != null) checkPermutation(rowperm, rownum);
+        int[] colinv = colperm != null ? inverse(colperm, colnum) : null;
+        // scatter the entries into the columns of the result, visiting its rows in order, and
+        // transpose back, so the column indices of every row end up sorted
+        int nnz = rowptr[rownum];
+        int[] tptr = new int[colnum + 1];
+        for (int p = 0; p < nnz; p++) tptr[(colinv != null ? colinv[colind[p]] : colind[p]) + 1]++;
+        for (int j = 0; j < colnum; j++) tptr[j + 1] += tptr[j];
+        int[] next = Arrays.copyOf(tptr, colnum);
+        int[] tind = new int[nnz];
+        double[] tval = new double[nnz];
+        for (int k = 0; k < rownum; k++) {
+            int row = rowperm != null ? rowperm[k] : k;
+            for (int p = rowptr[row]; p < rowptr[row + 1]; p++) {
+                int at = next[colinv != null ? colinv[colind[p]] : colind[p]]++;
+                tind[at] = k;
+                tval[at] = values[p];
+            }
+        }
+        return transposeOf(colnum, rownum, tptr, tind, tval);
+    }
+
+    private static void checkPermutation(int[] perm, int n) {
+        if (perm.length != n)
+            throw new IllegalArgumentException("The permutation has " + perm.length + " entries, " + n + " needed");
+        boolean[] seen = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            if (perm[k] < 0 || perm[k] >= n || seen[perm[k]])
+                throw new IllegalArgumentException("Not a permutation, entry " + k + " is " + perm[k]);
+            seen[perm[k]] = true;
+        }
+    }
+
+    private static int[] inverse(int[] perm, int n) {
+        checkPermutation(perm, n);
+        int[] inv = new int[n];
+        for (int k = 0; k < n; k++) inv[perm[k]] = k;
+        return inv;
+    }
+
+    /**
+     * Returns the transpose, a CscMatrix sharing the arrays of this matrix.
+     */
+    public Matrix transpose() {
+        return new CscMatrix(colnum, rownum, rowptr, colind, values);
+    }
+
+    /**
+     * Calculates y = this * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        for (int i = 0; i < rownum; i++) {
+            double sum = 0;
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                sum += values[k] * x[colind[k]];
+            y[i] = sum;
+        }
+    }
+
+    /**
+     * Calculates y = this^T * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimes(double[] x, double[] y) {
+        Arrays.fill(y, 0, colnum, 0.0);
+        for (int i = 0; i < rownum; i++) {
+            double xi = x[i];
+            if (xi == 0) continue;
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                y[colind[k]] += xi * values[k];
+        }
+    }
+
+    /**
+     * Calculates y = this * x with several threads, see ParallelSpMV.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void timesParallel(double[] x, double[] y) {
+        ParallelSpMV.times(this, x, y);
+    }
+
+    /**
+     * Calculates y = this^T * x with several threads, see ParallelSpMV.
+     *
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimesParallel(double[] x, double[] y) {
+        ParallelSpMV.transposeTimes(this, x, y);
+    }
+
+    /**
+     * Multiplies the matrix with another matrix. A column SparseVector yields a SparseVector,
+     * sparse matrices yield a CsrMatrix and a NonSparseMatrix yields a NonSparseMatrix.
+     */
+    public Matrix times(Matrix multiplier) {
+        if (this.getColNum() != multiplier.getRowNum())
+            throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+
+        if (multiplier instanceof SparseVector && !((SparseVector) multiplier).linevector) {
+            SparseVector x = (SparseVector) multiplier;
+            ScratchArena arena = ScratchArena.get();
+            int mark = arena.mark();
+            try {
+                double[] dx = arena.dense(colnum);
+                VectorKernels.scatter(x.getIndex(), x.getData(), x.getUsed(), dx);
+                double[] y = arena.dense(rownum);
+                times(dx, y);
+                return new SparseVector(y, rownum);
+            } finally {
+                arena.release(mark);
+            }
+        }
+        if (multiplier instanceof NonSparseMatrix) {
+            return timesDense((NonSparseMatrix) multiplier);
+        }
+        return SpGEMM.multiply(this, toCsr(multiplier));
+    }
+
+    /**
+     * Calculates this * b for a dense b: row i of the result is the sum of the rows of b
+     * selected by the non-zero entries of row i, scaled by them. The rows are distributed
+     * over the shared pool.
+     */
+    NonSparseMatrix timesDense(NonSparseMatrix b) {
+        final double[] bdata = b.data;
+        final int cols = b.colnum;
+        final NonSparseMatrix result = new NonSparseMatrix(rownum, cols);
+        long work = (long) getNumberOfNonZeroElements() * cols;
+        int[] bounds = ParallelSpMV.partition(rowptr, rownum, DenseKernels.parts(ParallelSpMV.getPool(), work));
+        ParallelSpMV.run(ParallelSpMV.getPool(), bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                        VectorKernels.axpy(values[k], bdata, colind[k] * cols, result.data, i * cols, cols);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Converts a sparse matrix of any of the known types into compressed row format.
+     */
+    static CsrMatrix toCsr(Matrix m) {
+        if (m instanceof CsrMatrix) return (CsrMatrix) m;
+        if (m instanceof CscMatrix) return ((CscMatrix) m).toCsr();
+        if (m instanceof SparseMatrix) return new CsrMatrix((SparseMatrix) m);
+        if (m instanceof BlockSparseMatrix) return ((BlockSparseMatrix) m).toCsr();
+        if (m instanceof SymmetricSparseMatrix) return ((SymmetricSparseMatrix) m).toCsr();
+        if (m instanceof DokMatrix) return ((DokMatrix) m).toCsr();
+        CooMatrixBuilder builder = new CooMatrixBuilder(m.getRowNum(), m.getColNum());
+        for (int i = 0; i < m.getRowNum(); i++) {
+            for (int j = 0; j < m.getColNum(); j++) {
+                double value = m.get(i, j);
+                if (value != 0) builder.append(i, j, value);
+            }
+        }
+        return builder.buildCsr();
+    }
+
+    /**
+     * Adds a matrix. Sparse matrices are merged row by row into a new CsrMatrix, a
+     * NonSparseMatrix yields a NonSparseMatrix.
+     */
+    public Matrix plus(Matrix toadd) {
+        if (rownum != toadd.getRowNum() || colnum != toadd.getColNum())
+            throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + toadd.getRowNum() + "x" + toadd.getColNum());
+
+        if (toadd instanceof NonSparseMatrix) {
+            NonSparseMatrix result = new NonSparseMatrix(rownum, colnum, ((NonSparseMatrix) toadd).data.clone());
+            for (int i = 0; i < rownum; i++) {
+                for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                    result.data[i * colnum + colind[k]] += values[k];
+            }
+            return result;
+        }
+
+        CsrMatrix b = toCsr(toadd);
+        int[] cptr = new int[rownum + 1];
+        int[] cind = new int[getNumberOfNonZeroElements() + b.getNumberOfNonZeroElements()];
+        double[] cval = new double[cind.length];
+        int nnz = 0;
+        for (int i = 0; i < rownum; i++) {
+            int c1 = rowptr[i];
+            int c2 = b.rowptr[i];
+            int end1 = rowptr[i + 1];
+            int end2 = b.rowptr[i + 1];
+            while (c1 < end1 || c2 < end2) {
+                int j;
+                double value;
+                if (c2 == end2 || (c1 < end1 && colind[c1] < b.colind[c2])) {
+                    j = colind[c1];
+                    value = values[c1++];
+                } else if (c1 == end1 || b.colind[c2] < colind[c1]) {
+                    j = b.colind[c2];
+                    value = b.values[c2++];
+                } else {
+                    j = colind[c1];
+                    value = values[c1++] + b.values[c2++];
+                }
+                if (value != 0) {
+                    cind[nnz] = j;
+                    cval[nnz] = value;
+                    nnz++;
+                }
+            }
+            cptr[i + 1] = nnz;
+        }
+        return new CsrMatrix(rownum, colnum, cptr, Arrays.copyOf(cind, nnz), Arrays.copyOf(cval, nnz));
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            int pos;
+            int row;
+            int actualrow;
+            int actualcol;
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return pos < rowptr[rownum];
+            }
+
+            public Double next() {
+                if (pos >= rowptr[rownum]) throw new NoSuchElementException();
+                while (rowptr[row + 1] <= pos) row++;
+                actualrow = row;
+                actualcol = colind[pos];
+                return values[pos++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the non-zero entries row by row, in the order of the iterator.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (int i = 0; i < rownum; i++)
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                if (values[k] != 0) visitor.visit(i, colind[k], values[k]);
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int i = 0; i < rownum; i++) {
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++) {
+                if (values[k] == 0) continue;
+                if (count == capacity) throw NonZeroCopy.full(capacity);
+                rows[count] = i;
+                cols[count] = colind[k];
+                vals[count++] = values[k];
+            }
+        }
+        return count;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof CsrMatrix)) return false;
+        CsrMatrix m = (CsrMatrix) o;
+        return rownum == m.rownum && colnum == m.colnum && Arrays.equals(rowptr, m.rowptr)
+                && Arrays.equals(colind, m.colind) && Arrays.equals(values, m.values);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * rownum + colnum) + Arrays.hashCode(values);
+    }
+
+}
@@ -0,0 +1,171 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Inner loops of dense matrix operations on flat row-major arrays.
+ * <p>
+ * The product C += A * B is blocked for the caches: a panel of KC rows and NC columns of
+ * B is packed into a contiguous buffer that stays in the cache while all rows of A pass
+ * it, in blocks of MC rows. The innermost kernel updates two rows of C with two rows of
+ * the panel at once, so every element of B loaded from the panel feeds four
+ * multiplications and the loop over the columns is vectorized by the JIT. The row blocks
+ * of a panel are distributed over a ForkJoinPool.
+ *
+ * @author planatsc
+ */
+public final class DenseKernels {
+
+    static final int MC = 64;
+    static final int KC = 256;
+    static final int NC = 2048;
+
+    /**
+     * The minimal number of multiplications worth packing and splitting a product.
+     */
+    static final long THRESHOLD = 1L << 21;
+
+    private DenseKernels() {
+    }
+
+    /**
+     * Calculates c += a * b on the shared pool of ParallelSpMV.
+     *
+     * @param m   The number of rows of a and c
+     * @param n   The number of columns of b and c
+     * @param k   The number of columns of a and rows of b
+     * @param a   The left matrix, row-major
+     * @param lda The distance of two rows of a
+     * @param b   The right matrix, row-major
+     * @param ldb The distance of two rows of b
+     * @param c   The result, row-major
+     * @param ldc The distance of two rows of c
+     */
+    public static void gemm(int m, int n, int k, double[] a, int lda, double[] b, int ldb, double[] c, int ldc) {
+        gemm(m, n, k, a, lda, b, ldb, c, ldc, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Calculates c += a * b on the given pool, see gemm.
+     */
+    public static void gemm(final int m, int n, int k, final double[] a, final int lda, double[] b, int ldb,
+                            final double[] c, final int ldc, ForkJoinPool pool) {
+        if ((long) m * n * k < THRESHOLD) {
+            // small products don't pay off packing
+            kernel(m, n, k, a, 0, lda, b, 0, ldb, c, 0, ldc);
+            return;
+        }
+        int[] bounds = rowBounds(m, parts(pool, (long) m * n * k), MC);
+        final double[] packed = new double[KC * Math.min(NC, n)];
+        for (int jc = 0; jc < n; jc += NC) {
+            final int nc = Math.min(NC, n - jc);
+            final int jcol = jc;
+            for (int pc = 0; pc < k; pc += KC) {
+                final int kc = Math.min(KC, k - pc);
+                final int prow = pc;
+                for (int p = 0; p < kc; p++)
+                    System.arraycopy(b, (pc + p) * ldb + jc, packed, p * nc, nc);
+                ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+                    public void run(int part, int from, int to) {
+                        for (int ic = from; ic < to; ic += MC) {
+                            int mc = Math.min(MC, to - ic);
+                            kernel(mc, nc, kc, a, ic * lda + prow, lda, packed, 0, nc, c, ic * ldc + jcol, ldc);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Calculates c += a * b for a block, two rows of c and two rows of b at a time.
+     */
+    static void kernel(int mc, int nc, int kc, double[] a, int aoff, int lda, double[] b, int boff, int ldb,
+                       double[] c, int coff, int ldc) {
+        int i = 0;
+        for (; i + 1 < mc; i += 2) {
+            int a0 = aoff + i * lda;
+            int a1 = a0 + lda;
+            int c0 = coff + i * ldc;
+            int c1 = c0 + ldc;
+            int p = 0;
+            for (; p + 1 < kc; p += 2) {
+                double a00 = a[a0 + p];
+                double a01 = a[a0 + p + 1];
+                double a10 = a[a1 + p];
+                double a11 = a[a1 + p + 1];
+                if (a00 == 0 && a01 == 0 && a10 == 0 && a11 == 0) continue;
+                int b0 = boff + p * ldb;
+                int b1 = b0 + ldb;
+                for (int j = 0; j < nc; j++) {
+                    double x0 = b[b0 + j];
+                    double x1 = b[b1 + j];
+                    c[c0 + j] += a00 * x0 + a01 * x1;
+                    c[c1 + j] += a10 * x0 + a11 * x1;
+                }
+            }
+            for (; p < kc; p++) {
+                double a00 = a[a0 + p];
+                double a10 = a[a1 + p];
+                int b0 = boff + p * ldb;
+                for (int j = 0; j < nc; j++) {
+                    double x = b[b0 + j];
+                    c[c0 + j] += a00 * x;
+                    c[c1 + j] += a10 * x;
+                }
+            }
+        }
+        for (; i < mc; i++) {
+            int a0 = aoff + i * lda;
+            int c0 = coff + i * ldc;
+            for (int p = 0; p < kc; p++) {
+                double a00 = a[a0 + p];
+                if (a00 != 0) VectorKernels.axpy(a00, b, boff + p * ldb, c, c0, nc);
+            }
+        }
+    }
+
+    /**
+     * Calculates t = a^T for a rows x cols matrix a, in blocks of 32 x 32 entries so both
+     * sides are accessed in cache lines.
+     *
+     * @param rows The number of rows of a
+     * @param cols The number of columns of a
+     * @param a    The matrix, row-major
+     * @param t    The transpose, row-major, cols x rows
+     */
+    public static void transpose(int rows, int cols, double[] a, double[] t) {
+        final int block = 32;
+        for (int i0 = 0; i0 < rows; i0 += block) {
+            int imax = Math.min(rows, i0 + block);
+            for (int j0 = 0; j0 < cols; j0 += block) {
+                int jmax = Math.min(cols, j0 + block);
+                for (int i = i0; i < imax; i++)
+                    for (int j = j0; j < jmax; j++)
+                        t[j * rows + i] = a[i * cols + j];
+            }
+        }
+    }
+
+    /**
+     * Chooses the number of blocks for a product of the given number of multiplications.
+     */
+    static int parts(ForkJoinPool pool, long flops) {
+        int threads = pool.getParallelism();
+        if (threads <= 1 || flops < THRESHOLD) return 1;
+        return 2 * threads;
+    }
+
+    /**
+     * Splits rows into at most parts ranges whose starts are multiples of step.
+     */
+    static int[] rowBounds(int rows, int parts, int step) {
+        int blocks = (rows + step - 1) / step;
+        parts = Math.max(1, Math.min(parts, blocks));
+        int[] bounds = new int[parts + 1];
+        for (int p = 0; p <= parts; p++)
+            bounds[p] = Math.min(rows, (int) ((long) blocks * p / parts) * step);
+        return bounds;
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.LinearOperator;
+
+/**
+ * A square diagonal matrix, stored as the vector of its diagonal.
+ *
+ * @author planatsc
+ */
+public class DiagonalOperator implements LinearOperator {
+
+    final double[] diagonal;
+
+    /**
+     * Wraps the diagonal without copying it.
+     *
+     * @param diagonal The diagonal entries
+     */
+    public DiagonalOperator(double[] diagonal) {
+        this.diagonal = diagonal;
+    }
+
+    public double[] getDiagonal() {
+        return diagonal;
+    }
+
+    public int getRowNum() {
+        return diagonal.length;
+    }
+
+    public int getColNum() {
+        return diagonal.length;
+    }
+
+    public void apply(double[] x, double[] y) {
+        for (int i = 0; i < diagonal.length; i++) y[i] = diagonal[i] * x[i];
+    }
+
+    public void applyTranspose(double[] x, double[] y) {
+        apply(x, y);
+    }
+
+}
@@ -0,0 +1,378 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Mutable sparse matrix for building a matrix by scattered get, set and add calls, stored
+ * as dictionary of keys: one open addressing hash table with linear probing maps the key
+ * row * 2^32 + column to the value.
+ * <p>
+ * Compared to the HashMap of rows of SparseMatrix there are no boxed keys, hash entries or
+ * per-row vectors: an entry costs one long and one double in two parallel arrays, and a
+ * lookup hashes once and probes neighbouring slots. Setting an entry to zero removes it by
+ * shifting the following entries of its probe sequence back, so there are no tombstones
+ * and lookups never slow down after deletions. When the matrix is complete, toCsr freezes
+ * it into compressed row format in O(nnz + rows) for rows of bounded length.
+ *
+ * @author planatsc
+ */
+public class DokMatrix implements Matrix {
+
+    private static final long EMPTY = -1L;
+    // the table is grown when it is more than this fraction full
+    private static final double LOAD_FACTOR = 0.6;
+    // rows up to this length are sorted by insertion sort when freezing
+    private static final int INSERTION_SORT = 32;
+
+    final int rownum;
+    final int colnum;
+    long[] keys;
+    double[] vals;
+    int size;
+    int mask;
+    int threshold;
+
+    /**
+     * Creates a new empty matrix.
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     */
+    public DokMatrix(int rows, int cols) {
+        this(rows, cols, 16);
+    }
+
+    /**
+     * Creates a new empty matrix with room for an expected number of entries.
+     *
+     * @param rows     The number of rows
+     * @param cols     The number of columns
+     * @param expected The expected number of non-zero entries
+     */
+    public DokMatrix(int rows, int cols, int expected) {
+        this.rownum = rows;
+        this.colnum = cols;
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expected) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Copies the non-zero entries of a matrix.
+     *
+     * @param m The matrix to be copied
+     */
+    public DokMatrix(Matrix m) {
+        this(m.getRowNum(), m.getColNum(), 16);
+        m.forEachNonZero(new NonZeroElementVisitor() {
+            public void visit(int row, int column, double value) {
+                set(row, column, value);
+            }
+        });
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        vals = new double[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private long key(int row, int column) {
+        if (row < 0 || row >= rownum || column < 0 || column >= colnum)
+            throw new IllegalArgumentException("Entry " + row + " " + column + " out of range " + rownum + "x" + colnum);
+        return ((long) row << 32) | column;
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot ending its probe sequence.
+     */
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    public int getRowNum() {
+        return rownum;
+    }
+
+    public int getColNum() {
+        return colnum;
+    }
+
+    public int getNumberOfNonZeroElements() {
+        return size;
+    }
+
+    public double get(int row, int column) {
+        int slot = find(key(row, column));
+        return keys[slot] != EMPTY ? vals[slot] : 0;
+    }
+
+    /**
+     * Sets an entry, a zero value removes it.
+     */
+    public void set(int row, int column, double value) {
+        long key = key(row, column);
+        int slot = find(key);
+        if (keys[slot] != EMPTY) {
+            if (value != 0) vals[slot] = value;
+            else remove(slot);
+        } else if (value != 0) {
+            insert(slot, key, value);
+        }
+    }
+
+    /**
+     * Adds a value to an entry, removing it if the sum is zero.
+     *
+     * @param row    The row of the entry
+     * @param column The column of the entry
+     * @param value  The value to be added
+     */
+    public void add(int row, int column, double value) {
+        if (value == 0) return;
+        long key = key(row, column);
+        int slot = find(key);
+        if (keys[slot] != EMPTY) {
+            double sum = vals[slot] + value;
+            if (sum != 0) vals[slot] = sum;
+            else remove(slot);
+        } else {
+            insert(slot, key, value);
+        }
+    }
+
+    private void insert(int slot, long key, double value) {
+        if (size >= threshold) {
+            rehash(keys.length << 1);
+            slot = find(key);
+        }
+        keys[slot] = key;
+        vals[slot] = value;
+        size++;
+    }
+
+    /**
+     * Empties the slot and moves back the following entries of the cluster which can't be
+     * found any more otherwise.
+     */
+    private void remove(int slot) {
+        size--;
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = hash(keys[next]) & mask;
+            // the entry may move to slot if slot lies in its probe sequence before next
+            if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                vals[slot] = vals[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = EMPTY;
+        vals[slot] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldkeys = keys;
+        double[] oldvals = vals;
+        int oldsize = size;
+        allocate(capacity);
+        for (int s = 0; s < oldkeys.length; s++) {
+            if (oldkeys[s] == EMPTY) continue;
+            int slot = find(oldkeys[s]);
+            keys[slot] = oldkeys[s];
+            vals[slot] = oldvals[s];
+        }
+        size = oldsize;
+    }
+
+    /**
+     * Removes all entries but keeps the table for the next matrix.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(vals, 0);
+        size = 0;
+    }
+
+    /**
+     * Freezes the matrix into compressed row format. One pass over the table counts the
+     * entries of the rows, a second one moves every entry into its row, then the columns
+     * of each row are sorted in place: by insertion sort for short rows, which makes the
+     * whole conversion O(nnz + rows) for matrices with rows of bounded length. Besides the
+     * result only rows longer than INSERTION_SORT entries need temporary arrays. This
+     * matrix is not changed.
+     *
+     * @return the matrix as CsrMatrix
+     */
+    public CsrMatrix toCsr() {
+        int[] rowptr = new int[rownum + 1];
+        for (int s = 0; s < keys.length; s++)
+            if (keys[s] != EMPTY) rowptr[(int) (keys[s] >>> 32) + 1]++;
+        for (int i = 0; i < rownum; i++) rowptr[i + 1] += rowptr[i];
+        int[] colind = new int[size];
+        double[] values = new double[size];
+        // rowptr[i] serves as the next free position of row i and is restored afterwards
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == EMPTY) continue;
+            int pos = rowptr[(int) (keys[s] >>> 32)]++;
+            colind[pos] = (int) keys[s];
+            values[pos] = vals[s];
+        }
+        for (int i = rownum; i > 0; i--) rowptr[i] = rowptr[i - 1];
+        rowptr[0] = 0;
+        for (int i = 0; i < rownum; i++) sortRow(colind, values, rowptr[i], rowptr[i + 1]);
+        return new CsrMatrix(rownum, colnum, rowptr, colind, values);
+    }
+
+    /**
+     * Sorts the entries from to to - 1 by column.
+     */
+    private static void sortRow(int[] colind, double[] values, int from, int to) {
+        if (to - from <= INSERTION_SORT) {
+            for (int p = from + 1; p < to; p++) {
+                int j = colind[p];
+                double value = values[p];
+                int q = p - 1;
+                while (q >= from && colind[q] > j) {
+                    colind[q + 1] = colind[q];
+                    values[q + 1] = values[q];
+                    q--;
+                }
+                colind[q + 1] = j;
+                values[q + 1] = value;
+            }
+            return;
+        }
+        // long rows: sort (column, position) pairs packed into longs
+        long[] packed = new long[to - from];
+        for (int p = from; p < to; p++) packed[p - from] = ((long) colind[p] << 32) | (p - from);
+        Arrays.sort(packed);
+        double[] copy = Arrays.copyOfRange(values, from, to);
+        for (int p = from; p < to; p++) {
+            colind[p] = (int) (packed[p - from] >>> 32);
+            values[p] = copy[(int) packed[p - from]];
+        }
+    }
+
+    /**
+     * Freezes the matrix into compressed column format, see toCsr.
+     *
+     * @return the matrix as CscMatrix
+     */
+    public CscMatrix toCsc() {
+        return toCsr().toCsc();
+    }
+
+    /**
+     * Returns the transpose as a new DokMatrix.
+     */
+    public Matrix transpose() {
+        DokMatrix result = new DokMatrix(colnum, rownum, size);
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == EMPTY) continue;
+            long key = ((keys[s] & 0xffffffffL) << 32) | (keys[s] >>> 32);
+            int slot = result.find(key);
+            result.keys[slot] = key;
+            result.vals[slot] = vals[s];
+        }
+        result.size = size;
+        return result;
+    }
+
+    /**
+     * Multiplies the frozen matrix with another matrix, see CsrMatrix.times.
+     */
+    public Matrix times(Matrix multiplier) {
+        return toCsr().times(multiplier);
+    }
+
+    /**
+     * Adds a matrix to the frozen matrix, see CsrMatrix.plus.
+     */
+    public Matrix plus(Matrix toadd) {
+        return toCsr().plus(toadd);
+    }
+
+    /**
+     * Iterates over the non-zero entries in the order of the hash table, not by rows. The
+     * matrix must not be changed while iterating.
+     */
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            int slot = advance(0);
+            int actualrow;
+            int actualcol;
+
+            private int advance(int s) {
+                while (s < keys.length && keys[s] == EMPTY) s++;
+                return s;
+            }
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return slot < keys.length;
+            }
+
+            public Double next() {
+                if (slot >= keys.length) throw new NoSuchElementException();
+                actualrow = (int) (keys[slot] >>> 32);
+                actualcol = (int) keys[slot];
+                double value = vals[slot];
+                slot = advance(slot + 1);
+                return value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the entries in the order of the hash table, like the iterator. The matrix must
+     * not be changed by the visitor.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (int s = 0; s < keys.length; s++)
+            if (keys[s] != EMPTY) visitor.visit((int) (keys[s] >>> 32), (int) keys[s], vals[s]);
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        if (size > capacity) throw NonZeroCopy.full(capacity);
+        int count = 0;
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == EMPTY) continue;
+            rows[count] = (int) (keys[s] >>> 32);
+            cols[count] = (int) keys[s];
+            vals[count++] = this.vals[s];
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,314 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+
+/**
+ * Immutable SparseVector.
+ * <p>
+ * The entries are copied once into exactly sized arrays, explicit zeros are dropped. The
+ * norms and the structural hash are computed on construction. Constraints and programs
+ * can return a frozen vector without cloning it: all methods altering the vector,
+ * including the inserting lookup getIndex(int), throw an UnsupportedOperationException.
+ * The arrays returned by getIndex and getData must not be altered either. Use the copy
+ * constructor of SparseVector to get a mutable copy.
+ * <p>
+ * The entries are held in final fields, which the accessors and all reading methods use,
+ * so a frozen vector can be shared between threads without synchronization. The inherited
+ * fields point to the same arrays for code of this package that reads them directly; it
+ * may only do so on vectors it published safely.
+ * <p>
+ * hashCode is not overridden, since equals compares the values with a tolerance and
+ * equal vectors could not be given equal hashes otherwise.
+ *
+ * @author planatsc
+ */
+public class FrozenSparseVector extends SparseVector {
+
+    private final int[] findex;
+    private final double[] fdata;
+    private final int fused;
+    private final int fsize;
+    private final boolean flinevector;
+
+    private final double norm1;
+    private final double norm2;
+    private final double normInf;
+    private final int hash;
+
+    /**
+     * Creates an immutable copy of a vector.
+     *
+     * @param v The vector to be copied
+     */
+    public FrozenSparseVector(SparseVector v) {
+        this(nonZeroIndex(v), nonZeroData(v), nonZeros(v), v.getSize(), v.linevector);
+    }
+
+    /**
+     * Creates an immutable vector with entries taken from the array.
+     *
+     * @param x The entries of the new vector
+     */
+    public FrozenSparseVector(double[] x) {
+        this(new SparseVector(x));
+    }
+
+    /**
+     * Wraps sorted and duplicate free arrays without copying them. The arrays must not be
+     * altered afterwards.
+     *
+     * @param index      The sorted indices of the entries
+     * @param data       The values belonging to the indices
+     * @param used       The number of valid entries in both arrays
+     * @param size       The actual size of the vector
+     * @param linevector Orientation of the vector
+     */
+    FrozenSparseVector(int[] index, double[] data, int used, int size, boolean linevector) {
+        super(index, data, used, size);
+        this.linevector = linevector;
+        findex = index;
+        fdata = data;
+        fused = used;
+        fsize = size;
+        flinevector = linevector;
+        norm1 = super.getNorm1();
+        norm2 = super.getNorm2();
+        normInf = super.getNormInf();
+        hash = super.getStructuralHash();
+    }
+
+    private static int nonZeros(SparseVector v) {
+        double[] vdata = v.getData();
+        int nonzeros = 0;
+        for (int i = 0; i < v.getUsed(); i++)
+            if (vdata[i] != 0) nonzeros++;
+        return nonzeros;
+    }
+
+    private static int[] nonZeroIndex(SparseVector v) {
+        int[] vindex = v.getIndex();
+        double[] vdata = v.getData();
+        int[] index = new int[nonZeros(v)];
+        int n = 0;
+        for (int i = 0; i < v.getUsed(); i++)
+            if (vdata[i] != 0) index[n++] = vindex[i];
+        return index;
+    }
+
+    private static double[] nonZeroData(SparseVector v) {
+        double[] vdata = v.getData();
+        double[] data = new double[nonZeros(v)];
+        int n = 0;
+        for (int i = 0; i < v.getUsed(); i++)
+            if (vdata[i] != 0) data[n++] = vdata[i];
+        return data;
+    }
+
+    /**
+     * Looks up the position of an index without inserting it.
+     *
+     * @throws UnsupportedOperationException if the index has no entry
+     */
+    public int getIndex(int ind) {
+        int in = Arrays.binarySearch(findex, 0, fused, ind);
+        if (in < 0) throw immutable();
+        return in;
+    }
+
+    public double[] getData() {
+        return fdata;
+    }
+
+    public int[] getIndex() {
+        return findex;
+    }
+
+    public int getUsed() {
+        return fused;
+    }
+
+    public int getSize() {
+        return fsize;
+    }
+
+    boolean isLinevector() {
+        return flinevector;
+    }
+
+    public int getColNum() {
+        return flinevector ? fsize : 1;
+    }
+
+    public int getRowNum() {
+        return flinevector ? 1 : fsize;
+    }
+
+    public double get(int index) {
+        int in = Arrays.binarySearch(findex, 0, fused, index);
+        if (in >= 0)
+            return fdata[in];
+        return 0;
+    }
+
+    public double get(int row, int column) {
+        return get(flinevector ? column : row);
+    }
+
+    public double[] get() {
+        double[] result = new double[fsize];
+        VectorKernels.scatter(findex, fdata, fused, result);
+        return result;
+    }
+
+    public double dot(SparseVector y) {
+        if (y instanceof HybridVector && ((HybridVector) y).isDense()) return y.dot(this);
+        return VectorKernels.dot(findex, fdata, fused, y.getIndex(), y.getData(), y.getUsed());
+    }
+
+    public double dot(double[] ydata) {
+        return VectorKernels.dot(findex, fdata, fused, ydata);
+    }
+
+    public void addTo(double[] dense, double alpha) {
+        for (int i = 0; i < fused; i++)
+            dense[findex[i]] += alpha * fdata[i];
+    }
+
+    public SparseVector plus(Matrix y) {
+        return view().plus(y);
+    }
+
+    public Matrix times(Matrix multiplier) {
+        return view().times(multiplier);
+    }
+
+    /**
+     * Creates a transposed vector sharing the arrays of this vector.
+     */
+    public Matrix transpose() {
+        return new FrozenSparseVector(findex, fdata, fused, fsize, !flinevector);
+    }
+
+    public String toString() {
+        return view().toString();
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new SparseVectorNonZeroElementIterator(view());
+    }
+
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        // explicit zeros were dropped on construction
+        for (int k = 0; k < fused; k++) {
+            if (flinevector) visitor.visit(0, findex[k], fdata[k]);
+            else visitor.visit(findex[k], 0, fdata[k]);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        if (fused > capacity) throw NonZeroCopy.full(capacity);
+        for (int k = 0; k < fused; k++) {
+            rows[k] = flinevector ? 0 : findex[k];
+            cols[k] = flinevector ? findex[k] : 0;
+            vals[k] = fdata[k];
+        }
+        return fused;
+    }
+
+    /**
+     * Wraps the final fields into a plain vector for the methods inherited from
+     * SparseVector, which read the fields of their vector directly.
+     */
+    private SparseVector view() {
+        SparseVector view = new SparseVector(findex, fdata, fused, fsize);
+        view.linevector = flinevector;
+        return view;
+    }
+
+    public double getNorm1() {
+        return norm1;
+    }
+
+    public double getNorm2() {
+        return norm2;
+    }
+
+    public double getNormInf() {
+        return normInf;
+    }
+
+    public int getStructuralHash() {
+        return hash;
+    }
+
+    public boolean isFrozen() {
+        return true;
+    }
+
+    public FrozenSparseVector freeze() {
+        return this;
+    }
+
+    /**
+     * Creates a mutable deep copy of the vector.
+     *
+     * @return A mutable SparseVector with the same entries
+     */
+    public SparseVector clone() {
+        return new SparseVector(this);
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("FrozenSparseVector is immutable");
+    }
+
+    public void setData(double[] data) {
+        throw immutable();
+    }
+
+    public void setIndex(int[] index) {
+        throw immutable();
+    }
+
+    public void setUsed(int used) {
+        throw immutable();
+    }
+
+    public void setSize(int size) {
+        throw immutable();
+    }
+
+    public void grow(int newsize, boolean bottom) {
+        throw immutable();
+    }
+
+    public void grow(SparseVector v) {
+        throw immutable();
+    }
+
+    public void set(int in, double value) {
+        throw immutable();
+    }
+
+    public void set(int row, int column, double value) {
+        throw immutable();
+    }
+
+    public void axpyInPlace(double alpha, SparseVector y, SparseVector scratch) {
+        throw immutable();
+    }
+
+    public void axpyInPlace(double alpha, SparseVector y) {
+        throw immutable();
+    }
+
+    public void scaleInPlace(double c) {
+        throw immutable();
+    }
+
+}
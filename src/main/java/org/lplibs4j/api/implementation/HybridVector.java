@@ -0,0 +1,463 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Vector that switches between sparse and dense storage depending on its fill ratio.
+ * <p>
+ * In sparse mode the vector behaves exactly like a SparseVector. Once more than a
+ * <code>densify</code> fraction of the entries are stored, the values are moved into a
+ * plain array of the vector's size: get and set become array accesses and dot products
+ * run over contiguous memory. In dense mode no index array is stored: getIndex() returns a
+ * new identity array 0, 1, 2, ... on every call, so code working on getIndex(), getData()
+ * and getUsed() keeps working, but should fetch the index array once and not per entry.
+ * When the number of non-zero
+ * entries drops below a <code>sparsify</code> fraction, the vector becomes sparse again.
+ * The gap between both thresholds keeps a vector near the border from switching back and
+ * forth on every update.
+ * <p>
+ * The arrays returned by getIndex in sparse mode must not be altered.
+ *
+ * @author planatsc
+ */
+public class HybridVector extends SparseVector {
+
+    /**
+     * Default fill ratio above which a vector becomes dense.
+     */
+    public static final double DEFAULT_DENSIFY = 0.5;
+
+    /**
+     * Default fill ratio below which a dense vector becomes sparse again.
+     */
+    public static final double DEFAULT_SPARSIFY = 0.25;
+
+
+    // the index array of dense vectors
+    private static final int[] NO_INDEX = new int[0];
+
+    double densify;
+    double sparsify;
+    boolean dense;
+    int nonzeros;
+
+    /**
+     * Creates an empty vector with the default thresholds.
+     *
+     * @param size The actual size of the vector
+     */
+    public HybridVector(int size) {
+        super(size, 0);
+        setThresholds(DEFAULT_DENSIFY, DEFAULT_SPARSIFY);
+    }
+
+    /**
+     * Creates a new vector with entries taken from the array and the default thresholds.
+     *
+     * @param x The entries of the new vector
+     */
+    public HybridVector(double[] x) {
+        this(new SparseVector(x), DEFAULT_DENSIFY, DEFAULT_SPARSIFY);
+    }
+
+    /**
+     * Creates a copy of a vector with the default thresholds.
+     *
+     * @param v The vector to be copied
+     */
+    public HybridVector(SparseVector v) {
+        this(v, DEFAULT_DENSIFY, DEFAULT_SPARSIFY);
+    }
+
+    /**
+     * Creates a copy of a vector.
+     *
+     * @param v        The vector to be copied
+     * @param densify  Fill ratio above which the vector becomes dense
+     * @param sparsify Fill ratio below which the vector becomes sparse, must be smaller than
+     *                 densify
+     */
+    public HybridVector(SparseVector v, double densify, double sparsify) {
+        super(v);
+        if (v instanceof HybridVector && ((HybridVector) v).dense) {
+            index = NO_INDEX;
+            dense = true;
+            nonzeros = ((HybridVector) v).nonzeros;
+        }
+        setThresholds(densify, sparsify);
+    }
+
+    /**
+     * Returns a new identity array with n entries, the index array of a dense vector.
+     */
+    static int[] identity(int n) {
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i++) identity[i] = i;
+        return identity;
+    }
+
+    /**
+     * Changes the fill ratios at which the representation changes and converts the vector
+     * if necessary.
+     *
+     * @param densify  Fill ratio above which the vector becomes dense
+     * @param sparsify Fill ratio below which the vector becomes sparse, must be smaller than
+     *                 densify
+     */
+    public void setThresholds(double densify, double sparsify) {
+        if (!(0 <= sparsify && sparsify < densify && densify <= 1))
+            throw new IllegalArgumentException("Thresholds must satisfy 0 <= sparsify < densify <= 1, got " + sparsify + " " + densify);
+        this.densify = densify;
+        this.sparsify = sparsify;
+        adapt();
+    }
+
+    public double getDensify() {
+        return densify;
+    }
+
+    public double getSparsify() {
+        return sparsify;
+    }
+
+    /**
+     * Checks the current representation.
+     *
+     * @return <code>true</code> if the values are stored in a dense array
+     */
+    public boolean isDense() {
+        return dense;
+    }
+
+    /**
+     * Switches the representation if the fill ratio crossed one of the thresholds.
+     */
+    void adapt() {
+        if (dense) {
+            if (nonzeros < sparsify * size) toSparse();
+        } else {
+            if (used > densify * size) toDense();
+        }
+    }
+
+    /**
+     * Moves the values into a dense array.
+     */
+    void toDense() {
+        double[] newdata = new double[size];
+        VectorKernels.scatter(index, data, used, newdata);
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (newdata[i] != 0) count++;
+        data = newdata;
+        index = NO_INDEX;
+        used = size;
+        nonzeros = count;
+        dense = true;
+    }
+
+    /**
+     * Moves the non-zero values into exactly sized sparse arrays.
+     */
+    void toSparse() {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (data[i] != 0) count++;
+        int[] newindex = new int[count];
+        double[] newdata = new double[count];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (data[i] != 0) {
+                newindex[n] = i;
+                newdata[n] = data[i];
+                n++;
+            }
+        }
+        index = newindex;
+        data = newdata;
+        used = count;
+        dense = false;
+    }
+
+    /**
+     * Returns the indices of the stored entries. In dense mode this is a new identity array
+     * on every call.
+     */
+    public int[] getIndex() {
+        if (dense) return identity(size);
+        return super.getIndex();
+    }
+
+    public int getIndex(int ind) {
+        if (dense) return ind;
+        return super.getIndex(ind);
+    }
+
+    public double get(int ind) {
+        if (dense) return data[ind];
+        return super.get(ind);
+    }
+
+    public void set(int in, double value) {
+        if (dense) {
+            double old = data[in];
+            data[in] = value;
+            if (old == 0 && value != 0) nonzeros++;
+            else if (old != 0 && value == 0) nonzeros--;
+        } else {
+            super.set(in, value);
+        }
+        adapt();
+    }
+
+    public double[] get() {
+        if (dense) return Arrays.copyOf(data, size);
+        return super.get();
+    }
+
+    public void addTo(double[] dense, double alpha) {
+        if (this.dense) VectorKernels.axpy(alpha, data, 0, dense, 0, size);
+        else super.addTo(dense, alpha);
+    }
+
+    public double dot(double[] x) {
+        if (dense) return VectorKernels.dot(data, 0, x, 0, size);
+        return super.dot(x);
+    }
+
+    public double dot(SparseVector y) {
+        if (dense) {
+            if (y instanceof HybridVector && ((HybridVector) y).dense)
+                return VectorKernels.dot(data, 0, y.data, 0, size);
+            return VectorKernels.dot(y.getIndex(), y.getData(), y.getUsed(), data);
+        }
+        if (y instanceof HybridVector && ((HybridVector) y).dense)
+            return VectorKernels.dot(index, data, used, y.data);
+        return super.dot(y);
+    }
+
+    /**
+     * Adds a second vector. The result is a HybridVector with the thresholds of this vector;
+     * if one of both vectors is dense, the sum is accumulated in a dense array.
+     */
+    public SparseVector plus(Matrix y) {
+        if (y instanceof SparseVector) {
+            SparseVector v = (SparseVector) y;
+            if (dense || (v instanceof HybridVector && ((HybridVector) v).dense)) {
+                if (size != v.getSize())
+                    throw new IllegalArgumentException("Vector sizes must agree " + size + " " + v.getSize());
+                double[] sum = v.get();
+                addTo(sum);
+                HybridVector result = fromDense(sum);
+                result.linevector = linevector;
+                return result;
+            }
+        }
+        return new HybridVector(super.plus(y), densify, sparsify);
+    }
+
+    /**
+     * Creates a vector with the thresholds of this vector that takes over a dense array.
+     */
+    private HybridVector fromDense(double[] values) {
+        HybridVector result = new HybridVector(0);
+        result.densify = densify;
+        result.sparsify = sparsify;
+        result.size = values.length;
+        result.data = values;
+        result.index = NO_INDEX;
+        result.used = values.length;
+        int count = 0;
+        for (int i = 0; i < values.length; i++)
+            if (values[i] != 0) count++;
+        result.nonzeros = count;
+        result.dense = true;
+        result.adapt();
+        return result;
+    }
+
+    public Matrix times(Matrix multiplier) {
+        if (!dense) return super.times(multiplier);
+        return sparseView().times(multiplier);
+    }
+
+    public SparseVector times(double c) {
+        HybridVector result = new HybridVector(this, densify, sparsify);
+        result.scaleInPlace(c);
+        return result;
+    }
+
+    public void scaleInPlace(double c) {
+        if (dense) {
+            VectorKernels.scale(data, size, c);
+            if (c == 0) {
+                nonzeros = 0;
+                adapt();
+            }
+        } else {
+            super.scaleInPlace(c);
+        }
+    }
+
+    public void axpyInPlace(double alpha, SparseVector y, SparseVector scratch) {
+        if (dense) {
+            axpyInPlace(alpha, y);
+        } else {
+            super.axpyInPlace(alpha, y, scratch);
+            adapt();
+        }
+    }
+
+    public void axpyInPlace(double alpha, SparseVector y) {
+        if (size != y.getSize())
+            throw new IllegalArgumentException("Vector sizes must agree " + size + " " + y.getSize());
+        if (dense) {
+            int[] yindex = y.getIndex();
+            double[] ydata = y.getData();
+            for (int k = 0; k < y.getUsed(); k++) {
+                int i = yindex[k];
+                double old = data[i];
+                data[i] = old + alpha * ydata[k];
+                if (old == 0 && data[i] != 0) nonzeros++;
+                else if (old != 0 && data[i] == 0) nonzeros--;
+            }
+        } else {
+            super.axpyInPlace(alpha, y);
+        }
+        adapt();
+    }
+
+    public void grow(int newsize, boolean bottom) {
+        if (dense) toSparse();
+        super.grow(newsize, bottom);
+        adapt();
+    }
+
+    public void grow(SparseVector v) {
+        if (dense) toSparse();
+        super.grow(v);
+        adapt();
+    }
+
+    public void setData(double[] data) {
+        if (dense) toSparse();
+        super.setData(data);
+    }
+
+    public void setIndex(int[] index) {
+        if (dense) toSparse();
+        super.setIndex(index);
+    }
+
+    public void setUsed(int used) {
+        if (dense) toSparse();
+        super.setUsed(used);
+    }
+
+    public void setSize(int size) {
+        if (dense) toSparse();
+        super.setSize(size);
+    }
+
+    public Matrix transpose() {
+        HybridVector clone = new HybridVector(this, densify, sparsify);
+        clone.linevector = !linevector;
+        return clone;
+    }
+
+    public HybridVector clone() {
+        return new HybridVector(this, densify, sparsify);
+    }
+
+    public String toString() {
+        if (!dense) return super.toString();
+        return sparseView().toString();
+    }
+
+    public int getStructuralHash() {
+        if (!dense) return super.getStructuralHash();
+        return sparseView().getStructuralHash();
+    }
+
+    /**
+     * Visits the non-zero entries in index order, see SparseVector.forEachNonZero.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        if (!dense) {
+            super.forEachNonZero(visitor);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (data[i] == 0) continue;
+            if (linevector) visitor.visit(0, i, data[i]);
+            else visitor.visit(i, 0, data[i]);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        if (!dense) return super.copyNonZerosTo(rows, cols, vals);
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (data[i] == 0) continue;
+            if (count == capacity) throw NonZeroCopy.full(capacity);
+            rows[count] = linevector ? 0 : i;
+            cols[count] = linevector ? i : 0;
+            vals[count++] = data[i];
+        }
+        return count;
+    }
+
+    /**
+     * Wraps the values of a dense vector into a plain vector with an identity index, for the
+     * methods inherited from SparseVector that read the index array directly.
+     */
+    private SparseVector sparseView() {
+        SparseVector view = new SparseVector(identity(size), data, size, size);
+        view.linevector = linevector;
+        return view;
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        if (!dense) return super.getNonZeroElementIterator();
+        return new NonZeroElementIterator() {
+            int next = advance(0);
+            int actual;
+
+            private int advance(int from) {
+                while (from < size && data[from] == 0) from++;
+                return from;
+            }
+
+            // the orientation of SparseVectorNonZeroElementIterator, used in sparse mode
+            public int getActuali() {
+                return linevector ? actual : 0;
+            }
+
+            public int getActualj() {
+                return linevector ? 0 : actual;
+            }
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public Double next() {
+                if (next >= size) throw new NoSuchElementException();
+                actual = next;
+                next = advance(next + 1);
+                return data[actual];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
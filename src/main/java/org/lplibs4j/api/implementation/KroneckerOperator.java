@@ -0,0 +1,151 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.LinearOperator;
+
+import java.util.Arrays;
+
+/**
+ * The Kronecker product A (x) B of two operators, without forming it. Its entry in row
+ * i * rows(B) + j and column k * cols(B) + l is A_ik * B_jl, so a vector x of the columns is
+ * a cols(A) x cols(B) matrix X stored row by row and
+ * <pre>
+ * (A (x) B) x = A X B^T        (A (x) B)^T x = A^T X B
+ * </pre>
+ * For n x n factors this costs two n x n x n products and n^2 temporary entries instead of
+ * the n^4 entries of the product. Dense factors (NonSparseMatrix) are multiplied by the
+ * blocked kernels of DenseKernels, all others by applying the factors to the rows and
+ * columns of X. Dense factors are transposed once at construction, so they must not be
+ * changed afterwards.
+ *
+ * @author planatsc
+ */
+public class KroneckerOperator implements LinearOperator {
+
+    final LinearOperator a;
+    final LinearOperator b;
+    // the dense factors and their transposes, if both factors are dense
+    final double[] adata, bdata, atdata, btdata;
+
+    public KroneckerOperator(LinearOperator a, LinearOperator b) {
+        this.a = a;
+        this.b = b;
+        NonSparseMatrix da = dense(a);
+        NonSparseMatrix db = dense(b);
+        if (da != null && db != null) {
+            adata = da.data;
+            bdata = db.data;
+            atdata = ((NonSparseMatrix) da.transpose()).data;
+            btdata = ((NonSparseMatrix) db.transpose()).data;
+        } else {
+            adata = bdata = atdata = btdata = null;
+        }
+    }
+
+    /**
+     * Creates the product of two dense matrices given as arrays, for example the flow and
+     * distance matrices of a QuadraticAssignmentProblem.
+     *
+     * @param a The left factor
+     * @param b The right factor
+     */
+    public KroneckerOperator(double[][] a, double[][] b) {
+        this(new MatrixOperator(new NonSparseMatrix(a)), new MatrixOperator(new NonSparseMatrix(b)));
+    }
+
+    private static NonSparseMatrix dense(LinearOperator op) {
+        if (op instanceof MatrixOperator && ((MatrixOperator) op).matrix instanceof NonSparseMatrix)
+            return (NonSparseMatrix) ((MatrixOperator) op).matrix;
+        return null;
+    }
+
+    public LinearOperator getLeft() {
+        return a;
+    }
+
+    public LinearOperator getRight() {
+        return b;
+    }
+
+    public int getRowNum() {
+        return a.getRowNum() * b.getRowNum();
+    }
+
+    public int getColNum() {
+        return a.getColNum() * b.getColNum();
+    }
+
+    public void apply(double[] x, double[] y) {
+        int ra = a.getRowNum(), ca = a.getColNum();
+        int rb = b.getRowNum(), cb = b.getColNum();
+        ScratchArena arena = ScratchArena.get();
+        int mark = arena.mark();
+        try {
+            // Z = X B^T is ca x rb, Y = A Z
+            double[] z = arena.dense(ca * rb);
+            if (adata != null) {
+                DenseKernels.gemm(ca, rb, cb, x, cb, btdata, rb, z, rb);
+                Arrays.fill(y, 0, ra * rb, 0.0);
+                DenseKernels.gemm(ra, rb, ca, adata, ca, z, rb, y, rb);
+            } else {
+                rows(b, false, x, ca, cb, z, rb, arena);
+                columns(a, false, z, ca, rb, y, ra, arena);
+            }
+        } finally {
+            arena.release(mark);
+        }
+    }
+
+    public void applyTranspose(double[] x, double[] y) {
+        int ra = a.getRowNum(), ca = a.getColNum();
+        int rb = b.getRowNum(), cb = b.getColNum();
+        ScratchArena arena = ScratchArena.get();
+        int mark = arena.mark();
+        try {
+            // X is ra x rb, Z = X B is ra x cb, Y = A^T Z
+            double[] z = arena.dense(ra * cb);
+            if (adata != null) {
+                DenseKernels.gemm(ra, cb, rb, x, rb, bdata, cb, z, cb);
+                Arrays.fill(y, 0, ca * cb, 0.0);
+                DenseKernels.gemm(ca, cb, ra, atdata, ra, z, cb, y, cb);
+            } else {
+                rows(b, true, x, ra, rb, z, cb, arena);
+                columns(a, true, z, ra, cb, y, ca, arena);
+            }
+        } finally {
+            arena.release(mark);
+        }
+    }
+
+    /**
+     * Applies op (or its transpose) to every row of the rows x cols matrix x, giving the
+     * rows x outcols matrix z = x op^T.
+     */
+    private static void rows(LinearOperator op, boolean transpose, double[] x, int rows, int cols,
+                             double[] z, int outcols, ScratchArena arena) {
+        double[] in = arena.dense(cols);
+        double[] out = arena.dense(outcols);
+        for (int k = 0; k < rows; k++) {
+            System.arraycopy(x, k * cols, in, 0, cols);
+            if (transpose) op.applyTranspose(in, out);
+            else op.apply(in, out);
+            System.arraycopy(out, 0, z, k * outcols, outcols);
+        }
+    }
+
+    /**
+     * Applies op (or its transpose) to every column of the rows x cols matrix z, giving the
+     * outrows x cols matrix y = op z.
+     */
+    private static void columns(LinearOperator op, boolean transpose, double[] z, int rows, int cols,
+                                double[] y, int outrows, ScratchArena arena) {
+        double[] in = arena.dense(rows);
+        double[] out = arena.dense(outrows);
+        for (int j = 0; j < cols; j++) {
+            for (int k = 0; k < rows; k++) in[k] = z[k * cols + j];
+            if (transpose) op.applyTranspose(in, out);
+            else op.apply(in, out);
+            for (int i = 0; i < outrows; i++) y[i * cols + j] = out[i];
+        }
+    }
+
+}
@@ -0,0 +1,539 @@
+package org.lplibs4j.api.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads sparse matrices in the coordinate format of Matrix Market into a CsrMatrix.
+ * <p>
+ * The file is memory-mapped and split into chunks of a few megabytes. Every chunk starts
+ * at the first line beginning in its byte range and ends with the last such line, so the
+ * chunks are parsed in parallel without coordination. The parsed entries are scattered
+ * into the compressed row arrays by a counting sort over the rows, then every row is
+ * sorted by column.
+ * <p>
+ * The header is honored:
+ * <ul>
+ * <li>real, integer and pattern fields, pattern entries have the value 1,</li>
+ * <li>general, symmetric and skew-symmetric matrices, only the lower triangle of the
+ * latter two is stored in the file and mirrored on reading.</li>
+ * </ul>
+ * Complex matrices and the dense array format are not supported. The indices of the file
+ * are 1-based, those of the result 0-based. Duplicate entries are summed up and explicit
+ * zeros are dropped. Malformed files are reported with an IOException naming the byte
+ * offset.
+ *
+ * @author planatsc
+ */
+public final class MatrixMarketReader {
+
+    /**
+     * The symmetry qualifiers of the header.
+     */
+    public enum Symmetry {
+        GENERAL, SYMMETRIC, SKEW_SYMMETRIC
+    }
+
+    static final int MIN_CHUNK = 1 << 20;
+    static final int MAX_CHUNK = 1 << 26;
+
+    private MatrixMarketReader() {
+    }
+
+    /**
+     * Reads a file on the shared pool of ParallelSpMV.
+     *
+     * @param filename The name of the file
+     * @return The matrix
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static CsrMatrix read(String filename) throws IOException {
+        return read(new File(filename), ParallelSpMV.getPool());
+    }
+
+    /**
+     * Reads a file on the given pool.
+     *
+     * @param file The file
+     * @param pool The pool parsing the chunks
+     * @return The matrix
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static CsrMatrix read(File file, ForkJoinPool pool) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            final Header header = readHeader(channel, size);
+
+            // chunks of equal byte ranges, lines are assigned to the chunk they start in
+            long bytes = size - header.dataStart;
+            long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, bytes / (4L * pool.getParallelism()) + 1));
+            int parts = (int) Math.max(1, (bytes + chunk - 1) / chunk);
+            final long[] starts = new long[parts + 1];
+            for (int p = 0; p <= parts; p++) starts[p] = header.dataStart + Math.min(bytes, p * chunk);
+            int[] bounds = new int[parts + 1];
+            for (int p = 0; p <= parts; p++) bounds[p] = p;
+
+            final Chunk[] chunks = new Chunk[parts];
+            final IOException[] errors = new IOException[parts];
+            ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+                public void run(int part, int from, int to) {
+                    for (int p = from; p < to; p++) {
+                        try {
+                            chunks[p] = parseChunk(channel, size, starts[p], starts[p + 1], header);
+                        } catch (IOException e) {
+                            errors[p] = e;
+                        }
+                    }
+                }
+            });
+            for (IOException e : errors)
+                if (e != null) throw e;
+
+            long lines = 0;
+            for (Chunk c : chunks) lines += c.lines;
+            if (lines != header.entries)
+                throw new IOException("Expected " + header.entries + " entries, but found " + lines);
+            return assemble(header, chunks, pool);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the header of a file without reading its entries.
+     *
+     * @param file The file
+     * @return The dimensions, the number of entries in the file and the symmetry, see the
+     * getters
+     * @throws IOException if the file can't be read or the header is malformed
+     */
+    public static Header readHeader(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return readHeader(raf.getChannel(), raf.length());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * The content of the header of a Matrix Market file.
+     */
+    public static final class Header {
+        int rows;
+        int cols;
+        long entries;
+        boolean pattern;
+        Symmetry symmetry;
+        long dataStart;
+
+        public int getRowNum() {
+            return rows;
+        }
+
+        public int getColNum() {
+            return cols;
+        }
+
+        /**
+         * Returns the number of entries stored in the file, mirrored entries of symmetric
+         * matrices not included.
+         *
+         * @return the number of entries in the file
+         */
+        public long getEntries() {
+            return entries;
+        }
+
+        public boolean isPattern() {
+            return pattern;
+        }
+
+        public Symmetry getSymmetry() {
+            return symmetry;
+        }
+    }
+
+    static Header readHeader(FileChannel channel, long size) throws IOException {
+        Parser in = new Parser(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE)), 0);
+        String banner = in.readLine();
+        if (banner == null || !banner.startsWith("%%MatrixMarket"))
+            throw new IOException("Missing %%MatrixMarket banner");
+        String[] words = banner.trim().toLowerCase().split("\\s+");
+        if (words.length < 5 || !words[1].equals("matrix"))
+            throw new IOException("Malformed banner: " + banner);
+        if (!words[2].equals("coordinate"))
+            throw new IOException("Only the coordinate format is supported: " + banner);
+
+        Header header = new Header();
+        if (words[3].equals("pattern")) {
+            header.pattern = true;
+        } else if (!words[3].equals("real") && !words[3].equals("integer")) {
+            throw new IOException("Unsupported field " + words[3] + ": " + banner);
+        }
+        if (words[4].equals("general")) {
+            header.symmetry = Symmetry.GENERAL;
+        } else if (words[4].equals("symmetric")) {
+            header.symmetry = Symmetry.SYMMETRIC;
+        } else if (words[4].equals("skew-symmetric")) {
+            header.symmetry = Symmetry.SKEW_SYMMETRIC;
+        } else {
+            throw new IOException("Unsupported symmetry " + words[4] + ": " + banner);
+        }
+
+        String line = in.readLine();
+        while (line != null && (line.startsWith("%") || line.trim().isEmpty()))
+            line = in.readLine();
+        if (line == null) throw new IOException("Missing size line");
+        String[] dims = line.trim().split("\\s+");
+        try {
+            header.rows = Integer.parseInt(dims[0]);
+            header.cols = Integer.parseInt(dims[1]);
+            header.entries = Long.parseLong(dims[2]);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed size line: " + line);
+        }
+        if (header.symmetry != Symmetry.GENERAL && header.rows != header.cols)
+            throw new IOException("A " + words[4] + " matrix must be square: " + line);
+        header.dataStart = in.pos;
+        return header;
+    }
+
+    /**
+     * The entries of one chunk, mirrored entries included.
+     */
+    static final class Chunk {
+        int[] rows = new int[1024];
+        int[] cols = new int[1024];
+        double[] values = new double[1024];
+        int used;
+        long lines;
+
+        void append(int row, int col, double value) {
+            if (used == rows.length) {
+                int newLength = rows.length << 1;
+                rows = Arrays.copyOf(rows, newLength);
+                cols = Arrays.copyOf(cols, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            rows[used] = row;
+            cols[used] = col;
+            values[used] = value;
+            used++;
+        }
+    }
+
+    /**
+     * Parses the lines starting in the byte range from to end of the file.
+     */
+    static Chunk parseChunk(FileChannel channel, long size, long from, long end, Header header) throws IOException {
+        Chunk chunk = new Chunk();
+        if (from >= end) return chunk;
+        // map from the byte before the range to see whether a line starts at from
+        long base = from - 1;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(size - base, Integer.MAX_VALUE));
+        Parser in = new Parser(buffer, base);
+        in.pos = 1;
+        if (buffer.get(0) != '\n') in.skipLine();
+
+        int limit = (int) (end - base);
+        while (in.pos < limit) {
+            in.skipBlanks();
+            if (in.atLineEnd()) {
+                in.skipLine();
+                continue;
+            }
+            if (buffer.get(in.pos) == '%') {
+                in.skipLine();
+                continue;
+            }
+            int i = in.parseInt() - 1;
+            int j = in.parseInt() - 1;
+            double value = header.pattern ? 1 : in.parseDouble();
+            if (i < 0 || i >= header.rows || j < 0 || j >= header.cols)
+                throw new IOException("Entry " + (i + 1) + " " + (j + 1) + " out of range " + header.rows + "x" + header.cols + " at byte " + in.offset());
+            in.skipLine();
+            chunk.lines++;
+            chunk.append(i, j, value);
+            if (i != j && header.symmetry != Symmetry.GENERAL)
+                chunk.append(j, i, header.symmetry == Symmetry.SKEW_SYMMETRIC ? -value : value);
+        }
+        return chunk;
+    }
+
+    /**
+     * Scatters the entries of all chunks into compressed row arrays, sorts the rows and
+     * merges duplicates.
+     */
+    static CsrMatrix assemble(Header header, Chunk[] chunks, ForkJoinPool pool) throws IOException {
+        int rows = header.rows;
+        long total = 0;
+        for (Chunk c : chunks) total += c.used;
+        if (total > Integer.MAX_VALUE)
+            throw new IOException("The matrix has more than " + Integer.MAX_VALUE + " non-zero entries");
+
+        final int[] rowptr = new int[rows + 1];
+        for (Chunk c : chunks)
+            for (int k = 0; k < c.used; k++) rowptr[c.rows[k] + 1]++;
+        for (int i = 0; i < rows; i++) rowptr[i + 1] += rowptr[i];
+        int[] next = Arrays.copyOf(rowptr, rows);
+        final int[] colind = new int[(int) total];
+        final double[] values = new double[(int) total];
+        for (int p = 0; p < chunks.length; p++) {
+            Chunk c = chunks[p];
+            for (int k = 0; k < c.used; k++) {
+                int pos = next[c.rows[k]]++;
+                colind[pos] = c.cols[k];
+                values[pos] = c.values[k];
+            }
+            chunks[p] = null;
+        }
+
+        final int[] merged = new int[1];
+        int[] bounds = ParallelSpMV.partition(rowptr, rows, ParallelSpMV.blocks(pool, (int) total, ParallelSpMV.BLOCKS_PER_THREAD));
+        final boolean[] compact = new boolean[bounds.length - 1];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    sortRow(colind, values, rowptr[i], rowptr[i + 1]);
+                    for (int k = rowptr[i]; k < rowptr[i + 1]; k++) {
+                        if (values[k] == 0 || (k > rowptr[i] && colind[k] == colind[k - 1])) compact[part] = true;
+                    }
+                }
+            }
+        });
+        for (boolean c : compact) {
+            if (c) return compact(rows, header.cols, rowptr, colind, values);
+        }
+        return new CsrMatrix(rows, header.cols, rowptr, colind, values);
+    }
+
+    /**
+     * Sorts the entries from to end - 1 by their column.
+     */
+    static void sortRow(int[] colind, double[] values, int from, int end) {
+        boolean sorted = true;
+        for (int k = from + 1; k < end && sorted; k++) sorted = colind[k - 1] <= colind[k];
+        if (sorted) return;
+        if (end - from <= 32) {
+            for (int k = from + 1; k < end; k++) {
+                int c = colind[k];
+                double v = values[k];
+                int l = k - 1;
+                for (; l >= from && colind[l] > c; l--) {
+                    colind[l + 1] = colind[l];
+                    values[l + 1] = values[l];
+                }
+                colind[l + 1] = c;
+                values[l + 1] = v;
+            }
+            return;
+        }
+        // the column in the upper and the position in the lower half keeps the sort stable
+        long[] keys = new long[end - from];
+        for (int k = from; k < end; k++) keys[k - from] = ((long) colind[k] << 32) | (k - from);
+        Arrays.sort(keys);
+        double[] copy = Arrays.copyOfRange(values, from, end);
+        for (int k = from; k < end; k++) {
+            colind[k] = (int) (keys[k - from] >>> 32);
+            values[k] = copy[(int) keys[k - from]];
+        }
+    }
+
+    /**
+     * Sums up duplicates of sorted rows and drops zeros, in place.
+     */
+    static CsrMatrix compact(int rows, int cols, int[] rowptr, int[] colind, double[] values) {
+        int nnz = 0;
+        int start = 0;
+        for (int i = 0; i < rows; i++) {
+            int end = rowptr[i + 1];
+            int rowstart = nnz;
+            for (int k = start; k < end; k++) {
+                if (nnz > rowstart && colind[nnz - 1] == colind[k]) {
+                    values[nnz - 1] += values[k];
+                } else {
+                    colind[nnz] = colind[k];
+                    values[nnz] = values[k];
+                    nnz++;
+                }
+            }
+            // drop the zeros, which may be sums of duplicates
+            int write = rowstart;
+            for (int k = rowstart; k < nnz; k++) {
+                if (values[k] != 0) {
+                    colind[write] = colind[k];
+                    values[write] = values[k];
+                    write++;
+                }
+            }
+            nnz = write;
+            start = end;
+            rowptr[i + 1] = nnz;
+        }
+        return new CsrMatrix(rows, cols, rowptr, Arrays.copyOf(colind, nnz), Arrays.copyOf(values, nnz));
+    }
+
+    /**
+     * Reads numbers and lines from a mapped buffer.
+     */
+    static final class Parser {
+        final MappedByteBuffer buffer;
+        final long base;
+        final int limit;
+        int pos;
+
+        Parser(MappedByteBuffer buffer, long base) {
+            this.buffer = buffer;
+            this.base = base;
+            this.limit = buffer.limit();
+        }
+
+        long offset() {
+            return base + pos;
+        }
+
+        String readLine() {
+            if (pos >= limit) return null;
+            StringBuilder line = new StringBuilder();
+            while (pos < limit) {
+                byte b = buffer.get(pos++);
+                if (b == '\n') break;
+                if (b != '\r') line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        void skipLine() {
+            while (pos < limit && buffer.get(pos++) != '\n') {
+            }
+        }
+
+        void skipBlanks() {
+            while (pos < limit) {
+                byte b = buffer.get(pos);
+                if (b != ' ' && b != '\t' && b != '\r') break;
+                pos++;
+            }
+        }
+
+        boolean atLineEnd() {
+            return pos >= limit || buffer.get(pos) == '\n';
+        }
+
+        int parseInt() throws IOException {
+            skipBlanks();
+            long value = 0;
+            int digits = 0;
+            while (pos < limit) {
+                int d = buffer.get(pos) - '0';
+                if (d < 0 || d > 9) break;
+                value = value * 10 + d;
+                pos++;
+                if (++digits > 10) break;
+            }
+            if (digits == 0 || digits > 10 || value > Integer.MAX_VALUE)
+                throw new IOException("Malformed index at byte " + offset());
+            return (int) value;
+        }
+
+        /**
+         * Parses a decimal number. Up to 15 significant digits and exponents of at most 22
+         * are computed exactly from a long and a power of ten, anything else falls back to
+         * Double.parseDouble.
+         */
+        double parseDouble() throws IOException {
+            skipBlanks();
+            int start = pos;
+            boolean negative = false;
+            if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean any = false;
+            while (pos < limit) {
+                int d = buffer.get(pos) - '0';
+                if (d < 0 || d > 9) break;
+                any = true;
+                if (mantissa != 0 || d != 0) digits++;
+                if (digits <= 18) mantissa = mantissa * 10 + d;
+                else scale++;
+                pos++;
+            }
+            if (pos < limit && buffer.get(pos) == '.') {
+                pos++;
+                while (pos < limit) {
+                    int d = buffer.get(pos) - '0';
+                    if (d < 0 || d > 9) break;
+                    any = true;
+                    if (mantissa != 0 || d != 0) digits++;
+                    if (digits <= 18) {
+                        mantissa = mantissa * 10 + d;
+                        scale--;
+                    }
+                    pos++;
+                }
+            }
+            if (any && pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+                pos++;
+                boolean negexp = false;
+                if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                    negexp = buffer.get(pos) == '-';
+                    pos++;
+                }
+                int exp = 0;
+                boolean anyexp = false;
+                while (pos < limit) {
+                    int d = buffer.get(pos) - '0';
+                    if (d < 0 || d > 9) break;
+                    anyexp = true;
+                    if (exp < 100000) exp = exp * 10 + d;
+                    pos++;
+                }
+                if (!anyexp) throw new IOException("Malformed number at byte " + offset());
+                scale += negexp ? -exp : exp;
+            }
+            if (!any || (pos < limit && !isSeparator(buffer.get(pos))))
+                return parseSlow(start);
+            if (digits > 15 || scale < -22 || scale > 22)
+                return parseSlow(start);
+            double value = mantissa;
+            if (scale < 0) value /= POWERS[-scale];
+            else value *= POWERS[scale];
+            return negative ? -value : value;
+        }
+
+        private boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        }
+
+        private double parseSlow(int start) throws IOException {
+            pos = start;
+            StringBuilder token = new StringBuilder();
+            while (pos < limit && !isSeparator(buffer.get(pos))) token.append((char) buffer.get(pos++));
+            try {
+                return Double.parseDouble(token.toString());
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed number " + token + " at byte " + (base + start));
+            }
+        }
+    }
+
+    private static final double[] POWERS = new double[23];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) POWERS[i] = POWERS[i - 1] * 10;
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.LinearOperator;
+import org.lplibs4j.api.util.Matrix;
+
+import java.util.Arrays;
+
+/**
+ * A Matrix seen as LinearOperator. The products use the allocation-free kernels of the
+ * compressed, block, symmetric, hash based and dense matrices and fall back to get for other types.
+ *
+ * @author planatsc
+ */
+public class MatrixOperator implements LinearOperator {
+
+    final Matrix matrix;
+
+    public MatrixOperator(Matrix matrix) {
+        this.matrix = matrix;
+    }
+
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    public int getRowNum() {
+        return matrix.getRowNum();
+    }
+
+    public int getColNum() {
+        return matrix.getColNum();
+    }
+
+    public void apply(double[] x, double[] y) {
+        if (matrix instanceof CsrMatrix) {
+            ((CsrMatrix) matrix).times(x, y);
+        } else if (matrix instanceof CscMatrix) {
+            ((CscMatrix) matrix).times(x, y);
+        } else if (matrix instanceof BlockSparseMatrix) {
+            ((BlockSparseMatrix) matrix).times(x, y);
+        } else {
+            SparseMatrix.multiply(matrix, x, y);
+        }
+    }
+
+    public void applyTranspose(double[] x, double[] y) {
+        if (matrix instanceof CsrMatrix) {
+            ((CsrMatrix) matrix).transposeTimes(x, y);
+        } else if (matrix instanceof CscMatrix) {
+            ((CscMatrix) matrix).transposeTimes(x, y);
+        } else if (matrix instanceof BlockSparseMatrix) {
+            ((BlockSparseMatrix) matrix).transposeTimes(x, y);
+        } else if (matrix instanceof SymmetricSparseMatrix) {
+            ((SymmetricSparseMatrix) matrix).times(x, y);
+        } else if (matrix instanceof SparseMatrix) {
+            ((SparseMatrix) matrix).transposeTimes(x, y);
+        } else if (matrix instanceof NonSparseMatrix) {
+            NonSparseMatrix a = (NonSparseMatrix) matrix;
+            Arrays.fill(y, 0, a.colnum, 0.0);
+            for (int i = 0; i < a.rownum; i++)
+                if (x[i] != 0) VectorKernels.axpy(x[i], a.data, i * a.colnum, y, 0, a.colnum);
+        } else {
+            for (int j = 0; j < matrix.getColNum(); j++) {
+                double sum = 0;
+                for (int i = 0; i < matrix.getRowNum(); i++)
+                    sum += matrix.get(i, j) * x[i];
+                y[j] = sum;
+            }
+        }
+    }
+
+}
@@ -2,77 +2,278 @@ package org.lplibs4j.api.implementation;
 
 import org.lplibs4j.api.util.Matrix;
 import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
 
+import java.util.NoSuchElementException;
+
+/**
+ * Dense matrix stored row by row in a single array: the entry (i, j) is at position
+ * i * columns + j. Products with other dense matrices use the blocked kernels of
+ * DenseKernels, products with sparse matrices only visit their non-zero entries.
+ *
+ * @author planatsc
+ */
 public class NonSparseMatrix implements Matrix {
 
-    double[][] m;
+    final int rownum;
+    final int colnum;
+    final double[] data;
+
+    /**
+     * Creates a matrix of zeros.
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     */
+    public NonSparseMatrix(int rows, int cols) {
+        this(rows, cols, new double[rows * cols]);
+    }
 
+    /**
+     * Wraps a row-major array without copying it.
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @param data The entries, at least rows * cols
+     */
+    public NonSparseMatrix(int rows, int cols, double[] data) {
+        if (data.length < (long) rows * cols)
+            throw new IllegalArgumentException("The array holds " + data.length + " entries, " + rows + "x" + cols + " needed");
+        this.rownum = rows;
+        this.colnum = cols;
+        this.data = data;
+    }
+
+    /**
+     * Creates a matrix with a copy of the given entries.
+     *
+     * @param m The entries, all rows must have the same length
+     */
     public NonSparseMatrix(double[][] m) {
-        this.m = m;
+        this(m.length, m.length > 0 ? m[0].length : 0);
+        for (int row = 0; row < rownum; row++)
+            System.arraycopy(m[row], 0, data, row * colnum, colnum);
+    }
+
+    /**
+     * Returns the row-major array of the entries, not a copy.
+     *
+     * @return the entries
+     */
+    public double[] getData() {
+        return data;
     }
+
+    /**
+     * Copies the entries into a two-dimensional array.
+     *
+     * @return the entries row by row
+     */
+    public double[][] toArray() {
+        double[][] result = new double[rownum][colnum];
+        for (int row = 0; row < rownum; row++)
+            System.arraycopy(data, row * colnum, result[row], 0, colnum);
+        return result;
+    }
+
     @Override
     public double get(int row, int column) {
-
-        return m[row][column];
+        return data[row * colnum + column];
     }
 
     @Override
     public int getColNum() {
-        // TODO Auto-generated method stub
-        return m[0].length;
+        return colnum;
     }
 
     @Override
-    public NonZeroElementIterator getNonZeroElementIterator() {
-        // TODO Auto-generated method stub
-        return null;
+    public int getRowNum() {
+        return rownum;
     }
 
     @Override
-    public int getRowNum() {
-        // TODO Auto-generated method stub
-        return m.length;
+    public void set(int row, int column, double value) {
+        data[row * colnum + column] = value;
     }
 
     @Override
-    public Matrix plus(Matrix toadd) {
-        // TODO Auto-generated method stub
-        return null;
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            int next = advance(0);
+            int actual;
+
+            int advance(int pos) {
+                int size = rownum * colnum;
+                while (pos < size && data[pos] == 0) pos++;
+                return pos;
+            }
+
+            public int getActuali() {
+                return actual / colnum;
+            }
+
+            public int getActualj() {
+                return actual % colnum;
+            }
+
+            public boolean hasNext() {
+                return next < rownum * colnum;
+            }
+
+            public Double next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                actual = next;
+                next = advance(next + 1);
+                return data[actual];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
+    /**
+     * Visits the non-zero entries in row major order with one loop over the data.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        int pos = 0;
+        for (int i = 0; i < rownum; i++)
+            for (int j = 0; j < colnum; j++, pos++)
+                if (data[pos] != 0) visitor.visit(i, j, data[pos]);
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        int pos = 0;
+        for (int i = 0; i < rownum; i++) {
+            for (int j = 0; j < colnum; j++, pos++) {
+                if (data[pos] == 0) continue;
+                if (count == capacity) throw NonZeroCopy.full(capacity);
+                rows[count] = i;
+                cols[count] = j;
+                vals[count++] = data[pos];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a matrix of any type, the result is dense.
+     */
     @Override
-    public void set(int row, int column, double value) {
-        m[row][column] = value;
+    public Matrix plus(Matrix toadd) {
+        if (rownum != toadd.getRowNum() || colnum != toadd.getColNum())
+            throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + toadd.getRowNum() + "x" + toadd.getColNum());
+        NonSparseMatrix result = new NonSparseMatrix(rownum, colnum, data.clone());
+        if (toadd instanceof NonSparseMatrix) {
+            double[] b = ((NonSparseMatrix) toadd).data;
+            for (int k = 0; k < rownum * colnum; k++) result.data[k] += b[k];
+        } else {
+            final double[] sum = result.data;
+            toadd.forEachNonZero(new NonZeroElementVisitor() {
+                public void visit(int row, int column, double value) {
+                    sum[row * colnum + column] += value;
+                }
+            });
+        }
+        return result;
     }
 
+    /**
+     * Multiplies the matrix with another matrix. Dense multipliers use the blocked
+     * product of DenseKernels, a column SparseVector yields a SparseVector and sparse
+     * matrices are multiplied row by row over their non-zero entries. The result of a
+     * product of matrices is dense.
+     */
     @Override
     public Matrix times(Matrix multiplier) {
+        if (colnum != multiplier.getRowNum())
+            throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+        int cols = multiplier.getColNum();
 
-        double[][] result = new double[this.getRowNum()][multiplier.getColNum()];
-        for (int row = 0; row < this.getRowNum(); row++) {
-            for (int column = 0; column < multiplier.getColNum(); column++) {
+        if (multiplier instanceof NonSparseMatrix) {
+            NonSparseMatrix b = (NonSparseMatrix) multiplier;
+            NonSparseMatrix result = new NonSparseMatrix(rownum, cols);
+            DenseKernels.gemm(rownum, cols, colnum, data, colnum, b.data, cols, result.data, cols);
+            return result;
+        }
+        if (multiplier instanceof SparseVector && !((SparseVector) multiplier).linevector) {
+            SparseVector x = (SparseVector) multiplier;
+            ScratchArena arena = ScratchArena.get();
+            int mark = arena.mark();
+            try {
+                double[] dx = arena.dense(colnum);
+                VectorKernels.scatter(x.getIndex(), x.getData(), x.getUsed(), dx);
+                double[] y = arena.dense(rownum);
+                times(dx, y);
+                return new SparseVector(y, rownum);
+            } finally {
+                arena.release(mark);
+            }
+        }
+        if (multiplier instanceof SparseMatrix || multiplier instanceof CsrMatrix || multiplier instanceof CscMatrix) {
+            return timesSparse(CsrMatrix.toCsr(multiplier));
+        }
+
+        NonSparseMatrix result = new NonSparseMatrix(rownum, cols);
+        for (int row = 0; row < rownum; row++) {
+            for (int column = 0; column < cols; column++) {
                 double sum = 0;
-                for (int ii =0; ii < this.getColNum();ii++) {
-                    sum += m[row][ii]* multiplier.get(ii,column);
+                for (int ii = 0; ii < colnum; ii++) {
+                    sum += data[row * colnum + ii] * multiplier.get(ii, column);
                 }
-                result[row][column] = sum;
+                result.data[row * cols + column] = sum;
             }
         }
-        // TODO Auto-generated method stub
-        return new NonSparseMatrix(result);
+        return result;
     }
 
-    @Override
-    public Matrix transpose() {
-        double[][] result = new double[this.getColNum()][this.getRowNum()];
-        for (int row = 0; row < this.getRowNum(); row++) {
-            for (int column = 0; column < this.getColNum(); column++) {
-                result[column][row] = m[row][column];
+    /**
+     * Calculates this * b for a sparse b: every non-zero entry a_ip adds a_ip times the
+     * non-zero entries of row p of b to row i of the result. The rows are distributed over
+     * the shared pool.
+     */
+    NonSparseMatrix timesSparse(final CsrMatrix b) {
+        final int cols = b.colnum;
+        final NonSparseMatrix result = new NonSparseMatrix(rownum, cols);
+        long work = (long) rownum * b.getNumberOfNonZeroElements();
+        int[] bounds = DenseKernels.rowBounds(rownum, DenseKernels.parts(ParallelSpMV.getPool(), work), 1);
+        ParallelSpMV.run(ParallelSpMV.getPool(), bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                double[] c = result.data;
+                for (int i = from; i < to; i++) {
+                    int arow = i * colnum;
+                    int crow = i * cols;
+                    for (int p = 0; p < colnum; p++) {
+                        double aip = data[arow + p];
+                        if (aip == 0) continue;
+                        for (int k = b.rowptr[p]; k < b.rowptr[p + 1]; k++)
+                            c[crow + b.colind[k]] += aip * b.values[k];
+                    }
+                }
             }
-        }
-        return new NonSparseMatrix(m);
+        });
+        return result;
     }
 
+    /**
+     * Calculates y = this * x without allocating.
+     *
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        for (int row = 0; row < rownum; row++)
+            y[row] = VectorKernels.dot(data, row * colnum, x, 0, colnum);
+    }
 
+    @Override
+    public Matrix transpose() {
+        NonSparseMatrix result = new NonSparseMatrix(colnum, rownum);
+        DenseKernels.transpose(rownum, colnum, data, result.data);
+        return result;
+    }
 
 }
@@ -0,0 +1,51 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+/**
+ * Copies visited entries into coordinate arrays, the implementation of
+ * Matrix.copyNonZerosTo for the matrices without a loop of their own.
+ *
+ * @author planatsc
+ */
+final class NonZeroCopy implements NonZeroElementVisitor {
+
+    final int[] rows;
+    final int[] cols;
+    final double[] vals;
+    final int capacity;
+    int count;
+
+    private NonZeroCopy(int[] rows, int[] cols, double[] vals) {
+        this.rows = rows;
+        this.cols = cols;
+        this.vals = vals;
+        this.capacity = capacity(rows, cols, vals);
+    }
+
+    static int copy(Matrix m, int[] rows, int[] cols, double[] vals) {
+        NonZeroCopy copy = new NonZeroCopy(rows, cols, vals);
+        m.forEachNonZero(copy);
+        return copy.count;
+    }
+
+    public void visit(int row, int column, double value) {
+        if (count == capacity) throw full(capacity);
+        rows[count] = row;
+        cols[count] = column;
+        vals[count++] = value;
+    }
+
+    /**
+     * Returns the number of entries all three arrays can hold.
+     */
+    static int capacity(int[] rows, int[] cols, double[] vals) {
+        return Math.min(rows.length, Math.min(cols.length, vals.length));
+    }
+
+    static IllegalArgumentException full(int capacity) {
+        return new IllegalArgumentException("The arrays hold only " + capacity + " entries");
+    }
+
+}
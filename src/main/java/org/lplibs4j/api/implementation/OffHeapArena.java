@@ -0,0 +1,161 @@
+package org.lplibs4j.api.implementation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Owner of off-heap vectors and matrices.
+ * <p>
+ * The coefficients of OffHeapSparseVector and OffHeapSparseMatrix live in direct buffers
+ * in native byte order, outside of the Java heap, so the garbage collector never scans or
+ * copies them and native code can use them without copying. Everything allocated by an
+ * arena shares its lifetime: after {@link #close()} every access to a vector or matrix of
+ * this arena throws an IllegalStateException. The native memory itself is returned when
+ * the buffers are collected, which happens once the closed objects are unreachable.
+ * <p>
+ * A single buffer is limited to Integer.MAX_VALUE bytes, so one vector or matrix holds at
+ * most about 268 million coefficients; larger models are split into several matrices.
+ *
+ * @author planatsc
+ */
+public class OffHeapArena implements Closeable {
+
+    private volatile boolean closed;
+    private long allocated;
+    private long mapped;
+
+    /**
+     * Creates a new open arena.
+     */
+    public OffHeapArena() {
+        super();
+    }
+
+    /**
+     * Allocates a zeroed direct buffer in native byte order.
+     *
+     * @param bytes The size of the buffer
+     * @return The new buffer
+     */
+    synchronized ByteBuffer allocate(long bytes) {
+        checkOpen();
+        if (bytes < 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Off-heap buffers are limited to " + Integer.MAX_VALUE + " bytes, requested " + bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        allocated += bytes;
+        return buffer;
+    }
+
+    /**
+     * Maps a region of a file read-only. The region shares the lifetime of the arena like
+     * allocated buffers, its pages are loaded by the operating system on first access.
+     *
+     * @param channel  The channel of the file
+     * @param position The start of the region in the file
+     * @param bytes    The size of the region
+     * @param order    The byte order of the region
+     * @return The mapped buffer
+     * @throws IOException if the region can't be mapped
+     */
+    synchronized ByteBuffer map(FileChannel channel, long position, long bytes, ByteOrder order) throws IOException {
+        checkOpen();
+        if (bytes < 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Off-heap buffers are limited to " + Integer.MAX_VALUE + " bytes, requested " + bytes);
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(order);
+        mapped += bytes;
+        return buffer;
+    }
+
+    /**
+     * Allocates an empty off-heap matrix with room for nnz non-zero entries. The rows are
+     * filled in ascending order with OffHeapSparseMatrix.appendRow.
+     *
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @param nnz  The number of non-zero entries of the complete matrix
+     * @return The new matrix
+     */
+    public OffHeapSparseMatrix allocateMatrix(int rows, int cols, int nnz) {
+        return new OffHeapSparseMatrix(this, rows, cols, nnz);
+    }
+
+    /**
+     * Copies a vector off the heap.
+     *
+     * @param v The vector to be copied
+     * @return The off-heap copy
+     */
+    public OffHeapSparseVector copyOf(SparseVector v) {
+        int n = v.getUsed();
+        ByteBuffer index = allocate(4L * n);
+        ByteBuffer data = allocate(8L * n);
+        index.asIntBuffer().put(v.getIndex(), 0, n);
+        data.asDoubleBuffer().put(v.getData(), 0, n);
+        OffHeapSparseVector result = new OffHeapSparseVector(this, index.asIntBuffer(), data.asDoubleBuffer(), n, v.getSize());
+        result.linevector = v.linevector;
+        return result;
+    }
+
+    /**
+     * Copies a matrix off the heap.
+     *
+     * @param m The matrix to be copied
+     * @return The off-heap copy
+     */
+    public OffHeapSparseMatrix copyOf(SparseMatrix m) {
+        int[] rows = new int[m.vvectorlist.size()];
+        int k = 0;
+        for (Integer row : m.vvectorlist.keySet()) rows[k++] = row;
+        Arrays.sort(rows);
+
+        OffHeapSparseMatrix result = allocateMatrix(m.getRowNum(), m.getColNum(), m.getNumberOfNonZeroElements());
+        for (int row : rows) {
+            SparseVector v = m.vvectorlist.get(row);
+            result.appendRow(row, v.getIndex(), v.getData(), v.getUsed());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes allocated by this arena.
+     *
+     * @return the allocated bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocated;
+    }
+
+    /**
+     * Returns the number of bytes of files mapped by this arena.
+     *
+     * @return the mapped bytes
+     */
+    public synchronized long getMappedBytes() {
+        return mapped;
+    }
+
+    /**
+     * Checks whether the arena was closed.
+     *
+     * @return <code>true</code> after close was called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void checkOpen() {
+        if (closed) throw new IllegalStateException("The off-heap arena is closed");
+    }
+
+    /**
+     * Closes the arena. All vectors and matrices allocated by it become unusable.
+     */
+    public void close() {
+        closed = true;
+    }
+
+}
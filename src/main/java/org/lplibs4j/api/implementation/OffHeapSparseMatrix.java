@@ -0,0 +1,372 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Sparse matrix whose coefficients are stored off the heap in compressed row format, see
+ * OffHeapArena.
+ * <p>
+ * Three direct buffers hold the matrix: the row pointers, the column indices and the
+ * values. A new matrix is empty and filled row by row in ascending order with appendRow;
+ * rows that are never appended stay empty. Afterwards the non-zero pattern is fixed:
+ * existing entries can be overwritten, setting any other entry throws an
+ * UnsupportedOperationException. Products with vectors and dense arrays are computed
+ * directly on the buffers, all other operations work on a heap copy.
+ *
+ * @author planatsc
+ */
+public class OffHeapSparseMatrix implements Matrix {
+
+    final OffHeapArena arena;
+    final int rownum;
+    final int colnum;
+    final int capacity;
+    final IntBuffer rowptr;
+    final IntBuffer colind;
+    final DoubleBuffer values;
+    int nextrow;
+    int nnz;
+
+    /**
+     * Allocates an empty matrix in an arena.
+     *
+     * @param arena    The owner of the buffers
+     * @param rows     The number of rows
+     * @param cols     The number of columns
+     * @param capacity The number of non-zero entries of the complete matrix
+     */
+    OffHeapSparseMatrix(OffHeapArena arena, int rows, int cols, int capacity) {
+        this.arena = arena;
+        this.rownum = rows;
+        this.colnum = cols;
+        this.capacity = capacity;
+        this.rowptr = arena.allocate(4L * (rows + 1)).asIntBuffer();
+        this.colind = arena.allocate(4L * capacity).asIntBuffer();
+        this.values = arena.allocate(8L * capacity).asDoubleBuffer();
+        this.nextrow = 0;
+        this.nnz = 0;
+    }
+
+    /**
+     * Wraps complete compressed row buffers, for example mapped from a file. Read-only
+     * buffers make the matrix read-only.
+     *
+     * @param arena  The owner of the buffers
+     * @param rows   The number of rows
+     * @param cols   The number of columns
+     * @param rowptr The row pointers, rows + 1 entries
+     * @param colind The sorted column indices of every row
+     * @param values The values belonging to the column indices
+     */
+    OffHeapSparseMatrix(OffHeapArena arena, int rows, int cols, IntBuffer rowptr, IntBuffer colind, DoubleBuffer values) {
+        this.arena = arena;
+        this.rownum = rows;
+        this.colnum = cols;
+        this.rowptr = rowptr;
+        this.colind = colind;
+        this.values = values;
+        this.nextrow = rows;
+        this.nnz = rowptr.get(rows);
+        this.capacity = nnz;
+    }
+
+    /**
+     * Appends a row given by sorted indices. Rows must be appended in ascending order,
+     * skipped rows are empty.
+     *
+     * @param row   The row to be appended
+     * @param index The sorted column indices of the non-zero entries
+     * @param data  The values belonging to the indices
+     * @param n     The number of entries
+     */
+    public void appendRow(int row, int[] index, double[] data, int n) {
+        arena.checkOpen();
+        if (row < nextrow || row >= rownum)
+            throw new IllegalArgumentException("Rows must be appended in ascending order, row " + row + " after " + (nextrow - 1));
+        if (nnz + n > capacity)
+            throw new IllegalArgumentException("Capacity of " + capacity + " non-zero entries exceeded");
+        for (int k = nextrow; k <= row; k++)
+            rowptr.put(k, nnz);
+        for (int k = 0; k < n; k++) {
+            if (index[k] < 0 || index[k] >= colnum)
+                throw new IllegalArgumentException("Column " + index[k] + " out of range [0, " + colnum + ")");
+            colind.put(nnz + k, index[k]);
+            values.put(nnz + k, data[k]);
+        }
+        nnz += n;
+        rowptr.put(row + 1, nnz);
+        nextrow = row + 1;
+    }
+
+    /**
+     * Appends a row, see appendRow(int, int[], double[], int).
+     *
+     * @param row    The row to be appended
+     * @param vector The content of the row
+     */
+    public void appendRow(int row, SparseVector vector) {
+        appendRow(row, vector.getIndex(), vector.getData(), vector.getUsed());
+    }
+
+    int rowStart(int row) {
+        return row < nextrow ? rowptr.get(row) : nnz;
+    }
+
+    int rowEnd(int row) {
+        return row < nextrow ? rowptr.get(row + 1) : nnz;
+    }
+
+    /**
+     * Searches the position of an entry in the column index buffer.
+     *
+     * @return the position, or -1 if the entry is not stored
+     */
+    int find(int row, int column) {
+        int lo = rowStart(row);
+        int hi = rowEnd(row) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midval = colind.get(mid);
+            if (midval < column) lo = mid + 1;
+            else if (midval > column) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public double get(int row, int column) {
+        arena.checkOpen();
+        int pos = find(row, column);
+        return pos >= 0 ? values.get(pos) : 0;
+    }
+
+    /**
+     * Overwrites an existing non-zero entry.
+     */
+    public void set(int row, int column, double value) {
+        arena.checkOpen();
+        int pos = find(row, column);
+        if (pos < 0)
+            throw new UnsupportedOperationException("The non-zero pattern of an off-heap matrix is fixed, entry " + row + " " + column);
+        values.put(pos, value);
+    }
+
+    public int getRowNum() {
+        return rownum;
+    }
+
+    public int getColNum() {
+        return colnum;
+    }
+
+    public int getNumberOfNonZeroElements() {
+        return nnz;
+    }
+
+    /**
+     * Returns the row pointers for handing them to native code: the entries of row i are
+     * stored at the positions [rowptr[i], rowptr[i + 1]). Only valid once all rows are
+     * appended. The returned buffer is a duplicate.
+     *
+     * @return The direct buffer of the row pointers
+     */
+    public IntBuffer getRowPointerBuffer() {
+        arena.checkOpen();
+        // the pointer of nextrow is already set, which keeps mapped read-only buffers intact
+        for (int k = nextrow + 1; k <= rownum; k++)
+            rowptr.put(k, nnz);
+        return rowptr.duplicate();
+    }
+
+    /**
+     * Returns the column indices for handing them to native code. The returned buffer is a
+     * duplicate.
+     *
+     * @return The direct buffer of the column indices
+     */
+    public IntBuffer getColumnIndexBuffer() {
+        arena.checkOpen();
+        return colind.duplicate();
+    }
+
+    /**
+     * Returns the values for handing them to native code. The returned buffer is a
+     * duplicate.
+     *
+     * @return The direct buffer of the values
+     */
+    public DoubleBuffer getValueBuffer() {
+        arena.checkOpen();
+        return values.duplicate();
+    }
+
+    /**
+     * Calculates y = this * x without allocating.
+     *
+     * @param x The dense vector, its length must be the number of columns
+     * @param y The result, its length must be the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        arena.checkOpen();
+        for (int i = 0; i < rownum; i++) {
+            double sum = 0;
+            int end = rowEnd(i);
+            for (int k = rowStart(i); k < end; k++)
+                sum += values.get(k) * x[colind.get(k)];
+            y[i] = sum;
+        }
+    }
+
+    /**
+     * Returns a row as heap vector.
+     *
+     * @param row The row
+     * @return A heap copy of the row
+     */
+    public SparseVector getRow(int row) {
+        arena.checkOpen();
+        int start = rowStart(row);
+        int n = rowEnd(row) - start;
+        int[] index = new int[n];
+        double[] data = new double[n];
+        for (int k = 0; k < n; k++) {
+            index[k] = colind.get(start + k);
+            data[k] = values.get(start + k);
+        }
+        return new SparseVector(index, data, n, colnum);
+    }
+
+    /**
+     * Copies the matrix onto the heap.
+     *
+     * @return A heap copy of this matrix
+     */
+    public SparseMatrix toSparseMatrix() {
+        SparseMatrix result = new SparseMatrix(rownum, colnum);
+        for (int i = 0; i < nextrow; i++) {
+            if (rowEnd(i) > rowStart(i)) result.setRow(i, getRow(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the transposed matrix as heap copy.
+     */
+    public Matrix transpose() {
+        return toSparseMatrix().transpose();
+    }
+
+    /**
+     * Multiplies the matrix with another matrix. A column SparseVector is multiplied
+     * directly on the buffers, other matrices via a heap copy.
+     */
+    public Matrix times(Matrix multiplier) {
+        if (multiplier instanceof SparseVector && !((SparseVector) multiplier).linevector) {
+            arena.checkOpen();
+            SparseVector x = (SparseVector) multiplier;
+            int[] xindex = x.getIndex();
+            double[] xdata = x.getData();
+            int xused = x.getUsed();
+            SparseVectorBuilder result = new SparseVectorBuilder(rownum, 16);
+            for (int i = 0; i < nextrow; i++) {
+                int c1 = rowStart(i);
+                int end = rowEnd(i);
+                int c2 = 0;
+                double sum = 0;
+                while (c1 < end && c2 < xused) {
+                    int i1 = colind.get(c1);
+                    int i2 = xindex[c2];
+                    if (i1 == i2) {
+                        sum += values.get(c1++) * xdata[c2++];
+                    } else if (i1 < i2) {
+                        c1++;
+                    } else {
+                        c2++;
+                    }
+                }
+                if (sum != 0) result.append(i, sum);
+            }
+            return result.build();
+        }
+        return toSparseMatrix().times(multiplier);
+    }
+
+    public Matrix plus(Matrix toadd) {
+        return toSparseMatrix().plus(toadd);
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        arena.checkOpen();
+        return new NonZeroElementIterator() {
+            int pos;
+            int row;
+            int actualrow;
+            int actualcol;
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return pos < nnz;
+            }
+
+            public Double next() {
+                if (pos >= nnz) throw new NoSuchElementException();
+                arena.checkOpen();
+                while (rowEnd(row) <= pos) row++;
+                actualrow = row;
+                actualcol = colind.get(pos);
+                return values.get(pos++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the entries row by row, in the order of the iterator, reading the buffers
+     * directly.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        arena.checkOpen();
+        for (int i = 0; i < rownum; i++) {
+            int end = rowEnd(i);
+            for (int k = rowStart(i); k < end; k++) {
+                double value = values.get(k);
+                if (value != 0) visitor.visit(i, colind.get(k), value);
+            }
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        arena.checkOpen();
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int i = 0; i < rownum; i++) {
+            int end = rowEnd(i);
+            for (int k = rowStart(i); k < end; k++) {
+                double value = values.get(k);
+                if (value == 0) continue;
+                if (count == capacity) throw NonZeroCopy.full(capacity);
+                rows[count] = i;
+                cols[count] = colind.get(k);
+                vals[count++] = value;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,270 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Sparse vector whose indices and values are stored off the heap, see OffHeapArena.
+ * <p>
+ * The non-zero pattern is fixed when the vector is created: existing entries can be
+ * overwritten, setting any other entry throws an UnsupportedOperationException. Products
+ * and sums with other matrices are computed on a heap copy and return heap objects.
+ *
+ * @author planatsc
+ */
+public class OffHeapSparseVector implements Matrix {
+
+    final OffHeapArena arena;
+    final IntBuffer index;
+    final DoubleBuffer data;
+    final int used;
+    final int size;
+    boolean linevector;
+
+    /**
+     * Wraps sorted indices and their values in buffers of an arena.
+     *
+     * @param arena The owner of the buffers
+     * @param index The sorted indices of the non-zero entries
+     * @param data  The values belonging to the indices
+     * @param used  The number of entries
+     * @param size  The actual size of the vector
+     */
+    OffHeapSparseVector(OffHeapArena arena, IntBuffer index, DoubleBuffer data, int used, int size) {
+        this.arena = arena;
+        this.index = index;
+        this.data = data;
+        this.used = used;
+        this.size = size;
+        this.linevector = false;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the indices for handing them to native code. The returned buffer is a
+     * duplicate, its position and limit can be changed freely.
+     *
+     * @return The direct buffer of the indices
+     */
+    public IntBuffer getIndexBuffer() {
+        arena.checkOpen();
+        return index.duplicate();
+    }
+
+    /**
+     * Returns the values for handing them to native code. The returned buffer is a
+     * duplicate, its position and limit can be changed freely.
+     *
+     * @return The direct buffer of the values
+     */
+    public DoubleBuffer getDataBuffer() {
+        arena.checkOpen();
+        return data.duplicate();
+    }
+
+    /**
+     * Searches the position of an index in the index buffer.
+     *
+     * @return the position, or a negative value if the index is not stored
+     */
+    int find(int ind) {
+        int lo = 0;
+        int hi = used - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midval = index.get(mid);
+            if (midval < ind) lo = mid + 1;
+            else if (midval > ind) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Gets the value at index
+     *
+     * @param ind The index
+     * @return The value at the index
+     */
+    public double get(int ind) {
+        arena.checkOpen();
+        int pos = find(ind);
+        return pos >= 0 ? data.get(pos) : 0;
+    }
+
+    public double get(int row, int column) {
+        return get(linevector ? column : row);
+    }
+
+    /**
+     * Overwrites an existing non-zero entry.
+     *
+     * @param ind   The index of the entry
+     * @param value The new value
+     */
+    public void set(int ind, double value) {
+        arena.checkOpen();
+        int pos = find(ind);
+        if (pos < 0)
+            throw new UnsupportedOperationException("The non-zero pattern of an off-heap vector is fixed, index " + ind);
+        data.put(pos, value);
+    }
+
+    public void set(int row, int column, double value) {
+        set(linevector ? column : row, value);
+    }
+
+    public int getRowNum() {
+        return linevector ? 1 : size;
+    }
+
+    public int getColNum() {
+        return linevector ? size : 1;
+    }
+
+    /**
+     * Calculates the dot product of this vector and a dense array.
+     *
+     * @param x The dense array
+     * @return The dot product
+     */
+    public double dot(double[] x) {
+        arena.checkOpen();
+        double ret = 0;
+        for (int i = 0; i < used; i++)
+            ret += data.get(i) * x[index.get(i)];
+        return ret;
+    }
+
+    /**
+     * Calculates the dot product of this vector and a heap vector.
+     *
+     * @param y The second vector
+     * @return The dot product
+     */
+    public double dot(SparseVector y) {
+        arena.checkOpen();
+        int[] yindex = y.getIndex();
+        double[] ydata = y.getData();
+        int yused = y.getUsed();
+        double sum = 0;
+        int c1 = 0;
+        int c2 = 0;
+        while (c1 < used && c2 < yused) {
+            int i1 = index.get(c1);
+            int i2 = yindex[c2];
+            if (i1 == i2) {
+                sum += data.get(c1++) * ydata[c2++];
+            } else if (i1 < i2) {
+                c1++;
+            } else {
+                c2++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Copies the vector onto the heap.
+     *
+     * @return A heap copy of this vector
+     */
+    public SparseVector toSparseVector() {
+        arena.checkOpen();
+        int[] newindex = new int[used];
+        double[] newdata = new double[used];
+        index.duplicate().get(newindex);
+        data.duplicate().get(newdata);
+        SparseVector result = new SparseVector(newindex, newdata, used, size);
+        result.linevector = linevector;
+        return result;
+    }
+
+    /**
+     * Returns the transposed vector as heap copy.
+     */
+    public Matrix transpose() {
+        return toSparseVector().transpose();
+    }
+
+    public Matrix times(Matrix multiplier) {
+        return toSparseVector().times(multiplier);
+    }
+
+    public Matrix plus(Matrix toadd) {
+        return toSparseVector().plus(toadd);
+    }
+
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        arena.checkOpen();
+        return new NonZeroElementIterator() {
+            int pos;
+            int actual;
+
+            public int getActuali() {
+                return linevector ? 0 : actual;
+            }
+
+            public int getActualj() {
+                return linevector ? actual : 0;
+            }
+
+            public boolean hasNext() {
+                return pos < used;
+            }
+
+            public Double next() {
+                if (pos >= used) throw new NoSuchElementException();
+                arena.checkOpen();
+                actual = index.get(pos);
+                return data.get(pos++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the entries in index order, reading the buffers directly.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        arena.checkOpen();
+        for (int pos = 0; pos < used; pos++) {
+            double value = data.get(pos);
+            if (value == 0) continue;
+            if (linevector) visitor.visit(0, index.get(pos), value);
+            else visitor.visit(index.get(pos), 0, value);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        arena.checkOpen();
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int pos = 0; pos < used; pos++) {
+            double value = data.get(pos);
+            if (value == 0) continue;
+            if (count == capacity) throw NonZeroCopy.full(capacity);
+            int ind = index.get(pos);
+            rows[count] = linevector ? 0 : ind;
+            cols[count] = linevector ? ind : 0;
+            vals[count++] = value;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,322 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-threaded products of sparse matrices with dense vectors.
+ * <p>
+ * The rows are split into blocks of about the same number of non-zero entries, not the
+ * same number of rows, so a few dense rows don't leave the other threads idle. Each block
+ * is one task of a ForkJoinPool.
+ * <ul>
+ * <li>y = A * x: every block writes its own range of y, no synchronization is needed.</li>
+ * <li>y = A^T * x: the blocks scatter into the same entries of y, so every block but
+ * the first accumulates into a private array. The arrays are summed up in parallel over
+ * ranges of columns afterwards. The transpose is never built.</li>
+ * </ul>
+ * Products with less than {@link #THRESHOLD} non-zero entries, or on a pool with a
+ * single thread, are computed on the calling thread. By default a shared pool with one
+ * thread per processor is used.
+ *
+ * @author planatsc
+ */
+public final class ParallelSpMV {
+
+    /**
+     * The minimal number of non-zero entries worth splitting a product.
+     */
+    public static final int THRESHOLD = 1 << 15;
+
+    /**
+     * The number of blocks per thread of y = A * x, more blocks even out imbalances.
+     */
+    static final int BLOCKS_PER_THREAD = 4;
+
+    private static class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    private ParallelSpMV() {
+    }
+
+    /**
+     * Returns the shared pool used by default.
+     *
+     * @return the shared pool
+     */
+    public static ForkJoinPool getPool() {
+        return PoolHolder.POOL;
+    }
+
+    /**
+     * Calculates y = a * x on the shared pool.
+     *
+     * @param a The matrix
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public static void times(CsrMatrix a, double[] x, double[] y) {
+        times(a, x, y, getPool());
+    }
+
+    /**
+     * Calculates y = a * x on the given pool.
+     *
+     * @param a    The matrix
+     * @param x    The dense vector, its length must be at least the number of columns
+     * @param y    The result, its length must be at least the number of rows
+     * @param pool The pool executing the blocks
+     */
+    public static void times(CsrMatrix a, final double[] x, final double[] y, ForkJoinPool pool) {
+        final int[] rowptr = a.rowptr;
+        final int[] colind = a.colind;
+        final double[] values = a.values;
+        int[] bounds = partition(rowptr, a.rownum, blocks(pool, rowptr[a.rownum], BLOCKS_PER_THREAD));
+        run(pool, bounds, new Block() {
+            public void run(int part, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    double sum = 0;
+                    for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                        sum += values[k] * x[colind[k]];
+                    y[i] = sum;
+                }
+            }
+        });
+    }
+
+    /**
+     * Calculates y = a^T * x on the shared pool.
+     *
+     * @param a The matrix
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public static void transposeTimes(CsrMatrix a, double[] x, double[] y) {
+        transposeTimes(a, x, y, getPool());
+    }
+
+    /**
+     * Calculates y = a^T * x on the given pool.
+     *
+     * @param a    The matrix
+     * @param x    The dense vector, its length must be at least the number of rows
+     * @param y    The result, its length must be at least the number of columns
+     * @param pool The pool executing the blocks
+     */
+    public static void transposeTimes(CsrMatrix a, final double[] x, double[] y, ForkJoinPool pool) {
+        final int[] rowptr = a.rowptr;
+        final int[] colind = a.colind;
+        final double[] values = a.values;
+        int[] bounds = partition(rowptr, a.rownum, blocks(pool, rowptr[a.rownum], 1));
+        final double[][] acc = accumulators(y, a.colnum, bounds.length - 1);
+        run(pool, bounds, new Block() {
+            public void run(int part, int from, int to) {
+                double[] out = acc[part];
+                for (int i = from; i < to; i++) {
+                    double xi = x[i];
+                    if (xi == 0) continue;
+                    for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                        out[colind[k]] += xi * values[k];
+                }
+            }
+        });
+        reduce(pool, acc, a.colnum);
+    }
+
+    /**
+     * Calculates y = a * x on the shared pool.
+     *
+     * @param a The matrix
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public static void times(SparseMatrix a, double[] x, double[] y) {
+        times(a, x, y, getPool());
+    }
+
+    /**
+     * Calculates y = a * x on the given pool. The rows are collected into an array first,
+     * which costs O(number of non-zero rows).
+     *
+     * @param a    The matrix
+     * @param x    The dense vector, its length must be at least the number of columns
+     * @param y    The result, its length must be at least the number of rows
+     * @param pool The pool executing the blocks
+     */
+    public static void times(SparseMatrix a, final double[] x, final double[] y, ForkJoinPool pool) {
+        final RowList rows = new RowList(a);
+        Arrays.fill(y, 0, a.rownum, 0.0);
+        int[] bounds = partition(rows.offsets, rows.n, blocks(pool, rows.offsets[rows.n], BLOCKS_PER_THREAD));
+        run(pool, bounds, new Block() {
+            public void run(int part, int from, int to) {
+                for (int r = from; r < to; r++)
+                    y[rows.rowindex[r]] = rows.vectors[r].dot(x);
+            }
+        });
+    }
+
+    /**
+     * Calculates y = a^T * x on the shared pool.
+     *
+     * @param a The matrix
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public static void transposeTimes(SparseMatrix a, double[] x, double[] y) {
+        transposeTimes(a, x, y, getPool());
+    }
+
+    /**
+     * Calculates y = a^T * x on the given pool. The rows are collected into an array
+     * first, which costs O(number of non-zero rows).
+     *
+     * @param a    The matrix
+     * @param x    The dense vector, its length must be at least the number of rows
+     * @param y    The result, its length must be at least the number of columns
+     * @param pool The pool executing the blocks
+     */
+    public static void transposeTimes(SparseMatrix a, final double[] x, double[] y, ForkJoinPool pool) {
+        final RowList rows = new RowList(a);
+        int[] bounds = partition(rows.offsets, rows.n, blocks(pool, rows.offsets[rows.n], 1));
+        final double[][] acc = accumulators(y, a.colnum, bounds.length - 1);
+        run(pool, bounds, new Block() {
+            public void run(int part, int from, int to) {
+                double[] out = acc[part];
+                for (int r = from; r < to; r++) {
+                    double xi = x[rows.rowindex[r]];
+                    if (xi != 0) rows.vectors[r].addTo(out, xi);
+                }
+            }
+        });
+        reduce(pool, acc, a.colnum);
+    }
+
+    /**
+     * The non-zero rows of a SparseMatrix in an array, with the running count of their
+     * non-zero entries.
+     */
+    static final class RowList {
+        final int n;
+        final int[] rowindex;
+        final SparseVector[] vectors;
+        final int[] offsets;
+
+        RowList(SparseMatrix a) {
+            n = a.vvectorlist.size();
+            rowindex = new int[n];
+            vectors = new SparseVector[n];
+            offsets = new int[n + 1];
+            Iterator<Entry<Integer, SparseVector>> entryiterator = a.vvectorlist.entrySet().iterator();
+            for (int r = 0; r < n; r++) {
+                Entry<Integer, SparseVector> e = entryiterator.next();
+                rowindex[r] = e.getKey();
+                vectors[r] = e.getValue();
+                offsets[r + 1] = offsets[r] + vectors[r].getUsed();
+            }
+        }
+    }
+
+    /**
+     * The work of one block of rows.
+     */
+    interface Block {
+        void run(int part, int from, int to);
+    }
+
+    /**
+     * Chooses the number of blocks for a product with nnz non-zero entries.
+     */
+    static int blocks(ForkJoinPool pool, int nnz, int perthread) {
+        int threads = pool.getParallelism();
+        if (threads <= 1 || nnz < THRESHOLD) return 1;
+        return (int) Math.min((long) threads * perthread, nnz / (THRESHOLD / 4));
+    }
+
+    /**
+     * Splits the positions 0 to n into at most parts ranges of about the same number of
+     * non-zero entries.
+     *
+     * @param offsets The running count of non-zero entries, n + 1 entries
+     * @param n       The number of positions
+     * @param parts   The number of ranges wanted
+     * @return the bounds, range p covers bounds[p] to bounds[p + 1] - 1
+     */
+    static int[] partition(int[] offsets, int n, int parts) {
+        parts = Math.max(1, Math.min(parts, n));
+        int[] bounds = new int[parts + 1];
+        long nnz = offsets[n] - offsets[0];
+        int count = 1;
+        for (int p = 1; p < parts; p++) {
+            int target = (int) (offsets[0] + nnz * p / parts);
+            int pos = Arrays.binarySearch(offsets, bounds[count - 1], n + 1, target);
+            if (pos < 0) pos = -pos - 1;
+            // an empty range would only cost a task
+            if (pos > bounds[count - 1] && pos < n) bounds[count++] = pos;
+        }
+        bounds[count] = n;
+        return count == parts ? bounds : Arrays.copyOf(bounds, count + 1);
+    }
+
+    /**
+     * Runs the blocks, on the calling thread if there is only one.
+     */
+    static void run(ForkJoinPool pool, final int[] bounds, final Block block) {
+        if (bounds.length <= 2) {
+            block.run(0, bounds[0], bounds[bounds.length - 1]);
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(bounds.length - 1);
+                for (int p = 0; p < bounds.length - 1; p++) {
+                    final int part = p;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            block.run(part, bounds[part], bounds[part + 1]);
+                        }
+                    });
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Creates the accumulators of a transposed product. The first one is y itself.
+     */
+    static double[][] accumulators(double[] y, int cols, int parts) {
+        double[][] acc = new double[parts][];
+        Arrays.fill(y, 0, cols, 0.0);
+        acc[0] = y;
+        for (int p = 1; p < parts; p++) acc[p] = new double[cols];
+        return acc;
+    }
+
+    /**
+     * Adds all accumulators to the first one, in parallel over ranges of columns.
+     */
+    static void reduce(ForkJoinPool pool, final double[][] acc, int cols) {
+        if (acc.length == 1) return;
+        int parts = Math.min(pool.getParallelism(), Math.max(1, cols / 4096));
+        int[] bounds = new int[parts + 1];
+        for (int p = 0; p <= parts; p++) bounds[p] = (int) ((long) cols * p / parts);
+        run(pool, bounds, new Block() {
+            public void run(int part, int from, int to) {
+                double[] y = acc[0];
+                for (int p = 1; p < acc.length; p++) {
+                    double[] a = acc[p];
+                    for (int j = from; j < to; j++) y[j] += a[j];
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+
+import java.util.Arrays;
+
+/**
+ * Immutable vector whose non-zero entries are all 1, as in assignment and incidence rows.
+ * <p>
+ * Only the sorted indices are stored. All pattern vectors read their values from one shared
+ * array of ones, which is never handed out: getData() returns a new array of ones on every
+ * call, so writing to it can't affect any vector. Code that knows it has a pattern vector
+ * should use 1 instead of calling getData(), as the constraint writers and SolverGLPK do.
+ * The dot product with a dense array is a plain sum of the addressed entries.
+ * SparseVector.freeze() returns a pattern vector whenever all values are 1, so constraints
+ * built from 0/1 rows store them as patterns automatically.
+ *
+ * @author planatsc
+ */
+public class PatternSparseVector extends FrozenSparseVector {
+
+    // read by the inherited methods, never returned; replaced by a longer array on demand
+    private static volatile double[] ones = new double[0];
+
+    /**
+     * Creates a pattern vector with ones at the given indices. The indices may be unsorted
+     * and contain duplicates.
+     *
+     * @param indices The indices of the entries equal to 1
+     * @param size    The actual size of the vector
+     */
+    public PatternSparseVector(int[] indices, int size) {
+        this(sortedUnique(indices, size), size, false);
+    }
+
+    /**
+     * Creates a pattern vector from the non-zero entries of v. Stored zeros are dropped.
+     *
+     * @param v The vector
+     * @throws IllegalArgumentException if an entry of v is neither 0 nor 1
+     */
+    public PatternSparseVector(SparseVector v) {
+        this(onesOf(v), v.getSize(), v.isLinevector());
+    }
+
+    private PatternSparseVector(int[] index, int size, boolean linevector) {
+        super(index, ones(index.length), index.length, size, linevector);
+    }
+
+    /**
+     * Returns the shared array of ones, with at least n entries.
+     */
+    private static double[] ones(int n) {
+        double[] current = ones;
+        if (current.length < n) {
+            current = new double[Math.max(n, 2 * current.length)];
+            Arrays.fill(current, 1.0);
+            ones = current;
+        }
+        return current;
+    }
+
+    /**
+     * Checks whether every stored entry of a vector is 0 or 1.
+     *
+     * @param v The vector to be checked
+     * @return <code>true</code> if the vector can be represented as pattern
+     */
+    public static boolean isPattern(SparseVector v) {
+        double[] data = v.getData();
+        for (int i = 0; i < v.getUsed(); i++)
+            if (data[i] != 1.0 && data[i] != 0.0) return false;
+        return true;
+    }
+
+    private static int[] onesOf(SparseVector v) {
+        int[] vindex = v.getIndex();
+        double[] vdata = v.getData();
+        int n = 0;
+        for (int i = 0; i < v.getUsed(); i++) {
+            if (vdata[i] == 1.0) n++;
+            else if (vdata[i] != 0.0)
+                throw new IllegalArgumentException("Entry " + vindex[i] + " is " + vdata[i] + ", not 1");
+        }
+        int[] index = new int[n];
+        n = 0;
+        for (int i = 0; i < v.getUsed(); i++)
+            if (vdata[i] == 1.0) index[n++] = vindex[i];
+        return index;
+    }
+
+    private static int[] sortedUnique(int[] indices, int size) {
+        int[] index = indices.clone();
+        Arrays.sort(index);
+        int n = 0;
+        for (int i = 0; i < index.length; i++) {
+            if (index[i] < 0 || index[i] >= size)
+                throw new IllegalArgumentException("Index " + index[i] + " out of range [0, " + size + ")");
+            if (n == 0 || index[n - 1] != index[i]) index[n++] = index[i];
+        }
+        return n == index.length ? index : Arrays.copyOf(index, n);
+    }
+
+    /**
+     * Returns a new array of ones, one per entry.
+     */
+    public double[] getData() {
+        double[] data = new double[getUsed()];
+        Arrays.fill(data, 1.0);
+        return data;
+    }
+
+    /**
+     * Creates a transposed pattern vector sharing the indices of this vector.
+     */
+    public Matrix transpose() {
+        return new PatternSparseVector(getIndex(), getSize(), !isLinevector());
+    }
+
+    /**
+     * Sums up the entries of x at the indices of this vector.
+     */
+    public double dot(double[] x) {
+        return VectorKernels.sum(getIndex(), getUsed(), x);
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.LinearOperator;
+
+/**
+ * An operator multiplied by a scalar, alpha * A.
+ *
+ * @author planatsc
+ */
+public class ScaledOperator implements LinearOperator {
+
+    final double alpha;
+    final LinearOperator op;
+
+    public ScaledOperator(double alpha, LinearOperator op) {
+        this.alpha = alpha;
+        this.op = op;
+    }
+
+    public double getFactor() {
+        return alpha;
+    }
+
+    public LinearOperator getOperator() {
+        return op;
+    }
+
+    public int getRowNum() {
+        return op.getRowNum();
+    }
+
+    public int getColNum() {
+        return op.getColNum();
+    }
+
+    public void apply(double[] x, double[] y) {
+        op.apply(x, y);
+        VectorKernels.scale(y, op.getRowNum(), alpha);
+    }
+
+    public void applyTranspose(double[] x, double[] y) {
+        op.applyTranspose(x, y);
+        VectorKernels.scale(y, op.getColNum(), alpha);
+    }
+
+}
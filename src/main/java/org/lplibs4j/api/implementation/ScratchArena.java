@@ -0,0 +1,120 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread pool of reusable scratch buffers for temporaries of vector and matrix
+ * operations.
+ * <p>
+ * Buffers are handed out in stack order: {@link #mark()} remembers the current top,
+ * {@link #dense(int)} and {@link #sparse(int)} hand out the next buffer, and
+ * {@link #release(int)} returns every buffer handed out since the mark. A buffer is kept
+ * for the next request at the same stack position and only reallocated when it is too
+ * small, so once the buffers have grown to the problem size repeated operations allocate
+ * nothing. Typical use:
+ * <pre>
+ * ScratchArena arena = ScratchArena.get();
+ * int mark = arena.mark();
+ * try {
+ *     double[] y = arena.dense(n);
+ *     ...
+ * } finally {
+ *     arena.release(mark);
+ * }
+ * </pre>
+ * Buffers must not be used after their release and must not be passed to other threads.
+ *
+ * @author planatsc
+ */
+public final class ScratchArena {
+
+    private static final ThreadLocal<ScratchArena> LOCAL = new ThreadLocal<ScratchArena>() {
+        @Override
+        protected ScratchArena initialValue() {
+            return new ScratchArena();
+        }
+    };
+
+    private Object[] buffers = new Object[8];
+    private int top;
+
+    private ScratchArena() {
+    }
+
+    /**
+     * Returns the arena of the current thread.
+     *
+     * @return the arena of the current thread
+     */
+    public static ScratchArena get() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Remembers the current stack position.
+     *
+     * @return the mark to be passed to release
+     */
+    public int mark() {
+        return top;
+    }
+
+    /**
+     * Returns all buffers handed out since the mark.
+     *
+     * @param mark A value returned by mark
+     */
+    public void release(int mark) {
+        if (mark < 0 || mark > top)
+            throw new IllegalArgumentException("Invalid mark " + mark + ", top is " + top);
+        top = mark;
+    }
+
+    /**
+     * Hands out a dense buffer whose first n entries are zero. The buffer may be longer
+     * than n.
+     *
+     * @param n The number of entries needed
+     * @return The buffer
+     */
+    public double[] dense(int n) {
+        Object buffer = next();
+        double[] result;
+        if (buffer instanceof double[] && ((double[]) buffer).length >= n) {
+            result = (double[]) buffer;
+            Arrays.fill(result, 0, n, 0.0);
+        } else {
+            result = new double[n];
+            buffers[top - 1] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Hands out an empty SparseVector of the given size. Its arrays keep the capacity of
+     * earlier uses.
+     *
+     * @param size The size of the vector
+     * @return The buffer
+     */
+    public SparseVector sparse(int size) {
+        Object buffer = next();
+        SparseVector result;
+        if (buffer instanceof SparseVector) {
+            result = (SparseVector) buffer;
+            result.used = 0;
+            result.size = size;
+            result.linevector = false;
+        } else {
+            result = new SparseVector(size, 4);
+            buffers[top - 1] = result;
+        }
+        return result;
+    }
+
+    private Object next() {
+        if (top == buffers.length) buffers = Arrays.copyOf(buffers, top << 1);
+        return buffers[top++];
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Products of two sparse matrices, row by row after Gustavson.
+ * <p>
+ * Row i of C = A * B is the sum of the rows k of B scaled by the entries a_ik, so only
+ * products of non-zero entries are ever formed: the work is proportional to the number
+ * of multiplications, not to rows times columns. The product is computed in two phases:
+ * <ol>
+ * <li>symbolic: the number of non-zero entries of every row of C is counted with a
+ * marker array, which sizes the arrays of C exactly,</li>
+ * <li>numeric: every row is accumulated in a dense buffer, its touched columns are
+ * sorted and written to their final place in C.</li>
+ * </ol>
+ * Both phases run in parallel over blocks of rows with about the same number of
+ * multiplications, every block owns its marker and buffer. Entries which cancel out to
+ * zero are removed at the end.
+ *
+ * @author planatsc
+ */
+public final class SpGEMM {
+
+    private SpGEMM() {
+    }
+
+    /**
+     * Calculates a * b on the shared pool of ParallelSpMV.
+     *
+     * @param a The left matrix
+     * @param b The right matrix
+     * @return The product in compressed row format
+     */
+    public static CsrMatrix multiply(CsrMatrix a, CsrMatrix b) {
+        return multiply(a, b, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Calculates a * b on the given pool.
+     *
+     * @param a    The left matrix
+     * @param b    The right matrix
+     * @param pool The pool executing the row blocks
+     * @return The product in compressed row format
+     */
+    public static CsrMatrix multiply(final CsrMatrix a, final CsrMatrix b, ForkJoinPool pool) {
+        if (a.colnum != b.rownum)
+            throw new IllegalArgumentException("Matrix dimensions must agree " + a.rownum + "x" + a.colnum + " " + b.rownum + "x" + b.colnum);
+        final int rows = a.rownum;
+        final int cols = b.colnum;
+
+        // the number of multiplications of every row balances the blocks
+        long[] flops = new long[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            long f = 0;
+            for (int ka = a.rowptr[i]; ka < a.rowptr[i + 1]; ka++) {
+                int k = a.colind[ka];
+                f += b.rowptr[k + 1] - b.rowptr[k];
+            }
+            flops[i + 1] = flops[i] + f;
+        }
+        int blocks = ParallelSpMV.blocks(pool, (int) Math.min(flops[rows], Integer.MAX_VALUE), ParallelSpMV.BLOCKS_PER_THREAD);
+        int[] bounds = partition(flops, rows, blocks);
+
+        final int[] cptr = new int[rows + 1];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] marker = new int[cols];
+                Arrays.fill(marker, -1);
+                for (int i = from; i < to; i++) {
+                    int count = 0;
+                    for (int ka = a.rowptr[i]; ka < a.rowptr[i + 1]; ka++) {
+                        int k = a.colind[ka];
+                        for (int kb = b.rowptr[k]; kb < b.rowptr[k + 1]; kb++) {
+                            int j = b.colind[kb];
+                            if (marker[j] != i) {
+                                marker[j] = i;
+                                count++;
+                            }
+                        }
+                    }
+                    cptr[i + 1] = count;
+                }
+            }
+        });
+        for (int i = 0; i < rows; i++) {
+            if (cptr[i + 1] > Integer.MAX_VALUE - cptr[i])
+                throw new IllegalArgumentException("The product has more than " + Integer.MAX_VALUE + " non-zero entries");
+            cptr[i + 1] += cptr[i];
+        }
+
+        final int[] cind = new int[cptr[rows]];
+        final double[] cval = new double[cptr[rows]];
+        final int[] zeros = new int[bounds.length - 1];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] marker = new int[cols];
+                Arrays.fill(marker, -1);
+                double[] acc = new double[cols];
+                for (int i = from; i < to; i++) {
+                    int start = cptr[i];
+                    int n = 0;
+                    for (int ka = a.rowptr[i]; ka < a.rowptr[i + 1]; ka++) {
+                        int k = a.colind[ka];
+                        double aik = a.values[ka];
+                        for (int kb = b.rowptr[k]; kb < b.rowptr[k + 1]; kb++) {
+                            int j = b.colind[kb];
+                            if (marker[j] != i) {
+                                marker[j] = i;
+                                cind[start + n++] = j;
+                                acc[j] = aik * b.values[kb];
+                            } else {
+                                acc[j] += aik * b.values[kb];
+                            }
+                        }
+                    }
+                    Arrays.sort(cind, start, start + n);
+                    for (int t = start; t < start + n; t++) {
+                        double value = acc[cind[t]];
+                        cval[t] = value;
+                        if (value == 0) zeros[part]++;
+                    }
+                }
+            }
+        });
+
+        int nzeros = 0;
+        for (int z : zeros) nzeros += z;
+        if (nzeros == 0) return new CsrMatrix(rows, cols, cptr, cind, cval);
+        return dropZeros(rows, cols, cptr, cind, cval, nzeros);
+    }
+
+    /**
+     * Removes the entries which cancelled out to zero, in place.
+     */
+    private static CsrMatrix dropZeros(int rows, int cols, int[] cptr, int[] cind, double[] cval, int nzeros) {
+        int nnz = 0;
+        int start = 0;
+        for (int i = 0; i < rows; i++) {
+            int end = cptr[i + 1];
+            for (int k = start; k < end; k++) {
+                if (cval[k] != 0) {
+                    cind[nnz] = cind[k];
+                    cval[nnz] = cval[k];
+                    nnz++;
+                }
+            }
+            start = end;
+            cptr[i + 1] = nnz;
+        }
+        return new CsrMatrix(rows, cols, cptr, Arrays.copyOf(cind, nnz), Arrays.copyOf(cval, nnz));
+    }
+
+    /**
+     * Splits the rows into at most parts ranges of about the same number of
+     * multiplications, see ParallelSpMV.partition.
+     */
+    static int[] partition(long[] offsets, int n, int parts) {
+        parts = Math.max(1, Math.min(parts, n));
+        int[] bounds = new int[parts + 1];
+        long total = offsets[n];
+        int count = 1;
+        for (int p = 1; p < parts; p++) {
+            long target = total / parts * p + total % parts * p / parts;
+            int pos = Arrays.binarySearch(offsets, bounds[count - 1], n + 1, target);
+            if (pos < 0) pos = -pos - 1;
+            if (pos > bounds[count - 1] && pos < n) bounds[count++] = pos;
+        }
+        bounds[count] = n;
+        return count == parts ? bounds : Arrays.copyOf(bounds, count + 1);
+    }
+
+}
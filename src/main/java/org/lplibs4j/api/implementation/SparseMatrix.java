@@ -1,11 +1,12 @@
 package org.lplibs4j.api.implementation;
 
+import org.lplibs4j.api.util.LinearOperator;
 import org.lplibs4j.api.util.Matrix;
 import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.StreamTokenizer;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -56,39 +57,21 @@ public class SparseMatrix implements Matrix {
     }
 
 
+    /**
+     * Reads a matrix in the coordinate format of Matrix Market.
+     * @param filename The name of the file
+     * @return The matrix, or null if the file can't be read
+     * @deprecated Use MatrixMarketReader.read, which reports errors and keeps the matrix in
+     * compressed row format
+     */
+    @Deprecated
     public static SparseMatrix readMTX(String filename) {
         try {
-            FileReader fr = new FileReader(filename);
-            //BufferedReader br = new BufferedReader(fr);
-            StreamTokenizer st = new StreamTokenizer(new BufferedReader(fr));
-            st.commentChar('%');
-            st.nextToken();
-            int nrow = (int) st.nval;
-            st.nextToken();
-            int ncol = (int) st.nval;
-            st.nextToken();
-//			int nonzero = (int) st.nval;
-            SparseMatrix result = new SparseMatrix(nrow,ncol);
-            int token = st.nextToken();
-            while (token != StreamTokenizer.TT_EOF) {
-                int i = (int)st.nval;
-                st.nextToken();
-                int j = (int)st.nval;
-                st.nextToken();
-                double value = st.nval;
-                result.set(i, j, value);
-                token = st.nextToken();
-                //System.out.println(i + " " + j+ " " + value);
-            }
-            return result;
-        } catch (Exception e) {
+            return MatrixMarketReader.read(filename).toSparseMatrix();
+        } catch (IOException e) {
             e.printStackTrace();
-
             return null;
         }
-
-
-
     }
 
     /**
@@ -156,7 +139,11 @@ public class SparseMatrix implements Matrix {
     }
 
     /**
-     * Sets a single entry of the matrix to the given value
+     * Sets a single entry of the matrix to the given value. The entry is inserted into its
+     * row by SparseVector.set, which shifts the following entries: filling a row in
+     * increasing column order appends, but k entries in arbitrary order cost O(k^2). To build
+     * a matrix from scattered entries use a CooMatrixBuilder or a DokMatrix and convert the
+     * result, or build whole rows with a SparseVectorBuilder and store them with setRow.
      * @param row Specifies the row of the altered element
      * @param column Specifies the column of the altered element
      * @param value The new value of the entry
@@ -167,6 +154,19 @@ public class SparseMatrix implements Matrix {
         mrow.set(column, value);
     }
 
+    /**
+     * Replaces a complete row of the matrix. The vector is stored without copying it.
+     * @param row The row to be replaced
+     * @param vector The new content of the row, its size must match the number of columns
+     */
+    public void setRow(int row, SparseVector vector) {
+        if (vector.getUsed() == 0) {
+            vvectorlist.remove(row);
+        } else {
+            vvectorlist.put(row, vector);
+        }
+    }
+
     /**
      * Initializes a new row in the matrix, if the row didn't contain non-zero elements before
      * @param row The row that now contains new data
@@ -197,28 +197,21 @@ public class SparseMatrix implements Matrix {
 	 * @see org.lplibs4j.api.util.Matrix#transpose()
 	 */
     /**
-     * Calculates the transpose matrix
+     * Calculates the transpose matrix by a counting sort in O(nnz), see SparseTranspose
      * @return The transposed matrix
      */
     public Matrix transpose() {
-        SparseMatrix trans = new SparseMatrix(this.getColNum(), this.getRowNum());
-
-//		ListIterator<SparseVector> rowIterator = this.vvectorlist.listIterator();
-        Iterator<Entry<Integer, SparseVector>> entryiterator = this.vvectorlist.entrySet().iterator();
-
-        while (entryiterator.hasNext()) {
-            Entry<Integer, SparseVector> e = entryiterator.next();
-            int i = e.getKey();
-            SparseVector row = e.getValue();
-            int[] indices = row.getIndex();
-            double[] data = row.getData();
-            for (int j = 0; j < row.getUsed(); j++) {
-                trans.set(indices[j], i, data[j]);
-            }
-
-        }
+        return SparseTranspose.transpose(this);
+    }
 
-        return trans;
+    /**
+     * Reorders rows and columns in O(nnz), see CsrMatrix.permute
+     * @param rowperm The new order of the rows, row k of the result is row rowperm[k], or null
+     * @param colperm The new order of the columns, or null
+     * @return The permuted matrix
+     */
+    public SparseMatrix permute(int[] rowperm, int[] colperm) {
+        return new CsrMatrix(this).permute(rowperm, colperm).toSparseMatrix();
     }
 
 	/* (non-Javadoc)
@@ -235,36 +228,14 @@ public class SparseMatrix implements Matrix {
         if (multiplier instanceof SparseMatrix)  {
             //System.out.println("Multiplier is a SparseMatrix");
 
-            SparseMatrix transmultiplier = (SparseMatrix)  multiplier.transpose();
-            if (this.getSparsity() < 0.2) {
-
-                result = new SparseMatrix(this.getRowNum(), multiplier.getColNum());
-
-                Iterator<Entry<Integer, SparseVector>> entryiterator = this.vvectorlist.entrySet().iterator();
-
-                while (entryiterator.hasNext()) {
-                    Entry<Integer, SparseVector> e = entryiterator.next();
-                    int i = e.getKey();
-                    SparseVector row = e.getValue();
-
-                    Iterator<Entry<Integer, SparseVector>> innerentryiterator = transmultiplier.vvectorlist.entrySet().iterator();
-
-                    while (innerentryiterator.hasNext()) {
-                        Entry<Integer, SparseVector> ie = innerentryiterator.next();
-                        int j = ie.getKey();
-                        SparseVector col =  ie.getValue();
-                        result.set(i, j, row.dot(col));
-                    }
+            if (this.colnum != multiplier.getRowNum())
+                throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+            result = SpGEMM.multiply(new CsrMatrix(this), new CsrMatrix((SparseMatrix) multiplier)).toSparseMatrix();
 
-
-                }
-            } else {
-                //System.out.println("Deflating sparse matrices");
-                NonSparseMatrix m1 = this.getNonSparseMatrix();
-                NonSparseMatrix m2 = ((SparseMatrix) multiplier).getNonSparseMatrix();
-                result = m1.times(m2);
-
-            }
+        } else if (multiplier instanceof NonSparseMatrix) {
+            if (this.colnum != multiplier.getRowNum())
+                throw new IllegalArgumentException("Matrix dimensions must agree " + rownum + "x" + colnum + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+            result = new CsrMatrix(this).timesDense((NonSparseMatrix) multiplier);
 
         } else if (multiplier instanceof SparseVector) {
             SparseVector multiplierv = (SparseVector) multiplier;
@@ -274,7 +245,7 @@ public class SparseMatrix implements Matrix {
                 //result = vvector[0].times(multiplierv);
                 result = this.vvectorlist.get(0).times(multiplierv);
             } else {
-                result = new SparseVector(this.getRowNum(),4);
+                SparseVectorBuilder resultv = new SparseVectorBuilder(this.getRowNum(), Math.max(vvectorlist.size(), 4));
 
                 Iterator<Entry<Integer, SparseVector>> entryiterator = this.vvectorlist.entrySet().iterator();
 
@@ -282,8 +253,9 @@ public class SparseMatrix implements Matrix {
                     Entry<Integer, SparseVector> e = entryiterator.next();
                     int i = e.getKey();
                     SparseVector row = e.getValue();
-                    result.set(i, 0,  row.dot(multiplierv));
+                    resultv.append(i, row.dot(multiplierv));
                 }
+                result = resultv.build();
 
 
             }
@@ -295,6 +267,117 @@ public class SparseMatrix implements Matrix {
 
     }
 
+    /**
+     * Calculates y = this * x without allocating.
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void times(double[] x, double[] y) {
+        Arrays.fill(y, 0, rownum, 0.0);
+        for (Entry<Integer, SparseVector> e : vvectorlist.entrySet()) {
+            y[e.getKey()] = e.getValue().dot(x);
+        }
+    }
+
+    /**
+     * Calculates y = this^T * x without allocating and without building the transpose.
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimes(double[] x, double[] y) {
+        Arrays.fill(y, 0, colnum, 0.0);
+        for (Entry<Integer, SparseVector> e : vvectorlist.entrySet()) {
+            double xi = x[e.getKey()];
+            if (xi != 0) e.getValue().addTo(y, xi);
+        }
+    }
+
+    /**
+     * Calculates y = this * x with several threads, see ParallelSpMV.
+     * @param x The dense vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void timesParallel(double[] x, double[] y) {
+        ParallelSpMV.times(this, x, y);
+    }
+
+    /**
+     * Calculates y = this^T * x with several threads and without building the transpose,
+     * see ParallelSpMV.
+     * @param x The dense vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void transposeTimesParallel(double[] x, double[] y) {
+        ParallelSpMV.transposeTimes(this, x, y);
+    }
+
+    /**
+     * Calculates y = a * x for any matrix without allocating.
+     * @param a The matrix
+     * @param x The dense vector, its length must be at least the number of columns of a
+     * @param y The result, its length must be at least the number of rows of a
+     */
+    public static void multiply(Matrix a, double[] x, double[] y) {
+        if (a instanceof SparseMatrix) {
+            ((SparseMatrix) a).times(x, y);
+        } else if (a instanceof NonSparseMatrix) {
+            ((NonSparseMatrix) a).times(x, y);
+        } else if (a instanceof SymmetricSparseMatrix) {
+            ((SymmetricSparseMatrix) a).times(x, y);
+        } else if (a instanceof CsrMatrix) {
+            ((CsrMatrix) a).times(x, y);
+        } else if (a instanceof CscMatrix) {
+            ((CscMatrix) a).times(x, y);
+        } else {
+            for (int i = 0; i < a.getRowNum(); i++) {
+                double sum = 0;
+                for (int j = 0; j < a.getColNum(); j++)
+                    sum += a.get(i, j) * x[j];
+                y[i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Calculates the quadratic form x^T * a * x, using a scratch buffer of the arena for the
+     * product a * x. A SymmetricSparseMatrix needs no buffer, see SymmetricSparseMatrix.quadForm.
+     * @param a The square matrix
+     * @param x The dense vector
+     * @param arena The arena providing the scratch buffer
+     * @return x^T * a * x
+     */
+    public static double quadraticForm(Matrix a, double[] x, ScratchArena arena) {
+        if (a instanceof SymmetricSparseMatrix) return ((SymmetricSparseMatrix) a).quadForm(x);
+        int mark = arena.mark();
+        try {
+            double[] ax = arena.dense(a.getRowNum());
+            multiply(a, x, ax);
+            return VectorKernels.dot(x, 0, ax, 0, a.getRowNum());
+        } finally {
+            arena.release(mark);
+        }
+    }
+
+    /**
+     * Calculates the quadratic form x^T * a * x of an operator, using a scratch buffer of the
+     * arena for the product a * x.
+     * @param a The square operator
+     * @param x The dense vector
+     * @param arena The arena providing the scratch buffer
+     * @return x^T * a * x
+     */
+    public static double quadraticForm(LinearOperator a, double[] x, ScratchArena arena) {
+        if (a instanceof MatrixOperator) return quadraticForm(((MatrixOperator) a).getMatrix(), x, arena);
+        int mark = arena.mark();
+        try {
+            double[] ax = arena.dense(a.getRowNum());
+            a.apply(x, ax);
+            return VectorKernels.dot(x, 0, ax, 0, a.getRowNum());
+        } finally {
+            arena.release(mark);
+        }
+    }
+
     /**
      * Adds a matrix to the matrix
      * @param m The matrix which should be added to this matrix
@@ -313,7 +396,7 @@ public class SparseMatrix implements Matrix {
                 SparseVector row = e.getValue();
                 SparseVector thisrow = result.vvectorlist.get(i);
                 if (thisrow != null) {
-                    thisrow.add(row);
+                    result.vvectorlist.put(i, thisrow.add(row));
                 } else {
                     result.vvectorlist.put(i, row.clone());
                 }
@@ -396,9 +479,11 @@ public class SparseMatrix implements Matrix {
                 SparseVector row = e.getValue();
                 int[] indices = row.getIndex();
                 double[] data = row.getData();
+                SparseVectorBuilder subrow = new SparseVectorBuilder(to-from, row.getUsed());
                 for (int j = 0; j < row.getUsed(); j++)
                     if (from <= indices[j] && indices[j] < to)
-                        result.set(i-from, j-from, data[j]);
+                        subrow.append(indices[j]-from, data[j]);
+                result.setRow(i-from, subrow.build());
             }
 
         }
@@ -519,20 +604,60 @@ public class SparseMatrix implements Matrix {
         return new SparseMatrixNonZeroElementIterator(this);
     }
 
+    /**
+     * Visits the non-zero entries row by row, in the order of the iterator, with one loop
+     * over the arrays of every row vector.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (Entry<Integer, SparseVector> e : vvectorlist.entrySet()) {
+            int i = e.getKey();
+            SparseVector row = e.getValue();
+            int[] index = row.getIndex();
+            double[] data = row.getData();
+            int used = row.getUsed();
+            for (int k = 0; k < used; k++)
+                if (data[k] != 0) visitor.visit(i, index[k], data[k]);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (Entry<Integer, SparseVector> e : vvectorlist.entrySet()) {
+            int i = e.getKey();
+            SparseVector row = e.getValue();
+            int[] index = row.getIndex();
+            double[] data = row.getData();
+            int used = row.getUsed();
+            for (int k = 0; k < used; k++) {
+                if (data[k] == 0) continue;
+                if (count == capacity) throw NonZeroCopy.full(capacity);
+                rows[count] = i;
+                cols[count] = index[k];
+                vals[count++] = data[k];
+            }
+        }
+        return count;
+    }
+
     public int getNumberOfNonZeroRows() {
         return vvectorlist.size();
     }
 
     public NonSparseMatrix getNonSparseMatrix() {
-        double[][] nonsparse =  new double[this.getRowNum()][this.getColNum()];
+        NonSparseMatrix nonsparse = new NonSparseMatrix(this.getRowNum(), this.getColNum());
         Iterator<Entry<Integer, SparseVector>> entryiterator = this.vvectorlist.entrySet().iterator();
         while(entryiterator.hasNext()) {
             Entry<Integer, SparseVector> e = entryiterator.next();
-            nonsparse[e.getKey()] =e.getValue().get();
+            SparseVector row = e.getValue();
+            int offset = e.getKey() * colnum;
+            int[] index = row.getIndex();
+            double[] data = row.getData();
+            for (int k = 0; k < row.getUsed(); k++)
+                nonsparse.data[offset + index[k]] = data[k];
         }
 
-        return new NonSparseMatrix(nonsparse);
+        return nonsparse;
     }
 
 }
-
@@ -0,0 +1,285 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary container for sparse matrices and vectors, mapped into memory for reading.
+ * <p>
+ * A file starts with a header of 64 bytes, all numbers little-endian:
+ * <pre>
+ *  0  int   magic "LPSM"
+ *  4  int   version, currently 1
+ *  8  int   kind, 1 for a matrix in compressed row format, 2 for a vector
+ * 12  int   flags, bit 0 marks a line vector
+ * 16  int   rows (the size of a vector)
+ * 20  int   columns
+ * 24  long  number of non-zero entries
+ * 32  long  offset of the row pointers, rows + 1 ints (0 for a vector)
+ * 40  long  offset of the column indices (vector indices), nnz ints
+ * 48  long  offset of the values, nnz doubles
+ * 56  long  reserved
+ * </pre>
+ * Every section starts at a multiple of 64 bytes, so it can be mapped and viewed as
+ * IntBuffer or DoubleBuffer directly. Reading maps the sections read-only into an
+ * OffHeapArena and checks the header and the last row pointer only, so opening a file
+ * costs the same for any size and afterwards only the pages actually touched are loaded.
+ * Readers reject versions newer than their own.
+ *
+ * @author planatsc
+ */
+public final class SparseMatrixFile {
+
+    /**
+     * The first four bytes of every file, "LPSM" read as little-endian int.
+     */
+    public static final int MAGIC = 0x4D53504C;
+    public static final int VERSION = 1;
+    static final int KIND_MATRIX = 1;
+    static final int KIND_VECTOR = 2;
+    static final int FLAG_LINEVECTOR = 1;
+    static final int HEADER_BYTES = 64;
+    static final int ALIGNMENT = 64;
+
+    private SparseMatrixFile() {
+    }
+
+    /**
+     * Writes a matrix or vector. Vectors (SparseVector, OffHeapSparseVector and
+     * CompressedSparseVector) are written as vectors, everything else in compressed row
+     * format.
+     *
+     * @param file The file to be written, an existing file is replaced
+     * @param m    The matrix or vector
+     * @throws IOException if the file can't be written
+     */
+    public static void write(File file, Matrix m) throws IOException {
+        if (m instanceof SparseVector) {
+            writeVector(file, (SparseVector) m);
+        } else if (m instanceof OffHeapSparseVector) {
+            writeVector(file, ((OffHeapSparseVector) m).toSparseVector());
+        } else if (m instanceof CompressedSparseVector) {
+            writeVector(file, ((CompressedSparseVector) m).toSparseVector());
+        } else if (m instanceof OffHeapSparseMatrix) {
+            writeMatrix(file, new CsrMatrix(((OffHeapSparseMatrix) m).toSparseMatrix()));
+        } else {
+            writeMatrix(file, CsrMatrix.toCsr(m));
+        }
+    }
+
+    private static void writeMatrix(File file, CsrMatrix m) throws IOException {
+        int nnz = m.getNumberOfNonZeroElements();
+        long rowptr = HEADER_BYTES;
+        long colind = align(rowptr + 4L * (m.rownum + 1));
+        long values = align(colind + 4L * nnz);
+        Output out = new Output(file);
+        try {
+            out.header(KIND_MATRIX, 0, m.rownum, m.colnum, nnz, rowptr, colind, values);
+            out.ints(m.rowptr, m.rownum + 1);
+            out.pad(colind);
+            out.ints(m.colind, nnz);
+            out.pad(values);
+            out.doubles(m.values, nnz);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeVector(File file, SparseVector v) throws IOException {
+        int used = v.getUsed();
+        long index = HEADER_BYTES;
+        long data = align(index + 4L * used);
+        Output out = new Output(file);
+        try {
+            out.header(KIND_VECTOR, v.linevector ? FLAG_LINEVECTOR : 0, v.getSize(), 1, used, 0, index, data);
+            out.ints(v.getIndex(), used);
+            out.pad(data);
+            out.doubles(v.getData(), used);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Maps a file of either kind.
+     *
+     * @param file  The file
+     * @param arena The owner of the mapped buffers
+     * @return an OffHeapSparseMatrix or an OffHeapSparseVector
+     * @throws IOException if the file can't be read or isn't a valid container
+     */
+    public static Matrix map(File file, OffHeapArena arena) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            Header h = readHeader(channel);
+            return h.kind == KIND_MATRIX ? mapMatrix(channel, h, arena) : mapVector(channel, h, arena);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps a matrix. The matrix is read-only, its entries stay in the file.
+     *
+     * @param file  The file
+     * @param arena The owner of the mapped buffers
+     * @return The mapped matrix
+     * @throws IOException if the file can't be read or doesn't hold a matrix
+     */
+    public static OffHeapSparseMatrix mapMatrix(File file, OffHeapArena arena) throws IOException {
+        Matrix m = map(file, arena);
+        if (!(m instanceof OffHeapSparseMatrix)) throw new IOException(file + " holds a vector, not a matrix");
+        return (OffHeapSparseMatrix) m;
+    }
+
+    /**
+     * Maps a vector. The vector is read-only, its entries stay in the file.
+     *
+     * @param file  The file
+     * @param arena The owner of the mapped buffers
+     * @return The mapped vector
+     * @throws IOException if the file can't be read or doesn't hold a vector
+     */
+    public static OffHeapSparseVector mapVector(File file, OffHeapArena arena) throws IOException {
+        Matrix m = map(file, arena);
+        if (!(m instanceof OffHeapSparseVector)) throw new IOException(file + " holds a matrix, not a vector");
+        return (OffHeapSparseVector) m;
+    }
+
+    private static OffHeapSparseMatrix mapMatrix(FileChannel channel, Header h, OffHeapArena arena) throws IOException {
+        IntBuffer rowptr = arena.map(channel, h.rowptr, 4L * (h.rows + 1), ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        if (rowptr.get(0) != 0 || rowptr.get(h.rows) != h.nnz)
+            throw new IOException("Corrupt row pointers, expected 0 and " + h.nnz + " but found " + rowptr.get(0) + " and " + rowptr.get(h.rows));
+        IntBuffer colind = arena.map(channel, h.index, 4L * h.nnz, ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        DoubleBuffer values = arena.map(channel, h.values, 8L * h.nnz, ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        return new OffHeapSparseMatrix(arena, h.rows, h.cols, rowptr, colind, values);
+    }
+
+    private static OffHeapSparseVector mapVector(FileChannel channel, Header h, OffHeapArena arena) throws IOException {
+        IntBuffer index = arena.map(channel, h.index, 4L * h.nnz, ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        DoubleBuffer data = arena.map(channel, h.values, 8L * h.nnz, ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        OffHeapSparseVector result = new OffHeapSparseVector(arena, index, data, (int) h.nnz, h.rows);
+        result.linevector = (h.flags & FLAG_LINEVECTOR) != 0;
+        return result;
+    }
+
+    /**
+     * The parsed header of a file.
+     */
+    private static final class Header {
+        int kind;
+        int flags;
+        int rows;
+        int cols;
+        long nnz;
+        long rowptr;
+        long index;
+        long values;
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) throw new IOException("File too short for a header: " + size + " bytes");
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a sparse matrix file, wrong magic number");
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported version " + version + ", supported up to " + VERSION);
+
+        Header h = new Header();
+        h.kind = buffer.getInt(8);
+        h.flags = buffer.getInt(12);
+        h.rows = buffer.getInt(16);
+        h.cols = buffer.getInt(20);
+        h.nnz = buffer.getLong(24);
+        h.rowptr = buffer.getLong(32);
+        h.index = buffer.getLong(40);
+        h.values = buffer.getLong(48);
+        if (h.kind != KIND_MATRIX && h.kind != KIND_VECTOR) throw new IOException("Unknown kind " + h.kind);
+        if (h.rows < 0 || h.cols < 0 || h.nnz < 0 || 8L * h.nnz > Integer.MAX_VALUE)
+            throw new IOException("Invalid dimensions " + h.rows + "x" + h.cols + " with " + h.nnz + " entries");
+        checkSection(h.index, 4L * h.nnz, size);
+        checkSection(h.values, 8L * h.nnz, size);
+        if (h.kind == KIND_MATRIX) checkSection(h.rowptr, 4L * (h.rows + 1), size);
+        return h;
+    }
+
+    private static void checkSection(long offset, long bytes, long size) throws IOException {
+        if (offset < HEADER_BYTES || offset % ALIGNMENT != 0 || offset + bytes > size)
+            throw new IOException("Invalid section at " + offset + " of " + bytes + " bytes in a file of " + size + " bytes");
+    }
+
+    /**
+     * Sequential writer through a staging buffer.
+     */
+    private static final class Output {
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long written;
+
+        Output(File file) throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            channel = raf.getChannel();
+        }
+
+        void header(int kind, int flags, int rows, int cols, long nnz, long rowptr, long index, long values) throws IOException {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(flags).putInt(rows).putInt(cols);
+            buffer.putLong(nnz).putLong(rowptr).putLong(index).putLong(values).putLong(0);
+        }
+
+        void ints(int[] a, int n) throws IOException {
+            for (int k = 0; k < n; k++) {
+                if (buffer.remaining() < 4) flush();
+                buffer.putInt(a[k]);
+            }
+        }
+
+        void doubles(double[] a, int n) throws IOException {
+            for (int k = 0; k < n; k++) {
+                if (buffer.remaining() < 8) flush();
+                buffer.putDouble(a[k]);
+            }
+        }
+
+        void pad(long offset) throws IOException {
+            while (written + buffer.position() < offset) {
+                if (!buffer.hasRemaining()) flush();
+                buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) written += channel.write(buffer);
+            buffer.clear();
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+}
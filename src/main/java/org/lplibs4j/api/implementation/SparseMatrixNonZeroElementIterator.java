@@ -4,6 +4,7 @@ import org.lplibs4j.api.util.NonZeroElementIterator;
 
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 
 public class SparseMatrixNonZeroElementIterator implements NonZeroElementIterator {
 
@@ -21,44 +22,33 @@ public class SparseMatrixNonZeroElementIterator implements NonZeroElementIterato
         super();
         this.m = m;
         entryiterator = m.vvectorlist.entrySet().iterator();
-
+        // one row iterator is reset for every row instead of allocating a new one
+        actualrowit = new SparseVectorNonZeroElementIterator(null);
     }
 
     public int getActuali() {
-        // TODO Auto-generated method stub
         return i;
     }
 
     public int getActualj() {
-        // TODO Auto-generated method stub
         return j;
     }
 
     public boolean hasNext() {
-        // TODO Auto-generated method stub
-        while (((actualrowit==null) || !actualrowit.hasNext()) && entryiterator.hasNext()) {
+        // skips rows without entries
+        while ((actualrowit.actualrow == null || !actualrowit.hasNext()) && entryiterator.hasNext()) {
             Entry<Integer, SparseVector> e = entryiterator.next();
             i = e.getKey();
-            actualrowit = new SparseVectorNonZeroElementIterator(e.getValue());
-        }
-        if (actualrowit.hasNext()) {
-            return true;
+            actualrowit.reset(e.getValue());
         }
-        return false;
+        return actualrowit.actualrow != null && actualrowit.hasNext();
     }
 
     public Double next() {
-        // TODO: crashes on empty line (??) -- on stirbt wenn ihm ne Zeile unterkommt die nix enthaelt..
-        if ((actualrowit==null)  || !actualrowit.hasNext()) {
-            Entry<Integer, SparseVector> e = entryiterator.next();
-            i = e.getKey();
-            actualrowit = new SparseVectorNonZeroElementIterator(e.getValue());
-        }
+        if (!hasNext()) throw new NoSuchElementException();
         double val = actualrowit.next();
         j = actualrowit.getActualj();
-        //System.out.println("VAL:" + val);
         return val;
-
     }
 
     public void remove() {
@@ -0,0 +1,183 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Transposes sparse matrices by a counting sort, in O(nnz + rows + cols).
+ * <p>
+ * The entries of every column are counted, the prefix sums of the counts give the first
+ * position of every column in the transpose, and the entries are scattered to their
+ * positions while the rows are visited in ascending order, so the indices within each
+ * row of the transpose come out sorted.
+ * <p>
+ * For large matrices the rows are split into blocks of about the same number of
+ * non-zero entries. Every block counts its own column occupancy, so after the prefix
+ * sums every block knows where its part of each column starts and all blocks scatter in
+ * parallel without synchronization. This costs one int per column and block.
+ *
+ * @author planatsc
+ */
+public final class SparseTranspose {
+
+    private SparseTranspose() {
+    }
+
+    /**
+     * Transposes a matrix in compressed row format on the shared pool of ParallelSpMV.
+     *
+     * @param a The matrix
+     * @return The transpose in compressed row format
+     */
+    public static CsrMatrix transpose(CsrMatrix a) {
+        return transpose(a.rownum, a.colnum, a.rowptr, a.colind, a.values, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Transposes a matrix in compressed row format on the given pool.
+     *
+     * @param a    The matrix
+     * @param pool The pool executing the row blocks
+     * @return The transpose in compressed row format
+     */
+    public static CsrMatrix transpose(CsrMatrix a, ForkJoinPool pool) {
+        return transpose(a.rownum, a.colnum, a.rowptr, a.colind, a.values, pool);
+    }
+
+    /**
+     * Builds the compressed row arrays of the transpose of the given compressed row
+     * arrays.
+     */
+    static CsrMatrix transpose(int rows, final int cols, final int[] rowptr, final int[] colind, final double[] values,
+                               ForkJoinPool pool) {
+        int nnz = rowptr[rows];
+        int[] bounds = ParallelSpMV.partition(rowptr, rows, ParallelSpMV.blocks(pool, nnz, 1));
+        final int[][] next = new int[bounds.length - 1][cols];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] count = next[part];
+                for (int k = rowptr[from]; k < rowptr[to]; k++)
+                    count[colind[k]]++;
+            }
+        });
+        int[] tptr = startPositions(next, cols);
+
+        final int[] tind = new int[nnz];
+        final double[] tval = new double[nnz];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] pos = next[part];
+                for (int i = from; i < to; i++) {
+                    for (int k = rowptr[i]; k < rowptr[i + 1]; k++) {
+                        int p = pos[colind[k]]++;
+                        tind[p] = i;
+                        tval[p] = values[k];
+                    }
+                }
+            }
+        });
+        return new CsrMatrix(cols, rows, tptr, tind, tval);
+    }
+
+    /**
+     * Transposes a SparseMatrix on the shared pool of ParallelSpMV.
+     *
+     * @param a The matrix
+     * @return The transpose
+     */
+    public static SparseMatrix transpose(SparseMatrix a) {
+        return transpose(a, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Transposes a SparseMatrix on the given pool. The rows of the transpose are allocated
+     * with their exact number of entries.
+     *
+     * @param a    The matrix
+     * @param pool The pool executing the row blocks
+     * @return The transpose
+     */
+    public static SparseMatrix transpose(SparseMatrix a, ForkJoinPool pool) {
+        final int rows = a.rownum;
+        final int cols = a.colnum;
+        // the rows in ascending order with the running count of their entries
+        final SparseVector[] byrow = new SparseVector[rows];
+        int[] offsets = new int[rows + 1];
+        for (Entry<Integer, SparseVector> e : a.vvectorlist.entrySet())
+            byrow[e.getKey()] = e.getValue();
+        for (int i = 0; i < rows; i++)
+            offsets[i + 1] = offsets[i] + (byrow[i] != null ? byrow[i].getUsed() : 0);
+
+        int[] bounds = ParallelSpMV.partition(offsets, rows, ParallelSpMV.blocks(pool, offsets[rows], 1));
+        final int[][] next = new int[bounds.length - 1][cols];
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] count = next[part];
+                for (int i = from; i < to; i++) {
+                    SparseVector row = byrow[i];
+                    if (row == null) continue;
+                    int[] index = row.getIndex();
+                    for (int k = 0; k < row.getUsed(); k++)
+                        count[index[k]]++;
+                }
+            }
+        });
+        // positions within the rows of the transpose, every row starts at 0
+        int[] tcount = startPositions(next, cols);
+        final int[][] tind = new int[cols][];
+        final double[][] tval = new double[cols][];
+        SparseMatrix trans = new SparseMatrix(cols, rows);
+        for (int j = 0; j < cols; j++) {
+            int n = tcount[j + 1] - tcount[j];
+            if (n == 0) continue;
+            for (int[] pos : next) pos[j] -= tcount[j];
+            tind[j] = new int[n];
+            tval[j] = new double[n];
+        }
+
+        ParallelSpMV.run(pool, bounds, new ParallelSpMV.Block() {
+            public void run(int part, int from, int to) {
+                int[] pos = next[part];
+                for (int i = from; i < to; i++) {
+                    SparseVector row = byrow[i];
+                    if (row == null) continue;
+                    int[] index = row.getIndex();
+                    double[] data = row.getData();
+                    for (int k = 0; k < row.getUsed(); k++) {
+                        int j = index[k];
+                        int p = pos[j]++;
+                        tind[j][p] = i;
+                        tval[j][p] = data[k];
+                    }
+                }
+            }
+        });
+        for (int j = 0; j < cols; j++) {
+            if (tind[j] != null)
+                trans.vvectorlist.put(j, new SparseVector(tind[j], tval[j], tind[j].length, rows));
+        }
+        return trans;
+    }
+
+    /**
+     * Turns the per block column counts into the positions where every block starts in
+     * every column.
+     *
+     * @return the pointers of the columns, cols + 1 entries
+     */
+    private static int[] startPositions(int[][] next, int cols) {
+        int[] ptr = new int[cols + 1];
+        int start = 0;
+        for (int j = 0; j < cols; j++) {
+            ptr[j] = start;
+            for (int[] count : next) {
+                int n = count[j];
+                count[j] = start;
+                start += n;
+            }
+        }
+        ptr[cols] = start;
+        return ptr;
+    }
+
+}
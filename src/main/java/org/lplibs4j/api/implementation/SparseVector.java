@@ -2,6 +2,7 @@ package org.lplibs4j.api.implementation;
 
 import org.lplibs4j.api.util.Matrix;
 import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -55,6 +56,10 @@ public class SparseVector implements Matrix {
         this.size = size;
     }
 
+    boolean isLinevector() {
+        return linevector;
+    }
+
     /**
      * Grows or shrinks the vector to the given size
      *
@@ -107,9 +112,6 @@ public class SparseVector implements Matrix {
     public SparseVector(int size, int nonzerosize) {
         data = new double[nonzerosize];
         index = new int[nonzerosize];
-        for (int i = 0; i < index.length; i++) {
-            index[i] = Integer.MAX_VALUE;
-        }
         used = 0;
         this.size = size;
         this.linevector = false;
@@ -123,11 +125,12 @@ public class SparseVector implements Matrix {
      */
 
     public SparseVector(SparseVector v) {
-        data = (double[]) v.data.clone();
-        index = (int[]) v.index.clone();
-        used = v.used;
-        size = v.size;
-        linevector = v.linevector;
+        double[] vdata = v.getData();
+        data = vdata.clone();
+        index = Arrays.copyOf(v.getIndex(), vdata.length);
+        used = v.getUsed();
+        size = v.getSize();
+        linevector = v.isLinevector();
     }
 
 
@@ -137,24 +140,32 @@ public class SparseVector implements Matrix {
      * @param x The entries of the new vector
      */
     public SparseVector(double[] x) {
-        data = new double[x.length];
-        index = new int[x.length];
+        this(x, x.length);
+    }
+
+    /**
+     * Creates a new vector with entries taken from the first n entries of the array
+     *
+     * @param x The entries of the new vector
+     * @param n The size of the new vector
+     */
+    SparseVector(double[] x, int n) {
+        int nonzeros = 0;
+        for (int i = 0; i < n; i++) {
+            if (x[i] != 0) nonzeros++;
+        }
+
+        data = new double[nonzeros];
+        index = new int[nonzeros];
         used = 0;
-        for (int i = 0; i < x.length; i++) {
+        for (int i = 0; i < n; i++) {
             if (x[i] != 0) {
                 data[used] = x[i];
                 index[used] = i;
                 used++;
             }
         }
-
-        double[] newdata = new double[used];
-        int[] newindex = new int[used];
-        System.arraycopy(data, 0, newdata, 0, used);
-        System.arraycopy(index, 0, newindex, 0, used);
-        data = newdata;
-        index = newindex;
-        size = x.length;
+        size = n;
         this.linevector = false;
 
     }
@@ -167,6 +178,110 @@ public class SparseVector implements Matrix {
         this.linevector = false;
     }
 
+    /**
+     * Wraps already sorted and duplicate free index and data arrays without copying them.
+     *
+     * @param index The sorted indices of the non-zero entries
+     * @param data  The values belonging to the indices
+     * @param used  The number of valid entries in both arrays
+     * @param size  The actual size of the vector
+     */
+    SparseVector(int[] index, double[] data, int used, int size) {
+        this.index = index;
+        this.data = data;
+        this.used = used;
+        this.size = size;
+        this.linevector = false;
+    }
+
+    /**
+     * Creates a new vector from index/value pairs in arbitrary order. Duplicate indices are
+     * resolved by the last occurrence, zero values are dropped. The pairs are sorted once,
+     * so this costs O(k log k) instead of the O(k^2) of k successive calls to set.
+     *
+     * @param idx  The indices of the entries
+     * @param val  The values of the entries
+     * @param size The actual size of the new vector
+     * @return A new vector with exactly sized arrays
+     */
+    public static SparseVector fromUnsorted(int[] idx, double[] val, int size) {
+        return fromUnsorted(idx, val, size, false);
+    }
+
+    /**
+     * Creates a new vector from index/value pairs in arbitrary order.
+     *
+     * @param idx           The indices of the entries
+     * @param val           The values of the entries
+     * @param size          The actual size of the new vector
+     * @param sumduplicates If true, values of duplicate indices are summed up, otherwise the
+     *                      last occurrence wins
+     * @return A new vector with exactly sized arrays
+     */
+    public static SparseVector fromUnsorted(int[] idx, double[] val, int size, boolean sumduplicates) {
+        if (idx.length != val.length)
+            throw new IllegalArgumentException("Index and value arrays must have the same length");
+        return compress(idx, val, idx.length, size, sumduplicates);
+    }
+
+    /**
+     * Sorts the first n index/value pairs, merges duplicates and drops zeros. The input
+     * arrays are left untouched.
+     */
+    static SparseVector compress(int[] idx, double[] val, int n, int size, boolean sumduplicates) {
+        boolean sorted = true;
+        for (int k = 0; k < n; k++) {
+            if (idx[k] < 0 || idx[k] >= size)
+                throw new IllegalArgumentException("Index " + idx[k] + " out of bounds for size " + size);
+            if (k > 0 && idx[k] <= idx[k - 1])
+                sorted = false;
+        }
+
+        int[] newindex = new int[n];
+        double[] newdata = new double[n];
+        int newused = 0;
+
+        if (sorted) {
+            for (int k = 0; k < n; k++) {
+                if (val[k] != 0) {
+                    newindex[newused] = idx[k];
+                    newdata[newused] = val[k];
+                    newused++;
+                }
+            }
+        } else {
+            // index in the upper, position in the lower half: sorting keeps duplicates in insertion order
+            long[] keys = new long[n];
+            for (int k = 0; k < n; k++) {
+                keys[k] = ((long) idx[k] << 32) | k;
+            }
+            Arrays.sort(keys);
+
+            int k = 0;
+            while (k < n) {
+                int ind = (int) (keys[k] >>> 32);
+                double value = val[(int) keys[k]];
+                k++;
+                while (k < n && (int) (keys[k] >>> 32) == ind) {
+                    double next = val[(int) keys[k]];
+                    value = sumduplicates ? value + next : next;
+                    k++;
+                }
+                if (value != 0) {
+                    newindex[newused] = ind;
+                    newdata[newused] = value;
+                    newused++;
+                }
+            }
+        }
+
+        if (newused != n) {
+            newindex = Arrays.copyOf(newindex, newused);
+            newdata = Arrays.copyOf(newdata, newused);
+        }
+        return new SparseVector(newindex, newdata, newused, size);
+    }
+
     /**
      * Copies the matrix c. Attention: this may only work if the matrix is a nx1 or a
      * 1xn matrix.
@@ -176,11 +291,12 @@ public class SparseVector implements Matrix {
     public SparseVector(Matrix c) {
         if (c instanceof SparseVector) {
             SparseVector v = (SparseVector) c;
-            data = (double[]) v.data.clone();
-            index = (int[]) v.index.clone();
-            used = v.used;
-            size = v.size;
-            linevector = v.linevector;
+            double[] vdata = v.getData();
+            data = vdata.clone();
+            index = Arrays.copyOf(v.getIndex(), vdata.length);
+            used = v.getUsed();
+            size = v.getSize();
+            linevector = v.isLinevector();
         } else {
             NonZeroElementIterator nze = c.getNonZeroElementIterator();
             while (nze.hasNext()) {
@@ -205,7 +321,7 @@ public class SparseVector implements Matrix {
 
     public String toString() {
         StringBuffer result = new StringBuffer();
-        for (int i = 0; i < index.length; i++) {
+        for (int i = 0; i < used; i++) {
             result.append("[" + index[i] + "," + data[i] + "]");
         }
         return result.toString();
@@ -222,10 +338,9 @@ public class SparseVector implements Matrix {
      */
     public int getIndex(int ind) {
 
-        int i = Arrays.binarySearch(index, ind);
+        int i = Arrays.binarySearch(index, 0, used, ind);
         if (i >= 0) {
-            if (i < used && index[i] == ind)
-                return i;
+            return i;
         } else {
             i = -i - 1;
         }
@@ -237,9 +352,6 @@ public class SparseVector implements Matrix {
         if (++used >= data.length) {
             int newLength = (data.length != 0) ? Math.min(data.length << 1, this.size) : 1;
             newIndex = new int[newLength];
-            for (int l = 0; l < newIndex.length; l++) {
-                newIndex[l] = Integer.MAX_VALUE;
-            }
             newData = new double[newLength];
             System.arraycopy(index, 0, newIndex, 0, i);
             System.arraycopy(data, 0, newData, 0, i);
@@ -290,7 +402,7 @@ public class SparseVector implements Matrix {
      * @return
      */
     public double get(int index) {
-        int in = Arrays.binarySearch(this.index, index);
+        int in = Arrays.binarySearch(this.index, 0, used, index);
 
         if (in >= 0)
             return data[in];
@@ -305,46 +417,28 @@ public class SparseVector implements Matrix {
 
     public double[] get() {
         double[] result = new double[size];
-        for (int i = 0; i < used; i++) {
-            result[index[i]] = data[i];
-        }
+        VectorKernels.scatter(index, data, used, result);
         return result;
     }
 
 
     /**
-     * Calculates the dot product (or scalar product, inner product) of two vectors
+     * Calculates the dot product (or scalar product, inner product) of two vectors. The
+     * intersection strategy adapts to the number of non-zeros of both vectors, see
+     * VectorKernels.dot.
      *
      * @param y The second vector for the dot product
      * @return The dot product of this and the vector y
      */
     public double dot(SparseVector y) {
-        double sum = 0.0;
-        int[] index1 = index;
-        int[] index2 = y.getIndex();
-        int c1 = 0;
-        int c2 = 0;
-        boolean oneahead = (index1[c1] >= index2[c2]);
-        int yused = y.getUsed();
-
-        while ((c1 < used) && (c2 < yused)) {
-            oneahead = (index1[c1] >= index2[c2]);
-            if (index1[c1] == index2[c2]) {
-                sum += data[c1] * y.data[c2];
-                c1++;
-            } else {
-                if (oneahead) {
-                    c2++;
-                } else {
-                    c1++;
-                }
-            }
-        }
-        return sum;
+        // a dense HybridVector would create its index array for every call
+        if (y instanceof HybridVector && ((HybridVector) y).isDense()) return y.dot(this);
+        return VectorKernels.dot(index, data, used, y.getIndex(), y.getData(), y.getUsed());
     }
 
     /**
-     * Adds a second vector to the vector
+     * Adds a second vector to the vector. Two SparseVectors are added in a single merge of
+     * their index arrays.
      *
      * @param y The second vector
      * @return this+y
@@ -352,25 +446,158 @@ public class SparseVector implements Matrix {
     // TODO: Does the else-case actually make any sense?
     public SparseVector plus(Matrix y) {
 
+        if (y instanceof SparseVector) {
+            SparseVector result = merge(this, 1.0, (SparseVector) y);
+            result.linevector = linevector;
+            return result;
+        }
+
         SparseVector result = new SparseVector(this);
+        for (int i = 0; i < this.getRowNum(); i++) {
+            for (int j = 0; j < this.getColNum(); j++) {
+                result.set(i, j, result.get(i, j) + y.get(i, j));
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Creates a new vector a + alpha * b with exactly sized arrays in a single merge.
+     */
+    static SparseVector merge(SparseVector a, double alpha, SparseVector b) {
+        if (a.getSize() != b.getSize())
+            throw new IllegalArgumentException("Vector sizes must agree " + a.getSize() + " " + b.getSize());
+        int[] newindex = new int[a.getUsed() + b.getUsed()];
+        double[] newdata = new double[a.getUsed() + b.getUsed()];
+        int newused = VectorKernels.axpy(a.getIndex(), a.getData(), a.getUsed(), alpha,
+                b.getIndex(), b.getData(), b.getUsed(), newindex, newdata);
+        if (newused != newindex.length) {
+            newindex = Arrays.copyOf(newindex, newused);
+            newdata = Arrays.copyOf(newdata, newused);
+        }
+        return new SparseVector(newindex, newdata, newused, a.getSize());
+    }
 
-        if (y instanceof SparseVector) {
-            SparseVector ys = (SparseVector) y;
-            int[] index2 = ys.getIndex();
-            for (int i = 0; i < ys.getUsed(); i++) {
-                result.set(index2[i], this.get(index2[i]) + ys.data[i]);
+    /**
+     * Adds a multiple of another vector to this vector in place: this = this + alpha * y.
+     * The merge result is written into the arrays of the scratch vector, which then swaps its
+     * arrays with this vector. Reusing the same scratch vector in a loop therefore produces no
+     * garbage once its arrays are large enough. Afterwards the scratch vector is empty.
+     *
+     * @param alpha   The factor for y
+     * @param y       The vector to be added
+     * @param scratch A vector owned by the caller which provides the merge buffers, it must
+     *                be neither this vector nor y
+     */
+    public void axpyInPlace(double alpha, SparseVector y, SparseVector scratch) {
+        if (scratch == this || scratch == y)
+            throw new IllegalArgumentException("The scratch vector must not be an operand");
+        if (scratch.getClass() != SparseVector.class)
+            throw new IllegalArgumentException("The scratch vector must be a plain SparseVector");
+        if (size != y.getSize())
+            throw new IllegalArgumentException("Vector sizes must agree " + size + " " + y.getSize());
+
+        int capacity = used + y.getUsed();
+        if (scratch.index.length < capacity) {
+            scratch.index = new int[capacity];
+            scratch.data = new double[capacity];
+        }
+        int newused = VectorKernels.axpy(index, data, used, alpha, y.getIndex(), y.getData(), y.getUsed(),
+                scratch.index, scratch.data);
+
+        int[] oldindex = index;
+        double[] olddata = data;
+        index = scratch.index;
+        data = scratch.data;
+        used = newused;
+        scratch.index = oldindex;
+        scratch.data = olddata;
+        scratch.used = 0;
+    }
+
+    /**
+     * Adds a multiple of another vector to this vector in place: this = this + alpha * y.
+     * If the non-zeros of y are a subset of the non-zeros of this vector, the values are
+     * updated without any allocation, otherwise new arrays are allocated once.
+     *
+     * @param alpha The factor for y
+     * @param y     The vector to be added
+     */
+    public void axpyInPlace(double alpha, SparseVector y) {
+        if (size != y.getSize())
+            throw new IllegalArgumentException("Vector sizes must agree " + size + " " + y.getSize());
+
+        int[] yindex = y.getIndex();
+        double[] ydata = y.getData();
+        int yused = y.getUsed();
+        int c1 = 0;
+        int c2 = 0;
+        while (c1 < used && c2 < yused) {
+            if (index[c1] < yindex[c2]) {
+                c1++;
+            } else if (index[c1] == yindex[c2]) {
+                c1++;
+                c2++;
+            } else {
+                break;
             }
+        }
+        if (c2 == yused) {
+            c1 = 0;
+            for (c2 = 0; c2 < yused; c2++) {
+                while (index[c1] != yindex[c2]) c1++;
+                data[c1] += alpha * ydata[c2];
+            }
+            return;
+        }
 
-            return result;
+        SparseVector result = merge(this, alpha, y);
+        index = result.index;
+        data = result.data;
+        used = result.used;
+    }
+
+    /**
+     * Adds another vector to this vector in place, see axpyInPlace.
+     *
+     * @param y       The vector to be added
+     * @param scratch A vector owned by the caller which provides the merge buffers
+     */
+    public void mergeAdd(SparseVector y, SparseVector scratch) {
+        axpyInPlace(1.0, y, scratch);
+    }
+
+    /**
+     * Multiplies this vector with a scalar in place.
+     *
+     * @param c The scalar
+     */
+    public void scaleInPlace(double c) {
+        if (c == 0) {
+            used = 0;
         } else {
-            for (int i = 0; i < this.getRowNum(); i++) {
-                for (int j = 0; j < this.getColNum(); j++) {
-                    result.set(i, j, result.get(i, j) + y.get(i, j));
-                }
-            }
+            VectorKernels.scale(data, used, c);
         }
-        return result;
+    }
+
+    /**
+     * Adds this vector to a dense array: dense += this.
+     *
+     * @param dense The array to be altered, its length must be at least the size of this vector
+     */
+    public void addTo(double[] dense) {
+        addTo(dense, 1.0);
+    }
+
+    /**
+     * Adds a multiple of this vector to a dense array: dense += alpha * this.
+     *
+     * @param dense The array to be altered, its length must be at least the size of this vector
+     * @param alpha The factor
+     */
+    public void addTo(double[] dense, double alpha) {
+        for (int i = 0; i < used; i++)
+            dense[index[i]] += alpha * data[i];
     }
 
     /**
@@ -392,10 +619,7 @@ public class SparseVector implements Matrix {
      */
 
     public double dot(double ydata[]) {
-        double ret = 0;
-        for (int i = 0; i < used; i++)
-            ret += data[i] * ydata[index[i]];
-        return ret;
+        return VectorKernels.dot(index, data, used, ydata);
     }
 
     /**
@@ -407,9 +631,7 @@ public class SparseVector implements Matrix {
 
     public SparseVector times(double c) {
         SparseVector vc = new SparseVector(this);
-        for (int i = 0; i < vc.data.length; i++) {
-            vc.data[i] *= c;
-        }
+        VectorKernels.scale(vc.data, vc.used, c);
         return vc;
     }
 
@@ -505,17 +727,22 @@ public class SparseVector implements Matrix {
             SparseMatrix multiplierm = (SparseMatrix) multiplier;
             if (this.linevector) {
                 //System.out.println("1xn *  nxp  => 1xp");
-                result = new SparseVector(multiplierm.getColNum(), this.used);
-
-                SparseMatrix multipliermtrans = (SparseMatrix) multiplierm.transpose();
-
-                Iterator<Entry<Integer, SparseVector>> entryiterator = multipliermtrans.vvectorlist.entrySet().iterator();
-                ((SparseVector) result).linevector = true;
-                while (entryiterator.hasNext()) {
-                    Entry<Integer, SparseVector> e = entryiterator.next();
-                    int i = e.getKey();
-                    SparseVector row = e.getValue();
-                    result.set(0, i, this.dot(row));
+                // accumulate the rows of the multiplier in a scratch buffer instead of
+                // building its transpose
+                ScratchArena arena = ScratchArena.get();
+                int mark = arena.mark();
+                try {
+                    int cols = multiplierm.getColNum();
+                    double[] acc = arena.dense(cols);
+                    for (int k = 0; k < used; k++) {
+                        SparseVector row = multiplierm.vvectorlist.get(index[k]);
+                        if (row != null) row.addTo(acc, data[k]);
+                    }
+                    SparseVector resultv = new SparseVector(acc, cols);
+                    resultv.linevector = true;
+                    result = resultv;
+                } finally {
+                    arena.release(mark);
                 }
             } else {
                 // mx1 *  1xp  => mxp
@@ -549,6 +776,80 @@ public class SparseVector implements Matrix {
     }
 
 
+    /**
+     * Calculates the sum of the absolute values of the entries.
+     *
+     * @return The L1 norm of the vector
+     */
+    public double getNorm1() {
+        double ret = 0;
+        for (int i = 0; i < used; i++)
+            ret += Math.abs(data[i]);
+        return ret;
+    }
+
+    /**
+     * Calculates the euclidean length of the vector.
+     *
+     * @return The L2 norm of the vector
+     */
+    public double getNorm2() {
+        return Math.sqrt(VectorKernels.dot(data, 0, data, 0, used));
+    }
+
+    /**
+     * Calculates the largest absolute value of the entries.
+     *
+     * @return The maximum norm of the vector
+     */
+    public double getNormInf() {
+        double ret = 0;
+        for (int i = 0; i < used; i++)
+            ret = Math.max(ret, Math.abs(data[i]));
+        return ret;
+    }
+
+    /**
+     * Calculates a hash over the size and the non-zero entries of the vector. Explicitly
+     * stored zeros are skipped, so vectors with the same non-zero entries have the same hash
+     * regardless of their storage.
+     *
+     * @return The structural hash of the vector
+     */
+    public int getStructuralHash() {
+        int hash = size;
+        for (int i = 0; i < used; i++) {
+            if (data[i] != 0) {
+                long bits = Double.doubleToLongBits(data[i] + 0.0);
+                hash = 31 * hash + index[i];
+                hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether this vector may be altered.
+     *
+     * @return <code>true</code> for an immutable vector, see freeze
+     */
+    public boolean isFrozen() {
+        return false;
+    }
+
+    /**
+     * Creates an immutable copy of this vector, which can be handed out without defensive
+     * copying. The copy keeps its entries in final fields, so it can be shared between
+     * threads, see FrozenSparseVector. A frozen vector returns itself. If all non-zero
+     * entries are 1, the copy is a PatternSparseVector.
+     *
+     * @return An immutable vector with the same entries
+     */
+    public FrozenSparseVector freeze() {
+        if (PatternSparseVector.isPattern(this)) return new PatternSparseVector(this);
+        return new FrozenSparseVector(this);
+    }
+
     /**
      * Adds two sparse vectors
      *
@@ -556,9 +857,8 @@ public class SparseVector implements Matrix {
      * @return The sum of the two vectors
      */
     public SparseVector add(SparseVector v) {
-        SparseVector uv = new SparseVector(v);
-        for (int i = 0; i < size; i++)
-            uv.set(i, uv.get(i) + this.get(i));
+        SparseVector uv = merge(v, 1.0, this);
+        uv.linevector = v.isLinevector();
         return uv;
     }
 
@@ -592,10 +892,10 @@ public class SparseVector implements Matrix {
      * explicitly safes a zero argument and the other doesn't.
      */
     public boolean equals(SparseVector v) {
-        if (this.size != v.getSize())
+        if (this.getSize() != v.getSize())
             return false;
 
-        for (int i = 0; i < size; i++)
+        for (int i = 0; i < getSize(); i++)
             if (Math.abs(this.get(i) - v.get(i)) > 0.0001)
                 return false;
 
@@ -607,6 +907,34 @@ public class SparseVector implements Matrix {
         return new SparseVectorNonZeroElementIterator(this);
     }
 
+    /**
+     * Visits the stored non-zero entries in index order. The coordinates follow get and
+     * getRowNum: (0, index) for a linevector, (index, 0) otherwise.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (int k = 0; k < used; k++) {
+            double value = data[k];
+            // a dense HybridVector stores zeros
+            if (value == 0) continue;
+            if (linevector) visitor.visit(0, index[k], value);
+            else visitor.visit(index[k], 0, value);
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        int capacity = NonZeroCopy.capacity(rows, cols, vals);
+        int count = 0;
+        for (int k = 0; k < used; k++) {
+            double value = data[k];
+            if (value == 0) continue;
+            if (count == capacity) throw NonZeroCopy.full(capacity);
+            rows[count] = linevector ? 0 : index[k];
+            cols[count] = linevector ? index[k] : 0;
+            vals[count++] = value;
+        }
+        return count;
+    }
+
 
     // ToDo: structure in the form of unit test!
     public static void main(String[] args) {
@@ -0,0 +1,117 @@
+package org.lplibs4j.api.implementation;
+
+import java.util.Arrays;
+
+/**
+ * Collects the entries of a SparseVector in arbitrary order and creates the vector at once.
+ * <p>
+ * Setting k entries of a SparseVector one by one costs O(k^2) because every insertion
+ * shifts the tail of the index and data arrays. The builder only appends to growable
+ * buffers and sorts, merges and trims a single time in {@link #build()}. The buffers are
+ * kept, so one builder can be reused for many vectors via {@link #clear()}.
+ *
+ * @author planatsc
+ */
+public class SparseVectorBuilder {
+
+    int[] index;
+    double[] data;
+    int used;
+    int size;
+    boolean sumduplicates;
+
+    /**
+     * Creates a new builder for a vector of the given size. Duplicate indices are resolved
+     * by the last appended value, like successive calls to SparseVector.set would do.
+     *
+     * @param size The actual size of the vector to be built
+     */
+    public SparseVectorBuilder(int size) {
+        this(size, 4, false);
+    }
+
+    /**
+     * Creates a new builder for a vector of the given size and starting capacity.
+     *
+     * @param size     The actual size of the vector to be built
+     * @param capacity The starting capacity of the buffers
+     */
+    public SparseVectorBuilder(int size, int capacity) {
+        this(size, capacity, false);
+    }
+
+    /**
+     * Creates a new builder for a vector of the given size and starting capacity.
+     *
+     * @param size          The actual size of the vector to be built
+     * @param capacity      The starting capacity of the buffers
+     * @param sumduplicates If true, values appended for the same index are summed up,
+     *                      otherwise the last appended value wins
+     */
+    public SparseVectorBuilder(int size, int capacity, boolean sumduplicates) {
+        this.size = size;
+        this.sumduplicates = sumduplicates;
+        this.index = new int[Math.max(capacity, 1)];
+        this.data = new double[Math.max(capacity, 1)];
+        this.used = 0;
+    }
+
+    /**
+     * Appends an entry to the vector.
+     *
+     * @param in    The index of the entry
+     * @param value The value of the entry
+     * @return this builder
+     */
+    public SparseVectorBuilder append(int in, double value) {
+        if (used == index.length) {
+            int newLength = index.length << 1;
+            index = Arrays.copyOf(index, newLength);
+            data = Arrays.copyOf(data, newLength);
+        }
+        index[used] = in;
+        data[used] = value;
+        used++;
+        return this;
+    }
+
+    /**
+     * Returns the number of entries appended so far, duplicates included.
+     *
+     * @return the number of appended entries
+     */
+    public int getUsed() {
+        return used;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Changes the size of the vectors built from now on.
+     *
+     * @param size The new size
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Sorts the appended entries, merges duplicates, drops zeros and creates a vector with
+     * exactly sized arrays. The builder keeps its entries, call {@link #clear()} to reuse it.
+     *
+     * @return The new vector
+     */
+    public SparseVector build() {
+        return SparseVector.compress(index, data, used, size, sumduplicates);
+    }
+
+    /**
+     * Removes all entries but keeps the buffers for the next vector.
+     */
+    public void clear() {
+        used = 0;
+    }
+
+}
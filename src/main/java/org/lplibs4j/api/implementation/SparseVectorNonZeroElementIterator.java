@@ -10,30 +10,50 @@ public class SparseVectorNonZeroElementIterator implements
      */
     public SparseVectorNonZeroElementIterator(SparseVector actualrow) {
         super();
-        this.actualrow = actualrow;
+        // SparseMatrixNonZeroElementIterator starts without a row
+        if (actualrow != null) reset(actualrow);
     }
 
     SparseVector actualrow;
     int i;
     int index;
 
+    // the arrays are fetched once through the accessors, which frozen and dense hybrid
+    // vectors override
+    int[] rowindex;
+    double[] rowdata;
+    int rowused;
+    boolean linevector;
+
+    /**
+     * Restarts the iteration on another vector, so one iterator can walk many rows.
+     */
+    void reset(SparseVector row) {
+        this.actualrow = row;
+        this.index = 0;
+        this.rowindex = row.getIndex();
+        this.rowdata = row.getData();
+        this.rowused = row.getUsed();
+        this.linevector = row.isLinevector();
+    }
+
     public int getActuali() {
-        if (!this.actualrow.linevector) return 0;
+        if (!this.linevector) return 0;
         return i;
     }
 
     public int getActualj() {
-        if (this.actualrow.linevector) return 0;
+        if (this.linevector) return 0;
         return i;
     }
 
     public boolean hasNext() {
-        return (index < actualrow.used);
+        return (index < rowused);
     }
 
     public Double next() {
-        this.i = actualrow.index[this.index];
-        return actualrow.data[this.index++];
+        this.i = rowindex[this.index];
+        return rowdata[this.index++];
     }
 
     public void remove() {
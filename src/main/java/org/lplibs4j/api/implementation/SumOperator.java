@@ -0,0 +1,63 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.LinearOperator;
+
+/**
+ * The sum of operators of the same dimensions, applied term by term.
+ *
+ * @author planatsc
+ */
+public class SumOperator implements LinearOperator {
+
+    final LinearOperator[] terms;
+
+    public SumOperator(LinearOperator... terms) {
+        if (terms.length == 0) throw new IllegalArgumentException("A sum needs at least one term");
+        for (LinearOperator term : terms) {
+            if (term.getRowNum() != terms[0].getRowNum() || term.getColNum() != terms[0].getColNum())
+                throw new IllegalArgumentException("Operator dimensions must agree " + terms[0].getRowNum() + "x"
+                        + terms[0].getColNum() + " " + term.getRowNum() + "x" + term.getColNum());
+        }
+        this.terms = terms.clone();
+    }
+
+    public LinearOperator[] getTerms() {
+        return terms.clone();
+    }
+
+    public int getRowNum() {
+        return terms[0].getRowNum();
+    }
+
+    public int getColNum() {
+        return terms[0].getColNum();
+    }
+
+    public void apply(double[] x, double[] y) {
+        apply(x, y, false);
+    }
+
+    public void applyTranspose(double[] x, double[] y) {
+        apply(x, y, true);
+    }
+
+    private void apply(double[] x, double[] y, boolean transpose) {
+        int n = transpose ? getColNum() : getRowNum();
+        if (transpose) terms[0].applyTranspose(x, y);
+        else terms[0].apply(x, y);
+        if (terms.length == 1) return;
+        ScratchArena arena = ScratchArena.get();
+        int mark = arena.mark();
+        try {
+            double[] t = arena.dense(n);
+            for (int k = 1; k < terms.length; k++) {
+                if (transpose) terms[k].applyTranspose(x, t);
+                else terms[k].apply(x, t);
+                VectorKernels.axpy(1, t, 0, y, 0, n);
+            }
+        } finally {
+            arena.release(mark);
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+package org.lplibs4j.api.implementation;
+
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable symmetric sparse matrix, storing only the upper triangle in compressed sparse
+ * row format: row i holds the entries of the columns i to n - 1, the diagonal first.
+ * <p>
+ * The quadratic form x^T Q x only depends on the symmetric part (Q + Q^T) / 2, so the
+ * quadratic terms of programs and constraints can always be stored this way. Compared to
+ * the full matrix this halves the memory, and quadForm and times read every off-diagonal
+ * entry once, using it for both of its positions.
+ * <p>
+ * The arrays returned by the getters must not be altered.
+ *
+ * @author planatsc
+ */
+public class SymmetricSparseMatrix implements Matrix {
+
+    final int n;
+    final int[] rowptr;
+    final int[] colind;
+    final double[] values;
+
+    /**
+     * Wraps the compressed row arrays of an upper triangle without copying them.
+     */
+    SymmetricSparseMatrix(int n, int[] rowptr, int[] colind, double[] values) {
+        this.n = n;
+        this.rowptr = rowptr;
+        this.colind = colind;
+        this.values = values;
+    }
+
+    /**
+     * Stores the symmetric part (q + q^T) / 2 of a square array.
+     *
+     * @param q The square matrix
+     */
+    public SymmetricSparseMatrix(double[][] q) {
+        this.n = q.length;
+        int nnz = 0;
+        for (int i = 0; i < n; i++) {
+            if (q[i].length != n)
+                throw new IllegalArgumentException("Matrix must be square " + n + "x" + q[i].length);
+            for (int j = i; j < n; j++)
+                if (q[i][j] + q[j][i] != 0) nnz++;
+        }
+        this.rowptr = new int[n + 1];
+        this.colind = new int[nnz];
+        this.values = new double[nnz];
+        nnz = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double value = i == j ? q[i][i] : 0.5 * (q[i][j] + q[j][i]);
+                if (value != 0) {
+                    colind[nnz] = j;
+                    values[nnz++] = value;
+                }
+            }
+            rowptr[i + 1] = nnz;
+        }
+    }
+
+    /**
+     * Stores the symmetric part (m + m^T) / 2 of a square matrix, in O(nnz log nnz) for
+     * sparse matrices.
+     *
+     * @param m The square matrix
+     */
+    public SymmetricSparseMatrix(Matrix m) {
+        if (m.getRowNum() != m.getColNum())
+            throw new IllegalArgumentException("Matrix must be square " + m.getRowNum() + "x" + m.getColNum());
+        this.n = m.getRowNum();
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n, 16, true);
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        while (it.hasNext()) {
+            double value = it.next();
+            int i = it.getActuali();
+            int j = it.getActualj();
+            if (i == j) builder.append(i, i, value);
+            else builder.append(Math.min(i, j), Math.max(i, j), 0.5 * value);
+        }
+        CsrMatrix upper = builder.buildCsr();
+        this.rowptr = upper.rowptr;
+        this.colind = upper.colind;
+        this.values = upper.values;
+    }
+
+    public int getRowNum() {
+        return n;
+    }
+
+    public int getColNum() {
+        return n;
+    }
+
+    /**
+     * @return the number of non-zero entries of the full matrix
+     */
+    public int getNumberOfNonZeroElements() {
+        int diagonal = 0;
+        for (int i = 0; i < n; i++)
+            if (rowptr[i] < rowptr[i + 1] && colind[rowptr[i]] == i) diagonal++;
+        return 2 * rowptr[n] - diagonal;
+    }
+
+    /**
+     * @return the number of stored entries, those of the upper triangle
+     */
+    public int getNumberOfStoredElements() {
+        return rowptr[n];
+    }
+
+    public int[] getRowPointers() {
+        return rowptr;
+    }
+
+    public int[] getColumnIndices() {
+        return colind;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public double get(int row, int column) {
+        int i = Math.min(row, column);
+        int pos = Arrays.binarySearch(colind, rowptr[i], rowptr[i + 1], Math.max(row, column));
+        return pos >= 0 ? values[pos] : 0;
+    }
+
+    /**
+     * Not supported, the matrix is immutable.
+     */
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("SymmetricSparseMatrix is immutable");
+    }
+
+    /**
+     * Calculates x^T * this * x in one pass over the upper triangle, without allocating.
+     *
+     * @param x The dense vector, its length must be at least the dimension
+     * @return x^T * this * x
+     */
+    public double quadForm(double[] x) {
+        double diagonal = 0;
+        double offdiagonal = 0;
+        for (int i = 0; i < n; i++) {
+            double xi = x[i];
+            if (xi == 0) continue;
+            int k = rowptr[i];
+            int end = rowptr[i + 1];
+            if (k < end && colind[k] == i) diagonal += values[k++] * xi * xi;
+            double sum = 0;
+            for (; k < end; k++)
+                sum += values[k] * x[colind[k]];
+            offdiagonal += xi * sum;
+        }
+        return diagonal + 2 * offdiagonal;
+    }
+
+    /**
+     * Calculates y = this * x without allocating. Every stored off-diagonal entry
+     * contributes to two entries of y.
+     *
+     * @param x The dense vector, its length must be at least the dimension
+     * @param y The result, its length must be at least the dimension
+     */
+    public void times(double[] x, double[] y) {
+        Arrays.fill(y, 0, n, 0.0);
+        for (int i = 0; i < n; i++) {
+            double xi = x[i];
+            int k = rowptr[i];
+            int end = rowptr[i + 1];
+            double sum = 0;
+            if (k < end && colind[k] == i) sum = values[k++] * xi;
+            for (; k < end; k++) {
+                int j = colind[k];
+                sum += values[k] * x[j];
+                y[j] += values[k] * xi;
+            }
+            y[i] += sum;
+        }
+    }
+
+    /**
+     * Assembles the full matrix in compressed row format, in O(nnz + n).
+     *
+     * @return the full matrix as CsrMatrix
+     */
+    public CsrMatrix toCsr() {
+        int[] fullptr = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            fullptr[i + 1] += rowptr[i + 1] - rowptr[i];
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++)
+                if (colind[k] != i) fullptr[colind[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) fullptr[i + 1] += fullptr[i];
+        int[] next = Arrays.copyOf(fullptr, n);
+        int[] fullind = new int[fullptr[n]];
+        double[] fullval = new double[fullptr[n]];
+        // the mirrored entries of row j come from the rows i < j, in increasing order,
+        // before row j appends its own entries
+        for (int i = 0; i < n; i++) {
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++) {
+                int j = colind[k];
+                fullind[next[i]] = j;
+                fullval[next[i]++] = values[k];
+                if (j != i) {
+                    fullind[next[j]] = i;
+                    fullval[next[j]++] = values[k];
+                }
+            }
+        }
+        return new CsrMatrix(n, n, fullptr, fullind, fullval);
+    }
+
+    /**
+     * Returns this matrix, it is its own transpose.
+     */
+    public Matrix transpose() {
+        return this;
+    }
+
+    /**
+     * Multiplies the full matrix with another matrix, see CsrMatrix.times.
+     */
+    public Matrix times(Matrix multiplier) {
+        if (multiplier instanceof SparseVector && !((SparseVector) multiplier).linevector) {
+            if (n != multiplier.getRowNum())
+                throw new IllegalArgumentException("Matrix dimensions must agree " + n + "x" + n + " " + multiplier.getRowNum() + "x" + multiplier.getColNum());
+            SparseVector x = (SparseVector) multiplier;
+            ScratchArena arena = ScratchArena.get();
+            int mark = arena.mark();
+            try {
+                double[] dx = arena.dense(n);
+                VectorKernels.scatter(x.getIndex(), x.getData(), x.getUsed(), dx);
+                double[] y = arena.dense(n);
+                times(dx, y);
+                return new SparseVector(y, n);
+            } finally {
+                arena.release(mark);
+            }
+        }
+        return toCsr().times(multiplier);
+    }
+
+    /**
+     * Adds a matrix. The sum of two symmetric matrices is merged into a new
+     * SymmetricSparseMatrix, other matrices are added to the full matrix, see CsrMatrix.plus.
+     */
+    public Matrix plus(Matrix toadd) {
+        if (!(toadd instanceof SymmetricSparseMatrix)) return toCsr().plus(toadd);
+        SymmetricSparseMatrix b = (SymmetricSparseMatrix) toadd;
+        if (n != b.n)
+            throw new IllegalArgumentException("Matrix dimensions must agree " + n + "x" + n + " " + b.n + "x" + b.n);
+        CsrMatrix sum = (CsrMatrix) new CsrMatrix(n, n, rowptr, colind, values)
+                .plus(new CsrMatrix(n, n, b.rowptr, b.colind, b.values));
+        return new SymmetricSparseMatrix(n, sum.rowptr, sum.colind, sum.values);
+    }
+
+    /**
+     * Iterates over the non-zero entries of the full matrix: the stored entries row by row,
+     * each off-diagonal entry directly followed by its mirror image.
+     */
+    public NonZeroElementIterator getNonZeroElementIterator() {
+        return new NonZeroElementIterator() {
+            int pos;
+            int row;
+            // the mirror image of the entry at pos - 1 is next
+            boolean mirror;
+            int actualrow;
+            int actualcol;
+
+            public int getActuali() {
+                return actualrow;
+            }
+
+            public int getActualj() {
+                return actualcol;
+            }
+
+            public boolean hasNext() {
+                return mirror || pos < rowptr[n];
+            }
+
+            public Double next() {
+                if (mirror) {
+                    mirror = false;
+                    actualrow = colind[pos - 1];
+                    actualcol = row;
+                    return values[pos - 1];
+                }
+                if (pos >= rowptr[n]) throw new NoSuchElementException();
+                while (rowptr[row + 1] <= pos) row++;
+                actualrow = row;
+                actualcol = colind[pos];
+                mirror = actualcol != row;
+                return values[pos++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Visits the entries of the full matrix in the order of the iterator, each stored
+     * off-diagonal entry directly followed by its mirror image.
+     */
+    public void forEachNonZero(NonZeroElementVisitor visitor) {
+        for (int i = 0; i < n; i++) {
+            for (int k = rowptr[i]; k < rowptr[i + 1]; k++) {
+                int j = colind[k];
+                if (values[k] == 0) continue;
+                visitor.visit(i, j, values[k]);
+                if (j != i) visitor.visit(j, i, values[k]);
+            }
+        }
+    }
+
+    public int copyNonZerosTo(int[] rows, int[] cols, double[] vals) {
+        return NonZeroCopy.copy(this, rows, cols, vals);
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof SymmetricSparseMatrix)) return false;
+        SymmetricSparseMatrix m = (SymmetricSparseMatrix) o;
+        return n == m.n && Arrays.equals(rowptr, m.rowptr) && Arrays.equals(colind, m.colind)
+                && Arrays.equals(values, m.values);
+    }
+
+    public int hashCode() {
+        return 31 * n + Arrays.hashCode(values);
+    }
+
+}
@@ -0,0 +1,328 @@
+package org.lplibs4j.api.implementation;
+
+/**
+ * Inner loops of the vector and matrix implementations.
+ * <p>
+ * The dense update loops (axpy, scale) are kept as simple counted loops, which is the
+ * shape HotSpot's auto-vectorizer turns into SIMD instructions. The reductions exist in two
+ * variants: the plain scalar loop and an unrolled loop with four independent accumulators,
+ * which removes the loop-carried dependency of a single running sum but changes the
+ * summation order. The variant is chosen once when the class is loaded. The scalar loops
+ * are the default since C2 already unrolls them and they were not slower in our
+ * measurements (see KernelBenchmark); starting the JVM with
+ * <code>-Dlplibs4j.kernels=unrolled</code> selects the unrolled reductions instead.
+ *
+ * @author planatsc
+ */
+public final class VectorKernels {
+
+    /**
+     * True if the unrolled kernels are used, false for the plain scalar loops.
+     */
+    public static final boolean UNROLLED = "unrolled".equalsIgnoreCase(System.getProperty("lplibs4j.kernels"));
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Calculates the dot product of a sparse vector and a dense array.
+     *
+     * @param index The indices of the sparse vector
+     * @param data  The values of the sparse vector
+     * @param used  The number of valid entries of the sparse vector
+     * @param x     The dense array
+     * @return sum over data[k] * x[index[k]]
+     */
+    public static double dot(int[] index, double[] data, int used, double[] x) {
+        return UNROLLED ? dotUnrolled(index, data, used, x) : dotScalar(index, data, used, x);
+    }
+
+    public static double dotScalar(int[] index, double[] data, int used, double[] x) {
+        double ret = 0;
+        for (int i = 0; i < used; i++)
+            ret += data[i] * x[index[i]];
+        return ret;
+    }
+
+    public static double dotUnrolled(int[] index, double[] data, int used, double[] x) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int limit = used - 3;
+        for (; i < limit; i += 4) {
+            s0 += data[i] * x[index[i]];
+            s1 += data[i + 1] * x[index[i + 1]];
+            s2 += data[i + 2] * x[index[i + 2]];
+            s3 += data[i + 3] * x[index[i + 3]];
+        }
+        for (; i < used; i++)
+            s0 += data[i] * x[index[i]];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Sums up the entries of a dense array at the given indices, which is the dot product
+     * of a vector with unit coefficients and the array.
+     *
+     * @param index The indices
+     * @param used  The number of valid indices
+     * @param x     The dense array
+     * @return sum over x[index[k]]
+     */
+    public static double sum(int[] index, int used, double[] x) {
+        double ret = 0;
+        for (int i = 0; i < used; i++)
+            ret += x[index[i]];
+        return ret;
+    }
+
+    /**
+     * Calculates the dot product of two dense array ranges.
+     *
+     * @param a    The first array
+     * @param aoff The offset into the first array
+     * @param b    The second array
+     * @param boff The offset into the second array
+     * @param n    The number of elements
+     * @return sum over a[aoff + k] * b[boff + k]
+     */
+    public static double dot(double[] a, int aoff, double[] b, int boff, int n) {
+        return UNROLLED ? dotUnrolled(a, aoff, b, boff, n) : dotScalar(a, aoff, b, boff, n);
+    }
+
+    public static double dotScalar(double[] a, int aoff, double[] b, int boff, int n) {
+        double ret = 0;
+        for (int i = 0; i < n; i++)
+            ret += a[aoff + i] * b[boff + i];
+        return ret;
+    }
+
+    public static double dotUnrolled(double[] a, int aoff, double[] b, int boff, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int limit = n - 3;
+        for (; i < limit; i += 4) {
+            s0 += a[aoff + i] * b[boff + i];
+            s1 += a[aoff + i + 1] * b[boff + i + 1];
+            s2 += a[aoff + i + 2] * b[boff + i + 2];
+            s3 += a[aoff + i + 3] * b[boff + i + 3];
+        }
+        for (; i < n; i++)
+            s0 += a[aoff + i] * b[boff + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Adds a multiple of one dense array range to another: y += alpha * x.
+     *
+     * @param alpha The factor
+     * @param x     The array to be added
+     * @param xoff  The offset into x
+     * @param y     The array to be altered
+     * @param yoff  The offset into y
+     * @param n     The number of elements
+     */
+    public static void axpy(double alpha, double[] x, int xoff, double[] y, int yoff, int n) {
+        // a simple counted loop is what the auto-vectorizer recognizes best
+        for (int i = 0; i < n; i++)
+            y[yoff + i] += alpha * x[xoff + i];
+    }
+
+    /**
+     * Multiplies the first n elements of an array with a scalar.
+     *
+     * @param data The array to be altered
+     * @param n    The number of elements
+     * @param c    The factor
+     */
+    public static void scale(double[] data, int n, double c) {
+        for (int i = 0; i < n; i++)
+            data[i] *= c;
+    }
+
+    /**
+     * Writes the entries of a sparse vector into a dense array. Entries of the dense array
+     * that are not addressed by the sparse vector are left untouched.
+     *
+     * @param index The indices of the sparse vector
+     * @param data  The values of the sparse vector
+     * @param used  The number of valid entries of the sparse vector
+     * @param out   The dense target array
+     */
+    public static void scatter(int[] index, double[] data, int used, double[] out) {
+        if (UNROLLED) {
+            int i = 0;
+            int limit = used - 3;
+            for (; i < limit; i += 4) {
+                out[index[i]] = data[i];
+                out[index[i + 1]] = data[i + 1];
+                out[index[i + 2]] = data[i + 2];
+                out[index[i + 3]] = data[i + 3];
+            }
+            for (; i < used; i++)
+                out[index[i]] = data[i];
+        } else {
+            for (int i = 0; i < used; i++)
+                out[index[i]] = data[i];
+        }
+    }
+
+    /**
+     * Size ratio from which the sparse-sparse dot product switches from a linear merge to
+     * galloping search through the longer vector.
+     */
+    public static final int GALLOP_RATIO = 8;
+
+    /**
+     * Calculates the dot product of two sparse vectors given by sorted index arrays. The
+     * strategy is chosen from the operand sizes: a direct lookup if the longer vector covers
+     * a contiguous index range, galloping search if one vector has at least GALLOP_RATIO
+     * times as many entries as the other, and a linear merge otherwise.
+     *
+     * @param aindex The sorted indices of the first vector
+     * @param adata  The values of the first vector
+     * @param aused  The number of valid entries of the first vector
+     * @param bindex The sorted indices of the second vector
+     * @param bdata  The values of the second vector
+     * @param bused  The number of valid entries of the second vector
+     * @return The dot product of both vectors
+     */
+    public static double dot(int[] aindex, double[] adata, int aused, int[] bindex, double[] bdata, int bused) {
+        if (aused > bused) {
+            return dot(bindex, bdata, bused, aindex, adata, aused);
+        }
+        if (aused == 0) {
+            return 0;
+        }
+        if (bindex[bused - 1] - bindex[0] == bused - 1) {
+            return dotDense(aindex, adata, aused, bindex[0], bdata, bused);
+        }
+        if (bused / aused >= GALLOP_RATIO) {
+            return dotGalloping(aindex, adata, aused, bindex, bdata, bused);
+        }
+        return dotMerge(aindex, adata, aused, bindex, bdata, bused);
+    }
+
+    /**
+     * Dot product by a linear merge of both index arrays, O(aused + bused).
+     */
+    public static double dotMerge(int[] aindex, double[] adata, int aused, int[] bindex, double[] bdata, int bused) {
+        double sum = 0.0;
+        int c1 = 0;
+        int c2 = 0;
+        while (c1 < aused && c2 < bused) {
+            int i1 = aindex[c1];
+            int i2 = bindex[c2];
+            if (i1 == i2) {
+                sum += adata[c1] * bdata[c2];
+            }
+            // branch free advance, the comparison outcome is unpredictable for random patterns
+            c1 += (i1 <= i2) ? 1 : 0;
+            c2 += (i2 <= i1) ? 1 : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product by galloping search: every index of the short vector is searched in the
+     * long vector, starting at the last hit and doubling the step until the index is passed.
+     * Costs O(aused * log(bused / aused)).
+     */
+    public static double dotGalloping(int[] aindex, double[] adata, int aused, int[] bindex, double[] bdata, int bused) {
+        double sum = 0.0;
+        int lo = 0;
+        for (int c1 = 0; c1 < aused && lo < bused; c1++) {
+            int key = aindex[c1];
+            if (bindex[lo] < key) {
+                // gallop: find hi with bindex[hi] >= key
+                int step = 1;
+                int hi = lo + 1;
+                while (hi < bused && bindex[hi] < key) {
+                    lo = hi;
+                    step <<= 1;
+                    hi = lo + step;
+                }
+                if (hi > bused) hi = bused;
+                // binary search in (lo, hi]
+                int left = lo + 1;
+                int right = hi - 1;
+                while (left <= right) {
+                    int mid = (left + right) >>> 1;
+                    if (bindex[mid] < key) left = mid + 1;
+                    else right = mid - 1;
+                }
+                lo = left;
+                if (lo >= bused) break;
+            }
+            if (bindex[lo] == key) {
+                sum += adata[c1] * bdata[lo];
+                lo++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product with a vector whose entries cover the contiguous index range
+     * [bfirst, bfirst + bused), so every entry can be looked up directly, O(aused).
+     */
+    public static double dotDense(int[] aindex, double[] adata, int aused, int bfirst, double[] bdata, int bused) {
+        double sum = 0.0;
+        for (int c1 = 0; c1 < aused; c1++) {
+            int pos = aindex[c1] - bfirst;
+            if (pos >= 0 && pos < bused) sum += adata[c1] * bdata[pos];
+        }
+        return sum;
+    }
+
+    /**
+     * Merges two sparse vectors into target arrays: out = a + alpha * b. Entries that cancel
+     * out are dropped. The target arrays must hold at least aused + bused entries and must not
+     * be the arrays of a or b.
+     *
+     * @return The number of entries written to the target arrays
+     */
+    public static int axpy(int[] aindex, double[] adata, int aused, double alpha,
+                           int[] bindex, double[] bdata, int bused, int[] outindex, double[] outdata) {
+        int c1 = 0;
+        int c2 = 0;
+        int n = 0;
+        while (c1 < aused && c2 < bused) {
+            int i1 = aindex[c1];
+            int i2 = bindex[c2];
+            double value;
+            int ind;
+            if (i1 == i2) {
+                ind = i1;
+                value = adata[c1++] + alpha * bdata[c2++];
+            } else if (i1 < i2) {
+                ind = i1;
+                value = adata[c1++];
+            } else {
+                ind = i2;
+                value = alpha * bdata[c2++];
+            }
+            if (value != 0) {
+                outindex[n] = ind;
+                outdata[n] = value;
+                n++;
+            }
+        }
+        for (; c1 < aused; c1++) {
+            if (adata[c1] != 0) {
+                outindex[n] = aindex[c1];
+                outdata[n] = adata[c1];
+                n++;
+            }
+        }
+        for (; c2 < bused; c2++) {
+            double value = alpha * bdata[c2];
+            if (value != 0) {
+                outindex[n] = bindex[c2];
+                outdata[n] = value;
+                n++;
+            }
+        }
+        return n;
+    }
+
+}
@@ -91,8 +91,9 @@ public abstract class LinearProgram extends MathematicalProgram implements Const
 
         // Just give the function a name ...
         result.append(" obj:");
-        for (int i = 0; i < this.getC().length ; i++) {
-            BigDecimal coeff = new BigDecimal(this.getC()[i]);
+        double[] objective = this.getC();
+        for (int i = 0; i < objective.length ; i++) {
+            BigDecimal coeff = new BigDecimal(objective[i]);
 
             if (coeff.signum() < 0)
                 result.append(" -");
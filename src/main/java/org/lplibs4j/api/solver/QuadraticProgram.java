@@ -1,6 +1,7 @@
 package org.lplibs4j.api.solver;
 
 import org.lplibs4j.api.constraints.Constraint;
+import org.lplibs4j.api.util.LinearOperator;
 import org.lplibs4j.api.util.Matrix;
 
 import java.util.ArrayList;
@@ -12,12 +13,39 @@ import java.util.ArrayList;
  */
 public interface QuadraticProgram {
 
+    /**
+     * Returns the quadratic term as it is stored. After setQ(double[][]) this is the
+     * immutable SymmetricSparseMatrix of the symmetric part (Q + Q^T) / 2, not the array
+     * passed in, and its set method throws an UnsupportedOperationException. To change the
+     * quadratic term entry by entry, pass a mutable matrix such as a SparseMatrix to
+     * setQ(Matrix), which stores it as given.
+     *
+     * @return the quadratic term, null if it was only given as operator
+     */
     Matrix getQ();
 
+    /**
+     * Sets the quadratic term to the matrix as given, without copying or symmetrizing it.
+     */
     void setQ(Matrix q);
 
+    /**
+     * Sets the quadratic term to the symmetric part (q + q^T) / 2 of q, which defines the
+     * same target function, stored as immutable SymmetricSparseMatrix. See getQ.
+     */
     void setQ(double[][] q);
 
+    /**
+     * Returns the quadratic term as operator, also if it was given as Matrix.
+     */
+    LinearOperator getQOperator();
+
+    /**
+     * Sets the quadratic term to an operator which doesn't have to be built as Matrix.
+     * getQ() returns null afterwards, unless the operator is a MatrixOperator.
+     */
+    void setQ(LinearOperator q);
+
     /* (non-Javadoc)
          * @see nmi.ConstrainedProblem#addConstraint(nmi.constraints.Constraint)
          */
@@ -0,0 +1,38 @@
+package org.lplibs4j.api.util;
+
+/**
+ * A linear map given only by its action on vectors, without storing its entries. Operators
+ * describe matrices that are too large to build, like Kronecker products, or that are
+ * cheaper to apply than to form, like sums and scaled matrices.
+ *
+ * @author planatsc
+ */
+public interface LinearOperator {
+
+    /**
+     * @return the dimension of the results of apply
+     */
+    public int getRowNum();
+
+    /**
+     * @return the dimension of the arguments of apply
+     */
+    public int getColNum();
+
+    /**
+     * Calculates y = A * x. The result is overwritten, not added to.
+     *
+     * @param x The vector, its length must be at least the number of columns
+     * @param y The result, its length must be at least the number of rows
+     */
+    public void apply(double[] x, double[] y);
+
+    /**
+     * Calculates y = A^T * x. The result is overwritten, not added to.
+     *
+     * @param x The vector, its length must be at least the number of rows
+     * @param y The result, its length must be at least the number of columns
+     */
+    public void applyTranspose(double[] x, double[] y);
+
+}
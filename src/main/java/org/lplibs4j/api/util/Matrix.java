@@ -21,6 +21,27 @@ public interface Matrix {
 
 
     public abstract NonZeroElementIterator getNonZeroElementIterator();
+
+    /**
+     * Passes every non-zero entry to the visitor. Unlike the NonZeroElementIterator no value
+     * is boxed, the sparse and dense implementations run a plain loop over their arrays.
+     * The order of the entries is the order of getNonZeroElementIterator, without the zeros
+     * some implementations store explicitly.
+     *
+     * @param visitor The visitor receiving the entries
+     */
+    public abstract void forEachNonZero(NonZeroElementVisitor visitor);
+
+    /**
+     * Copies the non-zero entries into coordinate arrays, in the order of forEachNonZero.
+     *
+     * @param rows The rows of the entries
+     * @param cols The columns of the entries
+     * @param vals The values of the entries
+     * @return the number of entries copied
+     * @throws IllegalArgumentException if the arrays can't hold all entries
+     */
+    public abstract int copyNonZerosTo(int[] rows, int[] cols, double[] vals);
 	
 	/*
 	 * TODO: Following operations could be reasonable for this interface:
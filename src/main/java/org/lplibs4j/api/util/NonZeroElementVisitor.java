@@ -0,0 +1,20 @@
+package org.lplibs4j.api.util;
+
+/**
+ * Receives the non-zero entries of a matrix from Matrix.forEachNonZero, one call per entry
+ * with primitive arguments, so visiting a matrix allocates nothing per entry.
+ *
+ * @author planatsc
+ */
+public interface NonZeroElementVisitor {
+
+    /**
+     * Called for one non-zero entry.
+     *
+     * @param row    The row of the entry
+     * @param column The column of the entry
+     * @param value  The value of the entry
+     */
+    public void visit(int row, int column, double value);
+
+}
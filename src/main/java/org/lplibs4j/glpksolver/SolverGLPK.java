@@ -2,6 +2,8 @@ package org.lplibs4j.glpksolver;
 
 import org.gnu.glpk.GlpkSolver;
 import org.lplibs4j.api.constraints.*;
+import org.lplibs4j.api.implementation.PatternSparseVector;
+import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.api.problems.LinearProgram;
 import org.lplibs4j.api.solver.LinearProgramSolver;
 
@@ -165,11 +167,7 @@ public class SolverGLPK implements LinearProgramSolver {
 
         int nonzeroa = 0;
         for (Constraint constraint : constraints) {
-
-            double[] c = ((LinearConstraint) constraint).getC();
-            for (int i = 0; i < c.length; i++) {
-                if (c[i] != 0.0) nonzeroa++;
-            }
+            nonzeroa += ((LinearConstraint) constraint).getCSparse().getUsed();
         }
 
         int[] ia = new int[nonzeroa + 1];
@@ -182,19 +180,19 @@ public class SolverGLPK implements LinearProgramSolver {
         for (Constraint constraint : constraints) {
 
             rowcount++;
-            double[] c = ((LinearConstraint) constraint).getC();
+            SparseVector c = ((LinearConstraint) constraint).getCSparse();
+            int[] index = c.getIndex();
+            boolean pattern = c instanceof PatternSparseVector;
+            double[] data = pattern ? null : c.getData();
 
-            //System.out.print(constraint.getName() + " ");
-            for (int i = 0; i < c.length; i++) {
-                if (c[i] != 0.0) {
+            for (int k = 0; k < c.getUsed(); k++) {
+                if (pattern || data[k] != 0.0) {
                     nonzeroa++;
                     ia[nonzeroa] = rowcount;
-                    ja[nonzeroa] = i + 1;
-                    ar[nonzeroa] = c[i];
-                    //	System.out.print((i+1) + "(" + c[i] + ") ");
+                    ja[nonzeroa] = index[k] + 1;
+                    ar[nonzeroa] = pattern ? 1.0 : data[k];
                 }
             }
-            //	System.out.println();
 
         }
         solver.loadMatrix(nonzeroa, ia, ja, ar);
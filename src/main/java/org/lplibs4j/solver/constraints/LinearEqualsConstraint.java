@@ -2,36 +2,56 @@ package org.lplibs4j.solver.constraints;
 
 import org.lplibs4j.api.constraints.Convertable;
 import org.lplibs4j.api.constraints.LinearConstraint;
+import org.lplibs4j.api.implementation.CompressedSparseVector;
+import org.lplibs4j.api.implementation.FrozenSparseVector;
+import org.lplibs4j.api.implementation.PatternSparseVector;
 import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.api.solver.LinearProgramSolver;
 
 public class LinearEqualsConstraint implements LinearConstraint, Convertable, org.lplibs4j.api.constraints.LinearEqualsConstraint {
 
-    SparseVector c;
+    FrozenSparseVector c;
+    // set instead of c for a compressed row
+    CompressedSparseVector compressed;
     double t;
     String name;
 
     public LinearEqualsConstraint(SparseVector c, double t, String name) {
         super();
-        this.c = c;
+        this.c = c.freeze();
         this.t = t;
         this.name = name;
     }
 
     public LinearEqualsConstraint(double[] pc, double t, String name) {
         super();
-        this.c = new SparseVector(pc);
+        this.c = new FrozenSparseVector(pc);
+        this.t = t;
+        this.name = name;
+    }
+
+    /**
+     * Creates a constraint on a compressed row. The feasibility check and the writers work
+     * on the compressed entries, getCSparse expands them.
+     * @param c compressed c-vector
+     * @param t right hand side
+     * @param name name of the constraint
+     */
+    public LinearEqualsConstraint(CompressedSparseVector c, double t, String name) {
+        super();
+        this.compressed = c;
         this.t = t;
         this.name = name;
     }
 
     @Override
     public void setC(double[] pc) {
-        this.c = new SparseVector(pc);
+        this.c = new FrozenSparseVector(pc);
+        this.compressed = null;
     }
 
     public double[] getC() {
-        return c.get();
+        return getCSparse().get();
     }
 
 
@@ -58,7 +78,12 @@ public class LinearEqualsConstraint implements LinearConstraint, Convertable, or
     }
 
     public boolean isSatisfiedBy(double[] x) {
-        return (Math.abs(c.dot(x) - t) < Math.pow(10, -6));
+        return (Math.abs(dot(x) - t) < Math.pow(10, -6));
+    }
+
+    // compressed rows are evaluated while decoding them
+    private double dot(double[] x) {
+        return compressed != null ? compressed.dot(x) : c.dot(x);
     }
 
     public void addToLinearProgramSolver(LinearProgramSolver solver) {
@@ -72,28 +97,23 @@ public class LinearEqualsConstraint implements LinearConstraint, Convertable, or
 
         boolean firstOne = Boolean.TRUE;
 
-        for (int i : c.getIndex()) {
-
-            if (firstOne) {
+        if (compressed != null) {
+            CompressedSparseVector.Decoder d = compressed.decoder();
+            while (d.hasNext()) {
+                int i = d.next();
+                if (d.getValue() == 0) continue;
+                appendCPLEX(result, i, d.getValue(), firstOne);
                 firstOne = Boolean.FALSE;
-                if (c.get(i) == 1)
-                    result.append("x" + i);
-                else if (c.get(i) < 0) {
-                    result.append( c.get(i) + " x" + i);
-                }
-                else
-                    result.append( c.get(i) + " x" + i);
             }
-            else {
-                if (c.get(i) == 1)
-                    result.append(" + " + "x" + i);
-                else if (c.get(i) < 0) {
-                    result.append( " " + c.get(i) + " x" + i);
-                }
-                else
-                    result.append( " + " + c.get(i) + " x" + i);
+        } else {
+            int[] index = c.getIndex();
+            // unit coefficients of pattern rows are written without looking at the values
+            boolean pattern = c instanceof PatternSparseVector;
+            double[] data = pattern ? null : c.getData();
+            for (int k = 0; k < c.getUsed(); k++) {
+                appendCPLEX(result, index[k], pattern ? 1 : data[k], firstOne);
+                firstOne = Boolean.FALSE;
             }
-
         }
 
         result.append(" = " + this.t);
@@ -102,21 +122,57 @@ public class LinearEqualsConstraint implements LinearConstraint, Convertable, or
         return result;
     }
 
+    // Appends the term value * x_i in the CPLEX LP format
+    private static void appendCPLEX(StringBuffer result, int i, double value, boolean firstOne) {
+        if (firstOne) {
+            if (value == 1)
+                result.append("x" + i);
+            else if (value < 0) {
+                result.append( value + " x" + i);
+            }
+            else
+                result.append( value + " x" + i);
+        }
+        else {
+            if (value == 1)
+                result.append(" + " + "x" + i);
+            else if (value < 0) {
+                result.append( " " + value + " x" + i);
+            }
+            else
+                result.append( " + " + value + " x" + i);
+        }
+    }
+
     //	 Converts the constraint into the GMPL format
     public StringBuffer convertToGMPL() {
         StringBuffer result = new StringBuffer("subject to " + this.name + ": ");
 
-        for (int i : c.getIndex()) {
-            result.append( c.get(i) + " * x" + i + " + ");
+        if (compressed != null) {
+            CompressedSparseVector.Decoder d = compressed.decoder();
+            while (d.hasNext()) {
+                int i = d.next();
+                if (d.getValue() != 0) result.append( d.getValue() + " * x" + i + " + ");
+            }
+        } else {
+            int[] index = c.getIndex();
+            boolean pattern = c instanceof PatternSparseVector;
+            double[] data = pattern ? null : c.getData();
+            for (int k = 0; k < c.getUsed(); k++)
+                result.append( (pattern ? 1.0 : data[k]) + " * x" + index[k] + " + ");
         }
         result.delete(result.lastIndexOf("+"), result.length());
         result.append(" = " + this.t + ";\n");
         return result;
     }
 
+    /**
+     * @return the immutable c-vector, shared instead of copied; a compressed row is
+     * expanded on every call
+     */
     public SparseVector getCSparse() {
-        // TODO Auto-generated method stub
-        return c.clone();
+        if (compressed != null) return compressed.toSparseVector().freeze();
+        return c;
     }
 
     public double getRHS() {
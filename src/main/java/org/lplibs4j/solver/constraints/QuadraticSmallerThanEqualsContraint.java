@@ -1,9 +1,13 @@
 package org.lplibs4j.solver.constraints;
 
 import org.lplibs4j.api.constraints.QuadraticConstraint;
+import org.lplibs4j.api.implementation.MatrixOperator;
+import org.lplibs4j.api.implementation.ScratchArena;
 import org.lplibs4j.api.implementation.SparseMatrix;
 import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SymmetricSparseMatrix;
 import org.lplibs4j.api.solver.QuadraticProgramSolver;
+import org.lplibs4j.api.util.LinearOperator;
 import org.lplibs4j.api.util.Matrix;
 
 /**
@@ -12,6 +16,8 @@ import org.lplibs4j.api.util.Matrix;
 public class QuadraticSmallerThanEqualsContraint implements QuadraticConstraint {
 
     Matrix Q;
+    // the quadratic term if it was given as operator
+    LinearOperator Qoperator;
     SparseVector c;
     double t;
     String name;
@@ -24,9 +30,26 @@ public class QuadraticSmallerThanEqualsContraint implements QuadraticConstraint
         this.name = name;
     }
 
+    /**
+     * Creates a constraint whose quadratic term is only available as operator.
+     */
+    public QuadraticSmallerThanEqualsContraint(LinearOperator q, SparseVector c, double t, String name) {
+        super();
+        Q = q instanceof MatrixOperator ? ((MatrixOperator) q).getMatrix() : null;
+        Qoperator = q;
+        this.c = c;
+        this.t = t;
+        this.name = name;
+    }
+
+    /**
+     * Creates a constraint storing the symmetric part (pq + pq^T) / 2 of the quadratic term,
+     * which defines the same constraint, as immutable SymmetricSparseMatrix: getQ() returns
+     * it instead of pq. Pass a SparseMatrix to the Matrix constructor for a mutable term.
+     */
     public QuadraticSmallerThanEqualsContraint(double[][] pq, double[] c, double t, String name) {
         super();
-        Q = new SparseMatrix(pq);
+        Q = new SymmetricSparseMatrix(pq);
         this.c = new SparseVector(c);
         this.t = t;
         this.name = name;
@@ -42,11 +65,21 @@ public class QuadraticSmallerThanEqualsContraint implements QuadraticConstraint
 
     // TODO Is this really the definition of a quadratic constraint? See Wikipedia ...
     public boolean isSatisfiedBy(double[] x) {
+        return isSatisfiedBy(x, ScratchArena.get());
+    }
 
-        Matrix px = new SparseVector(x);
-        Matrix result = px.transpose().times(Q).times(px).plus(c.transpose().times(px));
-
-        return (result.get(0, 0)<=t);
+    /**
+     * Checks x^T * Q * x + c^T * x <= t. The product Q * x is computed in a scratch buffer
+     * of the arena, so repeated checks do not allocate.
+     *
+     * @param x     The point to be checked
+     * @param arena The arena providing the scratch buffers
+     * @return <code>true</code> if the constraint is satisfied
+     */
+    public boolean isSatisfiedBy(double[] x, ScratchArena arena) {
+        double quadratic = Qoperator != null ? SparseMatrix.quadraticForm(Qoperator, x, arena)
+                : SparseMatrix.quadraticForm(Q, x, arena);
+        return (quadratic + c.dot(x) <= t);
     }
 
     public void addToQuadraticProgramSolver(QuadraticProgramSolver solver) {
@@ -57,10 +90,18 @@ public class QuadraticSmallerThanEqualsContraint implements QuadraticConstraint
         return c.get();
     }
 
+    /**
+     * @return the quadratic term as stored, the immutable symmetric part if the constraint
+     * was created from an array, null if it was only given as operator
+     */
     public Matrix getQ() {
         return Q;
     }
 
+    public LinearOperator getQOperator() {
+        return Qoperator != null ? Qoperator : new MatrixOperator(Q);
+    }
+
     public double getT() {
         return t;
     }
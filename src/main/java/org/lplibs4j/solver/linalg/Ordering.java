@@ -0,0 +1,520 @@
+package org.lplibs4j.solver.linalg;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Orderings of the rows and columns of sparse matrices, computed from the pattern of
+ * A + A^T without the diagonal.
+ * <p>
+ * Reverse Cuthill-McKee numbers the nodes in breadth-first order from a pseudo-peripheral
+ * node and reverses the order, which gives a small bandwidth and profile. Approximate
+ * minimum degree eliminates a node of small degree in every step, on the quotient graph of
+ * Amestoy, Davis and Duff with their approximate external degrees and aggressive element
+ * absorption but without supervariables, and reduces the fill of Cholesky and LU factors.
+ * Nested dissection splits the graph recursively at the middle level of a breadth-first
+ * level structure and numbers the separators last; small parts are ordered by minimum
+ * degree.
+ * <p>
+ * All orderings are permutations perm where perm[k] is the original index at position k,
+ * as taken by CsrMatrix.permute and SymbolicFactorization.analyze.
+ *
+ * @author planatsc
+ */
+public final class Ordering {
+
+    /**
+     * Parts of nested dissection up to this size are ordered by minimum degree.
+     */
+    static final int DISSECTION_LEAF = 128;
+
+    private Ordering() {
+    }
+
+    /**
+     * The pattern of A + A^T without the diagonal, every neighbour once.
+     */
+    static final class Graph {
+        final int n;
+        final int[] xadj;
+        final int[] adj;
+
+        Graph(int n, int[] xadj, int[] adj) {
+            this.n = n;
+            this.xadj = xadj;
+            this.adj = adj;
+        }
+
+        int degree(int v) {
+            return xadj[v + 1] - xadj[v];
+        }
+    }
+
+    static Graph graph(CsrMatrix a) {
+        int n = a.getRowNum();
+        if (n != a.getColNum())
+            throw new IllegalArgumentException("Matrix must be square " + n + "x" + a.getColNum());
+        int[] rowptr = a.getRowPointers();
+        int[] colind = a.getColumnIndices();
+        int[] start = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int p = rowptr[i]; p < rowptr[i + 1]; p++) {
+                int j = colind[p];
+                if (i == j) continue;
+                start[i + 1]++;
+                start[j + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) start[i + 1] += start[i];
+        int[] next = Arrays.copyOf(start, n);
+        int[] adj = new int[start[n]];
+        for (int i = 0; i < n; i++) {
+            for (int p = rowptr[i]; p < rowptr[i + 1]; p++) {
+                int j = colind[p];
+                if (i == j) continue;
+                adj[next[i]++] = j;
+                adj[next[j]++] = i;
+            }
+        }
+        // drop the duplicates of symmetric entries, compacting in place
+        int[] xadj = new int[n + 1];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int out = 0;
+        for (int i = 0; i < n; i++) {
+            xadj[i] = out;
+            for (int q = start[i]; q < next[i]; q++) {
+                int j = adj[q];
+                if (mark[j] != i) {
+                    mark[j] = i;
+                    adj[out++] = j;
+                }
+            }
+        }
+        xadj[n] = out;
+        return new Graph(n, xadj, adj);
+    }
+
+    /**
+     * Breadth-first level structures restricted to the nodes of one part.
+     */
+    private static final class Levels {
+        final int[] seen;
+        final int[] order;
+        final int[] levels;
+        int stamp;
+        int count;
+
+        Levels(int n) {
+            seen = new int[n];
+            order = new int[n];
+            levels = new int[n + 1];
+        }
+
+        /**
+         * Visits the nodes v with part[v] == id reachable from root, level by level: the
+         * nodes of level l are order[levels[l], levels[l + 1]). Returns the number of levels.
+         */
+        int build(Graph g, int root, int[] part, int id) {
+            int s = ++stamp;
+            seen[root] = s;
+            order[0] = root;
+            int head = 0;
+            int tail = 1;
+            int count = 0;
+            levels[0] = 0;
+            while (head < tail) {
+                int end = tail;
+                for (; head < end; head++) {
+                    int v = order[head];
+                    for (int q = g.xadj[v]; q < g.xadj[v + 1]; q++) {
+                        int u = g.adj[q];
+                        if (part[u] == id && seen[u] != s) {
+                            seen[u] = s;
+                            order[tail++] = u;
+                        }
+                    }
+                }
+                levels[++count] = end;
+            }
+            this.count = count;
+            return count;
+        }
+
+        /**
+         * Finds a node of large eccentricity (George and Liu): starts from the node of smallest
+         * degree in the last level as long as that gives more levels.
+         */
+        int peripheral(Graph g, int start, int[] part, int id) {
+            int root = start;
+            int depth = build(g, root, part, id);
+            while (true) {
+                int candidate = -1;
+                for (int q = levels[depth - 1]; q < levels[depth]; q++) {
+                    int v = order[q];
+                    if (candidate == -1 || g.degree(v) < g.degree(candidate)) candidate = v;
+                }
+                int d = build(g, candidate, part, id);
+                if (d <= depth) return root;
+                root = candidate;
+                depth = d;
+            }
+        }
+    }
+
+    /**
+     * Computes the reverse Cuthill-McKee ordering.
+     *
+     * @param a The square matrix, only its pattern is used
+     * @return The permutation
+     */
+    public static int[] reverseCuthillMcKee(CsrMatrix a) {
+        Graph g = graph(a);
+        int n = g.n;
+        int[] perm = new int[n];
+        int[] part = new int[n];
+        long[] keys = new long[n];
+        Levels levels = new Levels(n);
+        int count = 0;
+        for (int s = 0; s < n; s++) {
+            if (part[s] != 0) continue;
+            int root = levels.peripheral(g, s, part, 0);
+            part[root] = -1;
+            perm[count++] = root;
+            for (int head = count - 1; head < count; head++) {
+                int v = perm[head];
+                int first = count;
+                for (int q = g.xadj[v]; q < g.xadj[v + 1]; q++) {
+                    int u = g.adj[q];
+                    if (part[u] == 0) {
+                        part[u] = -1;
+                        keys[count - first] = ((long) g.degree(u) << 32) | u;
+                        count++;
+                    }
+                }
+                // the neighbours in ascending degree
+                Arrays.sort(keys, 0, count - first);
+                for (int q = first; q < count; q++) perm[q] = (int) keys[q - first];
+            }
+        }
+        for (int k = 0; k < n / 2; k++) {
+            int t = perm[k];
+            perm[k] = perm[n - 1 - k];
+            perm[n - 1 - k] = t;
+        }
+        return perm;
+    }
+
+    /**
+     * Computes an approximate minimum degree ordering.
+     *
+     * @param a The square matrix, only its pattern is used
+     * @return The permutation
+     */
+    public static int[] approximateMinimumDegree(CsrMatrix a) {
+        return minimumDegree(graph(a));
+    }
+
+    static int[] minimumDegree(Graph g) {
+        int n = g.n;
+        // variables: their adjacent variables and elements; elements: their variables
+        int[][] adj = new int[n][];
+        int[] alen = new int[n];
+        int[][] elems = new int[n][];
+        int[] elen = new int[n];
+        int[][] members = new int[n][];
+        boolean[] eliminated = new boolean[n];
+        boolean[] absorbed = new boolean[n];
+        int[] degree = new int[n];
+        int[] head = new int[n];
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        Arrays.fill(head, -1);
+        for (int i = 0; i < n; i++) {
+            adj[i] = Arrays.copyOfRange(g.adj, g.xadj[i], g.xadj[i + 1]);
+            alen[i] = adj[i].length;
+            elems[i] = new int[4];
+            degree[i] = alen[i];
+            link(head, next, prev, i, degree[i]);
+        }
+        int[] mark = new int[n];
+        int[] wmark = new int[n];
+        int[] w = new int[n];
+        int[] lp = new int[n];
+        int stamp = 0;
+        int wstamp = 0;
+        int mindeg = 0;
+        int[] order = new int[n];
+
+        for (int k = 0; k < n; k++) {
+            while (head[mindeg] == -1) mindeg++;
+            int p = head[mindeg];
+            unlink(head, next, prev, p, degree[p]);
+            order[k] = p;
+            eliminated[p] = true;
+
+            // the new element p: the variables of the elements of p and its neighbours
+            int s = ++stamp;
+            mark[p] = s;
+            int len = 0;
+            for (int q = 0; q < elen[p]; q++) {
+                int e = elems[p][q];
+                if (absorbed[e]) continue;
+                for (int v : members[e]) {
+                    if (mark[v] != s) {
+                        mark[v] = s;
+                        lp[len++] = v;
+                    }
+                }
+                absorbed[e] = true;
+                members[e] = null;
+            }
+            for (int q = 0; q < alen[p]; q++) {
+                int v = adj[p][q];
+                if (mark[v] != s) {
+                    mark[v] = s;
+                    lp[len++] = v;
+                }
+            }
+            members[p] = Arrays.copyOf(lp, len);
+            adj[p] = null;
+            elems[p] = null;
+
+            // |Le \ Lp| for all other elements e of the variables in Lp
+            int ws = ++wstamp;
+            for (int q = 0; q < len; q++) {
+                int i = lp[q];
+                unlink(head, next, prev, i, degree[i]);
+                for (int r = 0; r < elen[i]; r++) {
+                    int e = elems[i][r];
+                    if (absorbed[e]) continue;
+                    if (wmark[e] != ws) {
+                        wmark[e] = ws;
+                        w[e] = members[e].length;
+                    }
+                    w[e]--;
+                }
+            }
+
+            for (int q = 0; q < len; q++) {
+                int i = lp[q];
+                int external = 0;
+                int out = 0;
+                for (int r = 0; r < elen[i]; r++) {
+                    int e = elems[i][r];
+                    if (absorbed[e]) continue;
+                    if (w[e] == 0) {
+                        // e is a subset of p
+                        absorbed[e] = true;
+                        members[e] = null;
+                        continue;
+                    }
+                    external += w[e];
+                    elems[i][out++] = e;
+                }
+                if (out == elems[i].length) elems[i] = Arrays.copyOf(elems[i], 2 * out);
+                elems[i][out++] = p;
+                elen[i] = out;
+                // neighbours covered by p are not needed any more
+                int ao = 0;
+                for (int r = 0; r < alen[i]; r++) {
+                    int v = adj[i][r];
+                    if (mark[v] != s && !eliminated[v]) adj[i][ao++] = v;
+                }
+                alen[i] = ao;
+                int d = alen[i] + len - 1 + external;
+                d = Math.min(d, degree[i] + len - 1);
+                d = Math.min(d, n - k - 2);
+                degree[i] = Math.max(d, 0);
+                link(head, next, prev, i, degree[i]);
+                mindeg = Math.min(mindeg, degree[i]);
+            }
+        }
+        return order;
+    }
+
+    private static void link(int[] head, int[] next, int[] prev, int v, int d) {
+        prev[v] = -1;
+        next[v] = head[d];
+        if (head[d] != -1) prev[head[d]] = v;
+        head[d] = v;
+    }
+
+    private static void unlink(int[] head, int[] next, int[] prev, int v, int d) {
+        if (prev[v] != -1) next[prev[v]] = next[v];
+        else head[d] = next[v];
+        if (next[v] != -1) prev[next[v]] = prev[v];
+    }
+
+    /**
+     * A part of the graph to be ordered into the positions start, start + 1, ...
+     */
+    private static final class Part {
+        final int[] nodes;
+        final int start;
+
+        Part(int[] nodes, int start) {
+            this.nodes = nodes;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Computes a nested dissection ordering.
+     *
+     * @param a The square matrix, only its pattern is used
+     * @return The permutation
+     */
+    public static int[] nestedDissection(CsrMatrix a) {
+        Graph g = graph(a);
+        int n = g.n;
+        int[] perm = new int[n];
+        int[] part = new int[n];
+        int[] level = new int[n];
+        int[] local = new int[n];
+        Levels levels = new Levels(n);
+        ArrayDeque<Part> parts = new ArrayDeque<Part>();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) all[v] = v;
+        if (n > 0) parts.push(new Part(all, 0));
+        int id = 0;
+
+        while (!parts.isEmpty()) {
+            Part t = parts.pop();
+            int[] nodes = t.nodes;
+            int size = nodes.length;
+            id++;
+            for (int v : nodes) part[v] = id;
+            if (size <= DISSECTION_LEAF) {
+                orderLeaf(g, t, part, id, local, perm);
+                continue;
+            }
+
+            int root = levels.peripheral(g, nodes[0], part, id);
+            int depth = levels.build(g, root, part, id);
+            int reached = levels.levels[depth];
+            if (reached < size) {
+                // not connected: the component of the root and the rest are ordered separately
+                int[] rest = new int[size - reached];
+                int r = 0;
+                for (int v : nodes) if (levels.seen[v] != levels.stamp) rest[r++] = v;
+                parts.push(new Part(Arrays.copyOf(levels.order, reached), t.start));
+                parts.push(new Part(rest, t.start + reached));
+                continue;
+            }
+            if (depth < 3) {
+                orderLeaf(g, t, part, id, local, perm);
+                continue;
+            }
+
+            // the level at which half of the nodes are reached separates the part
+            int sep = 1;
+            while (sep < depth - 2 && levels.levels[sep + 1] < size / 2) sep++;
+            for (int l = 0; l < depth; l++)
+                for (int q = levels.levels[l]; q < levels.levels[l + 1]; q++) level[levels.order[q]] = l;
+            int[] first = new int[size];
+            int[] second = new int[size];
+            int[] separator = new int[size];
+            int nfirst = 0, nsecond = 0, nseparator = 0;
+            for (int q = 0; q < size; q++) {
+                int v = levels.order[q];
+                if (level[v] < sep) {
+                    first[nfirst++] = v;
+                } else if (level[v] > sep) {
+                    second[nsecond++] = v;
+                } else {
+                    // only the nodes with a neighbour beyond the level have to separate
+                    boolean boundary = false;
+                    for (int e = g.xadj[v]; e < g.xadj[v + 1] && !boundary; e++) {
+                        int u = g.adj[e];
+                        boundary = part[u] == id && level[u] == sep + 1;
+                    }
+                    if (boundary) separator[nseparator++] = v;
+                    else first[nfirst++] = v;
+                }
+            }
+            for (int q = 0; q < nseparator; q++) perm[t.start + nfirst + nsecond + q] = separator[q];
+            parts.push(new Part(Arrays.copyOf(first, nfirst), t.start));
+            if (nsecond > 0) parts.push(new Part(Arrays.copyOf(second, nsecond), t.start + nfirst));
+        }
+        return perm;
+    }
+
+    /**
+     * Orders a part by minimum degree on its induced subgraph.
+     */
+    private static void orderLeaf(Graph g, Part t, int[] part, int id, int[] local, int[] perm) {
+        int[] nodes = t.nodes;
+        int size = nodes.length;
+        for (int q = 0; q < size; q++) local[nodes[q]] = q;
+        int[] xadj = new int[size + 1];
+        for (int q = 0; q < size; q++) {
+            int v = nodes[q];
+            int d = 0;
+            for (int e = g.xadj[v]; e < g.xadj[v + 1]; e++) if (part[g.adj[e]] == id) d++;
+            xadj[q + 1] = xadj[q] + d;
+        }
+        int[] adj = new int[xadj[size]];
+        int at = 0;
+        for (int v : nodes)
+            for (int e = g.xadj[v]; e < g.xadj[v + 1]; e++)
+                if (part[g.adj[e]] == id) adj[at++] = local[g.adj[e]];
+        int[] order = minimumDegree(new Graph(size, xadj, adj));
+        for (int q = 0; q < size; q++) perm[t.start + q] = nodes[order[q]];
+    }
+
+    /**
+     * Inverts a permutation.
+     *
+     * @param perm The permutation, perm[k] is the original index at position k
+     * @return The position of every original index
+     * @throws IllegalArgumentException if perm is not a permutation
+     */
+    public static int[] invert(int[] perm) {
+        int n = perm.length;
+        int[] pinv = new int[n];
+        Arrays.fill(pinv, -1);
+        for (int k = 0; k < n; k++) {
+            if (perm[k] < 0 || perm[k] >= n || pinv[perm[k]] != -1)
+                throw new IllegalArgumentException("Not a permutation, entry " + k + " is " + perm[k]);
+            pinv[perm[k]] = k;
+        }
+        return pinv;
+    }
+
+    /**
+     * Returns the bandwidth, the largest distance of a non-zero entry from the diagonal.
+     *
+     * @param a The matrix
+     * @return max |i - j| over the non-zero entries a_ij
+     */
+    public static int bandwidth(CsrMatrix a) {
+        int[] rowptr = a.getRowPointers();
+        int[] colind = a.getColumnIndices();
+        int band = 0;
+        for (int i = 0; i < a.getRowNum(); i++) {
+            if (rowptr[i] == rowptr[i + 1]) continue;
+            band = Math.max(band, Math.max(i - colind[rowptr[i]], colind[rowptr[i + 1] - 1] - i));
+        }
+        return band;
+    }
+
+    /**
+     * Returns the profile (envelope size) of the lower triangle, the number of positions
+     * between the first non-zero entry of every row and the diagonal.
+     *
+     * @param a The matrix
+     * @return the sum of i - min{j : a_ij != 0} over the rows with entries left of the diagonal
+     */
+    public static long profile(CsrMatrix a) {
+        int[] rowptr = a.getRowPointers();
+        int[] colind = a.getColumnIndices();
+        long profile = 0;
+        for (int i = 0; i < a.getRowNum(); i++)
+            if (rowptr[i] < rowptr[i + 1] && colind[rowptr[i]] < i) profile += i - colind[rowptr[i]];
+        return profile;
+    }
+
+}
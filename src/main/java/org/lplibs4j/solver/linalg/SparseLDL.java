@@ -0,0 +1,434 @@
+package org.lplibs4j.solver.linalg;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.ParallelSpMV;
+import org.lplibs4j.api.implementation.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Numeric LDL^T and Cholesky factorization of symmetric sparse matrices.
+ * <p>
+ * The factor is computed row by row ("up-looking"): row k of L is the solution of a
+ * sparse triangular system with the rows of L computed before, whose pattern is found by
+ * walking the elimination tree of the SymbolicFactorization. L is stored by columns with
+ * a unit diagonal, D separately. No pivoting is done, so the matrix must be positive
+ * definite (Cholesky) or quasi-definite (LDL^T with positive and negative entries in D);
+ * a zero pivot throws an IllegalArgumentException.
+ * <p>
+ * Row k only depends on the rows of its descendants in the elimination tree, so disjoint
+ * subtrees are factorized in parallel and the remaining top of the tree afterwards. The
+ * arrays of the factor are kept, {@link #refactorize(CsrMatrix)} computes the factor of
+ * a matrix with the same pattern but new values without any allocation but the
+ * workspace.
+ *
+ * @author planatsc
+ */
+public class SparseLDL {
+
+    /**
+     * The minimal number of operations worth splitting the tree.
+     */
+    static final long THRESHOLD = 1L << 20;
+
+    final SymbolicFactorization symbolic;
+    final boolean positivedefinite;
+    final ForkJoinPool pool;
+    final int[] li;
+    final double[] lx;
+    final double[] d;
+    // the subtrees factorized in parallel, in postorder, and the remaining top nodes
+    int[][] subtrees;
+    int[] top;
+
+    /**
+     * Computes the LDL^T factorization of a quasi-definite matrix on the shared pool.
+     *
+     * @param symbolic The analysis of the pattern of a
+     * @param a        The symmetric matrix
+     * @return The factorization
+     */
+    public static SparseLDL ldl(SymbolicFactorization symbolic, CsrMatrix a) {
+        return factorize(symbolic, a, false, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Analyses and factorizes a quasi-definite matrix in its given order.
+     *
+     * @param a The symmetric matrix
+     * @return The factorization
+     */
+    public static SparseLDL ldl(SparseMatrix a) {
+        CsrMatrix csr = new CsrMatrix(a);
+        return factorize(SymbolicFactorization.analyze(csr), csr, false, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Computes the Cholesky factorization of a positive definite matrix on the shared
+     * pool. The factor is L D^(1/2), see getCholeskyFactor.
+     *
+     * @param symbolic The analysis of the pattern of a
+     * @param a        The symmetric positive definite matrix
+     * @return The factorization
+     */
+    public static SparseLDL cholesky(SymbolicFactorization symbolic, CsrMatrix a) {
+        return factorize(symbolic, a, true, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Analyses and factorizes a positive definite matrix in its given order.
+     *
+     * @param a The symmetric positive definite matrix
+     * @return The factorization
+     */
+    public static SparseLDL cholesky(SparseMatrix a) {
+        CsrMatrix csr = new CsrMatrix(a);
+        return factorize(SymbolicFactorization.analyze(csr), csr, true, ParallelSpMV.getPool());
+    }
+
+    /**
+     * Factorizes a matrix on the given pool.
+     *
+     * @param symbolic         The analysis of the pattern of a
+     * @param a                The symmetric matrix
+     * @param positivedefinite If true, every pivot must be positive
+     * @param pool             The pool factorizing the subtrees
+     * @return The factorization
+     */
+    public static SparseLDL factorize(SymbolicFactorization symbolic, CsrMatrix a, boolean positivedefinite, ForkJoinPool pool) {
+        SparseLDL result = new SparseLDL(symbolic, positivedefinite, pool);
+        result.refactorize(a);
+        return result;
+    }
+
+    private SparseLDL(SymbolicFactorization symbolic, boolean positivedefinite, ForkJoinPool pool) {
+        this.symbolic = symbolic;
+        this.positivedefinite = positivedefinite;
+        this.pool = pool;
+        this.li = new int[symbolic.lp[symbolic.n]];
+        this.lx = new double[li.length];
+        this.d = new double[symbolic.n];
+        schedule();
+    }
+
+    /**
+     * Computes the factor of a matrix with the pattern of the analysis and new values.
+     *
+     * @param a The symmetric matrix
+     */
+    public void refactorize(final CsrMatrix a) {
+        if (!symbolic.hasPattern(a))
+            throw new IllegalArgumentException("The matrix doesn't have the analysed pattern");
+        final int n = symbolic.n;
+        final int[] lnz = new int[n];
+        if (subtrees.length > 0) {
+            final IllegalArgumentException[] errors = new IllegalArgumentException[subtrees.length];
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(subtrees.length);
+                    for (int t = 0; t < subtrees.length; t++) {
+                        final int part = t;
+                        tasks.add(new RecursiveAction() {
+                            @Override
+                            protected void compute() {
+                                try {
+                                    factorizeRows(a, subtrees[part], lnz, new Workspace(n));
+                                } catch (IllegalArgumentException e) {
+                                    errors[part] = e;
+                                }
+                            }
+                        });
+                    }
+                    invokeAll(tasks);
+                }
+            });
+            for (IllegalArgumentException e : errors)
+                if (e != null) throw e;
+        }
+        factorizeRows(a, top, lnz, new Workspace(n));
+    }
+
+    /**
+     * The dense row, the pattern stack and the marks of one thread.
+     */
+    static final class Workspace {
+        final double[] y;
+        final int[] pattern;
+        final int[] flag;
+
+        Workspace(int n) {
+            y = new double[n];
+            pattern = new int[n];
+            flag = new int[n];
+            Arrays.fill(flag, -1);
+        }
+    }
+
+    /**
+     * Computes the rows of L and entries of D in the given order, descendants first.
+     */
+    void factorizeRows(CsrMatrix a, int[] rows, int[] lnz, Workspace w) {
+        int n = symbolic.n;
+        int[] perm = symbolic.perm;
+        int[] pinv = symbolic.pinv;
+        int[] parent = symbolic.parent;
+        int[] lp = symbolic.lp;
+        int[] arowptr = a.getRowPointers();
+        int[] acolind = a.getColumnIndices();
+        double[] avalues = a.getValues();
+        double[] y = w.y;
+        int[] pattern = w.pattern;
+        int[] flag = w.flag;
+
+        for (int k : rows) {
+            // scatter row k of A and collect the pattern of row k of L in topological order
+            int top = n;
+            flag[k] = k;
+            lnz[k] = 0;
+            int row = perm != null ? perm[k] : k;
+            for (int p = arowptr[row]; p < arowptr[row + 1]; p++) {
+                int i = pinv != null ? pinv[acolind[p]] : acolind[p];
+                if (i > k) continue;
+                y[i] += avalues[p];
+                int len = 0;
+                for (; flag[i] != k; i = parent[i]) {
+                    pattern[len++] = i;
+                    flag[i] = k;
+                }
+                while (len > 0) pattern[--top] = pattern[--len];
+            }
+
+            // sparse triangular solve for row k of L
+            double dk = y[k];
+            y[k] = 0;
+            for (; top < n; top++) {
+                int i = pattern[top];
+                double yi = y[i];
+                y[i] = 0;
+                int end = lp[i] + lnz[i];
+                for (int p = lp[i]; p < end; p++)
+                    y[li[p]] -= lx[p] * yi;
+                double lki = yi / d[i];
+                dk -= lki * yi;
+                li[end] = k;
+                lx[end] = lki;
+                lnz[i]++;
+            }
+            if (dk == 0 || Double.isNaN(dk) || (positivedefinite && dk < 0))
+                throw new IllegalArgumentException("Pivot " + dk + " in column " + k + ", the matrix is not "
+                        + (positivedefinite ? "positive definite" : "quasi-definite"));
+            d[k] = dk;
+        }
+    }
+
+    /**
+     * Splits the elimination tree into disjoint subtrees of limited work, which are
+     * factorized in parallel, and the top nodes above them.
+     */
+    private void schedule() {
+        int n = symbolic.n;
+        int[] parent = symbolic.parent;
+        int[] colcount = symbolic.colcount;
+        int threads = pool.getParallelism();
+        if (threads <= 1 || symbolic.flops < THRESHOLD) {
+            subtrees = new int[0][];
+            top = new int[n];
+            for (int k = 0; k < n; k++) top[k] = k;
+            return;
+        }
+
+        // children lists and the work of every subtree, children have smaller numbers
+        int[] head = new int[n];
+        int[] next = new int[n];
+        Arrays.fill(head, -1);
+        final long[] work = new long[n];
+        for (int k = n - 1; k >= 0; k--) {
+            if (parent[k] != -1) {
+                next[k] = head[parent[k]];
+                head[parent[k]] = k;
+            }
+        }
+        long total = 0;
+        for (int k = 0; k < n; k++) {
+            work[k] += (long) colcount[k] * colcount[k] + 1;
+            if (parent[k] != -1) work[parent[k]] += work[k];
+            else total += work[k];
+        }
+
+        // split the largest subtree until all are small enough
+        long limit = total / (4L * threads);
+        PriorityQueue<Integer> roots = new PriorityQueue<Integer>(16, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return work[a] < work[b] ? 1 : work[a] > work[b] ? -1 : 0;
+            }
+        });
+        for (int k = 0; k < n; k++)
+            if (parent[k] == -1) roots.add(k);
+        boolean[] istop = new boolean[n];
+        int ntop = 0;
+        while (!roots.isEmpty() && work[roots.peek()] > limit) {
+            int k = roots.poll();
+            istop[k] = true;
+            ntop++;
+            for (int c = head[k]; c != -1; c = next[c]) roots.add(c);
+        }
+
+        top = new int[ntop];
+        int t = 0;
+        for (int k = 0; k < n; k++)
+            if (istop[k]) top[t++] = k;
+
+        // the nodes of every subtree in postorder
+        subtrees = new int[roots.size()][];
+        int s = 0;
+        int[] stack = new int[n];
+        int[] child = new int[n];
+        for (int root : roots) {
+            int size = 0;
+            int[] order = new int[countNodes(root, head, next, stack)];
+            int sp = 0;
+            stack[sp++] = root;
+            child[root] = head[root];
+            while (sp > 0) {
+                int k = stack[sp - 1];
+                int c = child[k];
+                if (c != -1) {
+                    child[k] = next[c];
+                    child[c] = head[c];
+                    stack[sp++] = c;
+                } else {
+                    order[size++] = k;
+                    sp--;
+                }
+            }
+            subtrees[s++] = order;
+        }
+    }
+
+    private static int countNodes(int root, int[] head, int[] next, int[] stack) {
+        int count = 0;
+        int sp = 0;
+        stack[sp++] = root;
+        while (sp > 0) {
+            int k = stack[--sp];
+            count++;
+            for (int c = head[k]; c != -1; c = next[c]) stack[sp++] = c;
+        }
+        return count;
+    }
+
+    /**
+     * Solves A x = b in place.
+     *
+     * @param b The right hand side, overwritten with the solution
+     */
+    public void solve(double[] b) {
+        int n = symbolic.n;
+        int[] perm = symbolic.perm;
+        double[] x = b;
+        if (perm != null) {
+            x = new double[n];
+            for (int k = 0; k < n; k++) x[k] = b[perm[k]];
+        }
+        solveL(x);
+        solveD(x);
+        solveLt(x);
+        if (perm != null) {
+            for (int k = 0; k < n; k++) b[perm[k]] = x[k];
+        }
+    }
+
+    /**
+     * Solves L x = b in place, in the order of the factorization.
+     *
+     * @param x The right hand side, overwritten with the solution
+     */
+    public void solveL(double[] x) {
+        int[] lp = symbolic.lp;
+        for (int j = 0; j < symbolic.n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = lp[j]; p < lp[j + 1]; p++)
+                x[li[p]] -= lx[p] * xj;
+        }
+    }
+
+    /**
+     * Solves D x = b in place.
+     *
+     * @param x The right hand side, overwritten with the solution
+     */
+    public void solveD(double[] x) {
+        for (int j = 0; j < symbolic.n; j++) x[j] /= d[j];
+    }
+
+    /**
+     * Solves L^T x = b in place, in the order of the factorization.
+     *
+     * @param x The right hand side, overwritten with the solution
+     */
+    public void solveLt(double[] x) {
+        int[] lp = symbolic.lp;
+        for (int j = symbolic.n - 1; j >= 0; j--) {
+            double sum = x[j];
+            for (int p = lp[j]; p < lp[j + 1]; p++)
+                sum -= lx[p] * x[li[p]];
+            x[j] = sum;
+        }
+    }
+
+    public SymbolicFactorization getSymbolic() {
+        return symbolic;
+    }
+
+    /**
+     * Returns the diagonal D.
+     *
+     * @return the diagonal, not a copy
+     */
+    public double[] getD() {
+        return d;
+    }
+
+    /**
+     * Returns the strictly lower triangle of L, in the order of the factorization.
+     *
+     * @return L without its unit diagonal
+     */
+    public CsrMatrix getL() {
+        return columnsToMatrix(false);
+    }
+
+    /**
+     * Returns the Cholesky factor L D^(1/2) including its diagonal, in the order of the
+     * factorization. Only available for positive definite matrices.
+     *
+     * @return The lower triangular Cholesky factor
+     */
+    public CsrMatrix getCholeskyFactor() {
+        if (!positivedefinite)
+            throw new UnsupportedOperationException("The Cholesky factor is only defined for positive definite matrices");
+        return columnsToMatrix(true);
+    }
+
+    private CsrMatrix columnsToMatrix(boolean cholesky) {
+        int n = symbolic.n;
+        int[] lp = symbolic.lp;
+        SparseMatrix result = new SparseMatrix(n, n);
+        for (int j = 0; j < n; j++) {
+            double scale = cholesky ? Math.sqrt(d[j]) : 1;
+            if (cholesky) result.set(j, j, scale);
+            for (int p = lp[j]; p < lp[j + 1]; p++)
+                result.set(li[p], j, lx[p] * scale);
+        }
+        return new CsrMatrix(result);
+    }
+
+}
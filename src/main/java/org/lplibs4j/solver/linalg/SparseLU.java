@@ -0,0 +1,805 @@
+package org.lplibs4j.solver.linalg;
+
+import org.lplibs4j.api.implementation.CscMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Sparse LU factorization of a square basis matrix B, with product form updates for
+ * replacing single columns, as needed by basis oriented algorithms like the simplex method.
+ * <p>
+ * The factorization eliminates the pivots in the order of threshold Markowitz pivoting:
+ * among the entries whose magnitude is at least threshold times the largest entry of their
+ * row, an entry with a small Markowitz count (r - 1)(c - 1) is chosen, where r and c are the
+ * numbers of entries of its row and column in the active submatrix. Rows and columns are
+ * kept in lists by their counts, so singletons are found first and the search stops after
+ * a few candidates. L and U are stored in the order of elimination, both by columns and by
+ * rows, so FTRAN (solving B x = a) and BTRAN (solving B^T y = c) run over the entries of the
+ * factors in the direction where zeros of the right hand side can be skipped. For very
+ * sparse right hand sides only the entries reachable from its non-zeros are visited.
+ * <p>
+ * Replacing the column at a position of the basis appends an eta vector to the
+ * factorization instead of refactorizing it. Solves get more expensive with every update,
+ * needsRefactorization() tells when a new factorization pays off.
+ * <p>
+ * The solves share work arrays, so an instance must not be used by several threads at
+ * the same time.
+ *
+ * @author planatsc
+ */
+public class SparseLU {
+
+    /**
+     * The default threshold for the magnitude of pivots relative to their row.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.1;
+
+    /**
+     * The number of rows and columns searched for a pivot after the first candidate.
+     */
+    static final int SEARCH = 4;
+
+    /**
+     * The number of updates after which a refactorization is recommended.
+     */
+    static final int MAX_UPDATES = 100;
+
+    /**
+     * Right hand sides with fewer entries than dimension / HYPERSPARSE are solved by
+     * visiting only the reachable entries of the factors.
+     */
+    static final int HYPERSPARSE = 16;
+
+    final int m;
+    // row and column of B eliminated in every step, and the step of every row and column
+    final int[] prow;
+    final int[] pcol;
+    final int[] steprow;
+    final int[] stepcol;
+    final double[] diag;
+    // L by columns and rows, U by rows and columns, all indices are steps
+    int[] lcolptr, lcolind;
+    double[] lcolval;
+    int[] lrowptr, lrowind;
+    double[] lrowval;
+    int[] urowptr, urowind;
+    double[] urowval;
+    int[] ucolptr, ucolind;
+    double[] ucolval;
+
+    // the eta file of the updates: the position, its pivot and the other entries
+    int updates;
+    int[] etapos = new int[16];
+    double[] etapivot = new double[16];
+    int[] etaptr = new int[17];
+    int[] etaind = new int[64];
+    double[] etaval = new double[64];
+
+    // work arrays of the solves
+    final double[] work;
+    final int[] mark;
+    final int[] stack;
+    final int[] list;
+    int stamp;
+
+    /**
+     * Factorizes a square matrix with the default threshold.
+     *
+     * @param b The matrix
+     * @return The factorization
+     */
+    public static SparseLU factorize(CscMatrix b) {
+        return factorize(b, null, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Factorizes the basis made of the given columns of a, with the default threshold.
+     *
+     * @param a     The constraint matrix
+     * @param basis The columns of a forming the basis, as many as a has rows
+     * @return The factorization
+     */
+    public static SparseLU factorize(CscMatrix a, int[] basis) {
+        return factorize(a, basis, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Factorizes the basis made of the given columns of a.
+     *
+     * @param a         The constraint matrix
+     * @param basis     The columns of a forming the basis, as many as a has rows, or null if
+     *                  a is the square basis itself
+     * @param threshold The minimal magnitude of a pivot relative to the largest entry of its
+     *                  row, between 0 and 1; smaller values give sparser but less stable factors
+     * @return The factorization
+     * @throws IllegalArgumentException if the basis is singular
+     */
+    public static SparseLU factorize(CscMatrix a, int[] basis, double threshold) {
+        int m = a.getRowNum();
+        int cols = basis != null ? basis.length : a.getColNum();
+        if (cols != m)
+            throw new IllegalArgumentException("The basis must be square " + m + "x" + cols);
+        if (threshold <= 0 || threshold > 1)
+            throw new IllegalArgumentException("The threshold must be in (0, 1] but is " + threshold);
+        SparseLU lu = new SparseLU(m);
+        new Elimination(lu, a, basis, threshold).run();
+        return lu;
+    }
+
+    private SparseLU(int m) {
+        this.m = m;
+        prow = new int[m];
+        pcol = new int[m];
+        steprow = new int[m];
+        stepcol = new int[m];
+        diag = new double[m];
+        work = new double[m];
+        mark = new int[m];
+        stack = new int[m];
+        list = new int[m];
+    }
+
+    /**
+     * The active submatrix during the factorization: the values by rows, the pattern by
+     * columns and both in lists by their number of entries.
+     */
+    private static final class Elimination {
+        final SparseLU lu;
+        final int m;
+        final double threshold;
+        final int[][] rcol;
+        final double[][] rval;
+        final int[] rlen;
+        final double[] rmax;
+        final int[][] crow;
+        final int[] clen;
+        final int[] rhead, rnext, rprev, rcount;
+        final int[] chead, cnext, cprev, ccount;
+        final int[] pos;
+
+        // L and U with row and column indices of B, before they are numbered by steps
+        int[] lptr, lind, uptr, uind;
+        double[] lval, uval;
+
+        Elimination(SparseLU lu, CscMatrix a, int[] basis, double threshold) {
+            this.lu = lu;
+            this.m = lu.m;
+            this.threshold = threshold;
+            int[] colptr = a.getColumnPointers();
+            int[] rowind = a.getRowIndices();
+            double[] values = a.getValues();
+
+            rlen = new int[m];
+            clen = new int[m];
+            for (int j = 0; j < m; j++) {
+                int col = basis != null ? basis[j] : j;
+                if (col < 0 || col >= a.getColNum())
+                    throw new IllegalArgumentException("Basis column " + col + " out of range");
+                for (int p = colptr[col]; p < colptr[col + 1]; p++) {
+                    if (values[p] == 0) continue;
+                    rlen[rowind[p]]++;
+                    clen[j]++;
+                }
+            }
+            rcol = new int[m][];
+            rval = new double[m][];
+            crow = new int[m][];
+            for (int i = 0; i < m; i++) {
+                rcol[i] = new int[rlen[i] + 4];
+                rval[i] = new double[rlen[i] + 4];
+                crow[i] = new int[clen[i] + 4];
+                rlen[i] = 0;
+                clen[i] = 0;
+            }
+            for (int j = 0; j < m; j++) {
+                int col = basis != null ? basis[j] : j;
+                for (int p = colptr[col]; p < colptr[col + 1]; p++) {
+                    if (values[p] == 0) continue;
+                    int i = rowind[p];
+                    rcol[i][rlen[i]] = j;
+                    rval[i][rlen[i]++] = values[p];
+                    crow[j][clen[j]++] = i;
+                }
+            }
+
+            rmax = new double[m];
+            Arrays.fill(rmax, -1);
+            rhead = new int[m + 1];
+            chead = new int[m + 1];
+            Arrays.fill(rhead, -1);
+            Arrays.fill(chead, -1);
+            rnext = new int[m];
+            rprev = new int[m];
+            rcount = new int[m];
+            cnext = new int[m];
+            cprev = new int[m];
+            ccount = new int[m];
+            for (int i = 0; i < m; i++) {
+                link(rhead, rnext, rprev, rcount, i, rlen[i]);
+                link(chead, cnext, cprev, ccount, i, clen[i]);
+            }
+            pos = new int[m];
+            Arrays.fill(pos, -1);
+
+            int nnz = colptr[a.getColNum()];
+            lptr = new int[m + 1];
+            uptr = new int[m + 1];
+            lind = new int[Math.max(16, nnz)];
+            lval = new double[lind.length];
+            uind = new int[Math.max(16, nnz)];
+            uval = new double[uind.length];
+        }
+
+        static void link(int[] head, int[] next, int[] prev, int[] count, int k, int c) {
+            count[k] = c;
+            prev[k] = -1;
+            next[k] = head[c];
+            if (head[c] != -1) prev[head[c]] = k;
+            head[c] = k;
+        }
+
+        static void unlink(int[] head, int[] next, int[] prev, int[] count, int k) {
+            if (prev[k] != -1) next[prev[k]] = next[k];
+            else head[count[k]] = next[k];
+            if (next[k] != -1) prev[next[k]] = prev[k];
+        }
+
+        double rowMax(int i) {
+            if (rmax[i] < 0) {
+                double max = 0;
+                for (int e = 0; e < rlen[i]; e++) max = Math.max(max, Math.abs(rval[i][e]));
+                rmax[i] = max;
+            }
+            return rmax[i];
+        }
+
+        static int find(int[] a, int len, int value) {
+            for (int e = 0; e < len; e++)
+                if (a[e] == value) return e;
+            return -1;
+        }
+
+        void run() {
+            for (int k = 0; k < m; k++) {
+                long pivot = findPivot(k);
+                eliminate(k, (int) (pivot >>> 32), (int) pivot);
+            }
+            lu.finish(lptr, lind, lval, uptr, uind, uval);
+        }
+
+        /**
+         * Returns the row and column of the pivot, packed in a long.
+         */
+        long findPivot(int k) {
+            if (chead[0] != -1)
+                throw new IllegalArgumentException("The basis is singular, column " + chead[0] + " has no pivot");
+            long best = Long.MAX_VALUE;
+            double bestvalue = 0;
+            int br = -1, bc = -1;
+            int searched = 0;
+            for (int cnt = 1; cnt <= m; cnt++) {
+                for (int j = chead[cnt]; j != -1; j = cnext[j]) {
+                    if (cnt == 1) {
+                        // a column singleton needs no elimination and is accepted as it is
+                        int i = crow[j][0];
+                        if (rval[i][find(rcol[i], rlen[i], j)] != 0) return ((long) i << 32) | j;
+                    }
+                    for (int e = 0; e < cnt; e++) {
+                        int i = crow[j][e];
+                        double value = Math.abs(rval[i][find(rcol[i], rlen[i], j)]);
+                        if (value == 0 || value < threshold * rowMax(i)) continue;
+                        long cost = (long) (rlen[i] - 1) * (cnt - 1);
+                        if (cost < best || (cost == best && value > bestvalue)) {
+                            best = cost;
+                            bestvalue = value;
+                            br = i;
+                            bc = j;
+                        }
+                    }
+                    if (br != -1 && ++searched >= SEARCH) return ((long) br << 32) | bc;
+                }
+                if (br != -1 && best <= (long) (cnt - 1) * (cnt - 1)) return ((long) br << 32) | bc;
+                for (int i = rhead[cnt]; i != -1; i = rnext[i]) {
+                    double max = rowMax(i);
+                    for (int e = 0; e < cnt; e++) {
+                        double value = Math.abs(rval[i][e]);
+                        if (value == 0 || value < threshold * max) continue;
+                        long cost = (long) (cnt - 1) * (clen[rcol[i][e]] - 1);
+                        if (cost < best || (cost == best && value > bestvalue)) {
+                            best = cost;
+                            bestvalue = value;
+                            br = i;
+                            bc = rcol[i][e];
+                        }
+                    }
+                    if (br != -1 && ++searched >= SEARCH) return ((long) br << 32) | bc;
+                }
+                if (br != -1 && best <= (long) cnt * cnt) return ((long) br << 32) | bc;
+            }
+            if (br == -1)
+                throw new IllegalArgumentException("The basis is singular, no pivot in step " + k + " of " + m);
+            return ((long) br << 32) | bc;
+        }
+
+        void eliminate(int k, int r, int c) {
+            lu.prow[k] = r;
+            lu.pcol[k] = c;
+            unlink(rhead, rnext, rprev, rcount, r);
+            unlink(chead, cnext, cprev, ccount, c);
+
+            // row r becomes row k of U, its columns lose the row
+            int[] prcol = rcol[r];
+            double[] prval = rval[r];
+            int plen = rlen[r];
+            double pivot = 0;
+            ensureU(uptr[k] + plen);
+            int u = uptr[k];
+            for (int e = 0; e < plen; e++) {
+                int j = prcol[e];
+                if (j == c) {
+                    pivot = prval[e];
+                    continue;
+                }
+                uind[u] = j;
+                uval[u++] = prval[e];
+                unlink(chead, cnext, cprev, ccount, j);
+                int at = find(crow[j], clen[j], r);
+                crow[j][at] = crow[j][--clen[j]];
+            }
+            uptr[k + 1] = u;
+            lu.diag[k] = pivot;
+            rlen[r] = 0;
+
+            // subtract multiples of row r from the other rows of column c
+            int l = lptr[k];
+            ensureL(l + clen[c]);
+            for (int ce = 0; ce < clen[c]; ce++) {
+                int i = crow[c][ce];
+                if (i == r) continue;
+                int at = find(rcol[i], rlen[i], c);
+                double factor = rval[i][at] / pivot;
+                rlen[i]--;
+                rcol[i][at] = rcol[i][rlen[i]];
+                rval[i][at] = rval[i][rlen[i]];
+                lind[l] = i;
+                lval[l++] = factor;
+
+                for (int e = 0; e < rlen[i]; e++) pos[rcol[i][e]] = e;
+                for (int e = uptr[k]; e < u; e++) {
+                    int j = uind[e];
+                    if (pos[j] >= 0) {
+                        rval[i][pos[j]] -= factor * uval[e];
+                    } else {
+                        appendToRow(i, j, -factor * uval[e]);
+                        appendToColumn(j, i);
+                    }
+                }
+                for (int e = 0; e < rlen[i]; e++) pos[rcol[i][e]] = -1;
+                rmax[i] = -1;
+                unlink(rhead, rnext, rprev, rcount, i);
+                link(rhead, rnext, rprev, rcount, i, rlen[i]);
+            }
+            lptr[k + 1] = l;
+            clen[c] = 0;
+            for (int e = uptr[k]; e < u; e++) {
+                int j = uind[e];
+                link(chead, cnext, cprev, ccount, j, clen[j]);
+            }
+        }
+
+        void appendToRow(int i, int j, double value) {
+            if (rlen[i] == rcol[i].length) {
+                rcol[i] = Arrays.copyOf(rcol[i], 2 * rlen[i] + 4);
+                rval[i] = Arrays.copyOf(rval[i], 2 * rlen[i] + 4);
+            }
+            rcol[i][rlen[i]] = j;
+            rval[i][rlen[i]++] = value;
+        }
+
+        void appendToColumn(int j, int i) {
+            if (clen[j] == crow[j].length) crow[j] = Arrays.copyOf(crow[j], 2 * clen[j] + 4);
+            crow[j][clen[j]++] = i;
+        }
+
+        void ensureL(int size) {
+            if (size > lind.length) {
+                int capacity = Math.max(size, 2 * lind.length);
+                lind = Arrays.copyOf(lind, capacity);
+                lval = Arrays.copyOf(lval, capacity);
+            }
+        }
+
+        void ensureU(int size) {
+            if (size > uind.length) {
+                int capacity = Math.max(size, 2 * uind.length);
+                uind = Arrays.copyOf(uind, capacity);
+                uval = Arrays.copyOf(uval, capacity);
+            }
+        }
+    }
+
+    /**
+     * Numbers the entries of L and U by steps and stores both factors by rows and columns.
+     */
+    void finish(int[] lptr, int[] lind, double[] lval, int[] uptr, int[] uind, double[] uval) {
+        for (int k = 0; k < m; k++) {
+            steprow[prow[k]] = k;
+            stepcol[pcol[k]] = k;
+        }
+        int lnz = lptr[m];
+        lcolptr = lptr;
+        lcolind = new int[lnz];
+        lcolval = Arrays.copyOf(lval, lnz);
+        for (int e = 0; e < lnz; e++) lcolind[e] = steprow[lind[e]];
+        int unz = uptr[m];
+        urowptr = uptr;
+        urowind = new int[unz];
+        urowval = Arrays.copyOf(uval, unz);
+        for (int e = 0; e < unz; e++) urowind[e] = stepcol[uind[e]];
+
+        lrowptr = new int[m + 1];
+        lrowind = new int[lnz];
+        lrowval = new double[lnz];
+        transpose(lcolptr, lcolind, lcolval, lrowptr, lrowind, lrowval);
+        ucolptr = new int[m + 1];
+        ucolind = new int[unz];
+        ucolval = new double[unz];
+        transpose(urowptr, urowind, urowval, ucolptr, ucolind, ucolval);
+    }
+
+    private void transpose(int[] ptr, int[] ind, double[] val, int[] tptr, int[] tind, double[] tval) {
+        for (int e = 0; e < ptr[m]; e++) tptr[ind[e] + 1]++;
+        for (int k = 0; k < m; k++) tptr[k + 1] += tptr[k];
+        int[] next = Arrays.copyOf(tptr, m);
+        for (int k = 0; k < m; k++) {
+            for (int e = ptr[k]; e < ptr[k + 1]; e++) {
+                int at = next[ind[e]]++;
+                tind[at] = k;
+                tval[at] = val[e];
+            }
+        }
+    }
+
+    /**
+     * Solves B x = a in place.
+     *
+     * @param x The right hand side indexed by rows, overwritten with the solution indexed by
+     *          basis positions
+     */
+    public void ftran(double[] x) {
+        ftran(x, null, 0);
+    }
+
+    /**
+     * Solves B x = a in place for a sparse right hand side.
+     *
+     * @param x     The right hand side indexed by rows, zero outside of index, overwritten
+     *              with the solution indexed by basis positions
+     * @param index The rows of the non-zeros of a, overwritten with the positions of the
+     *              non-zeros of x; at least as long as the dimension. May be null for a dense
+     *              right hand side.
+     * @param nnz   The number of entries of index
+     * @return The number of positions in index, or -1 if index is null
+     */
+    public int ftran(double[] x, int[] index, int nnz) {
+        double[] w = work;
+        boolean sparse = index != null && nnz < m / HYPERSPARSE;
+        if (!sparse) {
+            for (int k = 0; k < m; k++) w[k] = x[prow[k]];
+            for (int k = 0; k < m; k++) {
+                double t = w[k];
+                if (t == 0) continue;
+                for (int e = lcolptr[k]; e < lcolptr[k + 1]; e++) w[lcolind[e]] -= lcolval[e] * t;
+            }
+            for (int k = m - 1; k >= 0; k--) {
+                double t = w[k];
+                if (t == 0) continue;
+                t /= diag[k];
+                w[k] = t;
+                for (int e = ucolptr[k]; e < ucolptr[k + 1]; e++) w[ucolind[e]] -= ucolval[e] * t;
+            }
+            for (int k = 0; k < m; k++) {
+                x[pcol[k]] = w[k];
+                w[k] = 0;
+            }
+            nnz = -1;
+            if (index != null) {
+                nnz = 0;
+                for (int j = 0; j < m; j++) if (x[j] != 0) index[nnz++] = j;
+            }
+        } else {
+            int count = 0;
+            for (int e = 0; e < nnz; e++) {
+                int k = steprow[index[e]];
+                w[k] = x[index[e]];
+                x[index[e]] = 0;
+                list[count++] = k;
+            }
+            count = reach(list, count, lcolptr, lcolind);
+            Arrays.sort(list, 0, count);
+            for (int e = 0; e < count; e++) {
+                int k = list[e];
+                double t = w[k];
+                if (t == 0) continue;
+                for (int p = lcolptr[k]; p < lcolptr[k + 1]; p++) w[lcolind[p]] -= lcolval[p] * t;
+            }
+            count = reach(list, count, ucolptr, ucolind);
+            Arrays.sort(list, 0, count);
+            for (int e = count - 1; e >= 0; e--) {
+                int k = list[e];
+                double t = w[k];
+                if (t == 0) continue;
+                t /= diag[k];
+                w[k] = t;
+                for (int p = ucolptr[k]; p < ucolptr[k + 1]; p++) w[ucolind[p]] -= ucolval[p] * t;
+            }
+            nnz = 0;
+            for (int e = 0; e < count; e++) {
+                int k = list[e];
+                x[pcol[k]] = w[k];
+                w[k] = 0;
+                index[nnz++] = pcol[k];
+            }
+        }
+        return applyEtas(x, index, nnz);
+    }
+
+    /**
+     * Applies the inverses of the updates in the order they were made.
+     */
+    private int applyEtas(double[] x, int[] index, int nnz) {
+        if (updates == 0) return nnz;
+        int s = ++stamp;
+        if (nnz >= 0)
+            for (int e = 0; e < nnz; e++) mark[index[e]] = s;
+        for (int t = 0; t < updates; t++) {
+            int r = etapos[t];
+            double xr = x[r];
+            if (xr == 0) continue;
+            xr /= etapivot[t];
+            x[r] = xr;
+            for (int e = etaptr[t]; e < etaptr[t + 1]; e++) {
+                int i = etaind[e];
+                x[i] -= etaval[e] * xr;
+                if (nnz >= 0 && mark[i] != s) {
+                    mark[i] = s;
+                    index[nnz++] = i;
+                }
+            }
+        }
+        return nnz;
+    }
+
+    /**
+     * Solves B^T y = c in place.
+     *
+     * @param y The right hand side indexed by basis positions, overwritten with the solution
+     *          indexed by rows
+     */
+    public void btran(double[] y) {
+        btran(y, null, 0);
+    }
+
+    /**
+     * Solves B^T y = c in place for a sparse right hand side, see ftran.
+     *
+     * @param y     The right hand side indexed by basis positions, zero outside of index,
+     *              overwritten with the solution indexed by rows
+     * @param index The positions of the non-zeros of c, overwritten with the rows of the
+     *              non-zeros of y; at least as long as the dimension. May be null for a dense
+     *              right hand side.
+     * @param nnz   The number of entries of index
+     * @return The number of rows in index, or -1 if index is null
+     */
+    public int btran(double[] y, int[] index, int nnz) {
+        // the transposed etas in reverse order change only their own position
+        int s = ++stamp;
+        if (index != null)
+            for (int e = 0; e < nnz; e++) mark[index[e]] = s;
+        for (int t = updates - 1; t >= 0; t--) {
+            int r = etapos[t];
+            double sum = y[r];
+            for (int e = etaptr[t]; e < etaptr[t + 1]; e++) sum -= etaval[e] * y[etaind[e]];
+            sum /= etapivot[t];
+            if (index != null && mark[r] != s && sum != 0) {
+                mark[r] = s;
+                index[nnz++] = r;
+            }
+            y[r] = sum;
+        }
+
+        double[] w = work;
+        boolean sparse = index != null && nnz < m / HYPERSPARSE;
+        if (!sparse) {
+            for (int k = 0; k < m; k++) w[k] = y[pcol[k]];
+            for (int k = 0; k < m; k++) {
+                double t = w[k];
+                if (t == 0) continue;
+                t /= diag[k];
+                w[k] = t;
+                for (int e = urowptr[k]; e < urowptr[k + 1]; e++) w[urowind[e]] -= urowval[e] * t;
+            }
+            for (int k = m - 1; k >= 0; k--) {
+                double t = w[k];
+                if (t == 0) continue;
+                for (int e = lrowptr[k]; e < lrowptr[k + 1]; e++) w[lrowind[e]] -= lrowval[e] * t;
+            }
+            for (int k = 0; k < m; k++) {
+                y[prow[k]] = w[k];
+                w[k] = 0;
+            }
+            if (index == null) return -1;
+            nnz = 0;
+            for (int i = 0; i < m; i++) if (y[i] != 0) index[nnz++] = i;
+            return nnz;
+        }
+
+        int count = 0;
+        for (int e = 0; e < nnz; e++) {
+            int k = stepcol[index[e]];
+            w[k] = y[index[e]];
+            y[index[e]] = 0;
+            list[count++] = k;
+        }
+        count = reach(list, count, urowptr, urowind);
+        Arrays.sort(list, 0, count);
+        for (int e = 0; e < count; e++) {
+            int k = list[e];
+            double t = w[k];
+            if (t == 0) continue;
+            t /= diag[k];
+            w[k] = t;
+            for (int p = urowptr[k]; p < urowptr[k + 1]; p++) w[urowind[p]] -= urowval[p] * t;
+        }
+        count = reach(list, count, lrowptr, lrowind);
+        Arrays.sort(list, 0, count);
+        for (int e = count - 1; e >= 0; e--) {
+            int k = list[e];
+            double t = w[k];
+            if (t == 0) continue;
+            for (int p = lrowptr[k]; p < lrowptr[k + 1]; p++) w[lrowind[p]] -= lrowval[p] * t;
+        }
+        nnz = 0;
+        for (int e = 0; e < count; e++) {
+            int k = list[e];
+            y[prow[k]] = w[k];
+            w[k] = 0;
+            index[nnz++] = prow[k];
+        }
+        return nnz;
+    }
+
+    /**
+     * Extends the steps in list[0, count) by all steps reachable over the edges of the
+     * given factor, by depth-first search.
+     */
+    private int reach(int[] list, int count, int[] ptr, int[] ind) {
+        int s = ++stamp;
+        for (int e = 0; e < count; e++) mark[list[e]] = s;
+        int sp = 0;
+        for (int e = 0; e < count; e++) stack[sp++] = list[e];
+        while (sp > 0) {
+            int k = stack[--sp];
+            for (int p = ptr[k]; p < ptr[k + 1]; p++) {
+                int next = ind[p];
+                if (mark[next] != s) {
+                    mark[next] = s;
+                    list[count++] = next;
+                    stack[sp++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the column at a position of the basis. The entering column a must have been
+     * transformed by ftran before, alpha = B^-1 a.
+     *
+     * @param position The basis position of the leaving column
+     * @param alpha    The transformed entering column indexed by basis positions
+     * @throws IllegalArgumentException if alpha[position] is zero, the basis would be singular
+     */
+    public void update(int position, double[] alpha) {
+        update(position, alpha, null, -1);
+    }
+
+    /**
+     * Replaces the column at a position of the basis for a sparse transformed column, see
+     * update.
+     *
+     * @param position The basis position of the leaving column
+     * @param alpha    The transformed entering column indexed by basis positions
+     * @param index    The positions of the non-zeros of alpha as returned by ftran
+     * @param nnz      The number of entries of index
+     */
+    public void update(int position, double[] alpha, int[] index, int nnz) {
+        double pivot = alpha[position];
+        if (pivot == 0)
+            throw new IllegalArgumentException("The basis would be singular, the pivot at " + position + " is zero");
+        if (updates == etapos.length) {
+            etapos = Arrays.copyOf(etapos, 2 * updates);
+            etapivot = Arrays.copyOf(etapivot, 2 * updates);
+            etaptr = Arrays.copyOf(etaptr, 2 * updates + 1);
+        }
+        int count = index != null ? nnz : m;
+        int e = etaptr[updates];
+        if (e + count > etaind.length) {
+            etaind = Arrays.copyOf(etaind, Math.max(e + count, 2 * etaind.length));
+            etaval = Arrays.copyOf(etaval, etaind.length);
+        }
+        for (int p = 0; p < count; p++) {
+            int i = index != null ? index[p] : p;
+            if (i == position || alpha[i] == 0) continue;
+            etaind[e] = i;
+            etaval[e++] = alpha[i];
+        }
+        etapos[updates] = position;
+        etapivot[updates] = pivot;
+        etaptr[++updates] = e;
+    }
+
+    /**
+     * Tells whether a new factorization is recommended, after MAX_UPDATES updates or when the
+     * updates have more entries than L and U together.
+     *
+     * @return true if the basis should be factorized again
+     */
+    public boolean needsRefactorization() {
+        return updates >= MAX_UPDATES || etaptr[updates] > getNonZerosOfL() + getNonZerosOfU();
+    }
+
+    public int getDimension() {
+        return m;
+    }
+
+    public int getUpdateCount() {
+        return updates;
+    }
+
+    /**
+     * Returns the number of entries of L below the diagonal.
+     *
+     * @return the number of entries
+     */
+    public int getNonZerosOfL() {
+        return lcolptr[m];
+    }
+
+    /**
+     * Returns the number of entries of U including the diagonal.
+     *
+     * @return the number of entries
+     */
+    public int getNonZerosOfU() {
+        return urowptr[m] + m;
+    }
+
+    /**
+     * Returns the number of entries of the eta vectors of the updates.
+     *
+     * @return the number of entries
+     */
+    public int getNonZerosOfEtas() {
+        return etaptr[updates];
+    }
+
+    /**
+     * Returns the row of B eliminated in every step.
+     *
+     * @return the pivot rows, not a copy
+     */
+    public int[] getPivotRows() {
+        return prow;
+    }
+
+    /**
+     * Returns the basis position eliminated in every step.
+     *
+     * @return the pivot columns, not a copy
+     */
+    public int[] getPivotColumns() {
+        return pcol;
+    }
+
+}
@@ -0,0 +1,182 @@
+package org.lplibs4j.solver.linalg;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Symbolic analysis of a symmetric sparse matrix for an LDL^T or Cholesky factorization.
+ * <p>
+ * The analysis only depends on the non-zero pattern. It computes the elimination tree,
+ * the number of entries of every column of L and thereby the exact size of the factor,
+ * the fill-in and the number of floating point operations of the numeric factorization,
+ * all in time proportional to the number of entries of L. One analysis serves any number
+ * of numeric factorizations of matrices with the same pattern, see SparseLDL.
+ * <p>
+ * Only the lower triangle of the matrix is read, so either the full symmetric matrix or
+ * its lower triangle can be passed. An optional fill-reducing permutation perm analyses
+ * P A P^T, whose entry (k, l) is the entry (perm[k], perm[l]) of A.
+ *
+ * @author planatsc
+ */
+public class SymbolicFactorization {
+
+    final int n;
+    final int[] perm;
+    final int[] pinv;
+    final int[] parent;
+    final int[] colcount;
+    final int[] lp;
+    final long flops;
+    final int nnzA;
+
+    // the pattern of the analysed matrix, to check the matrices of numeric factorizations
+    final int[] arowptr;
+    final int[] acolind;
+
+    /**
+     * Analyses a matrix in its given order.
+     *
+     * @param a The symmetric matrix
+     * @return The analysis
+     */
+    public static SymbolicFactorization analyze(CsrMatrix a) {
+        return analyze(a, null);
+    }
+
+    /**
+     * Analyses a matrix in its given order.
+     *
+     * @param a The symmetric matrix
+     * @return The analysis
+     */
+    public static SymbolicFactorization analyze(SparseMatrix a) {
+        return analyze(new CsrMatrix(a), null);
+    }
+
+    /**
+     * Analyses a symmetrically permuted matrix P A P^T.
+     *
+     * @param a    The symmetric matrix
+     * @param perm The permutation, row k of P A P^T is row perm[k] of A, or null
+     * @return The analysis
+     */
+    public static SymbolicFactorization analyze(CsrMatrix a, int[] perm) {
+        return new SymbolicFactorization(a, perm);
+    }
+
+    private SymbolicFactorization(CsrMatrix a, int[] perm) {
+        if (a.getRowNum() != a.getColNum())
+            throw new IllegalArgumentException("Matrix must be square " + a.getRowNum() + "x" + a.getColNum());
+        n = a.getRowNum();
+        this.perm = perm != null ? perm.clone() : null;
+        if (perm != null && perm.length != n)
+            throw new IllegalArgumentException("The permutation has " + perm.length + " entries, " + n + " needed");
+        pinv = perm != null ? Ordering.invert(perm) : null;
+        arowptr = a.getRowPointers().clone();
+        acolind = a.getColumnIndices().clone();
+
+        // elimination tree and column counts, row by row (Liu): every entry a_ki, i < k,
+        // walks from i up the tree until it meets a node already visited for row k
+        parent = new int[n];
+        colcount = new int[n];
+        int[] flag = new int[n];
+        int lower = 0;
+        for (int k = 0; k < n; k++) {
+            parent[k] = -1;
+            flag[k] = k;
+            int row = perm != null ? perm[k] : k;
+            for (int p = arowptr[row]; p < arowptr[row + 1]; p++) {
+                int i = pinv != null ? pinv[acolind[p]] : acolind[p];
+                if (i >= k) continue;
+                lower++;
+                for (; flag[i] != k; i = parent[i]) {
+                    if (parent[i] == -1) parent[i] = k;
+                    colcount[i]++;
+                    flag[i] = k;
+                }
+            }
+        }
+        nnzA = lower;
+
+        lp = new int[n + 1];
+        long f = 0;
+        for (int k = 0; k < n; k++) {
+            if (colcount[k] > Integer.MAX_VALUE - lp[k])
+                throw new IllegalArgumentException("The factor has more than " + Integer.MAX_VALUE + " entries");
+            lp[k + 1] = lp[k] + colcount[k];
+            // a division per entry of column k and a multiply-add for every update it makes
+            f += (long) colcount[k] * (colcount[k] + 3);
+        }
+        flops = f;
+    }
+
+    /**
+     * Checks whether a matrix has the pattern this analysis was computed for.
+     */
+    boolean hasPattern(CsrMatrix a) {
+        return a.getRowNum() == n && a.getColNum() == n && Arrays.equals(arowptr, a.getRowPointers())
+                && Arrays.equals(acolind, a.getColumnIndices());
+    }
+
+    public int getDimension() {
+        return n;
+    }
+
+    /**
+     * Returns the elimination tree: parent[k] is the parent of column k, -1 for roots.
+     *
+     * @return the parents, not a copy
+     */
+    public int[] getEliminationTree() {
+        return parent;
+    }
+
+    /**
+     * Returns the number of entries of every column of L below the diagonal.
+     *
+     * @return the column counts, not a copy
+     */
+    public int[] getColumnCounts() {
+        return colcount;
+    }
+
+    /**
+     * Returns the permutation the matrix is factorized in.
+     *
+     * @return the permutation, or null for the given order
+     */
+    public int[] getPermutation() {
+        return perm;
+    }
+
+    /**
+     * Returns the number of entries of L below the diagonal.
+     *
+     * @return the number of entries of the factor
+     */
+    public int getNonZerosOfL() {
+        return lp[n];
+    }
+
+    /**
+     * Returns the number of entries of L below the diagonal which are zero in A.
+     *
+     * @return the fill-in
+     */
+    public int getFillIn() {
+        return lp[n] - nnzA;
+    }
+
+    /**
+     * Returns the number of floating point operations of a numeric factorization,
+     * multiplications, additions and divisions.
+     *
+     * @return the operation count
+     */
+    public long getFlops() {
+        return flops;
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.lplibs4j.solver.problems;
 
 import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SparseVectorBuilder;
 import org.lplibs4j.api.solver.LinearProgramSolver;
 import org.lplibs4j.solver.constraints.LinearBiggerThanEqualsConstraint;
 import org.lplibs4j.solver.constraints.LinearEqualsConstraint;
@@ -133,10 +134,11 @@ public class LPWizard {
         int dimension = allvars.size();
         // normalize LPWizard (collect all variables from contraints, etc.)
 
-        SparseVector c = new SparseVector(dimension, this.variables.size());
+        SparseVectorBuilder builder = new SparseVectorBuilder(dimension, Math.max(this.variables.size(), 4));
         for (int i = 0; i < variables.size(); i++) {
-            c.set(indexmap.get(variables.get(i)), weights.get(i));
+            builder.append(indexmap.get(variables.get(i)), weights.get(i));
         }
+        SparseVector c = builder.build();
         LinearProgram lp = new LinearProgram(c);
         lp.setIndexmap(indexmap);
 
@@ -144,10 +146,11 @@ public class LPWizard {
             LPWizardConstraint con = entry.getValue();
             String label = entry.getKey();
 
-            SparseVector conc = new SparseVector(dimension,con.variables.size());
+            builder.clear();
             for (int i = 0; i < con.variables.size(); i++) {
-                conc.set(indexmap.get(con.variables.get(i)), con.weights.get(i));
+                builder.append(indexmap.get(con.variables.get(i)), con.weights.get(i));
             }
+            SparseVector conc = builder.build();
 
             switch (con.type) {
                 case LPWizardConstraint.BIGGERTHANEQUALS:
@@ -1,6 +1,7 @@
 package org.lplibs4j.solver.problems;
 
 import org.lplibs4j.api.constraints.Constraint;
+import org.lplibs4j.api.implementation.HybridVector;
 import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.api.solver.LinearProgramSolver;
 import org.lplibs4j.solver.constraints.LinearBiggerThanEqualsConstraint;
@@ -41,7 +42,7 @@ public class LinearProgram extends org.lplibs4j.api.problems.LinearProgram {
         super();
         this.minproblem = false;
         this.constraints = new ArrayList<Constraint>();
-        this.c = (SparseVector) new SparseVector(pc);
+        setCSparse(new HybridVector(pc));
         this.isinteger  = new boolean[pc.length];
         this.isboolean  = new boolean[pc.length];
 
@@ -56,7 +57,7 @@ public class LinearProgram extends org.lplibs4j.api.problems.LinearProgram {
         super();
         this.minproblem = false;
         this.constraints = new ArrayList<Constraint>();
-        this.c = (SparseVector) c;
+        setCSparse(c);
         this.isinteger  = new boolean[c.getSize()];
         this.isboolean  = new boolean[c.getSize()];
     }
@@ -74,7 +75,8 @@ public class LinearProgram extends org.lplibs4j.api.problems.LinearProgram {
         this.isinteger = lp.isinteger.clone();
         this.isboolean = lp.isboolean.clone();
 
-        this.c = lp.c.clone();
+        // frozen vectors are immutable and can be shared between the copies
+        setCSparse(lp.c.isFrozen() ? lp.c : lp.c.clone());
         this.constraints = (ArrayList<Constraint>) lp.constraints.clone();
         if (lp.hasBounds()) {
             this.upperbound = lp.upperbound.clone();
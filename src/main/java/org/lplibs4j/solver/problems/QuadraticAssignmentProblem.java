@@ -2,10 +2,16 @@ package org.lplibs4j.solver.problems;
 
 
 import org.lplibs4j.api.constraints.Constraint;
+import org.lplibs4j.api.implementation.KroneckerOperator;
+import org.lplibs4j.api.implementation.ScaledOperator;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SparseVectorBuilder;
 import org.lplibs4j.api.solver.LinearProgramSolver;
+import org.lplibs4j.api.util.LinearOperator;
 import org.lplibs4j.solver.constraints.LinearEqualsConstraint;
 import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
 import org.lplibs4j.solver.lpsolver.SolverFactory;
+import org.lplibs4j.solver.qpsolver.QuadraticProgram;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
@@ -40,28 +46,76 @@ public class QuadraticAssignmentProblem {
         C = c;
     }
 
+    /**
+     * Evaluates sum_{i,j,k,l} a_ik * b_jl * x_ij * x_kl + sum_{i,j} c_ij * x_ij, which is
+     * x^T (A (x) B) x + c^T x for the assignment flattened row by row. The Kronecker product
+     * is applied as A X B^T, in O(n^3) instead of O(n^4).
+     *
+     * @param assignment The assignment matrix x
+     * @return the value of the objective
+     */
     public double evaluate(int[][] assignment) {
-        double sum = 0;
         int n = this.getDimension();
+        double[] x = new double[n*n];
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
-                for (int k = 0; k < n; k++) {
-                    for (int l = 0; l < n; l++) {
-                        sum += A[i][k] * B[j][l] * assignment[i][j] * assignment[k][l];
-                        //if (A[i][k] * B[j][l] * assignment[i][j] * assignment[k][l]>0) System.out.println(i +" " + j + " " + k +" "+ l +": "+ sum);
-
-                    }
-                }
+                x[i*n + j] = assignment[i][j];
             }
         }
+        double[] y = new double[n*n];
+        getHessianOperator().apply(x, y);
+        double sum = 0;
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
-                sum += C[i][j] *  assignment[i][j];
+                sum += x[i*n + j] * y[i*n + j] + C[i][j] * x[i*n + j];
             }
         }
         return sum;
     }
 
+    /**
+     * @return the flow matrix (x) the distance matrix, the quadratic term of the objective
+     *         for the assignment flattened row by row
+     */
+    public LinearOperator getHessianOperator() {
+        return new KroneckerOperator(A, B);
+    }
+
+    /**
+     * The continuous relaxation min 1/2 x^T (2 A (x) B) x + c^T x over the doubly stochastic
+     * matrices. The quadratic term is not built, it has n^4 entries.
+     *
+     * @return a Quadratic Program with the same objective as this QAP
+     */
+    public QuadraticProgram getQuadraticProgram() {
+        int n = this.getDimension();
+        double[] c = new double[n*n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                c[i*n + j] = C[i][j];
+            }
+        }
+        QuadraticProgram qp = new QuadraticProgram(new ScaledOperator(2.0, getHessianOperator()), new SparseVector(c));
+        qp.setMinProblem(true);
+        for (int i = 0; i < n; i++) {
+            SparseVectorBuilder cv = new SparseVectorBuilder(n*n, n);
+            for (int j = 0; j < n; j++) {
+                cv.append(i*n + j, 1.0);
+            }
+            /* add constraint: \sum_{j} x_ij = 1 */
+            qp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_"+i+"j"));
+        }
+        for (int j = 0; j < n; j++) {
+            SparseVectorBuilder cv = new SparseVectorBuilder(n*n, n);
+            for (int i = 0; i < n; i++) {
+                cv.append(i*n + j, 1.0);
+            }
+            /* add constraint: \sum_{i} x_ij = 1 */
+            qp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_i"+j));
+        }
+        return qp;
+    }
+
     public QuadraticAssignmentProblem(String filename) {
         BufferedReader buffer;
         try {
@@ -241,21 +295,21 @@ public class QuadraticAssignmentProblem {
 		/* X is in \Pi_n  (a permutation matrix of size n)*/
 
         for (int i = 0; i < this.getDimension(); i++) {
-            double[] cv = new double[c.length];
+            SparseVectorBuilder cv = new SparseVectorBuilder(c.length, n);
             for (int j = 0; j < this.getDimension(); j++) {
-                cv[n*n + i*n + j] = 1.0;
+                cv.append(n*n + i*n + j, 1.0);
             }
 			/* add constraint: \sum_{j} x_ij = 1 */
-            lp.addConstraint(new LinearEqualsConstraint(cv, 1.0, "x_"+i+"j"));
+            lp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_"+i+"j"));
         }
 
         for (int j = 0; j < this.getDimension(); j++) {
-            double[] cv = new double[c.length];
+            SparseVectorBuilder cv = new SparseVectorBuilder(c.length, n);
             for (int i = 0; i < this.getDimension(); i++) {
-                cv[n*n + i*n + j] = 1.0;
+                cv.append(n*n + i*n + j, 1.0);
             }
 			/* add constraint: \sum_{i} x_ij = 1 */
-            lp.addConstraint(new LinearEqualsConstraint(cv, 1.0, "x_i"+j));
+            lp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_i"+j));
         }
 
         return lp;
@@ -284,9 +338,10 @@ public class QuadraticAssignmentProblem {
                     for (int k = 0; k < n; k++) {
                         for (int l = 0; l < n; l++) {
                             if (B[k][l] > distance) {
-                                double[] cn = new double[n*n];
-                                cn[i*n+l] = 1.0;
-                                cn[j*n+k] = 1.0;
+                                SparseVector cn = new SparseVectorBuilder(n*n, 2)
+                                        .append(i*n+l, 1.0)
+                                        .append(j*n+k, 1.0)
+                                        .build();
 
                                 LinearSmallerThanEqualsConstraint constraint = new LinearSmallerThanEqualsConstraint(cn,1.0, "crossing "+i+" ("+","+k+"),(" + j + ","+l+")");
                                 lp.addConstraint(constraint);
@@ -298,21 +353,21 @@ public class QuadraticAssignmentProblem {
         }
 
         for (int i = 0; i < this.getDimension(); i++) {
-            double[] cv = new double[c.length];
+            SparseVectorBuilder cv = new SparseVectorBuilder(c.length, n);
             for (int j = 0; j < this.getDimension(); j++) {
-                cv[ i*n + j] = 1.0;
+                cv.append(i*n + j, 1.0);
             }
 			/* add constraint: \sum_{j} x_ij = 1 */
-            lp.addConstraint(new LinearEqualsConstraint(cv, 1.0, "x_"+i+"j"));
+            lp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_"+i+"j"));
         }
 
         for (int j = 0; j < this.getDimension(); j++) {
-            double[] cv = new double[c.length];
+            SparseVectorBuilder cv = new SparseVectorBuilder(c.length, n);
             for (int i = 0; i < this.getDimension(); i++) {
-                cv[ i*n + j] = 1.0;
+                cv.append(i*n + j, 1.0);
             }
 			/* add constraint: \sum_{i} x_ij = 1 */
-            lp.addConstraint(new LinearEqualsConstraint(cv, 1.0, "x_i"+j));
+            lp.addConstraint(new LinearEqualsConstraint(cv.build(), 1.0, "x_i"+j));
         }
         double[] lowerbound = new double[c.length];
 
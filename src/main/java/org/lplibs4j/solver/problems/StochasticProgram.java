@@ -4,6 +4,10 @@ import org.lplibs4j.api.constraints.Constraint;
 import org.lplibs4j.api.constraints.LinearConstraint;
 import org.lplibs4j.api.constraints.MathematicalProgram;
 import org.lplibs4j.api.constraints.StochasticConstraint;
+import org.lplibs4j.api.implementation.BlockSparseMatrix;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.HybridVector;
 import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.api.problems.ConstrainedProblem;
 
@@ -54,19 +58,19 @@ public class StochasticProgram extends MathematicalProgram implements Constraine
         super();
         minproblem = false;
         constraints = new ArrayList<Constraint>();
-        this.c = new SparseVector(pc);
+        setCSparse(new HybridVector(pc));
         this.probabilities = probs;
 
         this.scenarios = new SparseVector[scens.length];
         for (int i = 0; i < scens.length; i++)
-            scenarios[i] = new SparseVector(scens[i]);
+            scenarios[i] = new HybridVector(scens[i]);
     }
 
     public StochasticProgram (SparseVector c, double[] probs, SparseVector[] scens) {
         super();
         minproblem = false;
         constraints = new ArrayList<Constraint>();
-        this.c = c;
+        setCSparse(c);
         this.probabilities = probs;
         this.scenarios = scens;
     }
@@ -166,4 +170,71 @@ public class StochasticProgram extends MathematicalProgram implements Constraine
         return ef;
     }
 
+    /**
+     * Returns the constraint matrix of the extensive form with its block structure: the
+     * linear constraints are the linking rows on the deterministic variables, block s holds
+     * the stochastic constraints in scenario s, with the scenario rows T_s on the
+     * deterministic variables and the recourse rows W on the variables of scenario s. W is
+     * the same in all scenarios and stored once. The columns are ordered as in
+     * getExtensiveForm, the rows are grouped by scenario, the right hand side of row i of
+     * block s is getH()[s] of the i-th stochastic constraint.
+     *
+     * @return the constraint matrix in O(nnz) memory
+     */
+    public BlockSparseMatrix getExtensiveFormMatrix() {
+        int n0 = c.getSize();
+        int K = scenarios[0].getSize();
+        int S = probabilities.length;
+        ArrayList<LinearConstraint> linear = new ArrayList<LinearConstraint>();
+        ArrayList<StochasticConstraint> stochastic = new ArrayList<StochasticConstraint>();
+        for (Constraint c : constraints) {
+            if (c instanceof LinearConstraint) linear.add((LinearConstraint) c);
+            else if (c instanceof StochasticConstraint) stochastic.add((StochasticConstraint) c);
+        }
+
+        CooMatrixBuilder a = new CooMatrixBuilder(linear.size(), n0);
+        for (int i = 0; i < linear.size(); i++) {
+            SparseVector row = linear.get(i).getCSparse();
+            int[] index = row.getIndex();
+            for (int k = 0; k < row.getUsed(); k++) {
+                if (index[k] >= n0)
+                    throw new IllegalArgumentException("Linear constraint " + linear.get(i).getName()
+                            + " is not restricted to the " + n0 + " deterministic variables");
+            }
+            appendRow(a, i, row);
+        }
+
+        int m = stochastic.size();
+        CooMatrixBuilder w = new CooMatrixBuilder(m, K);
+        CooMatrixBuilder[] t = new CooMatrixBuilder[S];
+        for (int s = 0; s < S; s++) t[s] = new CooMatrixBuilder(m, n0);
+        for (int i = 0; i < m; i++) {
+            appendRow(w, i, stochastic.get(i).getCSparse());
+            SparseVector[] scenariorows = stochastic.get(i).getTSparse();
+            if (scenariorows.length != S)
+                throw new IllegalArgumentException("Constraint " + stochastic.get(i).getName() + " has "
+                        + scenariorows.length + " scenarios instead of " + S);
+            for (int s = 0; s < S; s++) appendRow(t[s], i, scenariorows[s]);
+        }
+
+        CsrMatrix[] technology = new CsrMatrix[S];
+        CsrMatrix[] recourse = new CsrMatrix[S];
+        CsrMatrix shared = w.buildCsr();
+        for (int s = 0; s < S; s++) {
+            technology[s] = t[s].buildCsr();
+            recourse[s] = shared;
+        }
+        return new BlockSparseMatrix(a.buildCsr(), technology, recourse);
+    }
+
+    /**
+     * Appends the entries of a row vector to row i of the builder. The arrays are fetched
+     * once, since a dense HybridVector creates its index array on every getIndex call.
+     */
+    private static void appendRow(CooMatrixBuilder builder, int i, SparseVector row) {
+        int[] index = row.getIndex();
+        double[] data = row.getData();
+        for (int k = 0; k < row.getUsed(); k++) builder.append(i, index[k], data[k]);
+    }
+
 }
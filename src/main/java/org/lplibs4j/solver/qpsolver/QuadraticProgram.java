@@ -2,10 +2,15 @@ package org.lplibs4j.solver.qpsolver;
 
 import org.lplibs4j.api.constraints.Constraint;
 import org.lplibs4j.api.constraints.MathematicalProgram;
+import org.lplibs4j.api.implementation.HybridVector;
+import org.lplibs4j.api.implementation.MatrixOperator;
+import org.lplibs4j.api.implementation.ScratchArena;
 import org.lplibs4j.api.implementation.SparseMatrix;
 import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SymmetricSparseMatrix;
 import org.lplibs4j.api.problems.ConstrainedProblem;
 import org.lplibs4j.api.solver.QuadraticProgramSolver;
+import org.lplibs4j.api.util.LinearOperator;
 import org.lplibs4j.api.util.Matrix;
 import org.lplibs4j.solver.constraints.LinearBiggerThanEqualsConstraint;
 import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
@@ -31,15 +36,46 @@ public class QuadraticProgram extends MathematicalProgram implements Constrained
     @Override
     public void setQ(Matrix q) {
         Q = q;
+        Qoperator = null;
+    }
+
+    @Override
+    public LinearOperator getQOperator() {
+        return Qoperator != null ? Qoperator : new MatrixOperator(Q);
+    }
+
+    @Override
+    public void setQ(LinearOperator q) {
+        Q = q instanceof MatrixOperator ? ((MatrixOperator) q).getMatrix() : null;
+        Qoperator = q;
     }
 
     Matrix Q;
 
+    // the quadratic term if it was given as operator
+    LinearOperator Qoperator;
+
     // TODO: Should this be a SparseVector or a general vector?
     public QuadraticProgram(Matrix q, SparseVector c) {
         super();
+        constraints = new ArrayList<Constraint>();
         Q = q;
-        this.c = c;
+        setCSparse(c);
+        this.isinteger = new boolean[this.getDimension()];
+    }
+
+    /**
+     * Creates a program whose quadratic term is only available as operator, for example a
+     * Kronecker product too large to be built.
+     *
+     * @param q The quadratic term
+     * @param c The linear term
+     */
+    public QuadraticProgram(LinearOperator q, SparseVector c) {
+        super();
+        constraints = new ArrayList<Constraint>();
+        setQ(q);
+        setCSparse(c);
         this.isinteger = new boolean[this.getDimension()];
     }
 
@@ -49,39 +85,50 @@ public class QuadraticProgram extends MathematicalProgram implements Constrained
         constraints = new ArrayList<Constraint>();
         this.setQ(q);
         //this.setC(pc);
-        this.c = (SparseVector) new SparseVector(pc);
+        setCSparse(new HybridVector(pc));
         this.isinteger = new boolean[this.getDimension()];
     }
 
     public QuadraticProgram(double[][] q) {
         constraints = new ArrayList<Constraint>();
         this.setQ(q);
-        this.c = new SparseVector(q.length,1);
+        setCSparse(new SparseVector(q.length,1));
         this.isinteger = new boolean[this.getDimension()];
     }
 
 
-    // TODO: Quick'n'dirty fix
+    /**
+     * Evaluates the target function 0.5 * x^T * Q * x + c^T * x.
+     *
+     * @param x The point to be evaluated
+     * @return The value of the target function at x
+     */
     public double evaluate(double[] x) {
-        SparseVector px = new SparseVector(x);
-
-        // Latest version - makes it even worse, but should be a slightly bit more correct ;-)
-        // Error is to be searched at SparseMatrix ...
-        // Matrix result = (Matrix) px.transpose().times(Q).times(px).plus(c.transpose().times(px));
-
-        Matrix partone = px.transpose().times(Q).times(px);
-        partone = ((SparseVector) partone).times(0.5);
-
-        Matrix parttwo = c.transpose().times(px);
-        System.out.println("Here:" + parttwo.get(0, 0));
-        Matrix result = partone.plus(parttwo);
-        return result.get(0, 0);
+        return evaluate(x, ScratchArena.get());
+    }
 
+    /**
+     * Evaluates the target function 0.5 * x^T * Q * x + c^T * x. The product Q * x is
+     * computed in a scratch buffer of the arena, so repeated evaluations do not allocate.
+     *
+     * @param x     The point to be evaluated
+     * @param arena The arena providing the scratch buffers
+     * @return The value of the target function at x
+     */
+    public double evaluate(double[] x, ScratchArena arena) {
+        double quadratic = Qoperator != null ? SparseMatrix.quadraticForm(Qoperator, x, arena)
+                : SparseMatrix.quadraticForm(Q, x, arena);
+        return 0.5 * quadratic + c.dot(x);
     }
 
+    /**
+     * Sets the quadratic term to the symmetric part (q + q^T) / 2 of q, which defines the
+     * same target function and is stored as upper triangle in an immutable
+     * SymmetricSparseMatrix. Use setQ(Matrix) with a SparseMatrix for a mutable term.
+     */
     @Override
     public void setQ(double[][] q) {
-        Q = new SparseMatrix(q);
+        setQ(new SymmetricSparseMatrix(q));
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,172 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.constraints.Constraint;
+import org.lplibs4j.api.constraints.LinearConstraint;
+import org.lplibs4j.api.implementation.BlockSparseMatrix;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.MatrixOperator;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
+import org.lplibs4j.solver.constraints.StochasticBiggerThanEqualsConstraint;
+import org.lplibs4j.solver.constraints.StochasticSmallerThanEqualsConstraint;
+import org.lplibs4j.solver.problems.StochasticProgram;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class BlockSparseMatrixTest extends TestCase {
+
+    private CsrMatrix random(int rows, int cols, int nnz, Random rng) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(rows, cols);
+        for (int k = 0; k < nnz && rows > 0 && cols > 0; k++)
+            builder.append(rng.nextInt(rows), rng.nextInt(cols), rng.nextInt(19) - 9);
+        return builder.buildCsr();
+    }
+
+    private BlockSparseMatrix randomBlocks(int blocks, int n0, int nnz, Random rng) {
+        CsrMatrix[] t = new CsrMatrix[blocks];
+        CsrMatrix[] w = new CsrMatrix[blocks];
+        for (int s = 0; s < blocks; s++) {
+            // some blocks without rows or columns
+            int rows = s % 7 == 3 ? 0 : 1 + rng.nextInt(8);
+            int cols = s % 5 == 2 ? 0 : 1 + rng.nextInt(8);
+            t[s] = random(rows, n0, nnz / 2, rng);
+            w[s] = random(rows, cols, nnz, rng);
+        }
+        return new BlockSparseMatrix(random(4, n0, 3 * nnz, rng), t, w);
+    }
+
+    private double[] random(int n, Random rng) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) x[i] = rng.nextGaussian();
+        return x;
+    }
+
+    private void assertProducts(BlockSparseMatrix m, ForkJoinPool pool, Random rng) {
+        CsrMatrix reference = m.toCsr();
+        double[] x = random(m.getColNum(), rng);
+        double[] expected = new double[m.getRowNum()];
+        reference.times(x, expected);
+        double[] y = random(m.getRowNum(), rng);
+        m.times(x, y);
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], y[i], 1e-9);
+        y = random(m.getRowNum(), rng);
+        m.timesParallel(x, y, pool);
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], y[i], 1e-9);
+
+        x = random(m.getRowNum(), rng);
+        expected = new double[m.getColNum()];
+        reference.transposeTimes(x, expected);
+        y = random(m.getColNum(), rng);
+        m.transposeTimes(x, y);
+        for (int j = 0; j < expected.length; j++) assertEquals(expected[j], y[j], 1e-9);
+        y = random(m.getColNum(), rng);
+        m.transposeTimesParallel(x, y, pool);
+        for (int j = 0; j < expected.length; j++) assertEquals(expected[j], y[j], 1e-9);
+        y = random(m.getColNum(), rng);
+        new MatrixOperator(m).applyTranspose(x, y);
+        for (int j = 0; j < expected.length; j++) assertEquals(expected[j], y[j], 1e-9);
+    }
+
+    @Test
+    public void testStructure() {
+        Random rng = new Random(1);
+        BlockSparseMatrix m = randomBlocks(30, 6, 10, rng);
+        CsrMatrix c = m.toCsr();
+        assertEquals(m.getNumberOfNonZeroElements(), c.getNumberOfNonZeroElements());
+        for (int i = 0; i < m.getRowNum(); i++)
+            for (int j = 0; j < m.getColNum(); j++)
+                assertEquals(c.get(i, j), m.get(i, j));
+        for (int s = 0; s < m.getBlockCount(); s++) {
+            CsrMatrix w = m.getRecourseBlock(s);
+            for (int i = 0; i < w.getRowNum(); i++)
+                for (int j = 0; j < w.getColNum(); j++)
+                    assertEquals(w.get(i, j), m.get(m.getRowOffset(s) + i, m.getColumnOffset(s) + j));
+        }
+
+        // the iterator visits the entries in the order of the assembled matrix
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        NonZeroElementIterator ref = c.getNonZeroElementIterator();
+        while (ref.hasNext()) {
+            assertTrue(it.hasNext());
+            assertEquals(ref.next(), it.next());
+            assertEquals(ref.getActuali(), it.getActuali());
+            assertEquals(ref.getActualj(), it.getActualj());
+        }
+        assertFalse(it.hasNext());
+
+        Matrix t = m.transpose();
+        assertEquals(m.getColNum(), t.getRowNum());
+        assertEquals(m.get(5, 2), t.get(2, 5));
+
+        try {
+            new BlockSparseMatrix(null, new Matrix[]{random(2, 3, 4, rng)}, new Matrix[]{random(3, 3, 4, rng)});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProducts() {
+        Random rng = new Random(2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertProducts(randomBlocks(30, 6, 10, rng), pool, rng);
+            // large enough to be split over several tasks
+            BlockSparseMatrix m = randomBlocks(4000, 50, 40, rng);
+            assertTrue(m.getNumberOfNonZeroElements() > 2 * (1 << 15));
+            assertProducts(m, pool, rng);
+            // no linking rows
+            assertProducts(new BlockSparseMatrix(null, new Matrix[]{random(3, 4, 5, rng)},
+                    new Matrix[]{random(3, 2, 4, rng).toSparseMatrix()}), pool, rng);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExtensiveForm() {
+        StochasticProgram sp = new StochasticProgram(new double[]{150., 230., 260.},
+                new double[]{(1. / 3.), (1. / 3.), (1. / 3.)},
+                new double[][]{{-170., 238., -150., 210., -36., -10.},
+                        {-170., 238., -150., 210., -36., -10.},
+                        {-170., 238., -150., 210., -36., -10.}});
+        sp.addConstraint(new StochasticBiggerThanEqualsConstraint(
+                new double[][]{{3., 0., 0.}, {2.5, 0., 0.}, {2., 0., 0.}},
+                new double[]{-1., 1., 0., 0., 0., 0.}, new double[]{200., 200., 200.}, "Wheat"));
+        sp.addConstraint(new StochasticBiggerThanEqualsConstraint(
+                new double[][]{{0., 3.6, 0.}, {0., 3., 0.}, {0., 2.4, 0.}},
+                new double[]{0., 0., -1., 1., 0., 0.}, new double[]{240., 240., 240.}, "Corn"));
+        sp.addConstraint(new StochasticSmallerThanEqualsConstraint(
+                new double[][]{{0., 0., -24.}, {0., 0., -20.}, {0., 0., -16.}},
+                new double[]{0., 0., 0., 0., 1., 1.}, new double[]{0., 0., 0.}, "Sugar Beets"));
+        sp.addConstraint(new LinearSmallerThanEqualsConstraint(new double[]{1., 1., 1.}, 500., "Land"));
+        sp.setLowerbound(new double[9]);
+
+        BlockSparseMatrix m = sp.getExtensiveFormMatrix();
+        assertEquals(3, m.getBlockCount());
+        assertEquals(1 + 3 * 3, m.getRowNum());
+        assertEquals(3 + 3 * 6, m.getColNum());
+        assertSame(m.getRecourseBlock(0), m.getRecourseBlock(2));
+
+        // getExtensiveForm lists the scenarios of every stochastic constraint, then Land
+        ArrayList<Constraint> rows = sp.getExtensiveForm().getConstraints();
+        for (int s = 0; s < 3; s++) {
+            for (int i = 0; i < 3; i++) {
+                double[] expected = ((LinearConstraint) rows.get(3 * i + s)).getC();
+                for (int j = 0; j < m.getColNum(); j++)
+                    assertEquals(expected[j], m.get(m.getRowOffset(s) + i, j));
+            }
+        }
+        double[] land = ((LinearConstraint) rows.get(9)).getC();
+        for (int j = 0; j < m.getColNum(); j++)
+            assertEquals(j < land.length ? land[j] : 0.0, m.get(0, j));
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CompressedSparseVector;
+import org.lplibs4j.api.implementation.CompressedSparseVector.ValueEncoding;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SparseVectorBuilder;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.solver.constraints.LinearBiggerThanEqualsConstraint;
+import org.lplibs4j.solver.constraints.LinearEqualsConstraint;
+import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
+
+import java.util.Random;
+
+public class CompressedSparseVectorTest extends TestCase {
+
+    private SparseVector randomVector(Random rng, int size, int nnz, int distinct) {
+        SparseVectorBuilder b = new SparseVectorBuilder(size);
+        for (int i = 0; i < nnz; i++) {
+            // clustered indices with a few large gaps
+            int ind = rng.nextInt(10) == 0 ? rng.nextInt(size) : (i * 3) % size;
+            b.append(ind, distinct > 0 ? rng.nextInt(distinct) - distinct / 2 + 0.5 : rng.nextGaussian());
+        }
+        return b.build();
+    }
+
+    @Test
+    public void testEncodings() {
+        Random rng = new Random(7);
+        int size = 1000000;
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++) x[i] = rng.nextDouble();
+
+        SparseVector dict = randomVector(rng, size, 5000, 20);
+        CompressedSparseVector cd = CompressedSparseVector.compress(dict);
+        assertEquals(ValueEncoding.DICTIONARY, cd.getEncoding());
+        assertTrue(cd.getEncodedBytes() < 3 * dict.getUsed());
+        assertTrue(dict.equals(cd.toSparseVector()));
+        assertEquals(dict.dot(x), cd.dot(x), 1e-9);
+
+        SparseVector gauss = randomVector(rng, size, 5000, 0);
+        CompressedSparseVector c64 = CompressedSparseVector.compress(gauss);
+        assertEquals(ValueEncoding.FLOAT64, c64.getEncoding());
+        assertEquals(gauss.dot(x), c64.dot(x), 0.);
+        assertEquals(gauss.dot(dict), c64.dot(dict), 1e-9);
+
+        CompressedSparseVector c32 = CompressedSparseVector.compress(gauss, ValueEncoding.FLOAT32);
+        assertEquals(gauss.dot(x), c32.dot(x), 1e-3);
+        for (int i = 0; i < 200; i++) assertEquals(gauss.get(i), c32.get(i), 1e-6);
+
+        // the iterator reports the coordinates of the expanded vector
+        Matrix[] compressed = {c64, c64.transpose()};
+        for (Matrix c : compressed) {
+            NonZeroElementIterator it = c.getNonZeroElementIterator();
+            NonZeroElementIterator expected = ((CompressedSparseVector) c).toSparseVector().getNonZeroElementIterator();
+            int count = 0;
+            while (it.hasNext()) {
+                double value = it.next();
+                assertEquals(expected.next(), value, 0.);
+                assertEquals(expected.getActuali(), it.getActuali());
+                assertEquals(expected.getActualj(), it.getActualj());
+                count++;
+            }
+            assertFalse(expected.hasNext());
+            assertEquals(gauss.getUsed(), count);
+        }
+
+        try {
+            CompressedSparseVector.compress(gauss, ValueEncoding.DICTIONARY);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            cd.set(0, 0, 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConstraints() {
+        SparseVector v = new SparseVector(new double[]{0., 2.5, 0., -1., 1., 0., 3.});
+        CompressedSparseVector cv = CompressedSparseVector.compress(v);
+        double[] x = {1., 1., 1., 1., 1., 1., 1.};
+
+        LinearSmallerThanEqualsConstraint ls = new LinearSmallerThanEqualsConstraint(v, 5., "s");
+        LinearSmallerThanEqualsConstraint cls = new LinearSmallerThanEqualsConstraint(cv, 5., "s");
+        assertEquals(ls.convertToCPLEX().toString(), cls.convertToCPLEX().toString());
+        assertEquals(ls.convertToGMPL().toString(), cls.convertToGMPL().toString());
+        assertFalse(cls.isSatisfiedBy(x));
+        x[6] = 0.;
+        assertTrue(cls.isSatisfiedBy(x));
+        assertTrue(cls.getCSparse().isFrozen());
+        assertTrue(v.equals(cls.getCSparse()));
+
+        LinearBiggerThanEqualsConstraint lb = new LinearBiggerThanEqualsConstraint(v, 2., "b");
+        LinearBiggerThanEqualsConstraint clb = new LinearBiggerThanEqualsConstraint(cv, 2., "b");
+        assertEquals(lb.convertToCPLEX().toString(), clb.convertToCPLEX().toString());
+        assertEquals(lb.convertToGMPL().toString(), clb.convertToGMPL().toString());
+        assertTrue(clb.isSatisfiedBy(x));
+        assertEquals(-2.5, clb.getEqualLinearSmallerThanEqualsConstraint().getC()[1], 0.);
+
+        LinearEqualsConstraint le = new LinearEqualsConstraint(v, 2.5, "e");
+        LinearEqualsConstraint cle = new LinearEqualsConstraint(cv, 2.5, "e");
+        assertEquals(le.convertToCPLEX().toString(), cle.convertToCPLEX().toString());
+        assertEquals(le.convertToGMPL().toString(), cle.convertToGMPL().toString());
+        assertTrue(cle.isSatisfiedBy(x));
+
+        // setting a dense row replaces the compressed one
+        cle.setC(new double[]{1., 0., 0., 0., 0., 0., 0.});
+        assertEquals(1., cle.getCSparse().get(0), 0.);
+        assertFalse(cle.isSatisfiedBy(x));
+
+        CompressedSparseVector.Decoder d = cv.decoder();
+        assertTrue(d.hasNext());
+        assertEquals(1, d.next());
+        assertEquals(2.5, d.getValue(), 0.);
+    }
+
+}
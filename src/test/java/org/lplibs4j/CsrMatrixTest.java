@@ -0,0 +1,151 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CscMatrix;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+
+import java.util.Random;
+
+public class CsrMatrixTest extends TestCase {
+
+    private SparseMatrix randomMatrix(Random rng, int rows, int cols, int nnz) {
+        SparseMatrix m = new SparseMatrix(rows, cols);
+        for (int k = 0; k < nnz; k++) m.set(rng.nextInt(rows), rng.nextInt(cols), rng.nextDouble());
+        return m;
+    }
+
+    private void assertSameEntries(Matrix expected, Matrix actual) {
+        assertEquals(expected.getRowNum(), actual.getRowNum());
+        assertEquals(expected.getColNum(), actual.getColNum());
+        for (int i = 0; i < expected.getRowNum(); i++)
+            for (int j = 0; j < expected.getColNum(); j++)
+                assertEquals(expected.get(i, j), actual.get(i, j), 1e-12);
+    }
+
+    @Test
+    public void testConversions() {
+        SparseMatrix m = randomMatrix(new Random(1), 30, 20, 150);
+        CsrMatrix csr = new CsrMatrix(m);
+        assertEquals(m.getNumberOfNonZeroElements(), csr.getNumberOfNonZeroElements());
+        assertSameEntries(m, csr);
+        assertTrue(m.equals(csr.toSparseMatrix()));
+
+        CscMatrix csc = csr.toCsc();
+        assertSameEntries(m, csc);
+        assertEquals(csr, csc.toCsr());
+        assertEquals(csc, CscMatrix.fromSparseMatrix(m));
+
+        Matrix t = csr.transpose();
+        assertTrue(t instanceof CscMatrix);
+        assertSameEntries(m.transpose(), t);
+        assertEquals(csr, t.transpose());
+
+        NonZeroElementIterator it = csr.getNonZeroElementIterator();
+        int count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(m.get(it.getActuali(), it.getActualj()), value, 0.);
+            count++;
+        }
+        assertEquals(csr.getNumberOfNonZeroElements(), count);
+        it = csc.getNonZeroElementIterator();
+        count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(m.get(it.getActuali(), it.getActualj()), value, 0.);
+            count++;
+        }
+        assertEquals(csr.getNumberOfNonZeroElements(), count);
+    }
+
+    @Test
+    public void testBuilder() {
+        CooMatrixBuilder b = new CooMatrixBuilder(3, 4);
+        b.append(2, 1, 5.).append(0, 3, 1.).append(0, 0, 2.).append(2, 1, 7.).append(1, 2, 0.);
+        CsrMatrix csr = b.buildCsr();
+        assertEquals(3, csr.getNumberOfNonZeroElements());
+        assertEquals(7., csr.get(2, 1), 0.);
+        assertEquals(2., csr.get(0, 0), 0.);
+        assertEquals(1., csr.get(0, 3), 0.);
+        assertEquals(0., csr.get(1, 2), 0.);
+
+        CooMatrixBuilder sum = new CooMatrixBuilder(3, 4, 2, true);
+        sum.append(2, 1, 5.).append(2, 1, 7.);
+        assertEquals(12., sum.buildCsc().get(2, 1), 0.);
+
+        try {
+            b.append(3, 0, 1.);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            csr.set(0, 0, 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProducts() {
+        Random rng = new Random(2);
+        SparseMatrix a = randomMatrix(rng, 25, 30, 120);
+        SparseMatrix b = randomMatrix(rng, 30, 15, 100);
+        CsrMatrix csr = new CsrMatrix(a);
+        CscMatrix csc = csr.toCsc();
+
+        double[] x = new double[30];
+        for (int j = 0; j < 30; j++) x[j] = rng.nextDouble();
+        double[] y1 = new double[25];
+        double[] y2 = new double[25];
+        csr.times(x, y1);
+        csc.times(x, y2);
+        SparseVector px = new SparseVector(x);
+        SparseVector expected = (SparseVector) a.times(px);
+        SparseVector p1 = (SparseVector) csr.times(px);
+        SparseVector p2 = (SparseVector) csc.times(px);
+        for (int i = 0; i < 25; i++) {
+            assertEquals(expected.get(i), y1[i], 1e-12);
+            assertEquals(expected.get(i), y2[i], 1e-12);
+            assertEquals(expected.get(i), p1.get(i), 1e-12);
+            assertEquals(expected.get(i), p2.get(i), 1e-12);
+        }
+
+        double[] z = new double[25];
+        for (int i = 0; i < 25; i++) z[i] = rng.nextDouble();
+        double[] t1 = new double[30];
+        double[] t2 = new double[30];
+        csr.transposeTimes(z, t1);
+        csc.transposeTimes(z, t2);
+        for (int j = 0; j < 30; j++) {
+            double sum = 0;
+            for (int i = 0; i < 25; i++) sum += a.get(i, j) * z[i];
+            assertEquals(sum, t1[j], 1e-12);
+            assertEquals(sum, t2[j], 1e-12);
+        }
+
+        Matrix ab = csr.times(b);
+        assertTrue(ab instanceof CsrMatrix);
+        assertSameEntries(a.getNonSparseMatrix().times(b.getNonSparseMatrix()), ab);
+        assertSameEntries(ab, csc.times(new CsrMatrix(b)));
+        assertSameEntries(ab, csr.times(b.getNonSparseMatrix()));
+
+        SparseMatrix c = randomMatrix(rng, 25, 30, 80);
+        Matrix sum = csr.plus(c);
+        assertTrue(sum instanceof CsrMatrix);
+        assertSameEntries(a.plus(c), sum);
+        assertSameEntries(a.plus(c), csc.plus(new CsrMatrix(c)));
+        Matrix densesum = csr.plus(c.getNonSparseMatrix());
+        assertTrue(densesum instanceof NonSparseMatrix);
+        assertSameEntries(a.plus(c), densesum);
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.DokMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class DokMatrixTest extends TestCase {
+
+    private void assertMatrix(Map<Long, Double> expected, DokMatrix m) {
+        assertEquals(expected.size(), m.getNumberOfNonZeroElements());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            int i = (int) (e.getKey() / m.getColNum());
+            int j = (int) (e.getKey() % m.getColNum());
+            assertEquals(e.getValue(), m.get(i, j));
+        }
+    }
+
+    @Test
+    public void testSetAndRemove() {
+        Random rng = new Random(1);
+        int rows = 50, cols = 40;
+        DokMatrix m = new DokMatrix(rows, cols);
+        Map<Long, Double> expected = new HashMap<Long, Double>();
+        // many deletions in a small, crowded key space exercise the backward shift
+        for (int k = 0; k < 20000; k++) {
+            int i = rng.nextInt(rows);
+            int j = rng.nextInt(cols);
+            long key = (long) i * cols + j;
+            int op = rng.nextInt(3);
+            if (op == 0) {
+                m.set(i, j, 0);
+                expected.remove(key);
+            } else if (op == 1) {
+                double value = rng.nextInt(5) - 2;
+                m.set(i, j, value);
+                if (value != 0) expected.put(key, value);
+                else expected.remove(key);
+            } else {
+                double value = rng.nextInt(5) - 2;
+                m.add(i, j, value);
+                double sum = (expected.containsKey(key) ? expected.get(key) : 0) + value;
+                if (sum != 0) expected.put(key, sum);
+                else expected.remove(key);
+            }
+            if (k % 1000 == 0) assertMatrix(expected, m);
+        }
+        assertMatrix(expected, m);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                if (!expected.containsKey((long) i * cols + j)) assertEquals(0.0, m.get(i, j));
+
+        m.clear();
+        assertEquals(0, m.getNumberOfNonZeroElements());
+        assertEquals(0.0, m.get(3, 4));
+
+        try {
+            m.set(rows, 0, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreeze() {
+        Random rng = new Random(2);
+        int rows = 300, cols = 200;
+        DokMatrix m = new DokMatrix(rows, cols, 100);
+        SparseMatrix reference = new SparseMatrix(rows, cols);
+        for (int k = 0; k < 5000; k++) {
+            int i = rng.nextInt(rows);
+            int j = rng.nextInt(cols);
+            double value = rng.nextDouble();
+            m.set(i, j, value);
+            reference.set(i, j, value);
+        }
+        // a long row is sorted differently from the short ones
+        for (int j = cols - 1; j >= 0; j -= 2) {
+            m.set(5, j, j + 1);
+            reference.set(5, j, j + 1);
+        }
+        CsrMatrix csr = m.toCsr();
+        assertEquals(m.getNumberOfNonZeroElements(), csr.getNumberOfNonZeroElements());
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) assertEquals(reference.get(i, j), csr.get(i, j));
+            for (int p = csr.getRowPointers()[i] + 1; p < csr.getRowPointers()[i + 1]; p++)
+                assertTrue(csr.getColumnIndices()[p - 1] < csr.getColumnIndices()[p]);
+        }
+        assertEquals(csr, new CsrMatrix(reference));
+        assertEquals(m.get(7, 9), m.toCsc().get(7, 9));
+
+        Matrix t = m.transpose();
+        assertTrue(t instanceof DokMatrix);
+        for (int i = 0; i < rows; i += 7)
+            for (int j = 0; j < cols; j++) assertEquals(m.get(i, j), t.get(j, i));
+
+        int count = 0;
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(reference.get(it.getActuali(), it.getActualj()), value);
+            count++;
+        }
+        assertEquals(m.getNumberOfNonZeroElements(), count);
+        assertEquals(csr, new DokMatrix(reference).toCsr());
+    }
+
+}
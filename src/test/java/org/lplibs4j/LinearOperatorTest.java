@@ -0,0 +1,204 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.DiagonalOperator;
+import org.lplibs4j.api.implementation.KroneckerOperator;
+import org.lplibs4j.api.implementation.MatrixOperator;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.ScaledOperator;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SumOperator;
+import org.lplibs4j.api.util.LinearOperator;
+import org.lplibs4j.solver.problems.QuadraticAssignmentProblem;
+import org.lplibs4j.solver.qpsolver.QuadraticProgram;
+
+import java.util.Random;
+
+public class LinearOperatorTest extends TestCase {
+
+    private double[][] random(int rows, int cols, double density, Random rng) {
+        double[][] a = new double[rows][cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                if (rng.nextDouble() < density) a[i][j] = rng.nextInt(19) - 9;
+        return a;
+    }
+
+    private double[] random(int n, Random rng) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) x[i] = rng.nextGaussian();
+        return x;
+    }
+
+    private double[][] kronecker(double[][] a, double[][] b) {
+        int rb = b.length, cb = b[0].length;
+        double[][] k = new double[a.length * rb][a[0].length * cb];
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < rb; j++)
+                for (int p = 0; p < a[0].length; p++)
+                    for (int l = 0; l < cb; l++)
+                        k[i * rb + j][p * cb + l] = a[i][p] * b[j][l];
+        return k;
+    }
+
+    private double[] times(double[][] a, double[] x) {
+        double[] y = new double[a.length];
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[0].length; j++) y[i] += a[i][j] * x[j];
+        return y;
+    }
+
+    private double[] transposeTimes(double[][] a, double[] x) {
+        double[] y = new double[a[0].length];
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[0].length; j++) y[j] += a[i][j] * x[i];
+        return y;
+    }
+
+    private void assertOperator(double[][] expected, LinearOperator op, Random rng) {
+        assertEquals(expected.length, op.getRowNum());
+        assertEquals(expected[0].length, op.getColNum());
+        double[] x = random(op.getColNum(), rng);
+        // the result is overwritten, not added to
+        double[] y = random(op.getRowNum() + 3, rng);
+        op.apply(x, y);
+        double[] ref = times(expected, x);
+        for (int i = 0; i < ref.length; i++) assertEquals(ref[i], y[i], 1e-9);
+        x = random(op.getRowNum(), rng);
+        y = random(op.getColNum() + 3, rng);
+        op.applyTranspose(x, y);
+        ref = transposeTimes(expected, x);
+        for (int i = 0; i < ref.length; i++) assertEquals(ref[i], y[i], 1e-9);
+    }
+
+    private LinearOperator csr(double[][] a) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(a.length, a[0].length);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[0].length; j++)
+                if (a[i][j] != 0) builder.append(i, j, a[i][j]);
+        return new MatrixOperator(builder.buildCsr());
+    }
+
+    private LinearOperator csc(double[][] a) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(a.length, a[0].length);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[0].length; j++)
+                if (a[i][j] != 0) builder.append(i, j, a[i][j]);
+        return new MatrixOperator(builder.buildCsc());
+    }
+
+    @Test
+    public void testMatrixOperator() {
+        Random rng = new Random(1);
+        double[][] a = random(7, 5, 0.4, rng);
+        assertOperator(a, new MatrixOperator(new NonSparseMatrix(a)), rng);
+        assertOperator(a, new MatrixOperator(new SparseMatrix(a)), rng);
+        assertOperator(a, csr(a), rng);
+        assertOperator(a, csc(a), rng);
+    }
+
+    @Test
+    public void testKronecker() {
+        Random rng = new Random(2);
+        double[][] a = random(4, 3, 0.7, rng);
+        double[][] b = random(5, 6, 0.5, rng);
+        double[][] k = kronecker(a, b);
+        assertOperator(k, new KroneckerOperator(a, b), rng);
+        assertOperator(k, new KroneckerOperator(csr(a), new MatrixOperator(new SparseMatrix(b))), rng);
+        assertOperator(k, new KroneckerOperator(new MatrixOperator(new NonSparseMatrix(a)), csc(b)), rng);
+
+        // nested products
+        double[][] c = random(2, 3, 0.8, rng);
+        assertOperator(kronecker(k, c), new KroneckerOperator(new KroneckerOperator(a, b), csr(c)), rng);
+        assertOperator(kronecker(c, k), new KroneckerOperator(csr(c), new KroneckerOperator(a, b)), rng);
+    }
+
+    @Test
+    public void testCombinations() {
+        Random rng = new Random(3);
+        double[][] a = random(6, 6, 0.5, rng);
+        double[][] b = random(6, 6, 0.5, rng);
+        double[] d = random(6, rng);
+        double[][] expected = new double[6][6];
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) expected[i][j] = a[i][j] - 2.5 * b[i][j];
+            expected[i][i] += d[i];
+        }
+        LinearOperator sum = new SumOperator(csr(a), new ScaledOperator(-2.5, new MatrixOperator(new NonSparseMatrix(b))),
+                new DiagonalOperator(d));
+        assertOperator(expected, sum, rng);
+
+        try {
+            new SumOperator(csr(a), csr(random(6, 5, 0.5, rng)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testQuadraticAssignment() {
+        Random rng = new Random(4);
+        int n = 7;
+        double[][] a = random(n, n, 0.6, rng);
+        double[][] b = random(n, n, 0.6, rng);
+        double[][] c = random(n, n, 0.3, rng);
+        QuadraticAssignmentProblem qap = new QuadraticAssignmentProblem(a, b, c);
+        for (int t = 0; t < 5; t++) {
+            int[][] assignment = new int[n][n];
+            int[] perm = new int[n];
+            for (int i = 0; i < n; i++) perm[i] = i;
+            for (int i = n - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int s = perm[i];
+                perm[i] = perm[j];
+                perm[j] = s;
+            }
+            for (int i = 0; i < n; i++) assignment[i][perm[i]] = 1;
+
+            double expected = 0;
+            double[] x = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    x[i * n + j] = assignment[i][j];
+                    expected += c[i][j] * assignment[i][j];
+                    for (int k = 0; k < n; k++)
+                        for (int l = 0; l < n; l++)
+                            expected += a[i][k] * b[j][l] * assignment[i][j] * assignment[k][l];
+                }
+            }
+            assertEquals(expected, qap.evaluate(assignment), 1e-9);
+
+            QuadraticProgram qp = qap.getQuadraticProgram();
+            assertNull(qp.getQ());
+            assertEquals(n * n, qp.getDimension());
+            assertEquals(2 * n, qp.getConstraints().size());
+            assertTrue(qp.isFeasable(x));
+            assertEquals(expected, qp.evaluate(x), 1e-9);
+        }
+    }
+
+    @Test
+    public void testQuadraticProgram() {
+        Random rng = new Random(5);
+        double[][] q = random(8, 8, 0.5, rng);
+        for (int i = 0; i < 8; i++)
+            for (int j = 0; j < i; j++) q[i][j] = q[j][i];
+        double[] c = random(8, rng);
+        double[] x = random(8, rng);
+        QuadraticProgram reference = new QuadraticProgram(q, c);
+        QuadraticProgram qp = new QuadraticProgram(new MatrixOperator(new NonSparseMatrix(q)), new SparseVector(c));
+        assertNotNull(qp.getQ());
+        assertEquals(reference.evaluate(x), qp.evaluate(x), 1e-9);
+        qp.setQ(new ScaledOperator(1.0, csr(q)));
+        assertNull(qp.getQ());
+        assertEquals(reference.evaluate(x), qp.evaluate(x), 1e-9);
+        double[] y = new double[8];
+        reference.getQOperator().apply(x, y);
+        assertEquals(times(q, x)[3], y[3], 1e-9);
+    }
+
+}
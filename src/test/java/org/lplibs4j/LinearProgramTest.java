@@ -1,6 +1,8 @@
 package org.lplibs4j;
 
 import org.junit.*;
+import org.lplibs4j.api.implementation.HybridVector;
+import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.solver.problems.LinearProgram;
 
 public class LinearProgramTest {
@@ -13,4 +15,33 @@ public class LinearProgramTest {
         result = lp.evaluate(new double[]{0.0, 0.0});
         Assert.assertEquals("Evaluation is wrong: ", 0.0, result, 0.00001);
     }
+
+    @Test
+    public void testCSparse() {
+        LinearProgram lp = new LinearProgram(new double[]{1.0, 0.0, 2.0});
+        // frozen once when the coefficients are set, every call returns the same vector
+        SparseVector c = lp.getCSparse();
+        Assert.assertTrue(c.isFrozen());
+        Assert.assertSame(c, lp.getCSparse());
+        Assert.assertEquals(2.0, c.get(2), 0.0);
+        Assert.assertArrayEquals(new double[]{1.0, 0.0, 2.0}, lp.getC(), 0.0);
+
+        lp.setC(new SparseVector(new double[]{0.0, 3.0, 0.0}));
+        Assert.assertNotSame(c, lp.getCSparse());
+        Assert.assertEquals(3.0, lp.getCSparse().get(1), 0.0);
+        Assert.assertEquals(2.0, c.get(2), 0.0);
+
+        // the program keeps its HybridVector, getCSparse hands out a frozen copy
+        LinearProgram dense = new LinearProgram(new double[]{1.0, 2.0, 3.0}) {
+            {
+                getCSparse();
+                Assert.assertTrue(c instanceof HybridVector);
+                Assert.assertTrue(((HybridVector) c).isDense());
+            }
+        };
+        Assert.assertEquals(6.0, dense.evaluate(new double[]{1.0, 1.0, 1.0}), 0.0);
+
+        LinearProgram copy = new LinearProgram(lp);
+        Assert.assertEquals(3.0, copy.getCSparse().get(1), 0.0);
+    }
 }
@@ -0,0 +1,116 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.MatrixMarketReader;
+import org.lplibs4j.api.implementation.SparseMatrix;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class MatrixMarketReaderTest extends TestCase {
+
+    private File write(String content) throws IOException {
+        File file = File.createTempFile("matrix", ".mtx");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "US-ASCII");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testQualifiers() throws IOException {
+        File general = write("%%MatrixMarket matrix coordinate real general\n% comment\n%\n3 4 4\n1 1 1.5\n3 4 -2e-3\n2 2 7\n1 1 0.5\n");
+        CsrMatrix m = MatrixMarketReader.read(general.getPath());
+        assertEquals(3, m.getRowNum());
+        assertEquals(4, m.getColNum());
+        assertEquals(3, m.getNumberOfNonZeroElements());
+        assertEquals(2.0, m.get(0, 0), 0.);
+        assertEquals(-2e-3, m.get(2, 3), 0.);
+        assertEquals(7.0, m.get(1, 1), 0.);
+
+        File symmetric = write("%%MatrixMarket matrix coordinate integer symmetric\r\n3 3 3\r\n1 1 4\r\n3 1 -1\r\n3 2 2\r\n");
+        m = MatrixMarketReader.read(symmetric.getPath());
+        assertEquals(5, m.getNumberOfNonZeroElements());
+        assertEquals(-1., m.get(2, 0), 0.);
+        assertEquals(-1., m.get(0, 2), 0.);
+        assertEquals(2., m.get(1, 2), 0.);
+
+        File skew = write("%%MatrixMarket matrix coordinate real skew-symmetric\n2 2 1\n2 1 3.25\n");
+        m = MatrixMarketReader.read(skew.getPath());
+        assertEquals(3.25, m.get(1, 0), 0.);
+        assertEquals(-3.25, m.get(0, 1), 0.);
+
+        File pattern = write("%%MatrixMarket matrix coordinate pattern general\n2 3 2\n1 3\n2 1");
+        m = MatrixMarketReader.read(pattern.getPath());
+        assertEquals(1., m.get(0, 2), 0.);
+        assertEquals(1., m.get(1, 0), 0.);
+        assertEquals(MatrixMarketReader.Symmetry.GENERAL, MatrixMarketReader.readHeader(pattern).getSymmetry());
+
+        SparseMatrix s = SparseMatrix.readMTX(symmetric.getPath());
+        assertEquals(4., s.get(0, 0), 0.);
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        String[] files = {
+                "3 3 1\n1 1 1\n",
+                "%%MatrixMarket matrix array real general\n2 2\n1\n2\n3\n4\n",
+                "%%MatrixMarket matrix coordinate complex general\n2 2 1\n1 1 1 0\n",
+                "%%MatrixMarket matrix coordinate real general\n2 2 1\n3 1 1\n",
+                "%%MatrixMarket matrix coordinate real general\n2 2 2\n1 1 1\n",
+                "%%MatrixMarket matrix coordinate real general\n2 2 1\n1 1 x\n",
+                "%%MatrixMarket matrix coordinate real symmetric\n2 3 1\n1 1 1\n"
+        };
+        for (String content : files) {
+            try {
+                MatrixMarketReader.read(write(content).getPath());
+                fail(content);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        Random rng = new Random(6);
+        int n = 5000;
+        // the reader sums up duplicates
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n, 200000, true);
+        StringBuilder content = new StringBuilder("%%MatrixMarket matrix coordinate real general\n");
+        StringBuilder entries = new StringBuilder();
+        int count = 150000;
+        for (int k = 0; k < count; k++) {
+            int i = rng.nextInt(n);
+            int j = rng.nextInt(n);
+            double value = rng.nextInt(2) == 0 ? rng.nextDouble() : rng.nextInt(1000) / 8.0;
+            builder.append(i, j, value);
+            entries.append(i + 1).append(' ').append(j + 1).append(' ').append(value).append('\n');
+        }
+        content.append(n).append(' ').append(n).append(' ').append(count).append('\n').append(entries);
+        File file = write(content.toString());
+        assertTrue(file.length() > 2 << 20);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CsrMatrix m = MatrixMarketReader.read(file, pool);
+            CsrMatrix expected = builder.buildCsr();
+            assertEquals(expected, m);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
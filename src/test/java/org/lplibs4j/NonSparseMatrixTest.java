@@ -0,0 +1,116 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.DenseKernels;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class NonSparseMatrixTest extends TestCase {
+
+    private double[][] random(Random rng, int rows, int cols) {
+        double[][] a = new double[rows][cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++) a[i][j] = rng.nextDouble() - 0.5;
+        return a;
+    }
+
+    private double[][] naive(double[][] a, double[][] b) {
+        double[][] c = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < b[0].length; j++)
+                for (int p = 0; p < b.length; p++) c[i][j] += a[i][p] * b[p][j];
+        return c;
+    }
+
+    private void assertSameEntries(double[][] expected, Matrix actual) {
+        assertEquals(expected.length, actual.getRowNum());
+        assertEquals(expected[0].length, actual.getColNum());
+        for (int i = 0; i < expected.length; i++)
+            for (int j = 0; j < expected[0].length; j++)
+                assertEquals(expected[i][j], actual.get(i, j), 1e-10);
+    }
+
+    @Test
+    public void testGemm() {
+        Random rng = new Random(8);
+        int[][] shapes = {{1, 1, 1}, {3, 5, 7}, {65, 33, 17}, {130, 270, 300}, {301, 2100, 9}};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int[] shape : shapes) {
+                double[][] a = random(rng, shape[0], shape[2]);
+                double[][] b = random(rng, shape[2], shape[1]);
+                double[][] expected = naive(a, b);
+                NonSparseMatrix ma = new NonSparseMatrix(a);
+                NonSparseMatrix mb = new NonSparseMatrix(b);
+                assertSameEntries(expected, ma.times(mb));
+
+                NonSparseMatrix c = new NonSparseMatrix(shape[0], shape[1]);
+                DenseKernels.gemm(shape[0], shape[1], shape[2], ma.getData(), shape[2], mb.getData(), shape[1], c.getData(), shape[1], pool);
+                assertSameEntries(expected, c);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSparseProducts() {
+        Random rng = new Random(9);
+        double[][] a = random(rng, 40, 30);
+        SparseMatrix s = new SparseMatrix(30, 20);
+        for (int k = 0; k < 100; k++) s.set(rng.nextInt(30), rng.nextInt(20), rng.nextDouble());
+        double[][] sd = s.getNonSparseMatrix().toArray();
+        NonSparseMatrix ma = new NonSparseMatrix(a);
+        assertSameEntries(naive(a, sd), ma.times(s));
+        assertSameEntries(naive(a, sd), ma.times(new CsrMatrix(s)));
+
+        double[][] b = random(rng, 20, 25);
+        NonSparseMatrix mb = new NonSparseMatrix(b);
+        assertSameEntries(naive(sd, b), s.times(mb));
+        assertSameEntries(naive(sd, b), new CsrMatrix(s).times(mb));
+    }
+
+    @Test
+    public void testBasics() {
+        double[][] a = {{1, 0, 2}, {0, 0, 3}};
+        NonSparseMatrix m = new NonSparseMatrix(a);
+        Matrix t = m.transpose();
+        assertEquals(3, t.getRowNum());
+        assertEquals(2, t.getColNum());
+        assertEquals(2., t.get(2, 0), 0.);
+        assertEquals(3., t.get(2, 1), 0.);
+
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        int count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(a[it.getActuali()][it.getActualj()], value, 0.);
+            count++;
+        }
+        assertEquals(3, count);
+
+        SparseMatrix s = new SparseMatrix(2, 3);
+        s.set(1, 1, 5.);
+        Matrix sum = m.plus(s);
+        assertEquals(5., sum.get(1, 1), 0.);
+        assertEquals(2., sum.get(0, 2), 0.);
+        sum = m.plus(m);
+        assertEquals(6., sum.get(1, 2), 0.);
+        assertEquals(1., m.get(0, 0), 0.);
+
+        try {
+            m.times(m);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.BlockSparseMatrix;
+import org.lplibs4j.api.implementation.CompressedSparseVector;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.DokMatrix;
+import org.lplibs4j.api.implementation.FrozenSparseVector;
+import org.lplibs4j.api.implementation.HybridVector;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.OffHeapArena;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SymmetricSparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class NonZeroVisitorTest extends TestCase {
+
+    private double[][] random(int rows, int cols, double density, Random rng) {
+        double[][] a = new double[rows][cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                if (rng.nextDouble() < density) a[i][j] = rng.nextInt(19) - 9;
+        return a;
+    }
+
+    private double[] random(int n, double density, Random rng) {
+        return random(1, n, density, rng)[0];
+    }
+
+    private CooMatrixBuilder builder(double[][] a) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(a.length, a[0].length);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[0].length; j++)
+                if (a[i][j] != 0) builder.append(i, j, a[i][j]);
+        return builder;
+    }
+
+    /**
+     * Checks that the visitor and the bulk copy return every non-zero entry of get once, in
+     * the same order.
+     */
+    private void assertVisits(Matrix m) {
+        int rows = m.getRowNum();
+        int cols = m.getColNum();
+        int nnz = 0;
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                if (m.get(i, j) != 0) nnz++;
+
+        final double[][] visited = new double[rows][cols];
+        final int[] r = new int[nnz];
+        final int[] c = new int[nnz];
+        final double[] v = new double[nnz];
+        final int[] count = new int[1];
+        m.forEachNonZero(new NonZeroElementVisitor() {
+            public void visit(int row, int column, double value) {
+                assertEquals(0.0, visited[row][column]);
+                assertTrue(value != 0);
+                visited[row][column] = value;
+                r[count[0]] = row;
+                c[count[0]] = column;
+                v[count[0]++] = value;
+            }
+        });
+        assertEquals(nnz, count[0]);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++) assertEquals(m.get(i, j), visited[i][j]);
+
+        // larger arrays than needed are fine
+        int[] rr = new int[nnz + 2];
+        int[] cc = new int[nnz + 2];
+        double[] vv = new double[nnz + 2];
+        assertEquals(nnz, m.copyNonZerosTo(rr, cc, vv));
+        for (int k = 0; k < nnz; k++) {
+            assertEquals(r[k], rr[k]);
+            assertEquals(c[k], cc[k]);
+            assertEquals(v[k], vv[k]);
+        }
+        if (nnz > 0) {
+            try {
+                m.copyNonZerosTo(new int[nnz], new int[nnz - 1], new double[nnz]);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Checks that the visitor follows the order of the iterator, which may return stored
+     * zeros.
+     */
+    private void assertIteratorOrder(Matrix m) {
+        final NonZeroElementIterator it = m.getNonZeroElementIterator();
+        m.forEachNonZero(new NonZeroElementVisitor() {
+            public void visit(int row, int column, double value) {
+                double next;
+                do {
+                    assertTrue(it.hasNext());
+                    next = it.next();
+                } while (next == 0);
+                assertEquals(value, next);
+                assertEquals(row, it.getActuali());
+                assertEquals(column, it.getActualj());
+            }
+        });
+        while (it.hasNext()) assertEquals(0.0, it.next().doubleValue());
+    }
+
+    @Test
+    public void testMatrices() {
+        Random rng = new Random(1);
+        double[][] a = random(13, 9, 0.3, rng);
+        a[4] = new double[9];
+        Matrix[] matrices = {new SparseMatrix(a), new NonSparseMatrix(a), builder(a).buildCsr(), builder(a).buildCsc(),
+                new DokMatrix(new SparseMatrix(a)), new SymmetricSparseMatrix(random(11, 11, 0.3, rng)),
+                new BlockSparseMatrix(new SparseMatrix(random(3, 4, 0.5, rng)),
+                        new Matrix[]{new SparseMatrix(random(5, 4, 0.5, rng)), new SparseMatrix(random(2, 4, 0.5, rng))},
+                        new Matrix[]{new SparseMatrix(random(5, 6, 0.5, rng)), new SparseMatrix(random(2, 3, 0.5, rng))})};
+        for (Matrix m : matrices) {
+            assertVisits(m);
+            assertIteratorOrder(m);
+        }
+        assertVisits(new SparseMatrix(7, 5));
+        assertVisits(new NonSparseMatrix(7, 5));
+
+        OffHeapArena arena = new OffHeapArena();
+        try {
+            Matrix m = arena.copyOf(new SparseMatrix(a));
+            assertVisits(m);
+            assertIteratorOrder(m);
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void testVectors() {
+        Random rng = new Random(2);
+        double[] x = random(40, 0.2, rng);
+        double[] dense = random(40, 0.9, rng);
+        Matrix[] vectors = {new SparseVector(x), new SparseVector(x).transpose(), new FrozenSparseVector(x),
+                new HybridVector(x), new HybridVector(dense), new HybridVector(dense).transpose(),
+                CompressedSparseVector.compress(new SparseVector(x)),
+                CompressedSparseVector.compress(new SparseVector(x)).transpose()};
+        for (Matrix v : vectors) assertVisits(v);
+
+        OffHeapArena arena = new OffHeapArena();
+        try {
+            assertVisits(arena.copyOf(new SparseVector(x)));
+            assertVisits(arena.copyOf(new SparseVector(x)).transpose());
+        } finally {
+            arena.close();
+        }
+
+        // a dense row added to a dense matrix lands in its row, not its column
+        Matrix sum = new NonSparseMatrix(1, 40).plus(new SparseVector(x).transpose());
+        for (int j = 0; j < 40; j++) assertEquals(x[j], sum.get(0, j));
+    }
+
+    @Test
+    public void testAllocation() {
+        Random rng = new Random(3);
+        double[][] a = random(300, 300, 0.1, rng);
+        Matrix[] matrices = {new SparseMatrix(a), new NonSparseMatrix(a), builder(a).buildCsr()};
+        final double[] sum = new double[1];
+        NonZeroElementVisitor visitor = new NonZeroElementVisitor() {
+            public void visit(int row, int column, double value) {
+                sum[0] += value;
+            }
+        };
+        int nnz = ((SparseMatrix) matrices[0]).getNumberOfNonZeroElements();
+        int[] r = new int[nnz];
+        int[] c = new int[nnz];
+        double[] v = new double[nnz];
+
+        // visiting allocates nothing per entry, at most an iterator over the rows
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunbean = (com.sun.management.ThreadMXBean) bean;
+            long tid = Thread.currentThread().getId();
+            for (Matrix m : matrices) {
+                for (int k = 0; k < 200; k++) {
+                    m.forEachNonZero(visitor);
+                    m.copyNonZerosTo(r, c, v);
+                }
+                long before = sunbean.getThreadAllocatedBytes(tid);
+                for (int k = 0; k < 100; k++) {
+                    m.forEachNonZero(visitor);
+                    assertEquals(nnz, m.copyNonZerosTo(r, c, v));
+                }
+                long perCall = (sunbean.getThreadAllocatedBytes(tid) - before) / 100;
+                assertTrue("allocated " + perCall + " bytes per call", perCall < 1024);
+            }
+        }
+    }
+
+    @Test
+    public void testSparseMatrixIterator() {
+        assertFalse(new SparseMatrix(3, 3).getNonZeroElementIterator().hasNext());
+
+        // setting zeros creates rows holding only stored zeros
+        SparseMatrix m = new SparseMatrix(4, 4);
+        m.set(0, 1, 0.0);
+        m.set(1, 2, 3.0);
+        m.set(2, 3, 0.0);
+        m.set(3, 0, -1.0);
+        assertEquals(4, m.getNumberOfNonZeroRows());
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        int count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(m.get(it.getActuali(), it.getActualj()), value);
+            count++;
+        }
+        assertEquals(4, count);
+        assertVisits(m);
+        assertIteratorOrder(m);
+        assertVisits(new CsrMatrix(m));
+
+        // rows emptied by setRow are removed
+        m.setRow(1, new SparseVector(4, 4));
+        it = m.getNonZeroElementIterator();
+        count = 0;
+        while (it.hasNext()) if (it.next() != 0) count++;
+        assertEquals(1, count);
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.OffHeapArena;
+import org.lplibs4j.api.implementation.OffHeapSparseMatrix;
+import org.lplibs4j.api.implementation.OffHeapSparseVector;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+
+import java.util.Random;
+
+public class OffHeapTest extends TestCase {
+
+    @Test
+    public void testVector() {
+        SparseVector v = new SparseVector(new double[]{0., 1., 0., 2., 3.});
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapSparseVector ov = arena.copyOf(v);
+        assertEquals(5, ov.getRowNum());
+        assertEquals(3, ov.getUsed());
+        for (int i = 0; i < 5; i++) assertEquals(v.get(i), ov.get(i), 0.);
+        assertEquals(v.dot(v), ov.dot(v), 0.);
+        assertEquals(v.dot(v.get()), ov.dot(v.get()), 0.);
+        assertTrue(v.equals(ov.toSparseVector()));
+
+        ov.set(3, 0, 5.);
+        assertEquals(5., ov.get(3), 0.);
+        try {
+            ov.set(0, 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        NonZeroElementIterator it = ov.getNonZeroElementIterator();
+        int count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(ov.get(it.getActuali()), value, 0.);
+            count++;
+        }
+        assertEquals(3, count);
+
+        arena.close();
+        try {
+            ov.get(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMatrix() {
+        Random rng = new Random(42);
+        SparseMatrix m = new SparseMatrix(50, 40);
+        for (int k = 0; k < 300; k++) m.set(rng.nextInt(50), rng.nextInt(40), rng.nextDouble());
+
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapSparseMatrix om = arena.copyOf(m);
+        assertEquals(m.getNumberOfNonZeroElements(), om.getNumberOfNonZeroElements());
+        for (int i = 0; i < 50; i++)
+            for (int j = 0; j < 40; j++)
+                assertEquals(m.get(i, j), om.get(i, j), 0.);
+        assertTrue(m.equals(om.toSparseMatrix()));
+
+        double[] x = new double[40];
+        for (int j = 0; j < 40; j++) x[j] = rng.nextDouble();
+        double[] y = new double[50];
+        om.times(x, y);
+        SparseVector px = new SparseVector(x);
+        SparseVector expected = (SparseVector) m.times(px);
+        SparseVector actual = (SparseVector) om.times(px);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(expected.get(i), y[i], 1e-12);
+            assertEquals(expected.get(i), actual.get(i), 1e-12);
+        }
+
+        NonZeroElementIterator it = om.getNonZeroElementIterator();
+        int count = 0;
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(m.get(it.getActuali(), it.getActualj()), value, 0.);
+            count++;
+        }
+        assertEquals(m.getNumberOfNonZeroElements(), count);
+        assertEquals(51, om.getRowPointerBuffer().remaining());
+
+        arena.close();
+        try {
+            om.times(x, y);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAppendRow() {
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapSparseMatrix om = arena.allocateMatrix(4, 4, 3);
+        om.appendRow(1, new int[]{0, 2}, new double[]{1., 2.}, 2);
+        om.appendRow(3, new int[]{3}, new double[]{3.}, 1);
+        assertEquals(0., om.get(0, 0), 0.);
+        assertEquals(2., om.get(1, 2), 0.);
+        assertEquals(0., om.get(2, 2), 0.);
+        assertEquals(3., om.get(3, 3), 0.);
+        try {
+            om.appendRow(2, new int[]{0}, new double[]{1.}, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        arena.close();
+    }
+
+}
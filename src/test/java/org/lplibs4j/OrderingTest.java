@@ -0,0 +1,175 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.solver.linalg.Ordering;
+import org.lplibs4j.solver.linalg.SymbolicFactorization;
+
+import java.util.Random;
+
+public class OrderingTest extends TestCase {
+
+    /**
+     * The 5-point Laplacian of a side x side grid, with the nodes numbered by label.
+     */
+    private CsrMatrix grid(int side, int[] label) {
+        int n = side * side;
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n);
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                int k = label[x * side + y];
+                builder.append(k, k, 4);
+                if (x > 0) {
+                    builder.append(k, label[(x - 1) * side + y], -1);
+                    builder.append(label[(x - 1) * side + y], k, -1);
+                }
+                if (y > 0) {
+                    builder.append(k, label[x * side + y - 1], -1);
+                    builder.append(label[x * side + y - 1], k, -1);
+                }
+            }
+        }
+        return builder.buildCsr();
+    }
+
+    private int[] shuffled(int n, Random rng) {
+        int[] perm = new int[n];
+        for (int k = 0; k < n; k++) perm[k] = k;
+        for (int k = n - 1; k > 0; k--) {
+            int j = rng.nextInt(k + 1);
+            int t = perm[k];
+            perm[k] = perm[j];
+            perm[j] = t;
+        }
+        return perm;
+    }
+
+    private void assertPermutation(int[] perm, int n) {
+        assertEquals(n, perm.length);
+        Ordering.invert(perm);
+    }
+
+    @Test
+    public void testPermute() {
+        Random rng = new Random(1);
+        CooMatrixBuilder builder = new CooMatrixBuilder(30, 20);
+        for (int k = 0; k < 150; k++) builder.append(rng.nextInt(30), rng.nextInt(20), rng.nextDouble());
+        CsrMatrix a = builder.buildCsr();
+        int[] rowperm = shuffled(30, rng);
+        int[] colperm = shuffled(20, rng);
+        CsrMatrix b = a.permute(rowperm, colperm);
+        SparseMatrix s = a.toSparseMatrix().permute(rowperm, colperm);
+        assertEquals(a.getNumberOfNonZeroElements(), b.getNumberOfNonZeroElements());
+        for (int k = 0; k < 30; k++) {
+            for (int l = 0; l < 20; l++) {
+                assertEquals(a.get(rowperm[k], colperm[l]), b.get(k, l));
+                assertEquals(a.get(rowperm[k], colperm[l]), s.get(k, l));
+            }
+            // the column indices stay sorted
+            for (int p = b.getRowPointers()[k] + 1; p < b.getRowPointers()[k + 1]; p++)
+                assertTrue(b.getColumnIndices()[p - 1] < b.getColumnIndices()[p]);
+        }
+        assertEquals(a.permute(null, colperm).get(3, 4), a.get(3, colperm[4]));
+
+        try {
+            a.permute(new int[]{0, 0}, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        int[] duplicate = rowperm.clone();
+        duplicate[1] = duplicate[0];
+        try {
+            a.permute(duplicate, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReverseCuthillMcKee() {
+        Random rng = new Random(2);
+        int side = 30;
+        CsrMatrix a = grid(side, shuffled(side * side, rng));
+        int[] perm = Ordering.reverseCuthillMcKee(a);
+        assertPermutation(perm, side * side);
+        CsrMatrix b = a.permute(perm, perm);
+        assertTrue(Ordering.bandwidth(a) > 10 * side);
+        assertTrue(Ordering.bandwidth(b) <= side + 1);
+        assertTrue(Ordering.profile(b) < Ordering.profile(a) / 10);
+
+        int[] natural = new int[side * side];
+        for (int k = 0; k < natural.length; k++) natural[k] = k;
+        CsrMatrix c = grid(side, natural);
+        assertEquals(side, Ordering.bandwidth(c));
+        assertEquals((long) side * side * (side - 1) + side - 1, Ordering.profile(c));
+    }
+
+    @Test
+    public void testMinimumDegree() {
+        // an arrow matrix: the dense node is eliminated last (or tied with the last leaf), without any fill
+        int n = 50;
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n);
+        for (int k = 0; k < n; k++) {
+            builder.append(k, k, n);
+            if (k > 0) {
+                builder.append(0, k, 1);
+                builder.append(k, 0, 1);
+            }
+        }
+        CsrMatrix arrow = builder.buildCsr();
+        int[] perm = Ordering.approximateMinimumDegree(arrow);
+        assertPermutation(perm, n);
+        assertTrue(perm[n - 1] == 0 || perm[n - 2] == 0);
+        assertEquals(0, SymbolicFactorization.analyze(arrow, perm).getFillIn());
+
+        Random rng = new Random(3);
+        int side = 40;
+        int[] natural = new int[side * side];
+        for (int k = 0; k < natural.length; k++) natural[k] = k;
+        CsrMatrix a = grid(side, natural);
+        perm = Ordering.approximateMinimumDegree(a);
+        assertPermutation(perm, side * side);
+        int banded = SymbolicFactorization.analyze(a).getNonZerosOfL();
+        int amd = SymbolicFactorization.analyze(a, perm).getNonZerosOfL();
+        assertTrue(amd < banded / 2);
+
+        // the scrambled grid gets about as sparse a factor
+        CsrMatrix s = grid(side, shuffled(side * side, rng));
+        int scrambled = SymbolicFactorization.analyze(s, Ordering.approximateMinimumDegree(s)).getNonZerosOfL();
+        assertTrue(scrambled < banded / 2);
+    }
+
+    @Test
+    public void testNestedDissection() {
+        Random rng = new Random(4);
+        int side = 60;
+        int n = side * side;
+        CsrMatrix a = grid(side, shuffled(n, rng));
+        int[] perm = Ordering.nestedDissection(a);
+        assertPermutation(perm, n);
+        int[] rcm = Ordering.reverseCuthillMcKee(a);
+        int banded = SymbolicFactorization.analyze(a, rcm).getNonZerosOfL();
+        int dissected = SymbolicFactorization.analyze(a, perm).getNonZerosOfL();
+        assertTrue(dissected < banded);
+
+        // two separate grids and isolated nodes
+        CooMatrixBuilder builder = new CooMatrixBuilder(2 * n + 5, 2 * n + 5);
+        for (int p = 0; p < 2; p++) {
+            int[] rows = a.getRowPointers();
+            for (int i = 0; i < n; i++)
+                for (int q = rows[i]; q < rows[i + 1]; q++)
+                    builder.append(p * n + i, p * n + a.getColumnIndices()[q], a.getValues()[q]);
+        }
+        for (int k = 2 * n; k < 2 * n + 5; k++) builder.append(k, k, 1);
+        CsrMatrix two = builder.buildCsr();
+        assertPermutation(Ordering.nestedDissection(two), 2 * n + 5);
+        assertPermutation(Ordering.reverseCuthillMcKee(two), 2 * n + 5);
+        assertPermutation(Ordering.approximateMinimumDegree(two), 2 * n + 5);
+    }
+
+}
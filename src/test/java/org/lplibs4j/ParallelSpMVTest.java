@@ -0,0 +1,70 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.ParallelSpMV;
+import org.lplibs4j.api.implementation.SparseMatrix;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelSpMVTest extends TestCase {
+
+    @Test
+    public void testProducts() {
+        Random rng = new Random(3);
+        int rows = 3000;
+        int cols = 2000;
+        CooMatrixBuilder builder = new CooMatrixBuilder(rows, cols, 100000, true);
+        for (int k = 0; k < 80000; k++) builder.append(rng.nextInt(rows), rng.nextInt(cols), rng.nextDouble());
+        // a few dense rows to test the balancing
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < cols; j++) builder.append(i * 7, j, rng.nextDouble());
+        CsrMatrix csr = builder.buildCsr();
+        SparseMatrix sparse = csr.toSparseMatrix();
+        assertTrue(csr.getNumberOfNonZeroElements() > ParallelSpMV.THRESHOLD);
+
+        double[] x = new double[cols];
+        for (int j = 0; j < cols; j++) x[j] = rng.nextDouble();
+        double[] z = new double[rows];
+        for (int i = 0; i < rows; i++) z[i] = rng.nextInt(3) == 0 ? 0 : rng.nextDouble();
+
+        double[] expected = new double[rows];
+        double[] expectedt = new double[cols];
+        csr.times(x, expected);
+        csr.transposeTimes(z, expectedt);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            double[] y = new double[rows];
+            double[] yt = new double[cols];
+            ParallelSpMV.times(csr, x, y, pool);
+            assertEqualArrays(expected, y);
+            ParallelSpMV.transposeTimes(csr, z, yt, pool);
+            assertEqualArrays(expectedt, yt);
+
+            y = new double[rows];
+            yt = new double[cols];
+            ParallelSpMV.times(sparse, x, y, pool);
+            assertEqualArrays(expected, y);
+            ParallelSpMV.transposeTimes(sparse, z, yt, pool);
+            assertEqualArrays(expectedt, yt);
+        } finally {
+            pool.shutdown();
+        }
+
+        double[] y = new double[rows];
+        double[] yt = new double[cols];
+        csr.timesParallel(x, y);
+        assertEqualArrays(expected, y);
+        sparse.transposeTimesParallel(z, yt);
+        assertEqualArrays(expectedt, yt);
+    }
+
+    private void assertEqualArrays(double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], actual[i], 1e-9);
+    }
+
+}
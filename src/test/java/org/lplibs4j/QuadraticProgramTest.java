@@ -1,8 +1,14 @@
 package org.lplibs4j;
 
 import org.junit.*;
+import org.lplibs4j.api.implementation.ScratchArena;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
 import org.lplibs4j.solver.qpsolver.QuadraticProgram;
 
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
 
 
 
@@ -52,4 +58,43 @@ public class QuadraticProgramTest {
 		*/
     }
 
+
+    @Test
+    public void testEvaluateWithArena() {
+        int n = 2000;
+        Random rng = new Random(3);
+        SparseMatrix q = new SparseMatrix(n, n);
+        double[] x = new double[n];
+        double[] c = new double[n];
+        for (int k = 0; k < 10 * n; k++) q.set(rng.nextInt(n), rng.nextInt(n), rng.nextDouble());
+        for (int i = 0; i < n; i++) {
+            x[i] = rng.nextDouble();
+            c[i] = rng.nextInt(3);
+        }
+        QuadraticProgram qp = new QuadraticProgram(q, new SparseVector(c));
+
+        double expected = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) expected += 0.5 * x[i] * q.get(i, j) * x[j];
+            expected += c[i] * x[i];
+        }
+        ScratchArena arena = ScratchArena.get();
+        Assert.assertEquals(expected, qp.evaluate(x, arena), 1e-6);
+        Assert.assertEquals(expected, qp.evaluate(x), 1e-6);
+        Assert.assertEquals(0, arena.mark());
+
+        // the scratch buffer is reused: repeated evaluations allocate far less than one
+        // dense temporary of n doubles
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunbean = (com.sun.management.ThreadMXBean) bean;
+            long tid = Thread.currentThread().getId();
+            for (int k = 0; k < 200; k++) qp.evaluate(x, arena);
+            long before = sunbean.getThreadAllocatedBytes(tid);
+            for (int k = 0; k < 100; k++) qp.evaluate(x, arena);
+            long perCall = (sunbean.getThreadAllocatedBytes(tid) - before) / 100;
+            Assert.assertTrue("allocated " + perCall + " bytes per call", perCall < 8 * n);
+        }
+    }
+
 }
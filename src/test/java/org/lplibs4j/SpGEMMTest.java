@@ -0,0 +1,77 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.SpGEMM;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SpGEMMTest extends TestCase {
+
+    private CsrMatrix random(Random rng, int rows, int cols, int nnz) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(rows, cols);
+        for (int k = 0; k < nnz; k++) builder.append(rng.nextInt(rows), rng.nextInt(cols), rng.nextDouble() - 0.5);
+        return builder.buildCsr();
+    }
+
+    private void assertProduct(Matrix a, Matrix b, Matrix c) {
+        NonSparseMatrix expected = (NonSparseMatrix) ((CsrMatrix) a).toSparseMatrix()
+                .getNonSparseMatrix().times(((CsrMatrix) b).toSparseMatrix().getNonSparseMatrix());
+        for (int i = 0; i < c.getRowNum(); i++)
+            for (int j = 0; j < c.getColNum(); j++)
+                assertEquals(expected.get(i, j), c.get(i, j), 1e-12);
+    }
+
+    @Test
+    public void testMultiply() {
+        Random rng = new Random(4);
+        CsrMatrix a = random(rng, 40, 60, 300);
+        CsrMatrix b = random(rng, 60, 30, 200);
+        CsrMatrix c = SpGEMM.multiply(a, b);
+        assertProduct(a, b, c);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // large enough to be split into blocks
+            CsrMatrix q = random(rng, 3000, 400, 30000);
+            CsrMatrix qt = (CsrMatrix) q.toCsc().transpose();
+            CsrMatrix qtq = SpGEMM.multiply(qt, q, pool);
+            assertEquals(qtq, SpGEMM.multiply(qt, q));
+            assertProduct(qt, q, qtq);
+            // the product is symmetric
+            for (int i = 0; i < 400; i += 7)
+                for (int j = 0; j < 400; j += 5)
+                    assertEquals(qtq.get(i, j), qtq.get(j, i), 1e-12);
+        } finally {
+            pool.shutdown();
+        }
+
+        try {
+            SpGEMM.multiply(a, a);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCancellation() {
+        SparseMatrix a = new SparseMatrix(2, 2);
+        a.set(0, 0, 1.);
+        a.set(0, 1, 1.);
+        SparseMatrix b = new SparseMatrix(2, 2);
+        b.set(0, 0, 1.);
+        b.set(1, 0, -1.);
+        b.set(1, 1, 2.);
+        SparseMatrix c = (SparseMatrix) a.times(b);
+        assertEquals(1, c.getNumberOfNonZeroElements());
+        assertEquals(2., c.get(0, 1), 0.);
+    }
+
+}
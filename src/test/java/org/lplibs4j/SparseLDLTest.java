@@ -0,0 +1,187 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.solver.linalg.SparseLDL;
+import org.lplibs4j.solver.linalg.SymbolicFactorization;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SparseLDLTest extends TestCase {
+
+    /**
+     * Blocks of grid Laplacians, coupled by a few border rows, with the given diagonal
+     * shift: diagonally dominant for shift > 0.
+     */
+    private CsrMatrix grids(int blocks, int side, int border, double shift, Random rng) {
+        int n = blocks * side * side + border;
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n);
+        for (int b = 0; b < blocks; b++) {
+            int base = b * side * side;
+            for (int x = 0; x < side; x++) {
+                for (int y = 0; y < side; y++) {
+                    int k = base + x * side + y;
+                    builder.append(k, k, 4 + shift);
+                    if (x > 0) symmetric(builder, k, k - side, -1 + 0.1 * rng.nextDouble());
+                    if (y > 0) symmetric(builder, k, k - 1, -1 + 0.1 * rng.nextDouble());
+                }
+            }
+        }
+        for (int r = 0; r < border; r++) {
+            int k = blocks * side * side + r;
+            builder.append(k, k, blocks + 1 + shift);
+            for (int b = 0; b < blocks; b++)
+                symmetric(builder, k, b * side * side + rng.nextInt(side * side), 0.5);
+        }
+        return builder.buildCsr();
+    }
+
+    private void symmetric(CooMatrixBuilder builder, int i, int j, double value) {
+        builder.append(i, j, value);
+        builder.append(j, i, value);
+    }
+
+    private CsrMatrix scaled(CsrMatrix a, double factor) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(a.getRowNum(), a.getColNum());
+        for (int i = 0; i < a.getRowNum(); i++)
+            for (int p = a.getRowPointers()[i]; p < a.getRowPointers()[i + 1]; p++)
+                builder.append(i, a.getColumnIndices()[p], a.getValues()[p] * (i == a.getColumnIndices()[p] ? 1 : factor));
+        return builder.buildCsr();
+    }
+
+    private void assertSolves(CsrMatrix a, SparseLDL ldl, Random rng) {
+        int n = a.getRowNum();
+        double[] expected = new double[n];
+        for (int k = 0; k < n; k++) expected[k] = rng.nextDouble() - 0.5;
+        double[] b = new double[n];
+        a.times(expected, b);
+        ldl.solve(b);
+        for (int k = 0; k < n; k++) assertEquals(expected[k], b[k], 1e-9);
+    }
+
+    @Test
+    public void testCholesky() {
+        Random rng = new Random(1);
+        CsrMatrix a = grids(2, 6, 2, 0.1, rng);
+        SymbolicFactorization symbolic = SymbolicFactorization.analyze(a);
+        SparseLDL chol = SparseLDL.cholesky(symbolic, a);
+        assertSolves(a, chol, rng);
+        for (double dk : chol.getD()) assertTrue(dk > 0);
+
+        // L L^T reproduces a
+        CsrMatrix l = chol.getCholeskyFactor();
+        Matrix llt = l.times(l.transpose());
+        for (int i = 0; i < a.getRowNum(); i++)
+            for (int j = 0; j < a.getColNum(); j++)
+                assertEquals(a.get(i, j), llt.get(i, j), 1e-12);
+
+        // the factor has exactly the predicted entries
+        assertEquals(symbolic.getNonZerosOfL() + a.getRowNum(), l.getNumberOfNonZeroElements());
+        assertEquals(symbolic.getNonZerosOfL() - (a.getNumberOfNonZeroElements() - a.getRowNum()) / 2, symbolic.getFillIn());
+        assertTrue(symbolic.getFlops() > 0);
+    }
+
+    @Test
+    public void testQuasiDefinite() {
+        // [H A^T; A -G] with positive definite H and G has an LDL^T factorization in any order
+        Random rng = new Random(2);
+        int n = 30, m = 12;
+        CooMatrixBuilder builder = new CooMatrixBuilder(n + m, n + m);
+        for (int k = 0; k < n; k++) builder.append(k, k, 2 + rng.nextDouble());
+        for (int k = 0; k < m; k++) builder.append(n + k, n + k, -1 - rng.nextDouble());
+        for (int e = 0; e < 60; e++)
+            symmetric(builder, n + rng.nextInt(m), rng.nextInt(n), rng.nextDouble() - 0.5);
+        CsrMatrix a = builder.buildCsr();
+
+        SparseLDL ldl = SparseLDL.ldl(SymbolicFactorization.analyze(a), a);
+        assertSolves(a, ldl, rng);
+        int negative = 0;
+        for (double dk : ldl.getD()) if (dk < 0) negative++;
+        assertEquals(m, negative);
+
+        try {
+            SparseLDL.cholesky(SymbolicFactorization.analyze(a), a);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, not positive definite
+        }
+    }
+
+    @Test
+    public void testRefactorize() {
+        Random rng = new Random(3);
+        CsrMatrix a = grids(3, 5, 1, 0.5, rng);
+        SparseLDL ldl = SparseLDL.cholesky(SymbolicFactorization.analyze(a), a);
+        CsrMatrix b = scaled(a, 0.5);
+        ldl.refactorize(b);
+        assertSolves(b, ldl, rng);
+
+        try {
+            ldl.refactorize(grids(3, 5, 2, 0.5, rng));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, different pattern
+        }
+    }
+
+    @Test
+    public void testPermutation() {
+        // an arrow matrix with its dense row first fills the whole factor, reversed it has no fill
+        Random rng = new Random(4);
+        int n = 40;
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n);
+        builder.append(0, 0, n);
+        for (int k = 1; k < n; k++) {
+            builder.append(k, k, 2 + rng.nextDouble());
+            symmetric(builder, 0, k, rng.nextDouble());
+        }
+        CsrMatrix a = builder.buildCsr();
+        int[] perm = new int[n];
+        for (int k = 0; k < n; k++) perm[k] = n - 1 - k;
+
+        SymbolicFactorization natural = SymbolicFactorization.analyze(a);
+        assertEquals(n * (n - 1) / 2, natural.getNonZerosOfL());
+        assertEquals(n * (n - 1) / 2 - (n - 1), natural.getFillIn());
+        SymbolicFactorization reversed = SymbolicFactorization.analyze(a, perm);
+        assertEquals(n - 1, reversed.getNonZerosOfL());
+        assertEquals(0, reversed.getFillIn());
+        assertSolves(a, SparseLDL.cholesky(reversed, a), rng);
+        assertSolves(a, SparseLDL.cholesky(natural, a), rng);
+
+        try {
+            SymbolicFactorization.analyze(a, new int[n - 1]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParallel() {
+        Random rng = new Random(5);
+        CsrMatrix a = grids(8, 30, 4, 0.1, rng);
+        SymbolicFactorization symbolic = SymbolicFactorization.analyze(a);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SparseLDL sequential = SparseLDL.factorize(symbolic, a, true, single);
+            SparseLDL parallel = SparseLDL.factorize(symbolic, a, true, pool);
+            assertTrue(Arrays.equals(sequential.getD(), parallel.getD()));
+            assertEquals(sequential.getL(), parallel.getL());
+            assertSolves(a, parallel, rng);
+
+            CsrMatrix b = scaled(a, 0.9);
+            parallel.refactorize(b);
+            assertSolves(b, parallel, rng);
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+    }
+
+}
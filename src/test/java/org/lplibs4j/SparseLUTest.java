@@ -0,0 +1,192 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CscMatrix;
+import org.lplibs4j.solver.linalg.SparseLU;
+
+import java.util.Random;
+
+public class SparseLUTest extends TestCase {
+
+    /**
+     * A matrix of m rows whose first m columns are a nonsingular basis: a scattered
+     * dominant entry in every column and a few small ones, followed by extra random columns.
+     */
+    private CscMatrix random(Random rng, int m, int extra) {
+        CooMatrixBuilder builder = new CooMatrixBuilder(m, m + extra, 8 * (m + extra), true);
+        int[] perm = new int[m];
+        for (int i = 0; i < m; i++) perm[i] = i;
+        for (int i = m - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+        }
+        for (int j = 0; j < m; j++) {
+            builder.append(perm[j], j, 4 + rng.nextDouble());
+            for (int k = 0; k < 3; k++) builder.append(rng.nextInt(m), j, rng.nextDouble() - 0.5);
+        }
+        for (int j = m; j < m + extra; j++)
+            for (int k = 0; k < 4; k++) builder.append(rng.nextInt(m), j, rng.nextDouble() - 0.5);
+        return builder.buildCsc();
+    }
+
+    private double[] times(CscMatrix a, int[] basis, double[] x) {
+        double[] y = new double[a.getRowNum()];
+        for (int j = 0; j < basis.length; j++)
+            for (int p = a.getColumnPointers()[basis[j]]; p < a.getColumnPointers()[basis[j] + 1]; p++)
+                y[a.getRowIndices()[p]] += a.getValues()[p] * x[j];
+        return y;
+    }
+
+    private double[] transposeTimes(CscMatrix a, int[] basis, double[] y) {
+        double[] x = new double[basis.length];
+        for (int j = 0; j < basis.length; j++)
+            for (int p = a.getColumnPointers()[basis[j]]; p < a.getColumnPointers()[basis[j] + 1]; p++)
+                x[j] += a.getValues()[p] * y[a.getRowIndices()[p]];
+        return x;
+    }
+
+    private void assertSolves(CscMatrix a, int[] basis, SparseLU lu, Random rng) {
+        int m = basis.length;
+        double[] expected = new double[m];
+        for (int k = 0; k < m; k++) expected[k] = rng.nextDouble() - 0.5;
+        double[] x = times(a, basis, expected);
+        lu.ftran(x);
+        for (int k = 0; k < m; k++) assertEquals(expected[k], x[k], 1e-9);
+        double[] y = transposeTimes(a, basis, expected);
+        lu.btran(y);
+        for (int k = 0; k < m; k++) assertEquals(expected[k], y[k], 1e-9);
+    }
+
+    private int[] identity(int m) {
+        int[] basis = new int[m];
+        for (int k = 0; k < m; k++) basis[k] = k;
+        return basis;
+    }
+
+    @Test
+    public void testFactorize() {
+        Random rng = new Random(1);
+        CscMatrix a = random(rng, 300, 0);
+        SparseLU lu = SparseLU.factorize(a);
+        assertSolves(a, identity(300), lu, rng);
+        assertTrue(lu.getNonZerosOfL() + lu.getNonZerosOfU() >= a.getNumberOfNonZeroElements());
+
+        // a permutation matrix has no fill at all
+        CooMatrixBuilder builder = new CooMatrixBuilder(5, 5);
+        int[] perm = {3, 0, 4, 1, 2};
+        for (int j = 0; j < 5; j++) builder.append(perm[j], j, j + 1);
+        SparseLU p = SparseLU.factorize(builder.buildCsc());
+        assertEquals(0, p.getNonZerosOfL());
+        assertEquals(5, p.getNonZerosOfU());
+        double[] x = {1, 1, 1, 1, 1};
+        p.ftran(x);
+        for (int j = 0; j < 5; j++) assertEquals(1.0 / (j + 1), x[j], 1e-15);
+    }
+
+    @Test
+    public void testSparseRightHandSides() {
+        Random rng = new Random(2);
+        int m = 2000;
+        CscMatrix a = random(rng, m, 50);
+        int[] basis = identity(m);
+        SparseLU lu = SparseLU.factorize(a, basis);
+        int[] index = new int[m];
+        for (int j = m; j < m + 50; j++) {
+            // a column of a as right hand side, solved sparse and dense
+            double[] x = new double[m];
+            double[] dense = new double[m];
+            int nnz = 0;
+            for (int p = a.getColumnPointers()[j]; p < a.getColumnPointers()[j + 1]; p++) {
+                x[a.getRowIndices()[p]] = a.getValues()[p];
+                dense[a.getRowIndices()[p]] = a.getValues()[p];
+                index[nnz++] = a.getRowIndices()[p];
+            }
+            nnz = lu.ftran(x, index, nnz);
+            lu.ftran(dense);
+            double[] check = new double[m];
+            for (int e = 0; e < nnz; e++) check[index[e]] = x[index[e]];
+            for (int k = 0; k < m; k++) {
+                assertEquals(dense[k], x[k], 1e-12);
+                assertEquals(dense[k], check[k], 1e-12);
+            }
+
+            // a unit vector, the row of the inverse
+            double[] y = new double[m];
+            dense = new double[m];
+            int r = rng.nextInt(m);
+            y[r] = 1;
+            dense[r] = 1;
+            index[0] = r;
+            nnz = lu.btran(y, index, 1);
+            lu.btran(dense);
+            check = new double[m];
+            for (int e = 0; e < nnz; e++) check[index[e]] = y[index[e]];
+            for (int k = 0; k < m; k++) {
+                assertEquals(dense[k], y[k], 1e-12);
+                assertEquals(dense[k], check[k], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testUpdate() {
+        Random rng = new Random(3);
+        int m = 400;
+        CscMatrix a = random(rng, m, 100);
+        int[] basis = identity(m);
+        SparseLU lu = SparseLU.factorize(a, basis);
+        int[] index = new int[m];
+        for (int j = m; j < m + 30; j++) {
+            double[] alpha = new double[m];
+            int nnz = 0;
+            for (int p = a.getColumnPointers()[j]; p < a.getColumnPointers()[j + 1]; p++) {
+                alpha[a.getRowIndices()[p]] = a.getValues()[p];
+                index[nnz++] = a.getRowIndices()[p];
+            }
+            nnz = lu.ftran(alpha, index, nnz);
+            // the largest entry leaves, like the ratio test of the simplex method might choose
+            int leaving = index[0];
+            for (int e = 1; e < nnz; e++)
+                if (Math.abs(alpha[index[e]]) > Math.abs(alpha[leaving])) leaving = index[e];
+            lu.update(leaving, alpha, index, nnz);
+            basis[leaving] = j;
+            assertSolves(a, basis, lu, rng);
+        }
+        assertEquals(30, lu.getUpdateCount());
+        assertTrue(lu.getNonZerosOfEtas() > 0);
+        assertSolves(a, basis, SparseLU.factorize(a, basis), rng);
+
+        try {
+            lu.update(0, new double[m]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the pivot is zero
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        CooMatrixBuilder builder = new CooMatrixBuilder(3, 3);
+        builder.append(0, 0, 1).append(1, 0, 2).append(0, 1, 2).append(1, 1, 4).append(2, 2, 1);
+        try {
+            SparseLU.factorize(builder.buildCsc());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the first two columns are dependent
+        }
+
+        builder = new CooMatrixBuilder(3, 3);
+        builder.append(0, 0, 1).append(1, 1, 1);
+        try {
+            SparseLU.factorize(builder.buildCsc());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the last column is empty
+        }
+    }
+
+}
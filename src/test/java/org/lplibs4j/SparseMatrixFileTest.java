@@ -0,0 +1,123 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.OffHeapArena;
+import org.lplibs4j.api.implementation.OffHeapSparseMatrix;
+import org.lplibs4j.api.implementation.OffHeapSparseVector;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseMatrixFile;
+import org.lplibs4j.api.implementation.SparseVector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+public class SparseMatrixFileTest extends TestCase {
+
+    private File temp() throws IOException {
+        File file = File.createTempFile("matrix", ".lpsm");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random rng = new Random(7);
+        CooMatrixBuilder builder = new CooMatrixBuilder(300, 200);
+        for (int k = 0; k < 3000; k++) builder.append(rng.nextInt(300), rng.nextInt(200), rng.nextDouble());
+        CsrMatrix csr = builder.buildCsr();
+        SparseMatrix sparse = csr.toSparseMatrix();
+        File matrixfile = temp();
+        SparseMatrixFile.write(matrixfile, sparse);
+
+        SparseVector v = new SparseVector(new double[]{0, 1.5, 0, 0, -2, 0, 3});
+        v = (SparseVector) v.transpose();
+        File vectorfile = temp();
+        SparseMatrixFile.write(vectorfile, v);
+
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapSparseMatrix m = SparseMatrixFile.mapMatrix(matrixfile, arena);
+        assertEquals(300, m.getRowNum());
+        assertEquals(200, m.getColNum());
+        assertEquals(csr.getNumberOfNonZeroElements(), m.getNumberOfNonZeroElements());
+        assertTrue(sparse.equals(m.toSparseMatrix()));
+        assertEquals(0, arena.getAllocatedBytes());
+        assertTrue(arena.getMappedBytes() > 12 * m.getNumberOfNonZeroElements());
+
+        double[] x = new double[200];
+        for (int j = 0; j < 200; j++) x[j] = rng.nextDouble();
+        double[] expected = new double[300];
+        double[] y = new double[300];
+        csr.times(x, expected);
+        m.times(x, y);
+        for (int i = 0; i < 300; i++) assertEquals(expected[i], y[i], 0.);
+        assertEquals(csr.getNumberOfNonZeroElements(), m.getRowPointerBuffer().get(300));
+
+        OffHeapSparseVector mv = SparseMatrixFile.mapVector(vectorfile, arena);
+        assertEquals(3, mv.getUsed());
+        assertEquals(1, mv.getRowNum());
+        assertEquals(7, mv.getColNum());
+        assertEquals(-2., mv.get(4), 0.);
+        assertTrue(v.equals(mv.toSparseVector()));
+
+        try {
+            m.set(0, m.getRow(0).getIndex()[0], 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected, the mapping is read-only
+        }
+        try {
+            SparseMatrixFile.mapVector(matrixfile, arena);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        arena.close();
+        try {
+            m.get(0, 0);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        File file = temp();
+        SparseMatrixFile.write(file, new SparseVector(new double[]{1, 2}));
+        OffHeapArena arena = new OffHeapArena();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // a newer version
+            raf.seek(4);
+            raf.write(new byte[]{2, 0, 0, 0});
+        } finally {
+            raf.close();
+        }
+        try {
+            SparseMatrixFile.map(file, arena);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(70);
+            raf.seek(4);
+            raf.write(new byte[]{1, 0, 0, 0});
+        } finally {
+            raf.close();
+        }
+        try {
+            SparseMatrixFile.map(file, arena);
+            fail();
+        } catch (IOException e) {
+            // expected, truncated
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseTranspose;
+import org.lplibs4j.api.implementation.SparseVector;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SparseTransposeTest extends TestCase {
+
+    @Test
+    public void testTranspose() {
+        Random rng = new Random(5);
+        int rows = 2000;
+        int cols = 1500;
+        CooMatrixBuilder builder = new CooMatrixBuilder(rows, cols);
+        for (int k = 0; k < 60000; k++) builder.append(rng.nextInt(rows), rng.nextInt(cols), rng.nextDouble());
+        CsrMatrix csr = builder.buildCsr();
+        SparseMatrix sparse = csr.toSparseMatrix();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CsrMatrix t = SparseTranspose.transpose(csr, pool);
+            SparseMatrix st = SparseTranspose.transpose(sparse, pool);
+            assertEquals(t, SparseTranspose.transpose(csr));
+            assertEquals(t, new CsrMatrix(st));
+            assertEquals(csr, SparseTranspose.transpose(t, pool));
+            assertTrue(sparse.equals(SparseTranspose.transpose(st, pool)));
+            for (int i = 0; i < rows; i += 13)
+                for (int j = 0; j < cols; j += 7)
+                    assertEquals(csr.get(i, j), t.get(j, i), 0.);
+            // the rows of the transpose are sorted
+            for (int j = 0; j < cols; j++) {
+                SparseVector row = t.getRow(j);
+                for (int k = 1; k < row.getUsed(); k++)
+                    assertTrue(row.getIndex()[k - 1] < row.getIndex()[k]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        SparseMatrix small = new SparseMatrix(3, 4);
+        small.set(0, 3, 1.);
+        small.set(2, 0, 2.);
+        small.set(2, 3, 3.);
+        SparseMatrix smallt = (SparseMatrix) small.transpose();
+        assertEquals(4, smallt.getRowNum());
+        assertEquals(3, smallt.getColNum());
+        assertEquals(2, smallt.getNumberOfNonZeroRows());
+        assertEquals(3., smallt.get(3, 2), 0.);
+        assertEquals(2., smallt.get(0, 2), 0.);
+    }
+
+}
@@ -2,10 +2,18 @@ package org.lplibs4j;
 
 import junit.framework.TestCase;
 import org.junit.Test;
+import org.lplibs4j.api.implementation.FrozenSparseVector;
+import org.lplibs4j.api.implementation.HybridVector;
+import org.lplibs4j.api.implementation.PatternSparseVector;
 import org.lplibs4j.api.implementation.SparseMatrix;
 import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SparseVectorBuilder;
 import org.lplibs4j.api.util.Matrix;
 import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
+
+import java.util.Arrays;
+import java.util.Random;
 
 // import org.junit.Before;
 
@@ -337,4 +345,373 @@ public class SparseVectorTest extends TestCase {
         assertEquals(2., v4.dot(v5values));
         assertEquals(2., v5.dot(v4values));
     }
+
+    @Test
+    public void testFromUnsorted () {
+        SparseVector v = SparseVector.fromUnsorted(new int[]{7, 2, 5, 2, 0}, new double[]{1., 2., 0., 4., 3.}, 10);
+
+        assertEquals(10, v.getSize());
+        assertEquals(3, v.getUsed());
+        assertEquals(3, v.getIndex().length);
+        assertTrue(v.equals(new SparseVector(new double[]{3., 0., 4., 0., 0., 0., 0., 1., 0., 0.})));
+
+        SparseVector sum = SparseVector.fromUnsorted(new int[]{7, 2, 5, 2, 0}, new double[]{1., 2., 0., 4., 3.}, 10, true);
+        assertEquals(6., sum.get(2), 0.);
+
+        SparseVector cancel = SparseVector.fromUnsorted(new int[]{4, 4}, new double[]{1., -1.}, 10, true);
+        assertEquals(0, cancel.getUsed());
+
+        // vectors created in one go still allow single insertions
+        v.set(9, 5.);
+        v.set(1, 6.);
+        assertTrue(v.equals(new SparseVector(new double[]{3., 6., 4., 0., 0., 0., 0., 1., 0., 5.})));
+
+        try {
+            SparseVector.fromUnsorted(new int[]{10}, new double[]{1.}, 10);
+            fail("Index out of bounds not detected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBuilder () {
+        SparseVectorBuilder builder = new SparseVectorBuilder(1000, 1);
+        double[] expected = new double[1000];
+        for (int i = 999; i >= 0; i -= 3) {
+            builder.append(i, i + 1.);
+            expected[i] = i + 1.;
+        }
+        SparseVector v = builder.build();
+
+        assertEquals(334, v.getUsed());
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], v.get(i), 0.);
+
+        builder.clear();
+        SparseVector empty = builder.append(3, 0.).build();
+        assertEquals(0, empty.getUsed());
+        assertEquals(1000, empty.getSize());
+    }
+
+    @Test
+    public void testAdaptiveDot () {
+        Random rng = new Random(4711);
+        int size = 100000;
+        int[] shortsizes = new int[]{1, 10, 100, 5000};
+        int[] longsizes = new int[]{10, 5000, 100000};
+        for (int shortsize : shortsizes) {
+            for (int longsize : longsizes) {
+                SparseVectorBuilder sb = new SparseVectorBuilder(size);
+                for (int i = 0; i < shortsize; i++) sb.append(rng.nextInt(size), rng.nextDouble());
+                SparseVectorBuilder lb = new SparseVectorBuilder(size);
+                for (int i = 0; i < longsize; i++) lb.append(longsize == size ? i : rng.nextInt(size), rng.nextDouble());
+                SparseVector a = sb.build();
+                SparseVector b = lb.build();
+
+                double expected = a.dot(b.get());
+                assertEquals(expected, a.dot(b), 1e-9);
+                assertEquals(expected, b.dot(a), 1e-9);
+            }
+        }
+
+        SparseVector empty = new SparseVector(10, 0);
+        assertEquals(0., empty.dot(new SparseVector(new double[]{1., 2., 0., 0., 0., 0., 0., 0., 0., 0.})), 0.);
+    }
+
+    @Test
+    public void testInPlace () {
+        Random rng = new Random(815);
+        int size = 1000;
+        SparseVector scratch = new SparseVector(size, 0);
+        for (int round = 0; round < 20; round++) {
+            SparseVectorBuilder xb = new SparseVectorBuilder(size);
+            SparseVectorBuilder yb = new SparseVectorBuilder(size);
+            for (int i = 0; i < 50; i++) xb.append(rng.nextInt(size), rng.nextDouble());
+            for (int i = 0; i < 50; i++) yb.append(rng.nextInt(size), rng.nextDouble());
+            SparseVector x = xb.build();
+            SparseVector y = yb.build();
+            double[] expected = x.get();
+            for (int i = 0; i < size; i++) expected[i] += -2. * y.get(i);
+
+            SparseVector z = new SparseVector(x);
+            z.axpyInPlace(-2., y, scratch);
+            assertEquals(0, scratch.getUsed());
+            SparseVector w = new SparseVector(x);
+            w.axpyInPlace(-2., y);
+            for (int i = 0; i < size; i++) {
+                assertEquals(expected[i], z.get(i), 1e-12);
+                assertEquals(expected[i], w.get(i), 1e-12);
+            }
+
+            double[] dense = x.get();
+            y.addTo(dense, -2.);
+            assertTrue(Arrays.equals(expected, dense));
+        }
+
+        // pattern of y contained in x: updated in place
+        SparseVector x = new SparseVector(new double[]{1., 0., 2., 3.});
+        SparseVector y = new SparseVector(new double[]{1., 0., 0., 3.});
+        int[] oldindex = x.getIndex();
+        x.axpyInPlace(-1., y);
+        assertSame(oldindex, x.getIndex());
+        assertEquals(0., x.get(0), 0.);
+        assertEquals(2., x.get(2), 0.);
+        assertEquals(0., x.get(3), 0.);
+
+        x.mergeAdd(new SparseVector(new double[]{0., 5., 0., 0.}), new SparseVector(4, 0));
+        assertEquals(5., x.get(1), 0.);
+        x.scaleInPlace(2.);
+        assertEquals(10., x.get(1), 0.);
+        assertEquals(4., x.get(2), 0.);
+        x.scaleInPlace(0.);
+        assertEquals(0, x.getUsed());
+
+        try {
+            x.axpyInPlace(1., y, y);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreeze () {
+        SparseVector v = new SparseVector(new double[]{0., 3., 0., -4., 0.});
+        v.set(0, 0.);
+        FrozenSparseVector f = v.freeze();
+        assertTrue(f.isFrozen());
+        assertFalse(v.isFrozen());
+        assertSame(f, f.freeze());
+        assertEquals(2, f.getUsed());
+        assertEquals(2, f.getIndex().length);
+        assertEquals(7., f.getNorm1(), 0.);
+        assertEquals(5., f.getNorm2(), 1e-12);
+        assertEquals(4., f.getNormInf(), 0.);
+        assertEquals(v.getStructuralHash(), f.getStructuralHash());
+        // the lookup doesn't insert missing indices
+        assertEquals(1, f.getIndex(3));
+        try {
+            f.getIndex(2);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(2, f.getUsed());
+        assertTrue(f.equals(v));
+        assertEquals(-4., f.get(3), 0.);
+        assertEquals(25., f.dot(v), 0.);
+
+        // the frozen copy is independent from the source
+        v.set(1, 10.);
+        assertEquals(3., f.get(1), 0.);
+
+        try {
+            f.set(2, 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            f.scaleInPlace(2.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        SparseVector copy = f.clone();
+        copy.set(2, 1.);
+        assertEquals(1., copy.get(2), 0.);
+        assertEquals(0., f.get(2), 0.);
+
+        // the transposed vector shares the arrays and stays frozen
+        Matrix t = f.transpose();
+        assertTrue(((SparseVector) t).isFrozen());
+        assertEquals(1, t.getRowNum());
+        assertEquals(5, t.getColNum());
+        assertEquals(-4., t.get(0, 3), 0.);
+        assertSame(f.getIndex(), ((SparseVector) t).getIndex());
+
+        // mutable vectors read frozen operands through the accessors
+        SparseVector sum = new SparseVector(5, 0);
+        sum.axpyInPlace(2., f);
+        assertEquals(-8., sum.get(3), 0.);
+        assertEquals(6., f.plus(f).get(1), 0.);
+
+        LinearSmallerThanEqualsConstraint constraint = new LinearSmallerThanEqualsConstraint(v, 1., "c");
+        assertSame(constraint.getCSparse(), constraint.getCSparse());
+        assertTrue(constraint.getCSparse().isFrozen());
+    }
+
+    /**
+     * Collects the coordinates reported by the iterator as {i, j, value} triples.
+     */
+    private String iterate(Matrix m) {
+        StringBuilder sb = new StringBuilder();
+        NonZeroElementIterator it = m.getNonZeroElementIterator();
+        while (it.hasNext()) {
+            double value = it.next();
+            if (value != 0) sb.append(it.getActuali()).append(' ').append(it.getActualj()).append(' ').append(value).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testHybridIteratorAcrossThreshold () {
+        int size = 21;
+        HybridVector h = new HybridVector(size);
+        SparseVector s = new SparseVector(size, 4);
+        for (int i = 0; i < size; i += 3) {
+            h.set(i, i + 1.);
+            h.set(i + 1, 0.5);
+            s.set(i, i + 1.);
+            s.set(i + 1, 0.5);
+            // both storage modes report the coordinates of SparseVector
+            assertEquals(iterate(s), iterate(h));
+            assertEquals(iterate(s.transpose()), iterate(h.transpose()));
+            assertTrue(new SparseVector(h).equals(s));
+        }
+        assertTrue(h.isDense());
+
+        // every dense vector owns its index array
+        HybridVector other = new HybridVector(h);
+        assertNotSame(h.getIndex(), other.getIndex());
+        h.getIndex()[3] = 0;
+        assertEquals(3, other.getIndex()[3]);
+        double[] full = new double[size];
+        Arrays.fill(full, 1.);
+        HybridVector fresh = new HybridVector(full);
+        assertTrue(fresh.isDense());
+        assertEquals(3, fresh.getIndex()[3]);
+    }
+
+    @Test
+    public void testHybrid () {
+        int size = 100;
+        HybridVector h = new HybridVector(size);
+        double[] expected = new double[size];
+        assertFalse(h.isDense());
+        for (int i = 0; i < 60; i++) {
+            h.set(i, i + 1.);
+            expected[i] = i + 1.;
+        }
+        assertTrue(h.isDense());
+        assertEquals(size, h.getUsed());
+        assertTrue(Arrays.equals(expected, h.get()));
+
+        SparseVector s = new SparseVector(expected);
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++) x[i] = i % 7;
+        assertEquals(s.dot(x), h.dot(x), 1e-9);
+        assertEquals(s.dot(s), h.dot(s), 1e-9);
+        assertEquals(s.dot(s), s.dot(h), 1e-9);
+        assertEquals(s.dot(s), h.dot(h), 1e-9);
+        assertTrue(s.times(2.).equals(h.times(2.)));
+        assertTrue(s.plus(s).equals(h.plus(s)));
+        assertTrue(s.plus(s).equals(s.plus(h)));
+        assertTrue(h.freeze().equals(s));
+
+        // dense vectors store no index, getIndex creates a new identity on every call
+        int[] identity = h.getIndex();
+        assertEquals(size, identity.length);
+        assertEquals(42, identity[42]);
+        assertNotSame(identity, h.getIndex());
+        identity[3] = 0;
+        assertEquals(3, h.getIndex()[3]);
+        assertEquals(h.getStructuralHash(), s.getStructuralHash());
+        HybridVector copy = h.clone();
+        assertTrue(copy.isDense());
+        assertTrue(copy.equals(s));
+        double[] sum = new double[size];
+        h.addTo(sum, 2.);
+        assertEquals(2. * expected[9], sum[9], 0.);
+
+        int count = 0;
+        NonZeroElementIterator it = h.getNonZeroElementIterator();
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(0, it.getActuali());
+            assertEquals(expected[it.getActualj()], value, 0.);
+            count++;
+        }
+        assertEquals(60, count);
+
+        // hysteresis: below densify but above sparsify stays dense
+        for (int i = 30; i < 60; i++) h.set(i, 0.);
+        assertTrue(h.isDense());
+        for (int i = 0; i < 10; i++) h.set(i, 0.);
+        assertFalse(h.isDense());
+        assertEquals(24, h.getUsed());
+        assertEquals(0., h.get(7), 0.);
+        assertEquals(15., h.get(14), 0.);
+
+        SparseVector scratch = new SparseVector(size, 0);
+        h.axpyInPlace(1., s, scratch);
+        assertTrue(h.isDense());
+        assertEquals(30., h.get(14), 0.);
+        assertEquals(1., h.get(0), 0.);
+
+        try {
+            s.axpyInPlace(1., s.times(2.), h);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPattern () {
+        PatternSparseVector p = new PatternSparseVector(new int[]{5, 1, 3, 1}, 8);
+        assertEquals(3, p.getUsed());
+        assertEquals(1., p.get(1), 0.);
+        assertEquals(0., p.get(2), 0.);
+        double[] x = new double[]{1., 2., 3., 4., 5., 6., 7., 8.};
+        assertEquals(2. + 4. + 6., p.dot(x), 0.);
+        SparseVector y = new SparseVector(x);
+        assertEquals(12., p.dot(y), 0.);
+        assertEquals(12., y.dot(p), 0.);
+        assertEquals(3., p.getNorm1(), 0.);
+
+        SparseVector copy = p.clone();
+        assertFalse(copy.isFrozen());
+        assertEquals(3, copy.getData().length);
+        copy.set(2, 5.);
+        assertEquals(5., copy.get(2), 0.);
+
+        SparseVector ones = new SparseVector(new double[]{0., 1., 0., 1., 0., 1., 0., 0.});
+        assertTrue(ones.freeze() instanceof PatternSparseVector);
+        // the values are not stored, getData returns a new array on every call
+        PatternSparseVector q = (PatternSparseVector) ones.freeze();
+        assertNotSame(q.getData(), q.getData());
+        q.getData()[0] = 7.;
+        assertEquals(1., q.getData()[0], 0.);
+        assertEquals(1., q.get(1), 0.);
+        assertEquals(1., p.getData()[0], 0.);
+        assertFalse(y.freeze() instanceof PatternSparseVector);
+
+        Matrix t = q.transpose();
+        assertTrue(t instanceof PatternSparseVector);
+        assertEquals(1, t.getRowNum());
+        assertEquals(1., t.get(0, 3), 0.);
+        assertEquals(3., ((SparseVector) t).dot(new double[]{1., 1., 1., 1., 1., 1., 1., 1.}), 0.);
+
+        // stored zeros are dropped, other values are rejected
+        SparseVector zeros = new SparseVector(new double[]{0., 1., 0., 1.});
+        zeros.set(2, 0.);
+        assertEquals(2, new PatternSparseVector(zeros).getUsed());
+        try {
+            new PatternSparseVector(y);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(p.getStructuralHash(), ones.freeze().getStructuralHash());
+
+        LinearSmallerThanEqualsConstraint pc = new LinearSmallerThanEqualsConstraint(ones, 1., "p");
+        LinearSmallerThanEqualsConstraint dc = new LinearSmallerThanEqualsConstraint(ones.get(), 1., "p");
+        assertTrue(pc.getCSparse() instanceof PatternSparseVector);
+        assertEquals(" p: x1 + x3 + x5 <= 1.0\n", pc.convertToCPLEX().toString());
+        assertEquals(dc.convertToGMPL().toString(), pc.convertToGMPL().toString());
+        assertTrue(pc.isSatisfiedBy(new double[]{0., 1., 0., 0., 0., 0., 0., 0.}));
+        assertFalse(pc.isSatisfiedBy(new double[]{0., 1., 0., 1., 0., 0., 0., 0.}));
+    }
 }
@@ -0,0 +1,158 @@
+package org.lplibs4j;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.MatrixOperator;
+import org.lplibs4j.api.implementation.ScratchArena;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.api.implementation.SymmetricSparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.solver.constraints.QuadraticSmallerThanEqualsContraint;
+import org.lplibs4j.solver.qpsolver.QuadraticProgram;
+
+import java.util.Random;
+
+public class SymmetricSparseMatrixTest extends TestCase {
+
+    private double[][] random(int n, double density, Random rng) {
+        double[][] q = new double[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                if (rng.nextDouble() < density) q[i][j] = rng.nextInt(19) - 9;
+        return q;
+    }
+
+    private double[] random(int n, Random rng) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) x[i] = rng.nextGaussian();
+        return x;
+    }
+
+    private double quadForm(double[][] q, double[] x) {
+        double sum = 0;
+        for (int i = 0; i < q.length; i++)
+            for (int j = 0; j < q.length; j++) sum += x[i] * q[i][j] * x[j];
+        return sum;
+    }
+
+    @Test
+    public void testSymmetricPart() {
+        Random rng = new Random(1);
+        int n = 30;
+        double[][] q = random(n, 0.2, rng);
+        SymmetricSparseMatrix s = new SymmetricSparseMatrix(q);
+        SymmetricSparseMatrix t = new SymmetricSparseMatrix(new SparseMatrix(q));
+        assertEquals(s, t);
+        assertSame(s, s.transpose());
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                assertEquals(0.5 * (q[i][j] + q[j][i]), s.get(i, j));
+
+        // only the upper triangle is stored
+        CsrMatrix full = s.toCsr();
+        assertEquals(full.getNumberOfNonZeroElements(), s.getNumberOfNonZeroElements());
+        assertTrue(s.getNumberOfStoredElements() < 0.6 * full.getNumberOfNonZeroElements());
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) assertEquals(s.get(i, j), full.get(i, j));
+            for (int p = full.getRowPointers()[i] + 1; p < full.getRowPointers()[i + 1]; p++)
+                assertTrue(full.getColumnIndices()[p - 1] < full.getColumnIndices()[p]);
+        }
+
+        // the iterator visits every entry of the full matrix once
+        double[][] visited = new double[n][n];
+        int count = 0;
+        NonZeroElementIterator it = s.getNonZeroElementIterator();
+        while (it.hasNext()) {
+            double value = it.next();
+            assertEquals(0.0, visited[it.getActuali()][it.getActualj()]);
+            visited[it.getActuali()][it.getActualj()] = value;
+            count++;
+        }
+        assertEquals(s.getNumberOfNonZeroElements(), count);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++) assertEquals(s.get(i, j), visited[i][j]);
+
+        try {
+            new SymmetricSparseMatrix(new double[][]{{1, 2}});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProducts() {
+        Random rng = new Random(2);
+        int n = 40;
+        double[][] q = random(n, 0.15, rng);
+        for (int i = 0; i < n; i += 3) q[i][i] = 0;
+        SymmetricSparseMatrix s = new SymmetricSparseMatrix(q);
+        CsrMatrix full = s.toCsr();
+        for (int t = 0; t < 5; t++) {
+            double[] x = random(n, rng);
+            x[t] = 0;
+            assertEquals(quadForm(q, x), s.quadForm(x), 1e-9);
+            double[] expected = new double[n];
+            full.times(x, expected);
+            double[] y = random(n, rng);
+            s.times(x, y);
+            for (int i = 0; i < n; i++) assertEquals(expected[i], y[i], 1e-9);
+            y = random(n, rng);
+            new MatrixOperator(s).applyTranspose(x, y);
+            for (int i = 0; i < n; i++) assertEquals(expected[i], y[i], 1e-9);
+        }
+
+        double[][] r = random(n, 0.1, rng);
+        Matrix sum = s.plus(new SymmetricSparseMatrix(r));
+        assertTrue(sum instanceof SymmetricSparseMatrix);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                assertEquals(s.get(i, j) + 0.5 * (r[i][j] + r[j][i]), sum.get(i, j), 1e-12);
+        Matrix mixed = s.plus(new SparseMatrix(r));
+        assertEquals(s.get(3, 7) + r[3][7], mixed.get(3, 7), 1e-12);
+    }
+
+    @Test
+    public void testQuadraticProgram() {
+        Random rng = new Random(3);
+        int n = 500;
+        double[][] q = random(n, 0.05, rng);
+        double[] c = random(n, rng);
+        double[] x = random(n, rng);
+        QuadraticProgram qp = new QuadraticProgram(q, c);
+        assertTrue(qp.getQ() instanceof SymmetricSparseMatrix);
+        double expected = 0.5 * quadForm(q, x);
+        for (int i = 0; i < n; i++) expected += c[i] * x[i];
+        assertEquals(expected, qp.evaluate(x), 1e-6);
+        QuadraticProgram general = new QuadraticProgram(new SparseMatrix(q), new SparseVector(c));
+        assertEquals(general.evaluate(x), qp.evaluate(x, ScratchArena.get()), 1e-6);
+
+        // the symmetric part is immutable, a SparseMatrix given to setQ(Matrix) stays mutable
+        try {
+            qp.getQ().set(0, 1, 1.);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        qp.setQ(new SparseMatrix(q));
+        qp.getQ().set(0, 0, q[0][0] + 2.);
+        assertEquals(q[0][0] + 2., qp.getQ().get(0, 0));
+        assertEquals(general.evaluate(x) + x[0] * x[0], qp.evaluate(x), 1e-6);
+
+        assertTrue(new QuadraticSmallerThanEqualsContraint(q, c, 0, "q").getQ() instanceof SymmetricSparseMatrix);
+        assertTrue(new QuadraticSmallerThanEqualsContraint(q, c, quadForm(q, x) + 1e-3 + dot(c, x), "q")
+                .isSatisfiedBy(x));
+        assertFalse(new QuadraticSmallerThanEqualsContraint(q, c, quadForm(q, x) - 1e-3 + dot(c, x), "q")
+                .isSatisfiedBy(x));
+    }
+
+    private double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+}
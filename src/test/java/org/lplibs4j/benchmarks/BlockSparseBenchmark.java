@@ -0,0 +1,84 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.BlockSparseMatrix;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.solver.constraints.LinearSmallerThanEqualsConstraint;
+import org.lplibs4j.solver.constraints.StochasticSmallerThanEqualsConstraint;
+import org.lplibs4j.solver.problems.StochasticProgram;
+
+import java.util.Random;
+
+/**
+ * The constraint matrix of the extensive form of a random two-stage stochastic program with
+ * a growing number of scenarios: the time to build it as BlockSparseMatrix, its number of
+ * non-zero entries against the dense rows getExtensiveForm creates, and the products with
+ * a vector and its transpose, sequential and block-parallel, against the assembled
+ * CsrMatrix.
+ *
+ * @author planatsc
+ */
+public class BlockSparseBenchmark {
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        int n0 = 50, K = 100, m = 60, repeat = 20;
+        System.out.println("scenarios\tbuild [ms]\tnnz\tdense rows [MB]\ttimes [ms]\tparallel [ms]\tcsr [ms]"
+                + "\ttransposeTimes [ms]\tparallel [ms]\tcsr [ms]");
+        for (int S = 500; S <= 4000; S *= 2) {
+            double[] probs = new double[S];
+            SparseVector[] scens = new SparseVector[S];
+            for (int s = 0; s < S; s++) {
+                probs[s] = 1.0 / S;
+                scens[s] = new SparseVector(sparse(K, 10, rng));
+            }
+            StochasticProgram sp = new StochasticProgram(new SparseVector(sparse(n0, 50, rng)), probs, scens);
+            for (int i = 0; i < 20; i++)
+                sp.addConstraint(new LinearSmallerThanEqualsConstraint(sparse(n0, 10, rng), 1.0, "first " + i));
+            for (int i = 0; i < m; i++) {
+                double[][] t = new double[S][];
+                for (int s = 0; s < S; s++) t[s] = sparse(n0, 3, rng);
+                double[] h = new double[S];
+                sp.addConstraint(new StochasticSmallerThanEqualsConstraint(t, sparse(K, 8, rng), h, "second " + i));
+            }
+
+            long time = System.nanoTime();
+            BlockSparseMatrix a = sp.getExtensiveFormMatrix();
+            double build = (System.nanoTime() - time) / 1000000.0;
+            CsrMatrix csr = a.toCsr();
+            double dense = 8.0 * a.getRowNum() * a.getColNum() / (1 << 20);
+
+            double[] x = new double[a.getColNum()];
+            double[] y = new double[a.getRowNum()];
+            for (int j = 0; j < x.length; j++) x[j] = rng.nextDouble();
+            for (int i = 0; i < y.length; i++) y[i] = rng.nextDouble();
+            double[] ax = new double[a.getRowNum()];
+            double[] aty = new double[a.getColNum()];
+
+            double[] times = new double[6];
+            for (int k = 0; k < 6; k++) {
+                time = System.nanoTime();
+                for (int r = 0; r < repeat; r++) {
+                    switch (k) {
+                        case 0: a.times(x, ax); break;
+                        case 1: a.timesParallel(x, ax); break;
+                        case 2: csr.times(x, ax); break;
+                        case 3: a.transposeTimes(y, aty); break;
+                        case 4: a.transposeTimesParallel(y, aty); break;
+                        default: csr.transposeTimes(y, aty); break;
+                    }
+                }
+                times[k] = (System.nanoTime() - time) / 1000000.0 / repeat;
+            }
+            System.out.println(S + "\t" + build + "\t" + a.getNumberOfNonZeroElements() + "\t" + dense + "\t"
+                    + times[0] + "\t" + times[1] + "\t" + times[2] + "\t" + times[3] + "\t" + times[4] + "\t" + times[5]);
+        }
+    }
+
+    private static double[] sparse(int n, int nnz, Random rng) {
+        double[] v = new double[n];
+        for (int k = 0; k < nnz; k++) v[rng.nextInt(n)] = rng.nextDouble() - 0.5;
+        return v;
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+
+import java.util.Random;
+
+/**
+ * Heap usage, iteration over the non-zeros and the matrix-vector product of a random
+ * matrix stored as SparseMatrix (a HashMap of row vectors) and as CsrMatrix. The number
+ * of non-zeros is the first argument, 1e6 by default.
+ *
+ * @author planatsc
+ */
+public class CsrBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) {
+        int nnz = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int n = Math.max(1, nnz / 10);
+        Random rng = new Random(42);
+
+        long before = usedMemory();
+        CooMatrixBuilder builder = new CooMatrixBuilder(n, n, nnz, false);
+        for (int k = 0; k < nnz; k++) builder.append(rng.nextInt(n), rng.nextInt(n), rng.nextDouble());
+        CsrMatrix csr = builder.buildCsr();
+        builder = null;
+        long csrbytes = usedMemory() - before;
+
+        before = usedMemory();
+        SparseMatrix sparse = csr.toSparseMatrix();
+        long sparsebytes = usedMemory() - before;
+
+        System.out.println("rows " + n + ", non-zeros " + csr.getNumberOfNonZeroElements());
+        System.out.println("\tSparseMatrix\tCsrMatrix");
+        System.out.println("heap [MB]\t" + sparsebytes / 1048576 + "\t" + csrbytes / 1048576);
+        System.out.println("iterate [ms]\t" + iterate(sparse) + "\t" + iterate(csr));
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) x[i] = rng.nextDouble();
+        long bestsparse = Long.MAX_VALUE;
+        long bestcsr = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long time = System.nanoTime();
+            sparse.times(x, y);
+            bestsparse = Math.min(bestsparse, System.nanoTime() - time);
+            sink += y[0];
+
+            time = System.nanoTime();
+            csr.times(x, y);
+            bestcsr = Math.min(bestcsr, System.nanoTime() - time);
+            sink += y[0];
+        }
+        System.out.println("times [ms]\t" + bestsparse / 1000000.0 + "\t" + bestcsr / 1000000.0);
+    }
+
+    static double iterate(Matrix m) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long time = System.nanoTime();
+            NonZeroElementIterator it = m.getNonZeroElementIterator();
+            while (it.hasNext()) sink += it.next() + it.getActualj();
+            best = Math.min(best, System.nanoTime() - time);
+        }
+        return best / 1000000.0;
+    }
+
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.DokMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Building a sparse matrix by scattered set calls, as during incremental model
+ * construction, into a SparseMatrix and into a DokMatrix, followed by the conversion into
+ * a CsrMatrix. Reports the time and the bytes allocated by the building thread.
+ *
+ * @author planatsc
+ */
+public class DokMatrixBenchmark {
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        System.out.println("rows\tentries\tmatrix\tset [ms]\tget [ms]\tfreeze [ms]\tallocated [MB]");
+        for (int rows = 10000; rows <= 1000000; rows *= 10) {
+            int entries = 10 * rows;
+            for (int round = 0; round < 2; round++) {
+                for (int type = 0; type < 2; type++) {
+                    Random rng = new Random(42);
+                    long bytes = bean.getThreadAllocatedBytes(tid);
+                    long time = System.nanoTime();
+                    SparseMatrix s = null;
+                    DokMatrix d = null;
+                    if (type == 0) s = new SparseMatrix(rows, rows);
+                    else d = new DokMatrix(rows, rows);
+                    for (int k = 0; k < entries; k++) {
+                        int i = rng.nextInt(rows);
+                        int j = rng.nextInt(rows);
+                        if (type == 0) s.set(i, j, k + 1);
+                        else d.set(i, j, k + 1);
+                    }
+                    double set = (System.nanoTime() - time) / 1000000.0;
+                    time = System.nanoTime();
+                    double sum = 0;
+                    for (int k = 0; k < entries; k++) {
+                        int i = rng.nextInt(rows);
+                        int j = rng.nextInt(rows);
+                        sum += type == 0 ? s.get(i, j) : d.get(i, j);
+                    }
+                    double get = (System.nanoTime() - time) / 1000000.0;
+                    time = System.nanoTime();
+                    CsrMatrix csr = type == 0 ? new CsrMatrix(s) : d.toCsr();
+                    double freeze = (System.nanoTime() - time) / 1000000.0;
+                    double allocated = (bean.getThreadAllocatedBytes(tid) - bytes) / 1048576.0;
+                    if (round == 1)
+                        System.out.println(rows + "\t" + csr.getNumberOfNonZeroElements() + "\t"
+                                + (type == 0 ? "SparseMatrix" : "DokMatrix") + "\t" + set + "\t" + get + "\t"
+                                + freeze + "\t" + allocated + (sum < 0 ? "\t" : ""));
+                }
+            }
+        }
+    }
+
+}
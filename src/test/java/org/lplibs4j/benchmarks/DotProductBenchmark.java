@@ -0,0 +1,67 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.VectorKernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the intersection strategies of the sparse-sparse dot product over different
+ * size ratios of the two operands.
+ *
+ * @author planatsc
+ */
+public class DotProductBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        int size = 1000000;
+        int longused = 100000;
+        int[] longindex = randomIndices(rng, size, longused);
+        double[] longdata = randomValues(rng, longused);
+
+        System.out.println("short nnz\tratio\tmerge [ns]\tgalloping [ns]\tadaptive [ns]");
+        for (int shortused = 10; shortused <= longused; shortused *= 10) {
+            int[] shortindex = randomIndices(rng, size, shortused);
+            double[] shortdata = randomValues(rng, shortused);
+            int repeat = Math.max(10, 20000000 / (longused + shortused));
+
+            long merge = 0, galloping = 0, adaptive = 0;
+            for (int round = 0; round < 3; round++) {
+                long time = System.nanoTime();
+                for (int r = 0; r < repeat; r++)
+                    sink += VectorKernels.dotMerge(shortindex, shortdata, shortused, longindex, longdata, longused);
+                merge = (System.nanoTime() - time) / repeat;
+
+                time = System.nanoTime();
+                for (int r = 0; r < repeat; r++)
+                    sink += VectorKernels.dotGalloping(shortindex, shortdata, shortused, longindex, longdata, longused);
+                galloping = (System.nanoTime() - time) / repeat;
+
+                time = System.nanoTime();
+                for (int r = 0; r < repeat; r++)
+                    sink += VectorKernels.dot(shortindex, shortdata, shortused, longindex, longdata, longused);
+                adaptive = (System.nanoTime() - time) / repeat;
+            }
+            System.out.println(shortused + "\t1:" + (longused / shortused) + "\t" + merge + "\t" + galloping + "\t" + adaptive);
+        }
+    }
+
+    static int[] randomIndices(Random rng, int size, int used) {
+        int[] index = new int[used];
+        for (int i = 0; i < used; i++) index[i] = rng.nextInt(size);
+        Arrays.sort(index);
+        for (int i = 1; i < used; i++)
+            if (index[i] <= index[i - 1]) index[i] = index[i - 1] + 1;
+        return index;
+    }
+
+    static double[] randomValues(Random rng, int used) {
+        double[] data = new double[used];
+        for (int i = 0; i < used; i++) data[i] = rng.nextDouble();
+        return data;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.VectorKernels;
+import org.lplibs4j.api.util.Matrix;
+
+import java.util.Random;
+
+/**
+ * Throughput of the scalar and the unrolled kernels of VectorKernels for sparse vectors
+ * with 1e3 to 1e7 non-zeros, and of the blocked dense matrix product. The old dense
+ * product fetched every element of the multiplier through Matrix.get.
+ *
+ * @author planatsc
+ */
+public class KernelBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        System.out.println("kernels selected at startup: " + (VectorKernels.UNROLLED ? "unrolled" : "scalar"));
+        System.out.println("nnz\tscalar dot [Mnz/s]\tunrolled dot [Mnz/s]");
+
+        for (int nnz = 1000; nnz <= 10000000; nnz *= 10) {
+            int size = nnz * 4;
+            int[] index = new int[nnz];
+            double[] data = new double[nnz];
+            for (int i = 0; i < nnz; i++) {
+                index[i] = i * 4 + rng.nextInt(4);
+                data[i] = rng.nextDouble();
+            }
+            double[] x = new double[size];
+            for (int i = 0; i < size; i++) x[i] = rng.nextDouble();
+
+            int repeat = Math.max(1, 20000000 / nnz);
+            double scalar = 0, unrolled = 0;
+            for (int round = 0; round < 3; round++) {
+                long time = System.nanoTime();
+                for (int r = 0; r < repeat; r++) sink += VectorKernels.dotScalar(index, data, nnz, x);
+                scalar = ((double) nnz * repeat) / (System.nanoTime() - time) * 1000;
+
+                time = System.nanoTime();
+                for (int r = 0; r < repeat; r++) sink += VectorKernels.dotUnrolled(index, data, nnz, x);
+                unrolled = ((double) nnz * repeat) / (System.nanoTime() - time) * 1000;
+            }
+            System.out.println(nnz + "\t" + Math.round(scalar) + "\t" + Math.round(unrolled));
+        }
+
+        System.out.println("n\tget-based times [ms]\tdense times [ms]\tdense [GFlop/s]");
+        for (int n = 128; n <= 2048; n *= 2) {
+            double[][] a = new double[n][n];
+            double[][] b = new double[n][n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++) {
+                    a[i][j] = rng.nextDouble();
+                    b[i][j] = rng.nextDouble();
+                }
+            NonSparseMatrix ma = new NonSparseMatrix(a);
+            NonSparseMatrix mb = new NonSparseMatrix(b);
+            long best = Long.MAX_VALUE;
+            long bestget = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                long time = System.nanoTime();
+                if (n <= 512) {
+                    sink += timesByGet(a, mb)[0][0];
+                    bestget = Math.min(bestget, System.nanoTime() - time);
+                }
+
+                time = System.nanoTime();
+                sink += ma.times(mb).get(0, 0);
+                best = Math.min(best, System.nanoTime() - time);
+            }
+            System.out.println(n + "\t" + (n <= 512 ? String.valueOf(bestget / 1000000.0) : "-") + "\t" + best / 1000000.0
+                    + "\t" + 2.0 * n * n * n / best);
+        }
+    }
+
+    static double[][] timesByGet(double[][] m, Matrix multiplier) {
+        double[][] result = new double[m.length][multiplier.getColNum()];
+        for (int row = 0; row < m.length; row++) {
+            for (int column = 0; column < multiplier.getColNum(); column++) {
+                double sum = 0;
+                for (int ii = 0; ii < m[row].length; ii++) {
+                    sum += m[row][ii] * multiplier.get(ii, column);
+                }
+                result[row][column] = sum;
+            }
+        }
+        return result;
+    }
+
+}
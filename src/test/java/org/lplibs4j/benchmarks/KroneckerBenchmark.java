@@ -0,0 +1,63 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.KroneckerOperator;
+import org.lplibs4j.solver.problems.QuadraticAssignmentProblem;
+
+import java.util.Random;
+
+/**
+ * The product of the Kronecker product of two dense n x n matrices, the Hessian of a
+ * QuadraticAssignmentProblem, with a vector, applied as A X B^T, compared with the memory
+ * the n^2 x n^2 matrix would need and with evaluating the objective by the quadruple loop.
+ *
+ * @author planatsc
+ */
+public class KroneckerBenchmark {
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        int repeat = 20;
+        System.out.println("n\texplicit [MB]\tapply [ms]\tevaluate [ms]\tquadruple loop [ms]");
+        for (int n = 20; n <= 80; n += 20) {
+            double[][] a = new double[n][n];
+            double[][] b = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    a[i][j] = rng.nextInt(10);
+                    b[i][j] = rng.nextInt(10);
+                }
+            }
+            KroneckerOperator op = new KroneckerOperator(a, b);
+            double[] x = new double[n * n];
+            double[] y = new double[n * n];
+            for (int i = 0; i < x.length; i++) x[i] = rng.nextDouble();
+            op.apply(x, y);
+            long time = System.nanoTime();
+            for (int r = 0; r < repeat; r++) op.apply(x, y);
+            double apply = (System.nanoTime() - time) / 1000000.0 / repeat;
+
+            int[][] assignment = new int[n][n];
+            for (int i = 0; i < n; i++) assignment[i][(i * 7) % n] = 1;
+            QuadraticAssignmentProblem qap = new QuadraticAssignmentProblem(a, b);
+            qap.evaluate(assignment);
+            time = System.nanoTime();
+            double value = 0;
+            for (int r = 0; r < repeat; r++) value += qap.evaluate(assignment);
+            double evaluate = (System.nanoTime() - time) / 1000000.0 / repeat;
+
+            time = System.nanoTime();
+            double sum = 0;
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    for (int k = 0; k < n; k++)
+                        for (int l = 0; l < n; l++)
+                            sum += a[i][k] * b[j][l] * assignment[i][j] * assignment[k][l];
+            double loop = (System.nanoTime() - time) / 1000000.0;
+            if (Math.abs(value / repeat - sum) > 1e-6 * Math.abs(sum)) System.out.println("mismatch " + sum);
+
+            double explicit = 8.0 * n * n * n * n / (1 << 20);
+            System.out.println(n + "\t" + explicit + "\t" + apply + "\t" + evaluate + "\t" + loop);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.MatrixMarketReader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamTokenizer;
+import java.util.Random;
+
+/**
+ * Throughput of MatrixMarketReader against the StreamTokenizer loop of the former
+ * SparseMatrix.readMTX, which only counted the entries here. The file is generated with
+ * the given number of entries (first argument, 1e8 by default, about 2.5 GB) unless it
+ * exists. The file name is the second argument.
+ *
+ * @author planatsc
+ */
+public class MatrixMarketBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) throws IOException {
+        long entries = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        File file = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir") + "/benchmark-" + entries + ".mtx");
+        if (!file.exists()) generate(file, entries);
+        double mb = file.length() / 1048576.0;
+        System.out.println(file + ": " + Math.round(mb) + " MB, threads " + Runtime.getRuntime().availableProcessors());
+
+        long time = System.nanoTime();
+        CsrMatrix m = MatrixMarketReader.read(file.getPath());
+        double seconds = (System.nanoTime() - time) / 1e9;
+        System.out.println("MatrixMarketReader\t" + seconds + " s\t" + Math.round(mb / seconds) + " MB/s\tnnz " + m.getNumberOfNonZeroElements());
+        m = null;
+
+        time = System.nanoTime();
+        long count = tokenize(file);
+        seconds = (System.nanoTime() - time) / 1e9;
+        System.out.println("StreamTokenizer\t" + seconds + " s\t" + Math.round(mb / seconds) + " MB/s\tentries " + count);
+    }
+
+    static void generate(File file, long entries) throws IOException {
+        int n = (int) Math.min(Integer.MAX_VALUE - 1, Math.max(1, entries / 10));
+        Random rng = new Random(42);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20);
+        try {
+            out.write(("%%MatrixMarket matrix coordinate real general\n" + n + " " + n + " " + entries + "\n").getBytes("US-ASCII"));
+            for (long k = 0; k < entries; k++) {
+                int i = (int) (k / 10);
+                out.write(((i + 1) + " " + (rng.nextInt(n) + 1) + " " + (float) rng.nextDouble() + "\n").getBytes("US-ASCII"));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static long tokenize(File file) throws IOException {
+        StreamTokenizer st = new StreamTokenizer(new BufferedReader(new FileReader(file)));
+        st.commentChar('%');
+        st.nextToken();
+        st.nextToken();
+        st.nextToken();
+        long count = 0;
+        int token = st.nextToken();
+        while (token != StreamTokenizer.TT_EOF) {
+            sink += st.nval;
+            st.nextToken();
+            sink += st.nval;
+            st.nextToken();
+            sink += st.nval;
+            token = st.nextToken();
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.NonSparseMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.util.Matrix;
+import org.lplibs4j.api.util.NonZeroElementIterator;
+import org.lplibs4j.api.util.NonZeroElementVisitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Summing the non-zero entries of SparseMatrix, CsrMatrix and NonSparseMatrix through the
+ * boxing NonZeroElementIterator, the NonZeroElementVisitor and copyNonZerosTo. Reports the
+ * time and the bytes allocated per entry.
+ *
+ * @author planatsc
+ */
+public class NonZeroVisitorBenchmark {
+
+    static double sum;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        Random rng = new Random(42);
+        int n = 2000;
+        SparseMatrix s = new SparseMatrix(n, n);
+        NonSparseMatrix d = new NonSparseMatrix(n, n);
+        for (int k = 0; k < 20 * n; k++) {
+            int i = rng.nextInt(n);
+            int j = rng.nextInt(n);
+            double value = rng.nextDouble() + 0.5;
+            s.set(i, j, value);
+            d.set(i, j, value);
+        }
+        Matrix[] matrices = {s, new CsrMatrix(s), d};
+        String[] names = {"SparseMatrix", "CsrMatrix", "NonSparseMatrix"};
+        int nnz = s.getNumberOfNonZeroElements();
+        int[] rows = new int[nnz];
+        int[] cols = new int[nnz];
+        double[] vals = new double[nnz];
+        NonZeroElementVisitor visitor = new NonZeroElementVisitor() {
+            public void visit(int row, int column, double value) {
+                sum += value;
+            }
+        };
+        int repeat = 50;
+        System.out.println("matrix\tentries\tmethod\ttime [ms]\tallocated [bytes/entry]");
+        for (int m = 0; m < matrices.length; m++) {
+            for (int method = 0; method < 3; method++) {
+                double time = 0;
+                double allocated = 0;
+                for (int round = 0; round < 2; round++) {
+                    long bytes = bean.getThreadAllocatedBytes(tid);
+                    long start = System.nanoTime();
+                    for (int r = 0; r < repeat; r++) {
+                        if (method == 0) {
+                            NonZeroElementIterator it = matrices[m].getNonZeroElementIterator();
+                            while (it.hasNext()) sum += it.next();
+                        } else if (method == 1) {
+                            matrices[m].forEachNonZero(visitor);
+                        } else {
+                            int count = matrices[m].copyNonZerosTo(rows, cols, vals);
+                            for (int k = 0; k < count; k++) sum += vals[k];
+                        }
+                    }
+                    time = (System.nanoTime() - start) / 1000000.0 / repeat;
+                    allocated = (bean.getThreadAllocatedBytes(tid) - bytes) / (double) repeat / nnz;
+                }
+                System.out.println(names[m] + "\t" + nnz + "\t"
+                        + (method == 0 ? "iterator" : method == 1 ? "visitor" : "copy") + "\t" + time + "\t"
+                        + allocated + (sum < 0 ? "\t" : ""));
+            }
+        }
+    }
+
+}
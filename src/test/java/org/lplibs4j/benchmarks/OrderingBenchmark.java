@@ -0,0 +1,72 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.solver.linalg.Ordering;
+import org.lplibs4j.solver.linalg.SparseLDL;
+import org.lplibs4j.solver.linalg.SymbolicFactorization;
+
+import java.util.Random;
+
+/**
+ * Bandwidth, profile and the size of the Cholesky factor of a grid Laplacian with randomly
+ * numbered nodes, before and after reverse Cuthill-McKee, approximate minimum degree and
+ * nested dissection, with the time of computing the ordering and of the numeric
+ * factorization in the new order.
+ *
+ * @author planatsc
+ */
+public class OrderingBenchmark {
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        System.out.println("grid\tordering\tbandwidth\tprofile\tnnz(L)\tordering [ms]\tfactorize [ms]");
+        for (int side = 100; side <= 300; side += 100) {
+            int n = side * side;
+            int[] label = new int[n];
+            for (int k = 0; k < n; k++) label[k] = k;
+            for (int k = n - 1; k > 0; k--) {
+                int j = rng.nextInt(k + 1);
+                int t = label[k];
+                label[k] = label[j];
+                label[j] = t;
+            }
+            CooMatrixBuilder builder = new CooMatrixBuilder(n, n, 5 * n, true);
+            for (int x = 0; x < side; x++) {
+                for (int y = 0; y < side; y++) {
+                    int k = label[x * side + y];
+                    builder.append(k, k, 4.01);
+                    if (x > 0) {
+                        builder.append(k, label[(x - 1) * side + y], -1);
+                        builder.append(label[(x - 1) * side + y], k, -1);
+                    }
+                    if (y > 0) {
+                        builder.append(k, label[x * side + y - 1], -1);
+                        builder.append(label[x * side + y - 1], k, -1);
+                    }
+                }
+            }
+            CsrMatrix a = builder.buildCsr();
+
+            for (String name : new String[]{"random", "rcm", "amd", "nd"}) {
+                long time = System.nanoTime();
+                int[] perm = null;
+                if (name.equals("rcm")) perm = Ordering.reverseCuthillMcKee(a);
+                else if (name.equals("amd")) perm = Ordering.approximateMinimumDegree(a);
+                else if (name.equals("nd")) perm = Ordering.nestedDissection(a);
+                double ordering = (System.nanoTime() - time) / 1000000.0;
+                CsrMatrix b = perm != null ? a.permute(perm, perm) : a;
+                SymbolicFactorization symbolic = SymbolicFactorization.analyze(b);
+                String factorize = "-";
+                if (symbolic.getNonZerosOfL() < 5000000) {
+                    time = System.nanoTime();
+                    SparseLDL.cholesky(symbolic, b);
+                    factorize = String.valueOf((System.nanoTime() - time) / 1000000.0);
+                }
+                System.out.println(side + "x" + side + "\t" + name + "\t" + Ordering.bandwidth(b) + "\t"
+                        + Ordering.profile(b) + "\t" + symbolic.getNonZerosOfL() + "\t" + ordering + "\t" + factorize);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.ScratchArena;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SymmetricSparseMatrix;
+
+import java.util.Random;
+
+/**
+ * x^T Q x for the covariance matrix of a portfolio-style QP, a sector model where every
+ * asset is correlated with the assets of its sector, stored as full SparseMatrix, as full
+ * CsrMatrix and as upper triangle in a SymmetricSparseMatrix.
+ *
+ * @author planatsc
+ */
+public class QuadFormBenchmark {
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        int repeat = 50;
+        System.out.println("assets\tstored full\tstored upper\tSparseMatrix [ms]\tCsrMatrix [ms]\tSymmetricSparseMatrix [ms]");
+        for (int n = 1000; n <= 8000; n *= 2) {
+            int sectors = n / 100;
+            int[] sector = new int[n];
+            for (int i = 0; i < n; i++) sector[i] = rng.nextInt(sectors);
+            double[] beta = new double[n];
+            for (int i = 0; i < n; i++) beta[i] = 0.5 + rng.nextDouble();
+            SparseMatrix q = new SparseMatrix(n, n);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (sector[i] == sector[j]) q.set(i, j, beta[i] * beta[j] * 0.04 + (i == j ? 0.01 : 0));
+                }
+            }
+            CsrMatrix csr = new CsrMatrix(q);
+            SymmetricSparseMatrix sym = new SymmetricSparseMatrix(q);
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) x[i] = rng.nextDouble() / n;
+            ScratchArena arena = ScratchArena.get();
+
+            double[] times = new double[3];
+            double check = 0;
+            for (int k = 0; k < 3; k++) {
+                for (int r = 0; r < 5; r++) check += k == 0 ? SparseMatrix.quadraticForm(q, x, arena)
+                        : k == 1 ? SparseMatrix.quadraticForm(csr, x, arena) : sym.quadForm(x);
+                long time = System.nanoTime();
+                for (int r = 0; r < repeat; r++) check += k == 0 ? SparseMatrix.quadraticForm(q, x, arena)
+                        : k == 1 ? SparseMatrix.quadraticForm(csr, x, arena) : sym.quadForm(x);
+                times[k] = (System.nanoTime() - time) / 1000000.0 / repeat;
+            }
+            System.out.println(n + "\t" + csr.getNumberOfNonZeroElements() + "\t" + sym.getNumberOfStoredElements()
+                    + "\t" + times[0] + "\t" + times[1] + "\t" + times[2] + (check < 0 ? "\t" : ""));
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CsrMatrix;
+import org.lplibs4j.api.implementation.SparseMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+
+import java.util.Random;
+
+/**
+ * Forming Q^T * Q of a sparse Q with 10 non-zeros per row: the Gustavson product of
+ * SparseMatrix.times against the former all-pairs product, which dotted every row of
+ * Q^T with every column of Q. The all-pairs product is only run for the smaller sizes.
+ *
+ * @author planatsc
+ */
+public class SpGEMMBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        System.out.println("rows\tcols\tnnz(Q^TQ)\tall-pairs [ms]\tGustavson [ms]");
+        for (int cols = 1000; cols <= 64000; cols *= 4) {
+            int rows = 4 * cols;
+            CooMatrixBuilder builder = new CooMatrixBuilder(rows, cols, 10 * rows, true);
+            for (int i = 0; i < rows; i++)
+                for (int k = 0; k < 10; k++) builder.append(i, rng.nextInt(cols), rng.nextDouble());
+            SparseMatrix q = builder.buildCsr().toSparseMatrix();
+            SparseMatrix qt = (SparseMatrix) q.transpose();
+
+            long best = Long.MAX_VALUE;
+            SparseMatrix product = null;
+            for (int round = 0; round < 3; round++) {
+                long time = System.nanoTime();
+                product = (SparseMatrix) qt.times(q);
+                best = Math.min(best, System.nanoTime() - time);
+            }
+            String allpairs = "-";
+            if (cols <= 4000) {
+                long time = System.nanoTime();
+                sink += allPairs(qt, q).getNumberOfNonZeroElements();
+                allpairs = String.valueOf((System.nanoTime() - time) / 1000000.0);
+            }
+            System.out.println(rows + "\t" + cols + "\t" + product.getNumberOfNonZeroElements() + "\t" + allpairs + "\t" + best / 1000000.0);
+        }
+    }
+
+    static SparseMatrix allPairs(SparseMatrix a, SparseMatrix b) {
+        SparseMatrix bt = (SparseMatrix) b.transpose();
+        SparseMatrix result = new SparseMatrix(a.getRowNum(), b.getColNum());
+        CsrMatrix ac = new CsrMatrix(a);
+        CsrMatrix btc = new CsrMatrix(bt);
+        for (int i = 0; i < a.getRowNum(); i++) {
+            SparseVector row = ac.getRow(i);
+            for (int j = 0; j < bt.getRowNum(); j++) {
+                double value = row.dot(btc.getRow(j));
+                if (value != 0) result.set(i, j, value);
+            }
+        }
+        return result;
+    }
+
+}
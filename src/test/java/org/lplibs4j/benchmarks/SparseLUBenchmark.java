@@ -0,0 +1,153 @@
+package org.lplibs4j.benchmarks;
+
+import org.lplibs4j.api.constraints.Constraint;
+import org.lplibs4j.api.constraints.LinearConstraint;
+import org.lplibs4j.api.implementation.CooMatrixBuilder;
+import org.lplibs4j.api.implementation.CscMatrix;
+import org.lplibs4j.api.implementation.SparseVector;
+import org.lplibs4j.solver.linalg.SparseLU;
+import org.lplibs4j.solver.problems.LinearProgram;
+import org.lplibs4j.solver.problems.QuadraticAssignmentProblem;
+
+import java.util.Random;
+
+/**
+ * Basis changes on the constraint matrix of the crossing heuristic of a random
+ * QuadraticAssignmentProblem with a slack for every row. Starting from the slack basis,
+ * every structural column enters once and the largest entry of its transformed column
+ * leaves, like in simplex iterations. The loop with product form updates (refactorizing
+ * when needsRefactorization() says so) is compared with refactorizing the basis after every
+ * change. The times of FTRAN and BTRAN are averages over the unit vectors of 100 rows.
+ *
+ * @author planatsc
+ */
+public class SparseLUBenchmark {
+
+    static double sink;
+
+    public static void main(String[] args) {
+        Random rng = new Random(42);
+        System.out.println("n\trows\tnnz(A)\tnnz(L+U)\tfactorize [ms]\tftran [us]\tbtran [us]\tupdates [ms]\trefactorize [ms]");
+        for (int n = 8; n <= 20; n += 4) {
+            double[][] a = new double[n][n];
+            double[][] b = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    a[i][j] = rng.nextDouble();
+                    b[i][j] = rng.nextDouble();
+                }
+            }
+            LinearProgram lp = new QuadraticAssignmentProblem(a, b).getPlanatscherContraintHeurstic(0.7, 0.7);
+            CscMatrix matrix = withSlacks(lp, n * n);
+            int m = matrix.getRowNum();
+
+            int[] order = new int[n * n];
+            for (int j = 0; j < order.length; j++) order[j] = j;
+            for (int j = order.length - 1; j > 0; j--) {
+                int k = rng.nextInt(j + 1);
+                int t = order[j];
+                order[j] = order[k];
+                order[k] = t;
+            }
+
+            long time = System.nanoTime();
+            int[] basis = iterate(matrix, order, false);
+            long updates = System.nanoTime() - time;
+            time = System.nanoTime();
+            iterate(matrix, order, true);
+            long refactorize = System.nanoTime() - time;
+
+            long factorize = Long.MAX_VALUE;
+            SparseLU lu = null;
+            for (int round = 0; round < 5; round++) {
+                time = System.nanoTime();
+                lu = SparseLU.factorize(matrix, basis);
+                factorize = Math.min(factorize, System.nanoTime() - time);
+            }
+
+            double[] x = new double[m];
+            int[] index = new int[m];
+            int rows = Math.min(100, m);
+            time = System.nanoTime();
+            for (int r = 0; r < rows; r++) {
+                x[r] = 1;
+                index[0] = r;
+                int nnz = lu.ftran(x, index, 1);
+                for (int e = 0; e < nnz; e++) {
+                    sink += x[index[e]];
+                    x[index[e]] = 0;
+                }
+            }
+            long ftran = (System.nanoTime() - time) / rows;
+            time = System.nanoTime();
+            for (int r = 0; r < rows; r++) {
+                x[r] = 1;
+                index[0] = r;
+                int nnz = lu.btran(x, index, 1);
+                for (int e = 0; e < nnz; e++) {
+                    sink += x[index[e]];
+                    x[index[e]] = 0;
+                }
+            }
+            long btran = (System.nanoTime() - time) / rows;
+
+            System.out.println(n + "\t" + m + "\t" + matrix.getNumberOfNonZeroElements() + "\t"
+                    + (lu.getNonZerosOfL() + lu.getNonZerosOfU()) + "\t" + factorize / 1000000.0 + "\t"
+                    + ftran / 1000.0 + "\t" + btran / 1000.0 + "\t" + updates / 1000000.0 + "\t" + refactorize / 1000000.0);
+        }
+    }
+
+    /**
+     * Runs the basis changes and returns the final basis.
+     */
+    static int[] iterate(CscMatrix matrix, int[] order, boolean refactorizeAlways) {
+        int m = matrix.getRowNum();
+        int structurals = matrix.getColNum() - m;
+        int[] basis = new int[m];
+        for (int i = 0; i < m; i++) basis[i] = structurals + i;
+        SparseLU lu = SparseLU.factorize(matrix, basis);
+        double[] alpha = new double[m];
+        int[] index = new int[m];
+        int[] colptr = matrix.getColumnPointers();
+        for (int entering : order) {
+            int nnz = 0;
+            for (int p = colptr[entering]; p < colptr[entering + 1]; p++) {
+                alpha[matrix.getRowIndices()[p]] = matrix.getValues()[p];
+                index[nnz++] = matrix.getRowIndices()[p];
+            }
+            nnz = lu.ftran(alpha, index, nnz);
+            int leaving = -1;
+            for (int e = 0; e < nnz; e++)
+                if (alpha[index[e]] != 0 && (leaving == -1 || Math.abs(alpha[index[e]]) > Math.abs(alpha[leaving])))
+                    leaving = index[e];
+            if (leaving != -1 && Math.abs(alpha[leaving]) > 1e-9) {
+                basis[leaving] = entering;
+                if (refactorizeAlways) {
+                    lu = SparseLU.factorize(matrix, basis);
+                } else {
+                    lu.update(leaving, alpha, index, nnz);
+                    if (lu.needsRefactorization()) lu = SparseLU.factorize(matrix, basis);
+                }
+            }
+            for (int e = 0; e < nnz; e++) alpha[index[e]] = 0;
+        }
+        return basis;
+    }
+
+    /**
+     * The constraint rows of lp followed by an identity for the slacks.
+     */
+    static CscMatrix withSlacks(LinearProgram lp, int variables) {
+        int m = lp.getConstraints().size();
+        CooMatrixBuilder builder = new CooMatrixBuilder(m, variables + m);
+        int row = 0;
+        for (Constraint constraint : lp.getConstraints()) {
+            SparseVector c = ((LinearConstraint) constraint).getCSparse();
+            for (int e = 0; e < c.getUsed(); e++) builder.append(row, c.getIndex()[e], c.getData()[e]);
+            builder.append(row, variables + row, 1);
+            row++;
+        }
+        return builder.buildCsc();
+    }
+
+}